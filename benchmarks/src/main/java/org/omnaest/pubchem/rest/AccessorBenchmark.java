@@ -0,0 +1,96 @@
+package org.omnaest.pubchem.rest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.omnaest.pubchem.rest.PubChemRestUtils.CidAndName;
+import org.omnaest.pubchem.rest.PubChemRestUtils.PubChemRestAccessor;
+import org.omnaest.pubchem.rest.domain.Synonyms;
+import org.omnaest.utils.CacheUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * End to end calls of the {@link PubChemRestAccessor} against a local stub server, without cache, with the {@link PubChemRestAccessor#withMemoryCache(int,
+ * long, TimeUnit)} and with a persistent json folder cache
+ *
+ * @author omnaest
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AccessorBenchmark
+{
+    private static final List<String> CIDS = Arrays.asList("222", "280", "5957", "962", "1061", "6022", "977", "3080745", "57339278", "70678894");
+
+    @Param({ "none", "memory", "persistent" })
+    public String cache;
+
+    private HttpServer          server;
+    private PubChemRestAccessor accessor;
+
+    @Setup
+    public void setup()
+    {
+        this.server = BenchmarkFixtures.startStubServer();
+        this.accessor = PubChemRestUtils.newInstance()
+                                        .withBaseUrl(BenchmarkFixtures.baseUrlOf(this.server))
+                                        .withRateLimit(1000000, 60000000);
+        if ("memory".equals(this.cache))
+        {
+            this.accessor.withMemoryCache(10000, 1, TimeUnit.HOURS);
+        }
+        else if ("persistent".equals(this.cache))
+        {
+            this.accessor.withCache(CacheUtils.newLocalJsonFolderCache("pubchem-benchmark"));
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.server.stop(0);
+    }
+
+    @Benchmark
+    public Optional<Synonyms> fetchSynonyms()
+    {
+        return this.accessor.fetchSynonyms("lactate");
+    }
+
+    @Benchmark
+    public Optional<CidAndName> fetchCidAndPrimaryNameByAnyName()
+    {
+        return this.accessor.fetchCidAndPrimaryNameByAnyName("lactate");
+    }
+
+    @Benchmark
+    public Optional<String> fetchCompoundCidByName()
+    {
+        return this.accessor.fetchCompoundCidByName("lactate");
+    }
+
+    @Benchmark
+    public Map<String, String> fetchTitles()
+    {
+        return this.accessor.fetchTitles(CIDS);
+    }
+}
@@ -0,0 +1,107 @@
+package org.omnaest.pubchem.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Recorded PubChem responses and a local stub server which serves them for the url shapes of the {@link PubChemRestUtils}
+ *
+ * @author omnaest
+ */
+class BenchmarkFixtures
+{
+    public static final String COMPOUND     = "compound_lactate.json";
+    public static final String SYNONYMS     = "synonyms_lactate.json";
+    public static final String DESCRIPTIONS = "descriptions.json";
+
+    public static byte[] read(String name)
+    {
+        try (InputStream inputStream = BenchmarkFixtures.class.getResourceAsStream(name))
+        {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = inputStream.read(buffer)) >= 0)
+            {
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to read fixture " + name, e);
+        }
+    }
+
+    /**
+     * Starts a stub server on a free local port and returns it. The base url is "http://localhost:{port}/rest/pug".
+     *
+     * @return
+     */
+    public static HttpServer startStubServer()
+    {
+        byte[] compound = read(COMPOUND);
+        byte[] synonyms = read(SYNONYMS);
+        byte[] descriptions = read(DESCRIPTIONS);
+        byte[] cids = "{\"IdentifierList\":{\"CID\":[91435]}}".getBytes(StandardCharsets.UTF_8);
+        try
+        {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/rest/pug/compound/", exchange ->
+            {
+                String path = exchange.getRequestURI()
+                                      .getPath();
+                if (path.endsWith("/synonyms/JSON"))
+                {
+                    respond(exchange, synonyms);
+                }
+                else if (path.endsWith("/description/JSON"))
+                {
+                    respond(exchange, descriptions);
+                }
+                else if (path.endsWith("/cids/JSON"))
+                {
+                    respond(exchange, cids);
+                }
+                else
+                {
+                    respond(exchange, compound);
+                }
+            });
+            server.start();
+            return server;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to start stub server", e);
+        }
+    }
+
+    public static String baseUrlOf(HttpServer server)
+    {
+        return "http://localhost:" + server.getAddress()
+                                           .getPort()
+                + "/rest/pug";
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException
+    {
+        exchange.getResponseHeaders()
+                .add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody())
+        {
+            outputStream.write(body);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.omnaest.pubchem.rest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.omnaest.pubchem.rest.PubChemRestUtils.Compound;
+import org.omnaest.pubchem.rest.PubChemRestUtils.Compound.CompoundEntry;
+import org.omnaest.pubchem.rest.PubChemRestUtils.Description;
+import org.omnaest.pubchem.rest.domain.Synonyms;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Deserialization of recorded PubChem responses the same way the {@link PubChemRestUtils} does. Run with "-prof gc" to see the allocation rates.
+ *
+ * @author omnaest
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DeserializationBenchmark
+{
+    private ObjectMapper objectMapper;
+
+    private byte[] compound;
+    private byte[] synonyms;
+    private byte[] descriptions;
+
+    @Setup
+    public void setup()
+    {
+        this.objectMapper = new ObjectMapper();
+        this.compound = BenchmarkFixtures.read(BenchmarkFixtures.COMPOUND);
+        this.synonyms = BenchmarkFixtures.read(BenchmarkFixtures.SYNONYMS);
+        this.descriptions = BenchmarkFixtures.read(BenchmarkFixtures.DESCRIPTIONS);
+    }
+
+    @Benchmark
+    public Compound compoundBinding() throws IOException
+    {
+        return this.objectMapper.treeToValue(this.objectMapper.readTree(this.compound), Compound.class);
+    }
+
+    @Benchmark
+    public List<CompoundEntry> compoundNameStreaming() throws IOException
+    {
+        return PubChemRestUtils.parseCompoundNameEntries(this.objectMapper.getFactory()
+                                                                          .createParser(this.compound));
+    }
+
+    @Benchmark
+    public Synonyms synonyms() throws IOException
+    {
+        JsonNode information = this.objectMapper.readTree(this.synonyms)
+                                                .findPath("Information");
+        return this.objectMapper.treeToValue(information.get(0), Synonyms.class);
+    }
+
+    @Benchmark
+    public List<Description> descriptions() throws IOException
+    {
+        JsonNode information = this.objectMapper.readTree(this.descriptions)
+                                                .findPath("Information");
+        List<Description> result = new ArrayList<>();
+        for (JsonNode description : information)
+        {
+            result.add(this.objectMapper.treeToValue(description, Description.class));
+        }
+        return result;
+    }
+}
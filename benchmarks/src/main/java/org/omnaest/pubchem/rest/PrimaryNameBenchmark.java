@@ -0,0 +1,81 @@
+package org.omnaest.pubchem.rest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.omnaest.pubchem.rest.PubChemRestUtils.CidAndName;
+import org.omnaest.pubchem.rest.PubChemRestUtils.Compound;
+import org.omnaest.pubchem.rest.PubChemRestUtils.Compound.CompoundEntry;
+import org.omnaest.pubchem.rest.PubChemRestUtils.NameType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The primary name selection of {@link PubChemRestUtils#determineCidAndPrimaryName(List, NameType...)} for a growing number of compound entries, which
+ * also form the chain of parents
+ *
+ * @author omnaest
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PrimaryNameBenchmark
+{
+    private static final long FIRST_CID = 1000000;
+
+    @Param({ "1", "8", "64" })
+    public int numberOfEntries;
+
+    private List<CompoundEntry> entries;
+
+    /**
+     * Repeats the recorded entries with distinct cids, so every entry of the chain is a different compound
+     *
+     * @throws IOException
+     */
+    @Setup
+    public void setup() throws IOException
+    {
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonNode recordedEntries = objectMapper.readTree(BenchmarkFixtures.read(BenchmarkFixtures.COMPOUND))
+                                               .path("PC_Compounds");
+        ArrayNode entryNodes = objectMapper.createArrayNode();
+        for (int ii = 0; ii < this.numberOfEntries; ii++)
+        {
+            ObjectNode entryNode = recordedEntries.get(ii % recordedEntries.size())
+                                                  .deepCopy();
+            ((ObjectNode) entryNode.path("id")
+                                   .path("id")).put("cid", FIRST_CID + ii);
+            entryNodes.add(entryNode);
+        }
+        ObjectNode compoundNode = objectMapper.createObjectNode();
+        compoundNode.set("PC_Compounds", entryNodes);
+        this.entries = objectMapper.treeToValue(compoundNode, Compound.class)
+                                   .getEntries();
+    }
+
+    @Benchmark
+    public Optional<CidAndName> determineCidAndPrimaryName()
+    {
+        return PubChemRestUtils.determineCidAndPrimaryName(this.entries, NameType.TRADITIONAL, NameType.PREFERRED);
+    }
+}
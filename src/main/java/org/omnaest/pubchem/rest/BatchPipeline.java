@@ -0,0 +1,144 @@
+package org.omnaest.pubchem.rest;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a function over a {@link List} of batches with a bounded number of batches in flight and streams the results. New batches are only dispatched
+ * while the consumer pulls results, so a slow consumer does not let the results pile up.<br>
+ * <br>
+ * A batch which fails is logged and contributes no results, the other batches are not affected.
+ *
+ * @author omnaest
+ * @param <B>
+ *            batch
+ * @param <R>
+ *            result element
+ */
+class BatchPipeline<B, R> implements Iterator<List<R>>
+{
+    private static final Logger LOG = LoggerFactory.getLogger(BatchPipeline.class);
+
+    private final Iterator<B>          batches;
+    private final Function<B, List<R>> batchFunction;
+    private final int                  concurrency;
+    private final Executor             executor;
+    private final boolean              inputOrder;
+
+    private final Deque<CompletableFuture<List<R>>>         submitted = new ArrayDeque<>();
+    private final BlockingQueue<CompletableFuture<List<R>>> completed = new LinkedBlockingQueue<>();
+
+    private int pending = 0;
+
+    private BatchPipeline(Iterator<B> batches, Function<B, List<R>> batchFunction, int concurrency, Executor executor, boolean inputOrder)
+    {
+        super();
+        this.batches = batches;
+        this.batchFunction = batchFunction;
+        this.concurrency = concurrency;
+        this.executor = executor;
+        this.inputOrder = inputOrder;
+    }
+
+    /**
+     * Returns a lazy {@link Stream} of the results of all batches. A single batch or a concurrency of 1 is processed in the consuming thread.
+     *
+     * @param batches
+     * @param batchFunction
+     * @param concurrency
+     *            maximum number of batches in flight
+     * @param executor
+     * @param inputOrder
+     *            if true the results are in the order of the batches, otherwise in the order of completion
+     * @return
+     */
+    public static <B, R> Stream<R> stream(List<B> batches, Function<B, List<R>> batchFunction, int concurrency, Executor executor, boolean inputOrder)
+    {
+        boolean sequential = concurrency <= 1 || batches.size() <= 1;
+        BatchPipeline<B, R> pipeline = new BatchPipeline<>(batches.iterator(), batchFunction, sequential ? 1 : concurrency,
+                                                           sequential ? Runnable::run : executor, inputOrder);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pipeline, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                            .flatMap(List::stream);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        this.dispatch();
+        return this.pending > 0;
+    }
+
+    @Override
+    public List<R> next()
+    {
+        if (!this.hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+
+        CompletableFuture<List<R>> future = this.inputOrder ? this.submitted.poll() : this.takeCompleted();
+        this.pending--;
+        return future.join();
+    }
+
+    private void dispatch()
+    {
+        while (this.pending < this.concurrency && this.batches.hasNext())
+        {
+            B batch = this.batches.next();
+            CompletableFuture<List<R>> future = CompletableFuture.supplyAsync(() -> this.applySafely(batch), this.executor);
+            if (this.inputOrder)
+            {
+                this.submitted.add(future);
+            }
+            else
+            {
+                future.whenComplete((result, exception) -> this.completed.add(future));
+            }
+            this.pending++;
+        }
+    }
+
+    private List<R> applySafely(B batch)
+    {
+        try
+        {
+            return this.batchFunction.apply(batch);
+        }
+        catch (RuntimeException e)
+        {
+            LOG.warn("Failed to fetch batch " + batch, e);
+            return Collections.emptyList();
+        }
+    }
+
+    private CompletableFuture<List<R>> takeCompleted()
+    {
+        try
+        {
+            return this.completed.take();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread()
+                  .interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the next batch", e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.omnaest.pubchem.rest;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.omnaest.pubchem.rest.cache.LogFileCache;
+import org.omnaest.pubchem.rest.cache.ParentGraph;
+import org.omnaest.pubchem.rest.cache.SynonymIndex;
+import org.omnaest.pubchem.rest.offline.OfflineIndex;
+
+/**
+ * Registry of the file backed resources which are opened by the with methods taking a {@link Path}, e.g. {@link LogFileCache}, {@link ParentGraph} and
+ * {@link SynonymIndex}. Each file is opened once per jvm and the same instance is returned for every further call with the same file, so copies of a
+ * {@link PubChemRestAccessorBuilder} or of an accessor never get two independent writers of one file.
+ *
+ * @author omnaest
+ */
+class FileResources
+{
+    private static final Map<Path, Object> RESOURCES = new ConcurrentHashMap<>();
+
+    private FileResources()
+    {
+        super();
+    }
+
+    public static LogFileCache getLogFileCache(Path file)
+    {
+        return get(file, LogFileCache.class, LogFileCache::open);
+    }
+
+    public static ParentGraph getParentGraph(Path file)
+    {
+        return get(file, ParentGraph.class, ParentGraph::open);
+    }
+
+    public static SynonymIndex getSynonymIndex(Path file)
+    {
+        return get(file, SynonymIndex.class, SynonymIndex::open);
+    }
+
+    public static OfflineIndex getOfflineIndex(Path directory)
+    {
+        return get(directory, OfflineIndex.class, OfflineIndex::open);
+    }
+
+    private static <R> R get(Path file, Class<R> type, Function<Path, R> opener)
+    {
+        Object resource = RESOURCES.computeIfAbsent(file.toAbsolutePath()
+                                                        .normalize(),
+                                                    opener::apply);
+        if (!type.isInstance(resource))
+        {
+            throw new IllegalArgumentException("File " + file + " is already opened as " + resource.getClass()
+                                                                                                 .getSimpleName());
+        }
+        return type.cast(resource);
+    }
+}
@@ -0,0 +1,231 @@
+package org.omnaest.pubchem.rest;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * {@link Flow.Publisher} which applies a function to each element of an upstream {@link Flow.Publisher} on an {@link Executor} and emits the results in
+ * the order of the upstream elements.<br>
+ * <br>
+ * At most the given number of elements are requested from upstream which are not yet delivered downstream, so neither a fast upstream nor a slow
+ * subscriber lets the elements pile up. A further element is only requested from upstream after a result has been delivered to the subscriber.<br>
+ * <br>
+ * A function which fails cancels the upstream and terminates the subscriber with the failure. Only a single subscriber is supported.
+ *
+ * @author omnaest
+ * @param <T>
+ *            upstream element
+ * @param <R>
+ *            result
+ */
+class FlowPipeline<T, R> implements Flow.Publisher<R>
+{
+    private final Flow.Publisher<T> upstream;
+    private final Function<T, R>    function;
+    private final int               maxInFlight;
+    private final Executor          executor;
+
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    private FlowPipeline(Flow.Publisher<T> upstream, Function<T, R> function, int maxInFlight, Executor executor)
+    {
+        super();
+        this.upstream = upstream;
+        this.function = function;
+        this.maxInFlight = maxInFlight;
+        this.executor = executor;
+    }
+
+    public static <T, R> Flow.Publisher<R> newInstance(Flow.Publisher<T> upstream, Function<T, R> function, int maxInFlight, Executor executor)
+    {
+        if (maxInFlight <= 0)
+        {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        return new FlowPipeline<>(upstream, function, maxInFlight, executor);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super R> subscriber)
+    {
+        if (!this.subscribed.compareAndSet(false, true))
+        {
+            subscriber.onSubscribe(new Flow.Subscription()
+            {
+                @Override
+                public void request(long n)
+                {
+                    // ignored
+                }
+
+                @Override
+                public void cancel()
+                {
+                    // ignored
+                }
+            });
+            subscriber.onError(new IllegalStateException("Only a single subscriber is supported"));
+            return;
+        }
+        this.upstream.subscribe(new PipelineSubscriber(subscriber));
+    }
+
+    private class PipelineSubscriber implements Flow.Subscriber<T>, Flow.Subscription
+    {
+        private final Flow.Subscriber<? super R> downstream;
+
+        private final Queue<CompletableFuture<R>> inFlight      = new ConcurrentLinkedQueue<>();
+        private final AtomicLong                  requested     = new AtomicLong();
+        private final AtomicInteger               drainRequests = new AtomicInteger();
+
+        private volatile Flow.Subscription subscription;
+        private volatile boolean           upstreamDone = false;
+        private volatile Throwable         error        = null;
+        private volatile boolean           terminated   = false;
+
+        public PipelineSubscriber(Flow.Subscriber<? super R> downstream)
+        {
+            super();
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+            this.downstream.onSubscribe(this);
+            subscription.request(FlowPipeline.this.maxInFlight);
+        }
+
+        @Override
+        public void onNext(T item)
+        {
+            if (this.terminated)
+            {
+                return;
+            }
+            CompletableFuture<R> future = CompletableFuture.supplyAsync(() -> FlowPipeline.this.function.apply(item), FlowPipeline.this.executor);
+            this.inFlight.add(future);
+            future.whenComplete((result, exception) -> this.drain());
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+            this.error = throwable;
+            this.upstreamDone = true;
+            this.drain();
+        }
+
+        @Override
+        public void onComplete()
+        {
+            this.upstreamDone = true;
+            this.drain();
+        }
+
+        @Override
+        public void request(long n)
+        {
+            if (n <= 0)
+            {
+                this.error = new IllegalArgumentException("Requested number of elements must be positive: " + n);
+                this.cancelUpstream();
+            }
+            else
+            {
+                this.requested.getAndUpdate(current -> Long.MAX_VALUE - current < n ? Long.MAX_VALUE : current + n);
+            }
+            this.drain();
+        }
+
+        @Override
+        public void cancel()
+        {
+            this.terminated = true;
+            this.cancelUpstream();
+            this.inFlight.clear();
+        }
+
+        private void cancelUpstream()
+        {
+            this.upstreamDone = true;
+            this.subscription.cancel();
+        }
+
+        /**
+         * Delivers the completed results at the head of the in flight queue as far as requested. Runs in only one thread at a time, calls from other
+         * threads meanwhile let the running thread loop once more.
+         */
+        private void drain()
+        {
+            if (this.drainRequests.getAndIncrement() != 0)
+            {
+                return;
+            }
+
+            int missedDrainRequests = 1;
+            do
+            {
+                long delivered = 0;
+                long requested = this.requested.get();
+                while (!this.terminated && delivered < requested)
+                {
+                    CompletableFuture<R> future = this.inFlight.peek();
+                    if (future == null || !future.isDone())
+                    {
+                        break;
+                    }
+                    this.inFlight.poll();
+
+                    R result;
+                    try
+                    {
+                        result = future.join();
+                    }
+                    catch (CompletionException e)
+                    {
+                        this.error = e.getCause();
+                        this.cancelUpstream();
+                        this.inFlight.clear();
+                        break;
+                    }
+                    this.downstream.onNext(result);
+                    delivered++;
+                    if (!this.upstreamDone)
+                    {
+                        this.subscription.request(1);
+                    }
+                }
+                if (delivered > 0 && requested != Long.MAX_VALUE)
+                {
+                    this.requested.addAndGet(-delivered);
+                }
+
+                if (!this.terminated && (this.error != null || (this.upstreamDone && this.inFlight.isEmpty())))
+                {
+                    this.terminated = true;
+                    if (this.error != null)
+                    {
+                        this.downstream.onError(this.error);
+                    }
+                    else
+                    {
+                        this.downstream.onComplete();
+                    }
+                }
+
+                missedDrainRequests = this.drainRequests.addAndGet(-missedDrainRequests);
+            }
+            while (missedDrainRequests != 0);
+        }
+    }
+}
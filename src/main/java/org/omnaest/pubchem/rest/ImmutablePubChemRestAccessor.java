@@ -0,0 +1,439 @@
+package org.omnaest.pubchem.rest;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.omnaest.pubchem.rest.PubChemRestUtils.AsyncPubChemRestAccessor;
+import org.omnaest.pubchem.rest.PubChemRestUtils.CidAndName;
+import org.omnaest.pubchem.rest.PubChemRestUtils.Compound;
+import org.omnaest.pubchem.rest.PubChemRestUtils.Description;
+import org.omnaest.pubchem.rest.PubChemRestUtils.NameType;
+import org.omnaest.pubchem.rest.PubChemRestUtils.PubChemRestAccessor;
+import org.omnaest.pubchem.rest.PubChemRestUtils.ResultOrder;
+import org.omnaest.pubchem.rest.cache.MemoryCache;
+import org.omnaest.pubchem.rest.cache.NegativeCache;
+import org.omnaest.pubchem.rest.cache.ParentGraph;
+import org.omnaest.pubchem.rest.cache.SynonymIndex;
+import org.omnaest.pubchem.rest.domain.ListKey;
+import org.omnaest.pubchem.rest.domain.SynonymStore;
+import org.omnaest.pubchem.rest.domain.Synonyms;
+import org.omnaest.pubchem.rest.metrics.PubChemMetrics;
+import org.omnaest.pubchem.rest.offline.OfflineIndex;
+import org.omnaest.pubchem.rest.property.PropertyTable;
+import org.omnaest.pubchem.rest.property.PropertyType;
+import org.omnaest.pubchem.rest.retry.RetryPolicy;
+import org.omnaest.pubchem.rest.throttle.RateLimiter;
+import org.omnaest.pubchem.rest.transport.PubChemTransport;
+import org.omnaest.utils.cache.Cache;
+
+/**
+ * {@link PubChemRestAccessor} built by a {@link PubChemRestAccessorBuilder}. The configuration of the delegate accessor is completed before it is
+ * assigned to the final field, so it is visible to all threads. The with methods do not modify this accessor but return a new one built from a modified
+ * copy of the {@link PubChemRestAccessorBuilder}.
+ *
+ * @author omnaest
+ */
+class ImmutablePubChemRestAccessor implements PubChemRestAccessor
+{
+    private final PubChemRestAccessorBuilder builder;
+    private final PubChemRestAccessor        delegate;
+
+    ImmutablePubChemRestAccessor(PubChemRestAccessorBuilder builder, PubChemRestAccessor delegate)
+    {
+        super();
+        this.builder = builder;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Optional<Synonyms> fetchSynonyms(String compoundName)
+    {
+        return this.delegate.fetchSynonyms(compoundName);
+    }
+
+    @Override
+    public Optional<Compound> fetchCompoundByName(String compoundName)
+    {
+        return this.delegate.fetchCompoundByName(compoundName);
+    }
+
+    @Override
+    public Optional<CidAndName> fetchCidAndPrimaryNameByAnyName(String compoundName)
+    {
+        return this.delegate.fetchCidAndPrimaryNameByAnyName(compoundName);
+    }
+
+    @Override
+    public Optional<CidAndName> fetchOldestCidAndPrimaryNameByAnyName(String compoundName)
+    {
+        return this.delegate.fetchOldestCidAndPrimaryNameByAnyName(compoundName);
+    }
+
+    @Override
+    public Optional<CidAndName> fetchCidAndPrimaryNameByAnyName(String compoundName, NameType... nameTypes)
+    {
+        return this.delegate.fetchCidAndPrimaryNameByAnyName(compoundName, nameTypes);
+    }
+
+    @Override
+    public Optional<CidAndName> fetchOldestCidAndPrimaryNameByAnyName(String compoundName, NameType... nameTypes)
+    {
+        return this.delegate.fetchOldestCidAndPrimaryNameByAnyName(compoundName, nameTypes);
+    }
+
+    @Override
+    public Optional<String> fetchCompoundParentCidByCid(String cid)
+    {
+        return this.delegate.fetchCompoundParentCidByCid(cid);
+    }
+
+    @Override
+    public Optional<String> fetchCompoundCidByName(String compoundName)
+    {
+        return this.delegate.fetchCompoundCidByName(compoundName);
+    }
+
+    @Override
+    public PubChemRestAccessor withCache(Cache cache)
+    {
+        return this.builder.withCache(cache)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withLocalCache()
+    {
+        return this.builder.withLocalCache()
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withLocalCache(Path file)
+    {
+        return this.builder.withLocalCache(file)
+                           .build();
+    }
+
+    @Override
+    public int exportCache(Path file)
+    {
+        return this.delegate.exportCache(file);
+    }
+
+    @Override
+    public int importCache(Path file)
+    {
+        return this.delegate.importCache(file);
+    }
+
+    @Override
+    public PubChemRestAccessor warmUpByNames(Collection<String> compoundNames)
+    {
+        this.delegate.warmUpByNames(compoundNames);
+        return this;
+    }
+
+    @Override
+    public PubChemRestAccessor warmUpByCids(Collection<String> cids)
+    {
+        this.delegate.warmUpByCids(cids);
+        return this;
+    }
+
+    @Override
+    public PubChemRestAccessor withMemoryCache(int maxSize, long timeToLive, TimeUnit timeUnit)
+    {
+        return this.builder.withMemoryCache(maxSize, timeToLive, timeUnit)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withMemoryCache(MemoryCache<Object> memoryCache)
+    {
+        return this.builder.withMemoryCache(memoryCache)
+                           .build();
+    }
+
+    @Override
+    public Optional<MemoryCache.Statistics> getMemoryCacheStatistics()
+    {
+        return this.delegate.getMemoryCacheStatistics();
+    }
+
+    @Override
+    public PubChemRestAccessor withNegativeCache(int maxSize, long timeToLive, TimeUnit timeUnit)
+    {
+        return this.builder.withNegativeCache(maxSize, timeToLive, timeUnit)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withNegativeCache(NegativeCache negativeCache)
+    {
+        return this.builder.withNegativeCache(negativeCache)
+                           .build();
+    }
+
+    @Override
+    public Optional<NegativeCache.Statistics> getNegativeCacheStatistics()
+    {
+        return this.delegate.getNegativeCacheStatistics();
+    }
+
+    @Override
+    public PubChemRestAccessor withOfflineIndex(Path directory)
+    {
+        return this.builder.withOfflineIndex(directory)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withOfflineIndex(OfflineIndex offlineIndex)
+    {
+        return this.builder.withOfflineIndex(offlineIndex)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withSynonymStore(SynonymStore synonymStore)
+    {
+        return this.builder.withSynonymStore(synonymStore)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withSynonymIndex(Path file)
+    {
+        return this.builder.withSynonymIndex(file)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withSynonymIndex(SynonymIndex synonymIndex)
+    {
+        return this.builder.withSynonymIndex(synonymIndex)
+                           .build();
+    }
+
+    @Override
+    public Optional<String> fetchTitle(String cid)
+    {
+        return this.delegate.fetchTitle(cid);
+    }
+
+    @Override
+    public Map<String, String> fetchTitles(String... cids)
+    {
+        return this.delegate.fetchTitles(cids);
+    }
+
+    @Override
+    public Map<String, String> fetchTitles(Collection<String> cids)
+    {
+        return this.delegate.fetchTitles(cids);
+    }
+
+    @Override
+    public Stream<Description> fetchDescriptions(Collection<String> cids)
+    {
+        return this.delegate.fetchDescriptions(cids);
+    }
+
+    @Override
+    public Stream<Description> fetchDescriptions(String... cid)
+    {
+        return this.delegate.fetchDescriptions(cid);
+    }
+
+    @Override
+    public Stream<Description> fetchDescriptions(Collection<String> cids, ResultOrder resultOrder)
+    {
+        return this.delegate.fetchDescriptions(cids, resultOrder);
+    }
+
+    @Override
+    public PubChemRestAccessor withDescriptionBatchSize(int descriptionBatchSize)
+    {
+        return this.builder.withDescriptionBatchSize(descriptionBatchSize)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withDescriptionConcurrency(int descriptionConcurrency)
+    {
+        return this.builder.withDescriptionConcurrency(descriptionConcurrency)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withParentCidBatchSize(int parentCidBatchSize)
+    {
+        return this.builder.withParentCidBatchSize(parentCidBatchSize)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withPropertyBatchSize(int propertyBatchSize)
+    {
+        return this.builder.withPropertyBatchSize(propertyBatchSize)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withBatchConcurrency(int batchConcurrency)
+    {
+        return this.builder.withBatchConcurrency(batchConcurrency)
+                           .build();
+    }
+
+    @Override
+    public Map<String, Optional<String>> fetchCompoundParentCids(Collection<String> cids)
+    {
+        return this.delegate.fetchCompoundParentCids(cids);
+    }
+
+    @Override
+    public PropertyTable fetchProperties(Collection<String> cids, PropertyType... propertyTypes)
+    {
+        return this.delegate.fetchProperties(cids, propertyTypes);
+    }
+
+    @Override
+    public CompletableFuture<ListKey> submitCidQuery(String operationPath)
+    {
+        return this.delegate.submitCidQuery(operationPath);
+    }
+
+    @Override
+    public Stream<List<Long>> fetchCidPages(ListKey listKey, int pageSize)
+    {
+        return this.delegate.fetchCidPages(listKey, pageSize);
+    }
+
+    @Override
+    public PubChemRestAccessor withListKeyPolling(long pollInterval, long maxWait, TimeUnit timeUnit)
+    {
+        return this.builder.withListKeyPolling(pollInterval, maxWait, timeUnit)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withParentGraph(Path file)
+    {
+        return this.builder.withParentGraph(file)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withParentGraph(ParentGraph parentGraph)
+    {
+        return this.builder.withParentGraph(parentGraph)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withExecutor(Executor executor)
+    {
+        return this.builder.withExecutor(executor)
+                           .build();
+    }
+
+    @Override
+    public AsyncPubChemRestAccessor async()
+    {
+        return this.delegate.async();
+    }
+
+    @Override
+    public Map<String, Optional<String>> fetchCompoundCidsByNames(Collection<String> compoundNames)
+    {
+        return this.delegate.fetchCompoundCidsByNames(compoundNames);
+    }
+
+    @Override
+    public Map<String, Optional<Synonyms>> fetchSynonymsByNames(Collection<String> compoundNames)
+    {
+        return this.delegate.fetchSynonymsByNames(compoundNames);
+    }
+
+    @Override
+    public Flow.Publisher<Map.Entry<String, Optional<String>>> publishCompoundCidsByNames(Flow.Publisher<String> compoundNames)
+    {
+        return this.delegate.publishCompoundCidsByNames(compoundNames);
+    }
+
+    @Override
+    public Flow.Publisher<Map.Entry<String, Optional<Synonyms>>> publishSynonymsByNames(Flow.Publisher<String> compoundNames)
+    {
+        return this.delegate.publishSynonymsByNames(compoundNames);
+    }
+
+    @Override
+    public Flow.Publisher<Map.Entry<String, Optional<String>>> publishTitles(Flow.Publisher<String> cids)
+    {
+        return this.delegate.publishTitles(cids);
+    }
+
+    @Override
+    public PubChemRestAccessor withNameBatchSize(int nameBatchSize)
+    {
+        return this.builder.withNameBatchSize(nameBatchSize)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withBaseUrl(String baseUrl)
+    {
+        return this.builder.withBaseUrl(baseUrl)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withTransport(PubChemTransport transport)
+    {
+        return this.builder.withTransport(transport)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withMetrics(PubChemMetrics metrics)
+    {
+        return this.builder.withMetrics(metrics)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withRateLimit(int permitsPerSecond, int permitsPerMinute)
+    {
+        return this.builder.withRateLimit(permitsPerSecond, permitsPerMinute)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withRateLimiter(RateLimiter rateLimiter)
+    {
+        return this.builder.withRateLimiter(rateLimiter)
+                           .build();
+    }
+
+    @Override
+    public PubChemRestAccessor withRetryPolicy(RetryPolicy retryPolicy)
+    {
+        return this.builder.withRetryPolicy(retryPolicy)
+                           .build();
+    }
+
+    @Override
+    public RateLimiter.Statistics getRateLimiterStatistics()
+    {
+        return this.delegate.getRateLimiterStatistics();
+    }
+}
@@ -0,0 +1,454 @@
+package org.omnaest.pubchem.rest;
+
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.omnaest.pubchem.rest.PubChemRestUtils.PubChemRestAccessor;
+import org.omnaest.pubchem.rest.cache.MemoryCache;
+import org.omnaest.pubchem.rest.cache.NegativeCache;
+import org.omnaest.pubchem.rest.cache.ParentGraph;
+import org.omnaest.pubchem.rest.cache.RequestCoalescer;
+import org.omnaest.pubchem.rest.cache.SynonymIndex;
+import org.omnaest.pubchem.rest.domain.SynonymStore;
+import org.omnaest.pubchem.rest.metrics.PubChemMetrics;
+import org.omnaest.pubchem.rest.offline.OfflineIndex;
+import org.omnaest.pubchem.rest.retry.RetryPolicy;
+import org.omnaest.pubchem.rest.throttle.RateLimiter;
+import org.omnaest.pubchem.rest.transport.HttpClientTransport;
+import org.omnaest.pubchem.rest.transport.PubChemTransport;
+import org.omnaest.utils.CacheUtils;
+import org.omnaest.utils.cache.Cache;
+
+/**
+ * Immutable builder of a thread safe {@link PubChemRestAccessor}. Each with method returns a modified copy, so a {@link PubChemRestAccessorBuilder} can
+ * be shared and extended by multiple threads.<br>
+ * <br>
+ * The resources of a {@link PubChemRestAccessorBuilder} are created once, when the builder or the with method is created, and are shared by all
+ * accessors which are built from it or from its copies. This applies to the {@link PubChemTransport} with its connection pool, the {@link RateLimiter},
+ * the {@link Executor}, the {@link RetryPolicy} with its retry budget, the {@link RequestCoalescer} and all caches and indexes. E.g. accessors for a PubChem mirror and for the
+ * original site can share one {@link RateLimiter} and {@link MemoryCache}:
+ *
+ * <pre>
+ * PubChemRestAccessorBuilder builder = PubChemRestUtils.builder()
+ *                                                      .withMemoryCache(10000, 1, TimeUnit.HOURS);
+ * PubChemRestAccessor accessor = builder.build();
+ * PubChemRestAccessor mirrorAccessor = builder.withBaseUrl("https://mirror.example.org/rest/pug")
+ *                                             .build();
+ * </pre>
+ *
+ * The with methods taking a {@link Path}, e.g. {@link #withLocalCache(Path)}, open each file once per jvm and share the opened resource for all further
+ * calls with the same file, so no two accessors write to one file independently.<br>
+ * <br>
+ * The with methods of a built {@link PubChemRestAccessor} do not modify it but return a new accessor, which is built from the builder with the
+ * additional modification.
+ *
+ * @see PubChemRestUtils#builder()
+ * @author omnaest
+ */
+public class PubChemRestAccessorBuilder
+{
+    private final Settings settings;
+
+    protected PubChemRestAccessorBuilder()
+    {
+        this(new Settings());
+    }
+
+    private PubChemRestAccessorBuilder(Settings settings)
+    {
+        super();
+        this.settings = settings;
+    }
+
+    /**
+     * Returns a new {@link PubChemRestAccessorBuilder} with its own {@link HttpClientTransport}, a {@link RateLimiter} with the PubChem usage policy, the
+     * default {@link RetryPolicy} and a bounded {@link Executor}
+     *
+     * @return
+     */
+    public static PubChemRestAccessorBuilder newInstance()
+    {
+        return new PubChemRestAccessorBuilder();
+    }
+
+    private PubChemRestAccessorBuilder copy(Consumer<Settings> modification)
+    {
+        Settings settings = new Settings(this.settings);
+        modification.accept(settings);
+        return new PubChemRestAccessorBuilder(settings);
+    }
+
+    /**
+     * @see PubChemRestAccessor#withCache(Cache)
+     * @param cache
+     * @return
+     */
+    public PubChemRestAccessorBuilder withCache(Cache cache)
+    {
+        return this.copy(settings -> settings.cache = cache);
+    }
+
+    /**
+     * @see PubChemRestAccessor#withLocalCache()
+     * @return
+     */
+    public PubChemRestAccessorBuilder withLocalCache()
+    {
+        return this.withCache(CacheUtils.newLocalJsonFolderCache("pubchem"));
+    }
+
+    /**
+     * @see PubChemRestAccessor#withLocalCache(Path)
+     * @param file
+     * @return
+     */
+    public PubChemRestAccessorBuilder withLocalCache(Path file)
+    {
+        return this.withCache(FileResources.getLogFileCache(file));
+    }
+
+    /**
+     * @see PubChemRestAccessor#withMemoryCache(int, long, TimeUnit)
+     * @param maxSize
+     * @param timeToLive
+     * @param timeUnit
+     * @return
+     */
+    public PubChemRestAccessorBuilder withMemoryCache(int maxSize, long timeToLive, TimeUnit timeUnit)
+    {
+        return this.withMemoryCache(MemoryCache.newInstance(maxSize, timeToLive, timeUnit));
+    }
+
+    public PubChemRestAccessorBuilder withMemoryCache(MemoryCache<Object> memoryCache)
+    {
+        return this.copy(settings -> settings.memoryCache = memoryCache);
+    }
+
+    /**
+     * Similar to {@link PubChemRestAccessor#withNegativeCache(int, long, TimeUnit)}. The negative results are stored in the {@link Cache} of the builder
+     * which builds the accessor, so {@link #withCache(Cache)} can be called before or after this method. Accessors with the same {@link Cache} share
+     * one {@link NegativeCache}.
+     *
+     * @param maxSize
+     * @param timeToLive
+     * @param timeUnit
+     * @return
+     */
+    public PubChemRestAccessorBuilder withNegativeCache(int maxSize, long timeToLive, TimeUnit timeUnit)
+    {
+        NegativeCacheFactory negativeCacheFactory = new NegativeCacheFactory(maxSize, timeToLive, timeUnit);
+        return this.copy(settings ->
+        {
+            settings.negativeCache = null;
+            settings.negativeCacheFactory = negativeCacheFactory;
+        });
+    }
+
+    public PubChemRestAccessorBuilder withNegativeCache(NegativeCache negativeCache)
+    {
+        return this.copy(settings ->
+        {
+            settings.negativeCache = negativeCache;
+            settings.negativeCacheFactory = null;
+        });
+    }
+
+    public PubChemRestAccessorBuilder withOfflineIndex(Path directory)
+    {
+        return this.withOfflineIndex(FileResources.getOfflineIndex(directory));
+    }
+
+    public PubChemRestAccessorBuilder withOfflineIndex(OfflineIndex offlineIndex)
+    {
+        return this.copy(settings -> settings.offlineIndex = offlineIndex);
+    }
+
+    public PubChemRestAccessorBuilder withParentGraph(Path file)
+    {
+        return this.withParentGraph(FileResources.getParentGraph(file));
+    }
+
+    public PubChemRestAccessorBuilder withParentGraph(ParentGraph parentGraph)
+    {
+        return this.copy(settings -> settings.parentGraph = parentGraph);
+    }
+
+    /**
+     * @see PubChemRestAccessor#withSynonymIndex(Path)
+     * @param file
+     * @return
+     */
+    public PubChemRestAccessorBuilder withSynonymIndex(Path file)
+    {
+        return this.withSynonymIndex(FileResources.getSynonymIndex(file));
+    }
+
+    public PubChemRestAccessorBuilder withSynonymIndex(SynonymIndex synonymIndex)
+    {
+        return this.copy(settings -> settings.synonymIndex = synonymIndex);
+    }
+
+    public PubChemRestAccessorBuilder withSynonymStore(SynonymStore synonymStore)
+    {
+        return this.copy(settings -> settings.synonymStore = synonymStore);
+    }
+
+    public PubChemRestAccessorBuilder withExecutor(Executor executor)
+    {
+        return this.copy(settings -> settings.executor = executor);
+    }
+
+    public PubChemRestAccessorBuilder withRequestCoalescer(RequestCoalescer requestCoalescer)
+    {
+        return this.copy(settings -> settings.requestCoalescer = requestCoalescer);
+    }
+
+    /**
+     * Sets the base url, e.g. of a PubChem mirror. Default is "https://pubchem.ncbi.nlm.nih.gov/rest/pug".
+     *
+     * @param baseUrl
+     * @return
+     */
+    public PubChemRestAccessorBuilder withBaseUrl(String baseUrl)
+    {
+        return this.copy(settings -> settings.baseUrl = baseUrl);
+    }
+
+    public PubChemRestAccessorBuilder withTransport(PubChemTransport transport)
+    {
+        return this.copy(settings -> settings.transport = transport);
+    }
+
+    public PubChemRestAccessorBuilder withMetrics(PubChemMetrics metrics)
+    {
+        return this.copy(settings -> settings.metrics = metrics);
+    }
+
+    public PubChemRestAccessorBuilder withRateLimit(int permitsPerSecond, int permitsPerMinute)
+    {
+        return this.withRateLimiter(RateLimiter.newInstance(permitsPerSecond, permitsPerMinute));
+    }
+
+    public PubChemRestAccessorBuilder withRateLimiter(RateLimiter rateLimiter)
+    {
+        return this.copy(settings -> settings.rateLimiter = rateLimiter);
+    }
+
+    public PubChemRestAccessorBuilder withRetryPolicy(RetryPolicy retryPolicy)
+    {
+        return this.copy(settings -> settings.retryPolicy = retryPolicy);
+    }
+
+    public PubChemRestAccessorBuilder withNameBatchSize(int nameBatchSize)
+    {
+        return this.copy(settings -> settings.nameBatchSize = validatePositive("nameBatchSize", nameBatchSize));
+    }
+
+    public PubChemRestAccessorBuilder withDescriptionBatchSize(int descriptionBatchSize)
+    {
+        return this.copy(settings -> settings.descriptionBatchSize = validatePositive("descriptionBatchSize", descriptionBatchSize));
+    }
+
+    public PubChemRestAccessorBuilder withDescriptionConcurrency(int descriptionConcurrency)
+    {
+        return this.copy(settings -> settings.descriptionConcurrency = validatePositive("descriptionConcurrency", descriptionConcurrency));
+    }
+
+    public PubChemRestAccessorBuilder withParentCidBatchSize(int parentCidBatchSize)
+    {
+        return this.copy(settings -> settings.parentCidBatchSize = validatePositive("parentCidBatchSize", parentCidBatchSize));
+    }
+
+    public PubChemRestAccessorBuilder withPropertyBatchSize(int propertyBatchSize)
+    {
+        return this.copy(settings -> settings.propertyBatchSize = validatePositive("propertyBatchSize", propertyBatchSize));
+    }
+
+    public PubChemRestAccessorBuilder withBatchConcurrency(int batchConcurrency)
+    {
+        return this.copy(settings -> settings.batchConcurrency = validatePositive("batchConcurrency", batchConcurrency));
+    }
+
+    public PubChemRestAccessorBuilder withListKeyPolling(long pollInterval, long maxWait, TimeUnit timeUnit)
+    {
+        return this.copy(settings ->
+        {
+            settings.listKeyPollInterval = pollInterval;
+            settings.listKeyMaxWait = maxWait;
+            settings.listKeyTimeUnit = timeUnit;
+        });
+    }
+
+    private static int validatePositive(String name, int value)
+    {
+        if (value <= 0)
+        {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Returns a new immutable {@link PubChemRestAccessor} which shares the resources of this {@link PubChemRestAccessorBuilder}. The accessor is created
+     * with these resources directly and does not allocate default resources of its own.
+     *
+     * @return
+     */
+    public PubChemRestAccessor build()
+    {
+        Settings settings = this.settings;
+        NegativeCache negativeCache = settings.negativeCacheFactory != null ? settings.negativeCacheFactory.get(settings.cache) : settings.negativeCache;
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance(settings.rateLimiter, settings.retryPolicy, settings.parentGraph, settings.requestCoalescer)
+                                                       .withCache(settings.cache)
+                                                       .withTransport(settings.transport)
+                                                       .withExecutor(settings.executor)
+                                                       .withMemoryCache(settings.memoryCache)
+                                                       .withNegativeCache(negativeCache)
+                                                       .withOfflineIndex(settings.offlineIndex)
+                                                       .withParentGraph(settings.parentGraph)
+                                                       .withSynonymIndex(settings.synonymIndex)
+                                                       .withSynonymStore(settings.synonymStore)
+                                                       .withMetrics(settings.metrics);
+        if (settings.baseUrl != null)
+        {
+            accessor.withBaseUrl(settings.baseUrl);
+        }
+        if (settings.nameBatchSize > 0)
+        {
+            accessor.withNameBatchSize(settings.nameBatchSize);
+        }
+        if (settings.descriptionBatchSize > 0)
+        {
+            accessor.withDescriptionBatchSize(settings.descriptionBatchSize);
+        }
+        if (settings.descriptionConcurrency > 0)
+        {
+            accessor.withDescriptionConcurrency(settings.descriptionConcurrency);
+        }
+        if (settings.parentCidBatchSize > 0)
+        {
+            accessor.withParentCidBatchSize(settings.parentCidBatchSize);
+        }
+        if (settings.propertyBatchSize > 0)
+        {
+            accessor.withPropertyBatchSize(settings.propertyBatchSize);
+        }
+        if (settings.batchConcurrency > 0)
+        {
+            accessor.withBatchConcurrency(settings.batchConcurrency);
+        }
+        if (settings.listKeyTimeUnit != null)
+        {
+            accessor.withListKeyPolling(settings.listKeyPollInterval, settings.listKeyMaxWait, settings.listKeyTimeUnit);
+        }
+        return new ImmutablePubChemRestAccessor(this, accessor);
+    }
+
+    /**
+     * Creates a {@link NegativeCache} per persistent {@link Cache} on demand, so the {@link Cache} is resolved when an accessor is built
+     *
+     * @author omnaest
+     */
+    private static class NegativeCacheFactory
+    {
+        private final int      maxSize;
+        private final long     timeToLive;
+        private final TimeUnit timeUnit;
+
+        private final Map<Cache, NegativeCache> negativeCaches = new IdentityHashMap<>();
+
+        public NegativeCacheFactory(int maxSize, long timeToLive, TimeUnit timeUnit)
+        {
+            super();
+            this.maxSize = maxSize;
+            this.timeToLive = timeToLive;
+            this.timeUnit = timeUnit;
+        }
+
+        public synchronized NegativeCache get(Cache persistentCache)
+        {
+            return this.negativeCaches.computeIfAbsent(persistentCache,
+                                                       cache -> NegativeCache.newInstance(this.maxSize, this.timeToLive, this.timeUnit, () -> cache));
+        }
+    }
+
+    /**
+     * Values of a {@link PubChemRestAccessorBuilder}. A {@link Settings} instance is only modified before it is handed to the final field of a new
+     * {@link PubChemRestAccessorBuilder}, which publishes it safely to all threads.
+     *
+     * @author omnaest
+     */
+    private static class Settings
+    {
+        private Cache                cache;
+        private String               baseUrl;
+        private PubChemTransport     transport;
+        private RateLimiter          rateLimiter;
+        private RetryPolicy          retryPolicy;
+        private Executor             executor;
+        private RequestCoalescer     requestCoalescer;
+        private MemoryCache<Object>  memoryCache;
+        private NegativeCache        negativeCache;
+        private NegativeCacheFactory negativeCacheFactory;
+        private OfflineIndex         offlineIndex;
+        private ParentGraph          parentGraph;
+        private SynonymIndex         synonymIndex;
+        private SynonymStore         synonymStore;
+        private PubChemMetrics       metrics;
+
+        private int nameBatchSize;
+        private int descriptionBatchSize;
+        private int descriptionConcurrency;
+        private int parentCidBatchSize;
+        private int propertyBatchSize;
+        private int batchConcurrency;
+
+        private long     listKeyPollInterval;
+        private long     listKeyMaxWait;
+        private TimeUnit listKeyTimeUnit;
+
+        public Settings()
+        {
+            super();
+            this.transport = HttpClientTransport.newInstance();
+            this.rateLimiter = RateLimiter.newPubChemPolicyInstance();
+            this.retryPolicy = RetryPolicy.newInstance();
+            this.executor = PubChemRestUtils.newBoundedExecutor(PubChemRestUtils.DEFAULT_ASYNC_CONCURRENCY);
+            this.requestCoalescer = RequestCoalescer.newInstance();
+            this.parentGraph = ParentGraph.newInstance();
+        }
+
+        public Settings(Settings settings)
+        {
+            super();
+            this.cache = settings.cache;
+            this.baseUrl = settings.baseUrl;
+            this.transport = settings.transport;
+            this.rateLimiter = settings.rateLimiter;
+            this.retryPolicy = settings.retryPolicy;
+            this.executor = settings.executor;
+            this.requestCoalescer = settings.requestCoalescer;
+            this.memoryCache = settings.memoryCache;
+            this.negativeCache = settings.negativeCache;
+            this.negativeCacheFactory = settings.negativeCacheFactory;
+            this.offlineIndex = settings.offlineIndex;
+            this.parentGraph = settings.parentGraph;
+            this.synonymIndex = settings.synonymIndex;
+            this.synonymStore = settings.synonymStore;
+            this.metrics = settings.metrics;
+            this.nameBatchSize = settings.nameBatchSize;
+            this.descriptionBatchSize = settings.descriptionBatchSize;
+            this.descriptionConcurrency = settings.descriptionConcurrency;
+            this.parentCidBatchSize = settings.parentCidBatchSize;
+            this.propertyBatchSize = settings.propertyBatchSize;
+            this.batchConcurrency = settings.batchConcurrency;
+            this.listKeyPollInterval = settings.listKeyPollInterval;
+            this.listKeyMaxWait = settings.listKeyMaxWait;
+            this.listKeyTimeUnit = settings.listKeyTimeUnit;
+        }
+    }
+}
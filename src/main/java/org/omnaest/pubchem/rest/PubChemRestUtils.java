@@ -1,47 +1,171 @@
 package org.omnaest.pubchem.rest;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.omnaest.pubchem.rest.PubChemRestUtils.Compound.CompoundEntry;
 import org.omnaest.pubchem.rest.PubChemRestUtils.Compound.CompoundEntry.CompoundProperty;
 import org.omnaest.pubchem.rest.PubChemRestUtils.Compound.CompoundEntry.OuterId;
+import org.omnaest.pubchem.rest.PubChemRestUtils.Compound.CompoundEntry.CompoundProperty.Urn;
+import org.omnaest.pubchem.rest.PubChemRestUtils.Compound.CompoundEntry.CompoundProperty.Value;
 import org.omnaest.pubchem.rest.PubChemRestUtils.Compound.CompoundEntry.OuterId.InnerId;
+import org.omnaest.pubchem.rest.cache.CacheSnapshot;
+import org.omnaest.pubchem.rest.cache.LogFileCache;
+import org.omnaest.pubchem.rest.cache.MemoryCache;
+import org.omnaest.pubchem.rest.cache.NegativeCache;
+import org.omnaest.pubchem.rest.cache.ParentGraph;
+import org.omnaest.pubchem.rest.cache.RequestCoalescer;
+import org.omnaest.pubchem.rest.cache.SynonymIndex;
+import org.omnaest.pubchem.rest.domain.ListKey;
+import org.omnaest.pubchem.rest.domain.SynonymStore;
 import org.omnaest.pubchem.rest.domain.Synonyms;
+import org.omnaest.pubchem.rest.metrics.MetricsRegistry;
+import org.omnaest.pubchem.rest.metrics.PubChemMetrics;
+import org.omnaest.pubchem.rest.metrics.PubChemMetrics.CacheTier;
+import org.omnaest.pubchem.rest.offline.OfflineIndex;
+import org.omnaest.pubchem.rest.property.PropertyTable;
+import org.omnaest.pubchem.rest.property.PropertyType;
+import org.omnaest.pubchem.rest.retry.RetryPolicy;
+import org.omnaest.pubchem.rest.retry.RetryPolicy.Failure;
+import org.omnaest.pubchem.rest.throttle.RateLimiter;
+import org.omnaest.pubchem.rest.transport.HttpClientTransport;
+import org.omnaest.pubchem.rest.transport.PubChemTransport;
 import org.omnaest.utils.CacheUtils;
 import org.omnaest.utils.ComparatorUtils;
 import org.omnaest.utils.JSONHelper;
 import org.omnaest.utils.StreamUtils;
 import org.omnaest.utils.cache.Cache;
 import org.omnaest.utils.rest.client.RestClient;
-import org.omnaest.utils.rest.client.RestHelper.RESTAccessExeption;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class PubChemRestUtils
 {
     private static final Logger LOG = LoggerFactory.getLogger(PubChemRestUtils.class);
 
+    static final int         DEFAULT_ASYNC_CONCURRENCY = 8;
+    private static final int DEFAULT_NAME_BATCH_SIZE   = 50;
+
+    private static final int DEFAULT_DESCRIPTION_BATCH_SIZE  = 10;
+    private static final int DEFAULT_DESCRIPTION_CONCURRENCY = 4;
+    private static final int DEFAULT_PARENT_CID_BATCH_SIZE   = 100;
+    private static final int DEFAULT_BATCH_CONCURRENCY       = 4;
+    private static final int DEFAULT_PROPERTY_BATCH_SIZE     = 100;
+
+    private static final long DEFAULT_LIST_KEY_POLL_INTERVAL_MILLIS = 1000;
+    private static final long DEFAULT_LIST_KEY_MAX_WAIT_MILLIS      = TimeUnit.MINUTES.toMillis(10);
+    private static final long MAX_LIST_KEY_POLL_INTERVAL_MILLIS     = TimeUnit.SECONDS.toMillis(10);
+
+    private static final NameType[] NAME_TYPES = NameType.values();
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Returns a {@link PubChemRestAccessorBuilder} for an immutable and thread safe {@link PubChemRestAccessor}
+     * 
+     * @return
+     */
+    public static PubChemRestAccessorBuilder builder()
+    {
+        return PubChemRestAccessorBuilder.newInstance();
+    }
+
+    /**
+     * Returns a new {@link PubChemRestAccessor} which is configured in place by its with methods. Use {@link #builder()} for an accessor which is shared
+     * by multiple threads.<br>
+     * <br>
+     * The accessor is throttled by {@link RateLimiter#newPubChemPolicyInstance()} to the PubChem usage policy, see
+     * {@link PubChemRestAccessor#withRateLimit(int, int)} to change it.
+     * 
+     * @return
+     */
     public static PubChemRestAccessor newInstance()
+    {
+        return newInstance(RateLimiter.newPubChemPolicyInstance(), RetryPolicy.newInstance(), ParentGraph.newInstance(), RequestCoalescer.newInstance());
+    }
+
+    /**
+     * Returns a new {@link PubChemRestAccessor} which uses the given resources instead of creating its own, see {@link PubChemRestAccessorBuilder}
+     * 
+     * @param sharedRateLimiter
+     * @param sharedRetryPolicy
+     * @param sharedParentGraph
+     * @param sharedRequestCoalescer
+     * @return
+     */
+    static PubChemRestAccessor newInstance(RateLimiter sharedRateLimiter, RetryPolicy sharedRetryPolicy, ParentGraph sharedParentGraph,
+                                           RequestCoalescer sharedRequestCoalescer)
     {
         return new PubChemRestAccessor()
         {
-            private Cache  cache   = null;
-            private String baseUrl = "https://pubchem.ncbi.nlm.nih.gov/rest/pug";
+            private Cache       cache         = null;
+            private String      baseUrl       = "https://pubchem.ncbi.nlm.nih.gov/rest/pug";
+            private Executor    executor      = null;
+            private int         nameBatchSize = DEFAULT_NAME_BATCH_SIZE;
+
+            private int descriptionBatchSize   = DEFAULT_DESCRIPTION_BATCH_SIZE;
+            private int descriptionConcurrency = DEFAULT_DESCRIPTION_CONCURRENCY;
+            private int parentCidBatchSize     = DEFAULT_PARENT_CID_BATCH_SIZE;
+            private int batchConcurrency       = DEFAULT_BATCH_CONCURRENCY;
+            private int propertyBatchSize      = DEFAULT_PROPERTY_BATCH_SIZE;
+            private RateLimiter rateLimiter   = sharedRateLimiter;
+
+            private MemoryCache<Object> memoryCache      = null;
+            private NegativeCache       negativeCache    = null;
+            private RequestCoalescer    requestCoalescer = sharedRequestCoalescer;
+            private OfflineIndex        offlineIndex     = null;
+            private PubChemTransport    transport        = null;
+            private PubChemMetrics      metrics          = null;
+            private ParentGraph         parentGraph      = sharedParentGraph;
+            private SynonymStore        synonymStore     = null;
+            private SynonymIndex        synonymIndex     = null;
+            private RetryPolicy         retryPolicy      = sharedRetryPolicy;
+
+            private long                     listKeyPollIntervalMillis = DEFAULT_LIST_KEY_POLL_INTERVAL_MILLIS;
+            private long                     listKeyMaxWaitMillis      = DEFAULT_LIST_KEY_MAX_WAIT_MILLIS;
+            private ScheduledExecutorService listKeyScheduler          = null;
 
             @Override
             public PubChemRestAccessor withCache(Cache cache)
@@ -51,388 +175,2479 @@ public class PubChemRestUtils
             }
 
             @Override
-            public PubChemRestAccessor withLocalCache()
+            public PubChemRestAccessor withMemoryCache(int maxSize, long timeToLive, TimeUnit timeUnit)
             {
-                return this.withCache(CacheUtils.newLocalJsonFolderCache("pubchem"));
+                this.memoryCache = MemoryCache.newInstance(maxSize, timeToLive, timeUnit);
+                return this;
             }
 
             @Override
-            public Optional<Synonyms> fetchSynonyms(String compoundName)
+            public PubChemRestAccessor withMemoryCache(MemoryCache<Object> memoryCache)
             {
-                RestClient restClient = this.newRestClient();
+                this.memoryCache = memoryCache;
+                return this;
+            }
 
-                String url = RestClient.urlBuilder()
-                                       .setBaseUrl(this.baseUrl)
-                                       .addPathToken("compound")
-                                       .addPathToken("name")
-                                       .addPathToken(compoundName)
-                                       .addPathToken("synonyms")
-                                       .addPathToken("JSON")
-                                       .build();
-                try
-                {
-                    LOG.debug("Fetching pubchem synonyms for " + compoundName);
-                    return restClient.request()
-                                     .toUrl(url)
-                                     .getAnd(JsonNode.class)
-                                     .handleStatusCode(404, holder -> null)
-                                     .asOptional()
-                                     .map(response -> response.findPath("Information"))
-                                     .flatMap(informationArray -> JSONHelper.toArrayNode(informationArray)
-                                                                            .map(arrayNode -> arrayNode.get(0))
-                                                                            .map(JSONHelper.toObjectWithTypeMapper(Synonyms.class)));
-                }
-                catch (RESTAccessExeption e)
-                {
-                    if (e.getStatusCode() == 404)
-                    {
-                        LOG.error("Unable to find chemical synonym for " + compoundName);
-                        return Optional.empty();
-                    }
-                    else
-                    {
-                        throw e;
-                    }
-                }
+            @Override
+            public Optional<MemoryCache.Statistics> getMemoryCacheStatistics()
+            {
+                return Optional.ofNullable(this.memoryCache)
+                               .map(MemoryCache::getStatistics);
             }
 
             @Override
-            public Optional<String> fetchTitle(String cid)
+            public PubChemRestAccessor withNegativeCache(int maxSize, long timeToLive, TimeUnit timeUnit)
             {
-                return this.fetchDescriptions(cid)
-                           .filter(Description::hasTitle)
-                           .map(Description::getTitle)
-                           .findFirst();
+                this.negativeCache = NegativeCache.newInstance(maxSize, timeToLive, timeUnit, () -> this.cache);
+                return this;
             }
 
             @Override
-            public Map<String, String> fetchTitles(String... cids)
+            public PubChemRestAccessor withNegativeCache(NegativeCache negativeCache)
             {
-                return this.fetchTitles(Arrays.asList(cids));
+                this.negativeCache = negativeCache;
+                return this;
             }
 
             @Override
-            public Map<String, String> fetchTitles(Collection<String> cids)
+            public Optional<NegativeCache.Statistics> getNegativeCacheStatistics()
             {
-                return this.fetchDescriptions(cids)
-                           .filter(Description::hasTitle)
-                           .collect(Collectors.toMap(Description::getCid, Description::getTitle));
+                return Optional.ofNullable(this.negativeCache)
+                               .map(NegativeCache::getStatistics);
             }
 
             @Override
-            public Stream<Description> fetchDescriptions(String... cid)
+            public PubChemRestAccessor withParentGraph(Path file)
             {
-                return this.fetchDescriptions(Arrays.asList(cid));
+                return this.withParentGraph(FileResources.getParentGraph(file));
             }
 
             @Override
-            public Stream<Description> fetchDescriptions(Collection<String> cids)
+            public PubChemRestAccessor withParentGraph(ParentGraph parentGraph)
             {
-                try
+                this.parentGraph = parentGraph;
+                return this;
+            }
+
+            @Override
+            public PubChemRestAccessor withOfflineIndex(Path directory)
+            {
+                return this.withOfflineIndex(FileResources.getOfflineIndex(directory));
+            }
+
+            @Override
+            public PubChemRestAccessor withOfflineIndex(OfflineIndex offlineIndex)
+            {
+                this.offlineIndex = offlineIndex;
+                return this;
+            }
+
+            @Override
+            public PubChemRestAccessor withSynonymIndex(Path file)
+            {
+                return this.withSynonymIndex(FileResources.getSynonymIndex(file));
+            }
+
+            @Override
+            public PubChemRestAccessor withSynonymIndex(SynonymIndex synonymIndex)
+            {
+                this.synonymIndex = synonymIndex;
+                return this;
+            }
+
+            @Override
+            public PubChemRestAccessor withSynonymStore(SynonymStore synonymStore)
+            {
+                this.synonymStore = synonymStore;
+                return this;
+            }
+
+            @Override
+            public PubChemRestAccessor withExecutor(Executor executor)
+            {
+                this.executor = ReentrantExecutor.wrap(executor);
+                return this;
+            }
+
+            @Override
+            public PubChemRestAccessor withBaseUrl(String baseUrl)
+            {
+                this.baseUrl = baseUrl;
+                return this;
+            }
+
+            @Override
+            public PubChemRestAccessor withTransport(PubChemTransport transport)
+            {
+                this.transport = transport;
+                return this;
+            }
+
+            @Override
+            public PubChemRestAccessor withMetrics(PubChemMetrics metrics)
+            {
+                this.metrics = metrics;
+                return this;
+            }
+
+            private String endpointOf(String url)
+            {
+                return determineEndpoint(this.baseUrl, url);
+            }
+
+            private synchronized ScheduledExecutorService getOrCreateListKeyScheduler()
+            {
+                if (this.listKeyScheduler == null)
                 {
-                    return StreamUtils.framedNonNullAsList(10, Optional.ofNullable(cids)
-                                                                       .orElse(Collections.emptyList())
-                                                                       .stream()
-                                                                       .distinct())
-                                      .flatMap(cidBatch ->
-                                      {
-
-                                          RestClient restClient = this.newRestClient();
-
-                                          String url = RestClient.urlBuilder()
-                                                                 .setBaseUrl(this.baseUrl)
-                                                                 .addPathToken("compound")
-                                                                 .addPathToken("cid")
-                                                                 .addPathToken(cidBatch.stream()
-                                                                                       .collect(Collectors.joining(",")))
-                                                                 .addPathToken("description")
-                                                                 .addPathToken("JSON")
-                                                                 .build();
-                                          LOG.debug("Fetching pubchem descriptions for " + cidBatch);
-                                          return restClient.request()
-                                                           .toUrl(url)
-                                                           .getAnd(JsonNode.class)
-                                                           .handleStatusCode(400, holder -> null)
-                                                           .asOptional()
-                                                           .map(response -> response.findPath("Information"))
-                                                           .flatMap(informationArray -> JSONHelper.toArrayNode(informationArray)
-                                                                                                  .map(arrayNode -> StreamUtils.fromIterator(arrayNode.iterator())))
-                                                           .orElse(Stream.empty())
-                                                           .map(JSONHelper.toObjectWithTypeMapper(Description.class));
-                                      });
+                    this.listKeyScheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+                    {
+                        Thread thread = new Thread(runnable, "pubchem-listkey");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
                 }
-                catch (RESTAccessExeption e)
+                return this.listKeyScheduler;
+            }
+
+            @Override
+            public PubChemRestAccessor withListKeyPolling(long pollInterval, long maxWait, TimeUnit timeUnit)
+            {
+                this.listKeyPollIntervalMillis = Math.max(1, timeUnit.toMillis(pollInterval));
+                this.listKeyMaxWaitMillis = timeUnit.toMillis(maxWait);
+                return this;
+            }
+
+            private synchronized PubChemTransport getOrCreateTransport()
+            {
+                if (this.transport == null)
                 {
-                    if (e.getStatusCode() == 404)
-                    {
-                        LOG.error("Unable to find chemical descriptions for " + cids);
-                        return Stream.empty();
-                    }
-                    else
-                    {
-                        throw e;
-                    }
+                    this.transport = HttpClientTransport.newInstance();
                 }
+                return this.transport;
             }
 
-            private RestClient newRestClient()
+            @Override
+            public PubChemRestAccessor withRateLimit(int permitsPerSecond, int permitsPerMinute)
             {
-                return RestClient.newJSONRestClient()
-                                 .withCache(this.cache)
-                                 .withRetry(10, 12, TimeUnit.SECONDS);
+                return this.withRateLimiter(RateLimiter.newInstance(permitsPerSecond, permitsPerMinute));
             }
 
             @Override
-            public Optional<Compound> fetchCompoundByName(String compoundName)
+            public PubChemRestAccessor withRetryPolicy(RetryPolicy retryPolicy)
             {
-                RestClient restClient = this.newRestClient();
+                this.retryPolicy = retryPolicy;
+                return this;
+            }
 
-                String url = RestClient.urlBuilder()
-                                       .setBaseUrl(this.baseUrl)
-                                       .addPathToken("compound")
-                                       .addPathToken("name")
-                                       .addPathToken(compoundName)
-                                       .addPathToken("JSON")
-                                       .build();
-                try
+            @Override
+            public PubChemRestAccessor withRateLimiter(RateLimiter rateLimiter)
+            {
+                this.rateLimiter = rateLimiter;
+                return this;
+            }
+
+            @Override
+            public RateLimiter.Statistics getRateLimiterStatistics()
+            {
+                return this.rateLimiter.getStatistics();
+            }
+
+            @Override
+            public PubChemRestAccessor withNameBatchSize(int nameBatchSize)
+            {
+                if (nameBatchSize <= 0)
                 {
-                    LOG.debug("Fetching pubchem compound by name: " + compoundName);
-                    return restClient.request()
-                                     .toUrl(url)
-                                     .getAnd(Compound.class)
-                                     .handleStatusCode(404, holder -> null)
-                                     .asOptional();
+                    throw new IllegalArgumentException("nameBatchSize must be positive: " + nameBatchSize);
                 }
-                catch (RESTAccessExeption e)
+                this.nameBatchSize = nameBatchSize;
+                return this;
+            }
+
+            @Override
+            public PubChemRestAccessor withDescriptionBatchSize(int descriptionBatchSize)
+            {
+                if (descriptionBatchSize <= 0)
                 {
-                    if (e.getStatusCode() == 404)
-                    {
-                        LOG.error("Unable to find chemical compound for " + compoundName);
-                        return Optional.empty();
-                    }
-                    else
-                    {
-                        throw e;
-                    }
+                    throw new IllegalArgumentException("descriptionBatchSize must be positive: " + descriptionBatchSize);
                 }
+                this.descriptionBatchSize = descriptionBatchSize;
+                return this;
             }
 
             @Override
-            public Optional<String> fetchCompoundCidByName(String compoundName)
+            public PubChemRestAccessor withDescriptionConcurrency(int descriptionConcurrency)
             {
-                RestClient restClient = this.newRestClient();
-
-                String url = RestClient.urlBuilder()
-                                       .setBaseUrl(this.baseUrl)
-                                       .addPathToken("compound")
-                                       .addPathToken("name")
-                                       .addPathToken(compoundName)
-                                       .addPathToken("cids")
-                                       .addPathToken("JSON")
-                                       .build();
-                try
+                if (descriptionConcurrency <= 0)
                 {
-                    LOG.debug("Fetching pubchem compound cid by name: " + compoundName);
-                    return restClient.request()
-                                     .toUrl(url)
-                                     .getAnd(JsonNode.class)
-                                     .handleStatusCode(404, holder -> null)
-                                     .handleStatusCode(400, holder -> null)
-                                     .asOptional()
-                                     .map(node -> node.findPath("IdentifierList"))
-                                     .map(node -> node.findPath("CID"))
-                                     .flatMap(informationArray -> JSONHelper.toArrayNode(informationArray)
-                                                                            .map(arrayNode -> arrayNode.get(0))
-                                                                            .map(JSONHelper.toObjectWithTypeMapper(String.class)));
+                    throw new IllegalArgumentException("descriptionConcurrency must be positive: " + descriptionConcurrency);
                 }
-                catch (RESTAccessExeption e)
+                this.descriptionConcurrency = descriptionConcurrency;
+                return this;
+            }
+
+            @Override
+            public PubChemRestAccessor withParentCidBatchSize(int parentCidBatchSize)
+            {
+                if (parentCidBatchSize <= 0)
                 {
-                    if (e.getStatusCode() == 404)
-                    {
-                        LOG.error("Unable to find chemical compound cid for " + compoundName);
-                        return Optional.empty();
-                    }
-                    else
-                    {
-                        throw e;
-                    }
+                    throw new IllegalArgumentException("parentCidBatchSize must be positive: " + parentCidBatchSize);
                 }
+                this.parentCidBatchSize = parentCidBatchSize;
+                return this;
             }
 
             @Override
-            public Optional<String> fetchCompoundParentCidByCid(String cid)
+            public PubChemRestAccessor withPropertyBatchSize(int propertyBatchSize)
             {
-                RestClient restClient = this.newRestClient();
+                if (propertyBatchSize <= 0)
+                {
+                    throw new IllegalArgumentException("propertyBatchSize must be positive: " + propertyBatchSize);
+                }
+                this.propertyBatchSize = propertyBatchSize;
+                return this;
+            }
 
-                String url = RestClient.urlBuilder()
-                                       .setBaseUrl(this.baseUrl)
-                                       .addPathToken("compound")
-                                       .addPathToken("cid")
-                                       .addPathToken(cid)
-                                       .addPathToken("cids")
-                                       .addPathToken("JSON")
-                                       .addQueryParameter("cids_type", "parent")
-                                       .build();
-                try
+            @Override
+            public PubChemRestAccessor withBatchConcurrency(int batchConcurrency)
+            {
+                if (batchConcurrency <= 0)
                 {
-                    LOG.debug("Fetching pubchem compound parent cid by cid: " + cid);
-                    return restClient.request()
-                                     .toUrl(url)
-                                     .getAnd(JsonNode.class)
-                                     .handleStatusCode(404, holder -> null)
-                                     .handleStatusCode(400, holder -> null)
-                                     .asOptional()
-                                     .map(node -> node.findPath("IdentifierList"))
-                                     .map(node -> node.findPath("CID"))
-                                     .flatMap(informationArray -> JSONHelper.toArrayNode(informationArray)
-                                                                            .map(arrayNode -> arrayNode.get(0))
-                                                                            .map(JSONHelper.toObjectWithTypeMapper(String.class)));
+                    throw new IllegalArgumentException("batchConcurrency must be positive: " + batchConcurrency);
                 }
-                catch (RESTAccessExeption e)
+                this.batchConcurrency = batchConcurrency;
+                return this;
+            }
+
+            @Override
+            public AsyncPubChemRestAccessor async()
+            {
+                return newAsyncAccessor(this, this.getOrCreateExecutor(), () -> this.descriptionBatchSize, () -> this.parentCidBatchSize);
+            }
+
+            private synchronized Executor getOrCreateExecutor()
+            {
+                if (this.executor == null)
                 {
-                    if (e.getStatusCode() == 404)
-                    {
-                        LOG.error("Unable to find chemical parent cid for cid " + cid);
-                        return Optional.empty();
-                    }
-                    else
-                    {
-                        throw e;
-                    }
+                    this.executor = ReentrantExecutor.wrap(newBoundedExecutor(DEFAULT_ASYNC_CONCURRENCY));
                 }
+                return this.executor;
             }
 
             @Override
-            public Optional<CidAndName> fetchCidAndPrimaryNameByAnyName(String compoundName)
+            public Map<String, Optional<String>> fetchCompoundCidsByNames(Collection<String> compoundNames)
             {
-                return this.fetchCidAndPrimaryNameByAnyName(compoundName, NameType.TRADITIONAL, NameType.PREFERRED);
+                return this.fetchByNames(compoundNames, this::fetchCompoundCidByName);
             }
 
             @Override
-            public Optional<CidAndName> fetchOldestCidAndPrimaryNameByAnyName(String compoundName)
+            public Map<String, Optional<Synonyms>> fetchSynonymsByNames(Collection<String> compoundNames)
             {
-                return this.fetchOldestCidAndPrimaryNameByAnyName(compoundName, NameType.TRADITIONAL, NameType.PREFERRED);
+                return this.fetchByNames(compoundNames, this::fetchSynonyms);
             }
 
             @Override
-            public Optional<CidAndName> fetchOldestCidAndPrimaryNameByAnyName(String compoundName, NameType... nameTypes)
+            public Flow.Publisher<Map.Entry<String, Optional<String>>> publishCompoundCidsByNames(Flow.Publisher<String> compoundNames)
             {
-                Function<CompoundEntry, Long> cidExtractor = entry -> Optional.ofNullable(entry.getId())
-                                                                              .map(OuterId::getId)
-                                                                              .map(InnerId::getCid)
-                                                                              .orElse(999999999999l);
-                List<CompoundEntry> entries = this.fetchCompoundByName(compoundName)
-                                                  .map(Compound::getEntries)
-                                                  .orElse(Collections.emptyList())
-                                                  .stream()
-                                                  .sorted(ComparatorUtils.builder()
-                                                                         .of(cidExtractor)
-                                                                         .natural())
-                                                  .collect(Collectors.toList());
-                return this.determineCidAndPrimaryName(entries, nameTypes);
+                return this.publish(compoundNames, this::fetchCompoundCidByName);
             }
 
             @Override
-            public Optional<CidAndName> fetchCidAndPrimaryNameByAnyName(String compoundName, NameType... nameTypes)
+            public Flow.Publisher<Map.Entry<String, Optional<Synonyms>>> publishSynonymsByNames(Flow.Publisher<String> compoundNames)
             {
-                List<CompoundEntry> entries = this.fetchCompoundByName(compoundName)
-                                                  .map(Compound::getEntries)
-                                                  .orElse(Collections.emptyList());
-                return this.determineCidAndPrimaryName(entries, nameTypes);
-            }
-
-            private Optional<CidAndName> determineCidAndPrimaryName(List<CompoundEntry> entries, NameType... nameTypes)
-            {
-                return entries.stream()
-                              .findFirst()
-                              .flatMap(this.createCidAndPrimaryNameExtractor(entries.stream()
-                                                                                    .skip(1)
-                                                                                    .collect(Collectors.toList()),
-                                                                             nameTypes));
-            }
-
-            private Function<CompoundEntry, Optional<CidAndName>> createCidAndPrimaryNameExtractor(List<CompoundEntry> parentEntries, NameType... nameTypes)
-            {
-                return entry ->
-                {
-                    String name = Optional.ofNullable(entry.getProps())
-                                          .orElse(Collections.emptyList())
-                                          .stream()
-                                          .filter(property -> Optional.ofNullable(property)
-                                                                      .map(CompoundProperty::getUrn)
-                                                                      .map(urn -> StringUtils.equalsIgnoreCase("IUPAC Name", urn.getLabel()))
-                                                                      .orElse(false))
-                                          .filter(property -> Optional.ofNullable(property)
-                                                                      .map(CompoundProperty::getUrn)
-                                                                      .map(urn -> StringUtils.equalsAnyIgnoreCase(urn.getName(), Arrays.asList(nameTypes)
-                                                                                                                                       .stream()
-                                                                                                                                       .map(NameType::getIdentifier)
-                                                                                                                                       .toArray(String[]::new)))
-                                                                      .orElse(false))
-                                          .sorted(ComparatorUtils.builder()
-                                                                 .of(this.createNameTypePriorityFunction(nameTypes))
-                                                                 .natural())
-                                          .findFirst()
-                                          .map(property -> property.getValue()
-                                                                   .getSval())
-                                          .orElse(null);
-                    Optional<CidAndName> parent = this.determineCidAndPrimaryName(parentEntries, nameTypes);
-                    return Optional.ofNullable(entry.getId())
-                                   .map(OuterId::getId)
-                                   .map(InnerId::getCid)
-                                   .map(String::valueOf)
-                                   .map(cid -> new CidAndName(cid, name, parent));
-                };
-            }
-
-            private Function<CompoundProperty, Integer> createNameTypePriorityFunction(NameType... nameTypes)
-            {
-                return property -> Optional.ofNullable(property)
-                                           .map(CompoundProperty::getUrn)
-                                           .flatMap(urn -> IntStream.range(0, nameTypes.length)
-                                                                    .filter(index ->
-                                                                    {
-                                                                        return nameTypes[index].matches(urn.getName());
-                                                                    })
-                                                                    .boxed()
-                                                                    .findFirst())
-                                           .get();
+                return this.publish(compoundNames, this::fetchSynonyms);
             }
 
-        };
-    }
+            @Override
+            public Flow.Publisher<Map.Entry<String, Optional<String>>> publishTitles(Flow.Publisher<String> cids)
+            {
+                return this.publish(cids, this::fetchTitle);
+            }
 
-    public static interface PubChemRestAccessor
-    {
-        public Optional<Synonyms> fetchSynonyms(String compoundName);
+            private <R> Flow.Publisher<Map.Entry<String, Optional<R>>> publish(Flow.Publisher<String> keys, Function<String, Optional<R>> fetchFunction)
+            {
+                return FlowPipeline.newInstance(keys, key -> Map.entry(key, fetchFunction.apply(key)), this.nameBatchSize, this.getOrCreateExecutor());
+            }
 
-        public Optional<Compound> fetchCompoundByName(String compoundName);
+            private <R> Map<String, Optional<R>> fetchByNames(Collection<String> compoundNames, Function<String, Optional<R>> fetchFunction)
+            {
+                Executor executor = this.getOrCreateExecutor();
+                Map<String, Optional<R>> result = new LinkedHashMap<>();
+                StreamUtils.framedNonNullAsList(this.nameBatchSize, Optional.ofNullable(compoundNames)
+                                                                            .orElse(Collections.emptyList())
+                                                                            .stream()
+                                                                            .distinct())
+                           .forEach(nameBatch ->
+                           {
+                               LOG.debug("Fetching pubchem name batch of size " + nameBatch.size());
+                               List<CompletableFuture<Optional<R>>> futures = nameBatch.stream()
+                                                                                       .map(name -> CompletableFuture.supplyAsync(() -> fetchFunction.apply(name),
+                                                                                                                                  executor))
+                                                                                       .collect(Collectors.toList());
+                               for (int ii = 0; ii < nameBatch.size(); ii++)
+                               {
+                                   result.put(nameBatch.get(ii), join(futures.get(ii)));
+                               }
+                           });
+                return result;
+            }
 
-        public Optional<CidAndName> fetchCidAndPrimaryNameByAnyName(String compoundName);
+            @Override
+            public PubChemRestAccessor withLocalCache()
+            {
+                return this.withCache(CacheUtils.newLocalJsonFolderCache("pubchem"));
+            }
 
-        public Optional<CidAndName> fetchOldestCidAndPrimaryNameByAnyName(String compoundName);
+            @Override
+            public PubChemRestAccessor withLocalCache(Path file)
+            {
+                return this.withCache(FileResources.getLogFileCache(file));
+            }
 
-        public PubChemRestAccessor withCache(Cache cache);
+            @Override
+            public int exportCache(Path file)
+            {
+                return CacheSnapshot.exportTo(this.getCacheOrFail(), file);
+            }
 
-        public PubChemRestAccessor withLocalCache();
+            @Override
+            public int importCache(Path file)
+            {
+                return CacheSnapshot.importFrom(file, this.getCacheOrFail());
+            }
+
+            private Cache getCacheOrFail()
+            {
+                if (this.cache == null)
+                {
+                    throw new IllegalStateException("No cache set, see withCache(...)");
+                }
+                return this.cache;
+            }
+
+            @Override
+            public PubChemRestAccessor warmUpByNames(Collection<String> compoundNames)
+            {
+                List<String> cids = this.fetchCompoundCidsByNames(compoundNames)
+                                        .values()
+                                        .stream()
+                                        .filter(Optional::isPresent)
+                                        .map(Optional::get)
+                                        .collect(Collectors.toList());
+                this.fetchSynonymsByNames(compoundNames);
+                return this.warmUpByCids(cids);
+            }
+
+            @Override
+            public PubChemRestAccessor warmUpByCids(Collection<String> cids)
+            {
+                this.fetchDescriptions(cids, ResultOrder.COMPLETION)
+                    .count();
+                this.fetchCompoundParentCids(cids);
+                return this;
+            }
+
+            @Override
+            public Optional<Synonyms> fetchSynonyms(String compoundName)
+            {
+                Optional<Synonyms> offlineSynonyms = this.findOffline(offlineIndex -> offlineIndex.findCidByName(compoundName)
+                                                                                                  .flatMap(offlineIndex::findSynonyms));
+                if (offlineSynonyms.isPresent())
+                {
+                    return offlineSynonyms.map(this::compact);
+                }
+
+                String url = RestClient.urlBuilder()
+                                       .setBaseUrl(this.baseUrl)
+                                       .addPathToken("compound")
+                                       .addPathToken("name")
+                                       .addPathToken(compoundName)
+                                       .addPathToken("synonyms")
+                                       .addPathToken("JSON")
+                                       .build();
+                LOG.debug("Fetching pubchem synonyms for " + compoundName);
+                return this.fetchCached(url, () -> this.requestJson(url, 404)
+                                                       .map(response -> response.findPath("Information"))
+                                                       .flatMap(informationArray -> JSONHelper.toArrayNode(informationArray)
+                                                                                              .map(arrayNode -> arrayNode.get(0))
+                                                                                              .map(JSONHelper.toObjectWithTypeMapper(Synonyms.class))
+                                                                                              .map(synonyms -> this.index(compoundName, synonyms))
+                                                                                              .map(this::compact)));
+            }
+
+            private Synonyms index(String compoundName, Synonyms synonyms)
+            {
+                if (this.synonymIndex != null && synonyms.getCid() > 0)
+                {
+                    this.synonymIndex.put(compoundName, synonyms.getCid());
+                    this.synonymIndex.put(synonyms);
+                }
+                return synonyms;
+            }
+
+            private Synonyms compact(Synonyms synonyms)
+            {
+                return this.synonymStore != null ? this.synonymStore.compact(synonyms) : synonyms;
+            }
+
+            @Override
+            public Optional<String> fetchTitle(String cid)
+            {
+                Optional<String> offlineTitle = this.findOffline(offlineIndex -> parseCid(cid).flatMap(offlineIndex::findTitle));
+                if (offlineTitle.isPresent())
+                {
+                    return offlineTitle;
+                }
+
+                return this.fetchDescriptions(cid)
+                           .filter(Description::hasTitle)
+                           .map(Description::getTitle)
+                           .findFirst();
+            }
+
+            @Override
+            public Map<String, String> fetchTitles(String... cids)
+            {
+                return this.fetchTitles(Arrays.asList(cids));
+            }
+
+            @Override
+            public Map<String, String> fetchTitles(Collection<String> cids)
+            {
+                if (this.offlineIndex == null)
+                {
+                    return this.fetchDescriptions(cids)
+                               .filter(Description::hasTitle)
+                               .collect(Collectors.toMap(Description::getCid, Description::getTitle));
+                }
+
+                Map<String, String> result = new HashMap<>();
+                List<String> missingCids = new ArrayList<>();
+                Optional.ofNullable(cids)
+                        .orElse(Collections.emptyList())
+                        .stream()
+                        .filter(cid -> cid != null)
+                        .distinct()
+                        .forEach(cid ->
+                        {
+                            Optional<String> offlineTitle = parseCid(cid).flatMap(this.offlineIndex::findTitle);
+                            if (offlineTitle.isPresent())
+                            {
+                                result.put(cid, offlineTitle.get());
+                            }
+                            else
+                            {
+                                missingCids.add(cid);
+                            }
+                        });
+                this.fetchDescriptions(missingCids)
+                    .filter(Description::hasTitle)
+                    .forEach(description -> result.put(description.getCid(), description.getTitle()));
+                return result;
+            }
+
+            private <T> Optional<T> findOffline(Function<OfflineIndex, Optional<T>> lookup)
+            {
+                return Optional.ofNullable(this.offlineIndex)
+                               .flatMap(lookup);
+            }
+
+            private OptionalLong findOfflineParentCid(long cid)
+            {
+                return this.offlineIndex != null ? this.offlineIndex.findParentCid(cid) : OptionalLong.empty();
+            }
+
+            @Override
+            public Stream<Description> fetchDescriptions(String... cid)
+            {
+                return this.fetchDescriptions(Arrays.asList(cid));
+            }
+
+            @Override
+            public Stream<Description> fetchDescriptions(Collection<String> cids)
+            {
+                return this.fetchDescriptions(cids, ResultOrder.INPUT);
+            }
+
+            @Override
+            public Stream<Description> fetchDescriptions(Collection<String> cids, ResultOrder resultOrder)
+            {
+                List<List<String>> cidBatches = StreamUtils.framedNonNullAsList(this.descriptionBatchSize, Optional.ofNullable(cids)
+                                                                                                                   .orElse(Collections.emptyList())
+                                                                                                                   .stream()
+                                                                                                                   .distinct())
+                                                           .collect(Collectors.toList());
+                return BatchPipeline.stream(cidBatches, this::fetchDescriptionBatch, this.descriptionConcurrency, this.getOrCreateExecutor(),
+                                            resultOrder == ResultOrder.INPUT);
+            }
+
+            private List<Description> fetchDescriptionBatch(List<String> cidBatch)
+            {
+                String url = RestClient.urlBuilder()
+                                       .setBaseUrl(this.baseUrl)
+                                       .addPathToken("compound")
+                                       .addPathToken("cid")
+                                       .addPathToken(cidBatch.stream()
+                                                             .collect(Collectors.joining(",")))
+                                       .addPathToken("description")
+                                       .addPathToken("JSON")
+                                       .build();
+                LOG.debug("Fetching pubchem descriptions for " + cidBatch);
+                try
+                {
+                    return this.fetchCached(url, () -> this.requestJson(url, 404)
+                                                           .map(response -> response.findPath("Information"))
+                                                           .flatMap(informationArray -> JSONHelper.toArrayNode(informationArray)
+                                                                                                  .map(arrayNode -> StreamUtils.fromIterator(arrayNode.iterator())
+                                                                                                                               .map(JSONHelper.toObjectWithTypeMapper(Description.class))
+                                                                                                                               .collect(Collectors.toList()))))
+                               .orElse(Collections.emptyList());
+                }
+                catch (PubChemAccessException e)
+                {
+                    if (e.getStatusCode() != 400)
+                    {
+                        throw e;
+                    }
+                    else if (cidBatch.size() > 1)
+                    {
+                        // a single malformed cid lets PubChem reject the whole batch, so the cids are requested one by one
+                        LOG.debug("PubChem rejected the description batch " + cidBatch + ", fetching the cids one by one");
+                        return cidBatch.stream()
+                                       .flatMap(cid -> this.fetchDescriptionBatch(Collections.singletonList(cid))
+                                                           .stream())
+                                       .collect(Collectors.toList());
+                    }
+                    else
+                    {
+                        return Collections.emptyList();
+                    }
+                }
+            }
+
+            /**
+             * Returns the result for the given url from the {@link MemoryCache} if available, otherwise the result of the given fetcher is put into the
+             * {@link MemoryCache}. Concurrent calls for the same url share a single execution of the fetcher and its result.
+             * 
+             * @param url
+             * @param fetcher
+             * @return
+             */
+            @SuppressWarnings("unchecked")
+            private <T> Optional<T> fetchCached(String url, Supplier<Optional<T>> fetcher)
+            {
+                if (this.memoryCache != null)
+                {
+                    Optional<T> cachedResult = Optional.ofNullable((T) this.memoryCache.get(url));
+                    if (this.metrics != null)
+                    {
+                        this.metrics.onCacheLookup(this.endpointOf(url), CacheTier.MEMORY, cachedResult.isPresent());
+                    }
+                    if (cachedResult.isPresent())
+                    {
+                        return cachedResult;
+                    }
+                }
+
+                return this.requestCoalescer.execute(url, () ->
+                {
+                    Optional<T> result = fetcher.get();
+                    if (this.memoryCache != null)
+                    {
+                        result.ifPresent(value -> this.memoryCache.put(url, value));
+                    }
+                    return result;
+                });
+            }
+
+            /**
+             * Requests the given url and returns the parsed json response. The response is taken from the {@link Cache} if available.
+             * 
+             * @see #requestBody(String, int...)
+             * @param url
+             * @param emptyStatusCodes
+             *            status codes which are answered with {@link Optional#empty()}
+             * @return
+             * @throws PubChemWaitingException
+             *             if PubChem answers with a waiting state instead of the result
+             */
+            private Optional<JsonNode> requestJson(String url, int... emptyStatusCodes)
+            {
+                if (this.cache != null)
+                {
+                    JsonNode cachedResponse = this.cache.get(url, JsonNode.class);
+                    if (this.metrics != null)
+                    {
+                        this.metrics.onCacheLookup(this.endpointOf(url), CacheTier.PERSISTENT, cachedResponse != null);
+                    }
+                    if (cachedResponse != null)
+                    {
+                        return Optional.of(cachedResponse);
+                    }
+                }
+
+                Optional<JsonNode> result = this.requestBody(url, emptyStatusCodes)
+                                                .map(body -> this.deserialize(url, () -> readJson(body)));
+                if (result.map(response -> response.has("Waiting"))
+                          .orElse(false))
+                {
+                    // PubChem answers long running operations with a list key to poll, see submitCidQuery(String)
+                    throw new PubChemWaitingException(url, result.get()
+                                                                 .path("Waiting")
+                                                                 .path("ListKey")
+                                                                 .asText(null));
+                }
+                if (this.cache != null)
+                {
+                    result.ifPresent(response -> this.cache.put(url, response));
+                }
+                return result;
+            }
+
+            /**
+             * Similar to {@link #requestJson(String, int...)} for plain text responses like csv
+             * 
+             * @param url
+             * @param emptyStatusCodes
+             * @return
+             */
+            private Optional<String> requestText(String url, int... emptyStatusCodes)
+            {
+                if (this.cache != null)
+                {
+                    String cachedResponse = this.cache.get(url, String.class);
+                    if (this.metrics != null)
+                    {
+                        this.metrics.onCacheLookup(this.endpointOf(url), CacheTier.PERSISTENT, cachedResponse != null);
+                    }
+                    if (cachedResponse != null)
+                    {
+                        return Optional.of(cachedResponse);
+                    }
+                }
+
+                Optional<String> result = this.requestBody(url, emptyStatusCodes)
+                                              .map(body -> new String(body, StandardCharsets.UTF_8));
+                if (this.cache != null)
+                {
+                    result.ifPresent(response -> this.cache.put(url, response));
+                }
+                return result;
+            }
+
+            /**
+             * Similar to {@link #requestJson(String, int...)} but hands the response to the given {@link JsonParserFunction}. Without a {@link Cache}
+             * the response body is streamed into the function directly, so no json tree of the full response is created.
+             * 
+             * @param url
+             * @param parserFunction
+             * @param emptyStatusCodes
+             * @return
+             */
+            private <T> Optional<T> requestJson(String url, JsonParserFunction<T> parserFunction, int... emptyStatusCodes)
+            {
+                if (this.cache != null)
+                {
+                    return this.requestJson(url, emptyStatusCodes)
+                               .map(response -> parseJson(OBJECT_MAPPER.treeAsTokens(response), parserFunction));
+                }
+                else
+                {
+                    return this.requestBody(url, emptyStatusCodes)
+                               .map(body -> this.deserialize(url, () -> parseJson(body, parserFunction)));
+                }
+            }
+
+            private <T> T deserialize(String url, Supplier<T> parser)
+            {
+                if (this.metrics == null)
+                {
+                    return parser.get();
+                }
+
+                long start = System.nanoTime();
+                T result = parser.get();
+                this.metrics.onDeserialization(this.endpointOf(url), System.nanoTime() - start);
+                return result;
+            }
+
+            /**
+             * Waits for a permit of the {@link RateLimiter}, at most until the deadline of the given {@link RetryPolicy.Call}, and returns the time which
+             * is left until the deadline after the permit was granted
+             * 
+             * @param url
+             * @param call
+             * @return
+             */
+            private Optional<Duration> acquirePermit(String url, RetryPolicy.Call call)
+            {
+                try
+                {
+                    Optional<Duration> remainingTime = call.getRemainingTime();
+                    boolean acquired = this.rateLimiter.tryAcquire(remainingTime.map(Duration::toNanos)
+                                                                                .orElse(Long.MAX_VALUE),
+                                                                   TimeUnit.NANOSECONDS);
+                    remainingTime = call.getRemainingTime();
+                    if (!acquired || remainingTime.map(Duration::isZero)
+                                                  .orElse(false))
+                    {
+                        throw new UncheckedIOException("Failed to request " + url, new HttpTimeoutException("Deadline exceeded after "
+                                + call.getRetryCount() + " retries"));
+                    }
+                    return remainingTime;
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread()
+                          .interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a request permit", e);
+                }
+            }
+
+            /**
+             * Requests the given url from PubChem. The request waits for a permit of the {@link RateLimiter} and is retried on server errors and io
+             * failures as far as the {@link RetryPolicy} allows. Urls with a known negative result in the {@link NegativeCache} are answered without a request.
+             * 
+             * @param url
+             * @param emptyStatusCodes
+             *            status codes which are answered with {@link Optional#empty()}
+             * @return
+             */
+            private Optional<byte[]> requestBody(String url, int... emptyStatusCodes)
+            {
+                if (this.negativeCache != null)
+                {
+                    boolean negative = this.negativeCache.contains(url);
+                    if (this.metrics != null)
+                    {
+                        this.metrics.onCacheLookup(this.endpointOf(url), CacheTier.NEGATIVE, negative);
+                    }
+                    if (negative)
+                    {
+                        return Optional.empty();
+                    }
+                }
+
+                RetryPolicy.Call call = this.retryPolicy.newCall();
+                while (true)
+                {
+                    if (call.getRetryCount() > 0 && this.metrics != null)
+                    {
+                        this.metrics.onRetry(this.endpointOf(url), call.getRetryCount());
+                    }
+                    Optional<Duration> remainingTime = this.acquirePermit(url, call);
+                    call.onRequest();
+                    long start = this.metrics != null ? System.nanoTime() : 0;
+                    try
+                    {
+                        PubChemTransport transport = this.getOrCreateTransport();
+                        PubChemTransport.Response response = remainingTime.isPresent() ? transport.get(url, remainingTime.get()) : transport.get(url);
+                        int statusCode = response.getStatusCode();
+                        if (this.metrics != null)
+                        {
+                            this.metrics.onResponse(this.endpointOf(url), statusCode, System.nanoTime() - start, response.getBody().length);
+                        }
+                        this.rateLimiter.onResponse(statusCode, response.getHeader(RateLimiter.THROTTLING_CONTROL_HEADER)
+                                                                        .orElse(null));
+                        if (response.isSuccessful())
+                        {
+                            return Optional.of(response.getBody());
+                        }
+                        else if (IntStream.of(emptyStatusCodes)
+                                          .anyMatch(emptyStatusCode -> emptyStatusCode == statusCode))
+                        {
+                            if (this.negativeCache != null)
+                            {
+                                this.negativeCache.put(url);
+                            }
+                            return Optional.empty();
+                        }
+
+                        OptionalLong retryDelay = statusCode >= 500 ? call.nextRetryDelayMillis(statusCode == 503 ? Failure.THROTTLED : Failure.SERVER_ERROR,
+                                                                                                   response.getHeader("Retry-After")
+                                                                                                           .orElse(null))
+                                : OptionalLong.empty();
+                        if (!retryDelay.isPresent())
+                        {
+                            throw new PubChemAccessException(url, statusCode);
+                        }
+                        LOG.debug("PubChem answered with status code " + statusCode + " for " + url + ", retrying in " + retryDelay.getAsLong() + "ms");
+                        sleep(retryDelay.getAsLong());
+                    }
+                    catch (IOException e)
+                    {
+                        if (this.metrics != null)
+                        {
+                            this.metrics.onFailure(this.endpointOf(url), e, System.nanoTime() - start);
+                        }
+                        boolean timeout = e instanceof HttpTimeoutException || e instanceof SocketTimeoutException;
+                        OptionalLong retryDelay = call.nextRetryDelayMillis(timeout ? Failure.TIMEOUT : Failure.IO_ERROR, null);
+                        if (!retryDelay.isPresent())
+                        {
+                            throw new UncheckedIOException("Failed to request " + url, e);
+                        }
+                        LOG.debug("Failed to request " + url + ", retrying in " + retryDelay.getAsLong() + "ms", e);
+                        sleep(retryDelay.getAsLong());
+                    }
+                }
+            }
+
+            @Override
+            public Optional<Compound> fetchCompoundByName(String compoundName)
+            {
+                String url = this.createCompoundByNameUrl(compoundName);
+                LOG.debug("Fetching pubchem compound by name: " + compoundName);
+                return this.fetchCached(url, () -> this.requestJson(url, 404)
+                                                       .map(JSONHelper.toObjectWithTypeMapper(Compound.class)));
+            }
+
+            /**
+             * Similar to {@link #fetchCompoundByName(String)} but the returned {@link CompoundEntry}s only contain the cid and the IUPAC name properties.
+             * The response is parsed in a streaming way and all other fields are skipped.
+             * 
+             * @param compoundName
+             * @return
+             */
+            private List<CompoundEntry> fetchCompoundNameEntriesByName(String compoundName)
+            {
+                String url = this.createCompoundByNameUrl(compoundName);
+                LOG.debug("Fetching pubchem compound names by name: " + compoundName);
+                return this.fetchCached(url + "#names", () -> this.requestJson(url, PubChemRestUtils::parseCompoundNameEntries, 404))
+                           .orElse(Collections.emptyList());
+            }
+
+            private String createCompoundByNameUrl(String compoundName)
+            {
+                return RestClient.urlBuilder()
+                                 .setBaseUrl(this.baseUrl)
+                                 .addPathToken("compound")
+                                 .addPathToken("name")
+                                 .addPathToken(compoundName)
+                                 .addPathToken("JSON")
+                                 .build();
+            }
+
+            @Override
+            public Optional<String> fetchCompoundCidByName(String compoundName)
+            {
+                Optional<String> offlineCid = this.findOffline(offlineIndex -> offlineIndex.findCidByName(compoundName))
+                                                  .map(String::valueOf);
+                if (offlineCid.isPresent())
+                {
+                    return offlineCid;
+                }
+
+                OptionalLong indexedCid = this.synonymIndex != null ? this.synonymIndex.findCid(compoundName) : OptionalLong.empty();
+                if (indexedCid.isPresent())
+                {
+                    return Optional.of(String.valueOf(indexedCid.getAsLong()));
+                }
+
+                String url = RestClient.urlBuilder()
+                                       .setBaseUrl(this.baseUrl)
+                                       .addPathToken("compound")
+                                       .addPathToken("name")
+                                       .addPathToken(compoundName)
+                                       .addPathToken("cids")
+                                       .addPathToken("JSON")
+                                       .build();
+                LOG.debug("Fetching pubchem compound cid by name: " + compoundName);
+                return this.fetchCached(url, () -> this.requestJson(url, 404, 400)
+                                                       .map(node -> node.findPath("IdentifierList"))
+                                                       .map(node -> node.findPath("CID"))
+                                                       .flatMap(informationArray -> JSONHelper.toArrayNode(informationArray)
+                                                                                              .map(arrayNode -> arrayNode.get(0))
+                                                                                              .map(JSONHelper.toObjectWithTypeMapper(String.class))));
+            }
+
+            @Override
+            public Optional<String> fetchCompoundParentCidByCid(String cid)
+            {
+                OptionalLong offlineParentCid = parseCid(cid).map(this::findOfflineParentCid)
+                                                             .orElse(OptionalLong.empty());
+                if (offlineParentCid.isPresent())
+                {
+                    return Optional.of(String.valueOf(offlineParentCid.getAsLong()));
+                }
+
+                Optional<Long> parsedCid = parseCid(cid).filter(value -> value > 0);
+                long knownParentCid = parsedCid.map(this.parentGraph::getParentCid)
+                                               .orElse(ParentGraph.UNKNOWN);
+                if (knownParentCid != ParentGraph.UNKNOWN)
+                {
+                    return toParentCid(knownParentCid);
+                }
+
+                Optional<String> parentCid = this.requestParentCid(cid);
+                if (parsedCid.isPresent())
+                {
+                    this.parentGraph.put(parsedCid.get(), parentCid.flatMap(PubChemRestUtils::parseCid)
+                                                                   .orElse(ParentGraph.NO_PARENT));
+                    this.parentGraph.flush();
+                }
+                return parentCid;
+            }
+
+            private Optional<String> requestParentCid(String cid)
+            {
+                String url = RestClient.urlBuilder()
+                                       .setBaseUrl(this.baseUrl)
+                                       .addPathToken("compound")
+                                       .addPathToken("cid")
+                                       .addPathToken(cid)
+                                       .addPathToken("cids")
+                                       .addPathToken("JSON")
+                                       .addQueryParameter("cids_type", "parent")
+                                       .build();
+                LOG.debug("Fetching pubchem compound parent cid by cid: " + cid);
+                return this.fetchCached(url, () -> this.requestJson(url, 404, 400)
+                                                       .map(node -> node.findPath("IdentifierList"))
+                                                       .map(node -> node.findPath("CID"))
+                                                       .flatMap(informationArray -> JSONHelper.toArrayNode(informationArray)
+                                                                                              .map(arrayNode -> arrayNode.get(0))
+                                                                                              .map(JSONHelper.toObjectWithTypeMapper(String.class))));
+            }
+
+            @Override
+            public CompletableFuture<ListKey> submitCidQuery(String operationPath)
+            {
+                String url = this.baseUrl + "/" + StringUtils.strip(operationPath, "/") + "/JSON?list_return=listkey";
+                LOG.debug("Submitting pubchem list key query " + url);
+                CompletableFuture<ListKey> result = new CompletableFuture<>();
+                this.pollListKey(url, null, result, this.listKeyPollIntervalMillis, System.currentTimeMillis() + this.listKeyMaxWaitMillis);
+                return result;
+            }
+
+            /**
+             * Requests the given url on the {@link Executor} and completes the given result if PubChem answers with the {@link ListKey} of the final
+             * result. While PubChem answers with a waiting state, the poll of the waiting list key is scheduled with an increasing interval, so no thread
+             * is blocked in between. If PubChem does not know the waiting list key anymore, the result fails with an {@link IllegalStateException}.
+             */
+            private void pollListKey(String url, String waitingListKey, CompletableFuture<ListKey> result, long pollIntervalMillis, long deadline)
+            {
+                if (result.isDone())
+                {
+                    return;
+                }
+                // the submit starts a new query on every request, only the polls of the waiting list key can be shared
+                Supplier<Optional<JsonNode>> request = waitingListKey != null ? () -> this.requestListKeyJson(url) : () -> this.requestJsonBody(url);
+                CompletableFuture.supplyAsync(() -> request.get()
+                                                           .orElseThrow(() -> new IllegalStateException(waitingListKey != null
+                                                                   ? "ListKey " + waitingListKey + " not found or expired"
+                                                                   : "PubChem list key query not found: " + url)),
+                                              this.getOrCreateExecutor())
+                                 .whenComplete((response, exception) ->
+                                 {
+                                     if (exception != null)
+                                     {
+                                         result.completeExceptionally(exception instanceof CompletionException ? exception.getCause() : exception);
+                                         return;
+                                     }
+
+                                     String nextWaitingListKey = response.path("Waiting")
+                                                                         .path("ListKey")
+                                                                         .asText(null);
+                                     JsonNode identifierList = response.path("IdentifierList");
+                                     if (nextWaitingListKey != null)
+                                     {
+                                         if (System.currentTimeMillis() + pollIntervalMillis > deadline)
+                                         {
+                                             result.completeExceptionally(new TimeoutException("PubChem list key " + nextWaitingListKey + " is not ready in time"));
+                                             return;
+                                         }
+                                         LOG.debug("Waiting for pubchem list key " + nextWaitingListKey);
+                                         String pollUrl = RestClient.urlBuilder()
+                                                                    .setBaseUrl(this.baseUrl)
+                                                                    .addPathToken("compound")
+                                                                    .addPathToken("listkey")
+                                                                    .addPathToken(nextWaitingListKey)
+                                                                    .addPathToken("cids")
+                                                                    .addPathToken("JSON")
+                                                                    .addQueryParameter("list_return", "listkey")
+                                                                    .build();
+                                         this.getOrCreateListKeyScheduler()
+                                             .schedule(() -> this.pollListKey(pollUrl, nextWaitingListKey, result,
+                                                                              Math.min(MAX_LIST_KEY_POLL_INTERVAL_MILLIS, pollIntervalMillis * 2), deadline),
+                                                       pollIntervalMillis, TimeUnit.MILLISECONDS);
+                                     }
+                                     else if (identifierList.has("ListKey"))
+                                     {
+                                         result.complete(new ListKey(identifierList.path("ListKey")
+                                                                                   .asText(),
+                                                                     identifierList.path("Size")
+                                                                                   .asLong()));
+                                     }
+                                     else
+                                     {
+                                         result.completeExceptionally(new IllegalStateException("PubChem answered without list key for " + url + ": " + response));
+                                     }
+                                 });
+            }
+
+            /**
+             * Similar to {@link #requestJsonBody(String)} for the polls of a list key and the pages of its result. These requests are idempotent, so
+             * concurrent requests of the same url share one request through the {@link RequestCoalescer}.
+             * 
+             * @param url
+             * @return
+             */
+            private Optional<JsonNode> requestListKeyJson(String url)
+            {
+                return this.requestCoalescer.execute(url, () -> this.requestJsonBody(url));
+            }
+
+            /**
+             * Requests the given url bypassing the {@link Cache}, as the responses of list key queries change over time. A 404 is answered with
+             * {@link Optional#empty()}.
+             * 
+             * @param url
+             * @return
+             */
+            private Optional<JsonNode> requestJsonBody(String url)
+            {
+                return this.requestBody(url, 404)
+                           .map(body -> this.deserialize(url, () -> readJson(body)));
+            }
+
+            @Override
+            public Stream<List<Long>> fetchCidPages(ListKey listKey, int pageSize)
+            {
+                if (pageSize <= 0)
+                {
+                    throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+                }
+                return LongStream.iterate(0, start -> start < listKey.getSize(), start -> start + pageSize)
+                                 .mapToObj(start -> this.requestCidPage(listKey, start, pageSize));
+            }
+
+            private List<Long> requestCidPage(ListKey listKey, long start, int count)
+            {
+                String url = RestClient.urlBuilder()
+                                       .setBaseUrl(this.baseUrl)
+                                       .addPathToken("compound")
+                                       .addPathToken("listkey")
+                                       .addPathToken(listKey.getKey())
+                                       .addPathToken("cids")
+                                       .addPathToken("JSON")
+                                       .addQueryParameter("listkey_start", String.valueOf(start))
+                                       .addQueryParameter("listkey_count", String.valueOf(count))
+                                       .build();
+                LOG.debug("Fetching pubchem list key page of " + listKey + " from " + start);
+                List<Long> cids = new ArrayList<>(count);
+                this.requestListKeyJson(url)
+                    .map(response -> response.path("IdentifierList")
+                                             .path("CID"))
+                    .orElseThrow(() -> new IllegalStateException("ListKey " + listKey.getKey() + " not found or expired"))
+                    .forEach(cid -> cids.add(cid.asLong()));
+                return cids;
+            }
+
+            @Override
+            public Map<String, Optional<String>> fetchCompoundParentCids(Collection<String> cids)
+            {
+                Map<String, Optional<String>> result = new LinkedHashMap<>();
+                Map<String, Long> unresolvedCids = new LinkedHashMap<>();
+                Optional.ofNullable(cids)
+                        .orElse(Collections.emptyList())
+                        .stream()
+                        .filter(cid -> cid != null)
+                        .distinct()
+                        .forEach(cid ->
+                        {
+                            Optional<Long> parsedCid = parseCid(cid).filter(value -> value > 0);
+                            long knownParentCid = parsedCid.map(this.parentGraph::getParentCid)
+                                                           .orElse(ParentGraph.NO_PARENT);
+                            OptionalLong offlineParentCid = knownParentCid == ParentGraph.UNKNOWN ? this.findOfflineParentCid(parsedCid.get())
+                                    : OptionalLong.empty();
+                            if (knownParentCid != ParentGraph.UNKNOWN)
+                            {
+                                result.put(cid, toParentCid(knownParentCid));
+                            }
+                            else if (offlineParentCid.isPresent())
+                            {
+                                result.put(cid, Optional.of(String.valueOf(offlineParentCid.getAsLong())));
+                            }
+                            else
+                            {
+                                result.put(cid, Optional.empty());
+                                unresolvedCids.put(cid, parsedCid.get());
+                            }
+                        });
+
+                List<List<Long>> cidBatches = StreamUtils.framedNonNullAsList(this.parentCidBatchSize, unresolvedCids.values()
+                                                                                                                    .stream()
+                                                                                                                    .distinct())
+                                                         .collect(Collectors.toList());
+                Map<Long, Long> parentCidByCid = new HashMap<>();
+                BatchPipeline.stream(cidBatches, this::requestParentCidsOrUnknown, this.batchConcurrency, this.getOrCreateExecutor(), false)
+                             .filter(edge -> edge[1] != ParentGraph.UNKNOWN)
+                             .forEach(edge ->
+                             {
+                                 this.parentGraph.put(edge[0], edge[1]);
+                                 parentCidByCid.put(edge[0], edge[1]);
+                             });
+                this.parentGraph.flush();
+
+                unresolvedCids.forEach((cid, parsedCid) ->
+                {
+                    Long parentCid = parentCidByCid.get(parsedCid);
+                    if (parentCid != null)
+                    {
+                        result.put(cid, toParentCid(parentCid));
+                    }
+                    else
+                    {
+                        result.remove(cid);
+                    }
+                });
+                return result;
+            }
+
+            @Override
+            public PropertyTable fetchProperties(Collection<String> cids, PropertyType... propertyTypes)
+            {
+                PropertyType[] distinctPropertyTypes = Arrays.stream(propertyTypes)
+                                                             .distinct()
+                                                             .toArray(PropertyType[]::new);
+                if (distinctPropertyTypes.length == 0)
+                {
+                    throw new IllegalArgumentException("At least one property type is required");
+                }
+
+                List<List<Long>> cidBatches = StreamUtils.framedNonNullAsList(this.propertyBatchSize, Optional.ofNullable(cids)
+                                                                                                               .orElse(Collections.emptyList())
+                                                                                                               .stream()
+                                                                                                               .map(PubChemRestUtils::parseCid)
+                                                                                                               .filter(Optional::isPresent)
+                                                                                                               .map(Optional::get)
+                                                                                                               .filter(cid -> cid > 0)
+                                                                                                               .distinct())
+                                                         .collect(Collectors.toList());
+                PropertyTable.Builder builder = PropertyTable.builder(distinctPropertyTypes);
+                BatchPipeline.stream(cidBatches, cidBatch -> this.requestPropertyCsv(cidBatch, distinctPropertyTypes), this.batchConcurrency,
+                                     this.getOrCreateExecutor(), true)
+                             .forEach(csv -> builder.addCsv(new StringReader(csv)));
+                return builder.build();
+            }
+
+            private List<String> requestPropertyCsv(List<Long> cidBatch, PropertyType[] propertyTypes)
+            {
+                String url = RestClient.urlBuilder()
+                                       .setBaseUrl(this.baseUrl)
+                                       .addPathToken("compound")
+                                       .addPathToken("cid")
+                                       .addPathToken(cidBatch.stream()
+                                                             .map(String::valueOf)
+                                                             .collect(Collectors.joining(",")))
+                                       .addPathToken("property")
+                                       .addPathToken(Arrays.stream(propertyTypes)
+                                                           .map(PropertyType::getIdentifier)
+                                                           .collect(Collectors.joining(",")))
+                                       .addPathToken("CSV")
+                                       .build();
+                LOG.debug("Fetching pubchem properties for " + cidBatch.size() + " cids");
+                try
+                {
+                    return this.fetchCached(url, () -> this.requestText(url, 404))
+                               .map(Collections::singletonList)
+                               .orElse(Collections.emptyList());
+                }
+                catch (PubChemAccessException e)
+                {
+                    if (e.getStatusCode() != 400)
+                    {
+                        throw e;
+                    }
+                    else if (cidBatch.size() > 1)
+                    {
+                        // a single unknown cid can let PubChem reject the whole batch, so the cids are requested one by one
+                        LOG.debug("PubChem rejected the property batch of " + cidBatch.size() + " cids, fetching the cids one by one");
+                        return cidBatch.stream()
+                                       .flatMap(cid -> this.requestPropertyCsv(Collections.singletonList(cid), propertyTypes)
+                                                           .stream())
+                                       .collect(Collectors.toList());
+                    }
+                    else
+                    {
+                        return Collections.emptyList();
+                    }
+                }
+            }
+
+            /**
+             * Calls {@link #requestParentCids(List)} and marks all cids of a failed batch as {@link ParentGraph#UNKNOWN}, so they are left out of the
+             * result instead of being reported as cids without a parent
+             * 
+             * @param cidBatch
+             * @return edges of cid and parent cid
+             */
+            private List<long[]> requestParentCidsOrUnknown(List<Long> cidBatch)
+            {
+                try
+                {
+                    return this.requestParentCids(cidBatch);
+                }
+                catch (RuntimeException e)
+                {
+                    LOG.warn("Failed to fetch the parent cids of " + cidBatch.size() + " cids", e);
+                    return cidBatch.stream()
+                                   .map(cid -> new long[] { cid, ParentGraph.UNKNOWN })
+                                   .collect(Collectors.toList());
+                }
+            }
+
+            /**
+             * Requests the parent cids of multiple cids at once. The grouped response contains one entry per requested cid in the order of the request,
+             * which is verified by its size. If PubChem answers differently, the cids are requested one by one.
+             * 
+             * @param cidBatch
+             * @return edges of cid and parent cid
+             */
+            private List<long[]> requestParentCids(List<Long> cidBatch)
+            {
+                String url = RestClient.urlBuilder()
+                                       .setBaseUrl(this.baseUrl)
+                                       .addPathToken("compound")
+                                       .addPathToken("cid")
+                                       .addPathToken(cidBatch.stream()
+                                                             .map(String::valueOf)
+                                                             .collect(Collectors.joining(",")))
+                                       .addPathToken("cids")
+                                       .addPathToken("JSON")
+                                       .addQueryParameter("cids_type", "parent")
+                                       .addQueryParameter("list_return", "grouped")
+                                       .build();
+                LOG.debug("Fetching pubchem compound parent cids for " + cidBatch.size() + " cids");
+                Optional<JsonNode> groups = cidBatch.size() > 1 ? this.fetchCached(url, () -> this.requestJson(url, 404, 400))
+                                                                      .map(response -> response.findPath("Information"))
+                                                                      .filter(information -> information.isArray() && information.size() == cidBatch.size())
+                        : Optional.empty();
+
+                List<long[]> edges = new ArrayList<>(cidBatch.size());
+                for (int ii = 0; ii < cidBatch.size(); ii++)
+                {
+                    long cid = cidBatch.get(ii);
+                    Optional<Long> parentCid;
+                    if (groups.isPresent())
+                    {
+                        JsonNode group = groups.get()
+                                               .get(ii)
+                                               .path("CID");
+                        parentCid = parseCid((group.isArray() ? group.path(0) : group).asText(null));
+                    }
+                    else
+                    {
+                        parentCid = this.requestParentCid(String.valueOf(cid))
+                                        .flatMap(PubChemRestUtils::parseCid);
+                    }
+                    edges.add(new long[] { cid, parentCid.filter(value -> value > 0)
+                                                         .orElse(ParentGraph.NO_PARENT) });
+                }
+                return edges;
+            }
+
+            @Override
+            public Optional<CidAndName> fetchCidAndPrimaryNameByAnyName(String compoundName)
+            {
+                return this.fetchCidAndPrimaryNameByAnyName(compoundName, NameType.TRADITIONAL, NameType.PREFERRED);
+            }
+
+            @Override
+            public Optional<CidAndName> fetchOldestCidAndPrimaryNameByAnyName(String compoundName)
+            {
+                return this.fetchOldestCidAndPrimaryNameByAnyName(compoundName, NameType.TRADITIONAL, NameType.PREFERRED);
+            }
+
+            @Override
+            public Optional<CidAndName> fetchOldestCidAndPrimaryNameByAnyName(String compoundName, NameType... nameTypes)
+            {
+                Function<CompoundEntry, Long> cidExtractor = entry -> Optional.ofNullable(entry.getId())
+                                                                              .map(OuterId::getId)
+                                                                              .map(InnerId::getCid)
+                                                                              .orElse(999999999999l);
+                List<CompoundEntry> entries = this.fetchCompoundNameEntriesByName(compoundName)
+                                                  .stream()
+                                                  .sorted(ComparatorUtils.builder()
+                                                                         .of(cidExtractor)
+                                                                         .natural())
+                                                  .collect(Collectors.toList());
+                return determineCidAndPrimaryName(entries, nameTypes);
+            }
+
+            @Override
+            public Optional<CidAndName> fetchCidAndPrimaryNameByAnyName(String compoundName, NameType... nameTypes)
+            {
+                List<CompoundEntry> entries = this.fetchCompoundNameEntriesByName(compoundName);
+                return determineCidAndPrimaryName(entries, nameTypes);
+            }
+
+        };
+    }
+
+    public static interface PubChemRestAccessor
+    {
+        public Optional<Synonyms> fetchSynonyms(String compoundName);
+
+        public Optional<Compound> fetchCompoundByName(String compoundName);
+
+        public Optional<CidAndName> fetchCidAndPrimaryNameByAnyName(String compoundName);
+
+        public Optional<CidAndName> fetchOldestCidAndPrimaryNameByAnyName(String compoundName);
+
+        public PubChemRestAccessor withCache(Cache cache);
+
+        public PubChemRestAccessor withLocalCache();
+
+        /**
+         * Similar to {@link #withLocalCache()} but stores all responses in a single {@link LogFileCache} file instead of one file per request, which scales
+         * to millions of cached responses. The file is opened once per jvm, further calls with the same file share the opened {@link LogFileCache}.
+         * 
+         * @param file
+         * @return
+         */
+        public PubChemRestAccessor withLocalCache(Path file);
+
+        /**
+         * Exports all responses of the {@link Cache} of {@link #withCache(Cache)} into a compressed snapshot file
+         * 
+         * @see CacheSnapshot
+         * @param file
+         * @return number of exported entries
+         * @throws IllegalStateException
+         *             if no {@link Cache} is set
+         */
+        public int exportCache(Path file);
+
+        /**
+         * Imports a snapshot file written by {@link #exportCache(Path)} into the {@link Cache} of {@link #withCache(Cache)}, so the imported responses are
+         * not requested from PubChem anymore
+         * 
+         * @param file
+         * @return number of imported entries
+         * @throws IllegalStateException
+         *             if no {@link Cache} is set
+         */
+        public int importCache(Path file);
+
+        /**
+         * Fills the caches with the cids and {@link Synonyms} of the given compound names and with the data of {@link #warmUpByCids(Collection)} for the
+         * resolved cids, using the batch methods
+         * 
+         * @param compoundNames
+         * @return this
+         */
+        public PubChemRestAccessor warmUpByNames(Collection<String> compoundNames);
+
+        /**
+         * Fills the caches with the {@link Description}s and the parent cids of the given cids, using the batch methods
+         * 
+         * @param cids
+         * @return this
+         */
+        public PubChemRestAccessor warmUpByCids(Collection<String> cids);
+
+        /**
+         * Adds a {@link MemoryCache} as first tier in front of the {@link Cache} of {@link #withCache(Cache)}. It holds the already deserialized results like
+         * {@link Compound}, {@link Synonyms} and {@link Description}s of at most the given number of urls, each for the given time to live.
+         * 
+         * @param maxSize
+         * @param timeToLive
+         * @param timeUnit
+         * @return
+         */
+        public PubChemRestAccessor withMemoryCache(int maxSize, long timeToLive, TimeUnit timeUnit);
+
+        /**
+         * Similar to {@link #withMemoryCache(int, long, TimeUnit)} but uses the given {@link MemoryCache}, which can be shared with other accessors
+         * 
+         * @param memoryCache
+         * @return
+         */
+        public PubChemRestAccessor withMemoryCache(MemoryCache<Object> memoryCache);
+
+        /**
+         * Returns the hit, miss and eviction counters of the {@link MemoryCache}, if one is configured by {@link #withMemoryCache(int, long, TimeUnit)}
+         * 
+         * @return
+         */
+        public Optional<MemoryCache.Statistics> getMemoryCacheStatistics();
+
+        /**
+         * Remembers lookups which PubChem answered with "not found" (404) or "bad request" (400) for the given time to live, so they are answered with
+         * {@link Optional#empty()} without a request. If a {@link Cache} is set, the negative results are also stored there and survive a restart.
+         * 
+         * @see NegativeCache
+         * @param maxSize
+         *            maximum number of negative results held in memory
+         * @param timeToLive
+         * @param timeUnit
+         * @return
+         */
+        public PubChemRestAccessor withNegativeCache(int maxSize, long timeToLive, TimeUnit timeUnit);
+
+        /**
+         * Similar to {@link #withNegativeCache(int, long, TimeUnit)} but uses the given {@link NegativeCache}, which can be shared with other accessors
+         * 
+         * @param negativeCache
+         * @return
+         */
+        public PubChemRestAccessor withNegativeCache(NegativeCache negativeCache);
+
+        /**
+         * Returns the hit, miss and store counters of the {@link NegativeCache} if {@link #withNegativeCache(int, long, TimeUnit)} is enabled
+         * 
+         * @return
+         */
+        public Optional<NegativeCache.Statistics> getNegativeCacheStatistics();
+
+        /**
+         * Answers {@link #fetchSynonyms(String)}, {@link #fetchTitle(String)}, {@link #fetchTitles(Collection)}, {@link #fetchCompoundCidByName(String)} and
+         * {@link #fetchCompoundParentCidByCid(String)} from the {@link OfflineIndex} in the given directory. Only lookups which are not found in the {@link OfflineIndex} are requested from PubChem.
+         * 
+         * @see OfflineIndex#builder()
+         * @param directory
+         * @return
+         */
+        public PubChemRestAccessor withOfflineIndex(Path directory);
+
+        /**
+         * Similar to {@link #withOfflineIndex(Path)}
+         * 
+         * @param offlineIndex
+         * @return
+         */
+        public PubChemRestAccessor withOfflineIndex(OfflineIndex offlineIndex);
+
+        /**
+         * Keeps the synonyms of all {@link Synonyms} returned by {@link #fetchSynonyms(String)} in the given {@link SynonymStore}, which stores each
+         * distinct synonym only once as UTF-8 and decodes it on access. This reduces the heap usage of {@link Synonyms} held in the memory cache or by
+         * the caller considerably.
+         * 
+         * @param synonymStore
+         * @return
+         */
+        public PubChemRestAccessor withSynonymStore(SynonymStore synonymStore);
+
+        /**
+         * Keeps the synonyms of all {@link Synonyms} fetched by {@link #fetchSynonyms(String)} in a {@link SynonymIndex} backed by the given file, so
+         * {@link #fetchCompoundCidByName(String)} resolves names which are an unambiguous synonym of an already fetched compound without a request, also
+         * after a restart. Such a cid can differ from the one the PubChem name lookup would return. The index is disabled by default.<br>
+         * <br>
+         * The new entries are appended to the file in batches, see {@link SynonymIndex}, so the latest of them are lost if the jvm exits before the next
+         * batch. Use {@link #withSynonymIndex(SynonymIndex)} with {@link SynonymIndex#open(Path)} to {@link SynonymIndex#close()} it explicitly.
+         * 
+         * @param file
+         * @return
+         */
+        public PubChemRestAccessor withSynonymIndex(Path file);
+
+        /**
+         * Similar to {@link #withSynonymIndex(Path)}, e.g. to share a {@link SynonymIndex} between multiple {@link PubChemRestAccessor}s. The caller is
+         * responsible to {@link SynonymIndex#flush()} or {@link SynonymIndex#close()} it. Null disables the index.
+         * 
+         * @param synonymIndex
+         * @return
+         */
+        public PubChemRestAccessor withSynonymIndex(SynonymIndex synonymIndex);
+
+        public Optional<String> fetchTitle(String cid);
+
+        public Map<String, String> fetchTitles(String... cids);
+
+        public Map<String, String> fetchTitles(Collection<String> cids);
+
+        public Stream<Description> fetchDescriptions(Collection<String> cids);
+
+        public Stream<Description> fetchDescriptions(String... cid);
+
+        /**
+         * Similar to {@link #fetchDescriptions(Collection)} but allows to receive the {@link Description}s in the order the batches complete. The cids are
+         * requested in batches of {@link #withDescriptionBatchSize(int)} with at most {@link #withDescriptionConcurrency(int)} batches in flight. Batches are
+         * only dispatched while the returned {@link Stream} is consumed. A batch which fails does not contribute any {@link Description}s, but does not
+         * stop the other batches.
+         * 
+         * @param cids
+         * @param resultOrder
+         * @return
+         */
+        public Stream<Description> fetchDescriptions(Collection<String> cids, ResultOrder resultOrder);
+
+        /**
+         * Sets the number of cids which are requested together by {@link #fetchDescriptions(Collection)} and {@link #fetchTitles(Collection)}. PubChem
+         * limits the url length, so batches of more than a few hundred cids are likely rejected. Default is 10.
+         * 
+         * @param descriptionBatchSize
+         * @return
+         */
+        public PubChemRestAccessor withDescriptionBatchSize(int descriptionBatchSize);
+
+        /**
+         * Sets the maximum number of description batches in flight, see {@link #fetchDescriptions(Collection, ResultOrder)}. The requests are still paced
+         * by the {@link RateLimiter}. Default is 4.
+         * 
+         * @param descriptionConcurrency
+         * @return
+         */
+        public PubChemRestAccessor withDescriptionConcurrency(int descriptionConcurrency);
+
+        /**
+         * Sets the number of cids which are requested together by {@link #fetchCompoundParentCids(Collection)}. Default is 100.
+         * 
+         * @param parentCidBatchSize
+         * @return
+         */
+        public PubChemRestAccessor withParentCidBatchSize(int parentCidBatchSize);
+
+        /**
+         * Sets the number of cids which are requested together by {@link #fetchProperties(Collection, PropertyType...)}. PubChem limits the length of
+         * the request url, so a larger size only helps for short cids and few {@link PropertyType}s. Default is 100.
+         * 
+         * @param propertyBatchSize
+         * @return
+         */
+        public PubChemRestAccessor withPropertyBatchSize(int propertyBatchSize);
+
+        /**
+         * Sets the maximum number of batches in flight for {@link #fetchCompoundParentCids(Collection)} and
+         * {@link #fetchProperties(Collection, PropertyType...)}. The requests are still paced by the {@link RateLimiter}. Default is 4.
+         * 
+         * @param batchConcurrency
+         * @return
+         */
+        public PubChemRestAccessor withBatchConcurrency(int batchConcurrency);
+
+        Optional<CidAndName> fetchCidAndPrimaryNameByAnyName(String compoundName, NameType... nameTypes);
+
+        Optional<CidAndName> fetchOldestCidAndPrimaryNameByAnyName(String compoundName, NameType... nameTypes);
+
+        Optional<String> fetchCompoundParentCidByCid(String cid);
+
+        /**
+         * Resolves the parent cids of all given cids, e.g. to normalize salts and charged forms. Cids which are not known in the {@link ParentGraph} are
+         * requested from PubChem in batches of {@link #withParentCidBatchSize(int)} cids, with at most {@link #withBatchConcurrency(int)} batches in
+         * flight. All resolved edges are added to the {@link ParentGraph}, see {@link #withParentGraph(Path)}. Cids of a batch which failed are left out of
+         * the returned {@link Map}, so an empty value always means that PubChem knows no parent.
+         * 
+         * @param cids
+         * @return {@link Map} of cid to parent cid in the order of the given cids
+         */
+        public Map<String, Optional<String>> fetchCompoundParentCids(Collection<String> cids);
+
+        /**
+         * Fetches the given {@link PropertyType}s of all given cids from the PubChem property table. The cids are requested in batches of {@link #withPropertyBatchSize(int)} as csv,
+         * with at most {@link #withBatchConcurrency(int)} batches in flight, and parsed directly into the columns of the returned
+         * {@link PropertyTable}. This is much cheaper than fetching full {@link Compound} records if only a few values are needed.
+         * 
+         * @param cids
+         * @param propertyTypes
+         * @return {@link PropertyTable} with one row per known cid in the order of the given cids
+         */
+        public PropertyTable fetchProperties(Collection<String> cids, PropertyType... propertyTypes);
+
+        /**
+         * Submits a PUG REST operation which returns cids, like a structure search or an identifier conversion of many cids, and lets PubChem compute the
+         * result on the server side. The returned {@link CompletableFuture} completes with the {@link ListKey} of the result once PubChem has finished,
+         * while PubChem is still computing, the list key is polled by a scheduler without blocking a thread, see
+         * {@link #withListKeyPolling(long, long, TimeUnit)}.<br>
+         * <br>
+         * The cids of the result are fetched page by page via {@link #fetchCidPages(ListKey, int)}.
+         * 
+         * @param operationPath
+         *            url encoded path relative to the base url without output format and query, e.g. "compound/fastsimilarity_2d/cid/612/cids"
+         * @return
+         */
+        public CompletableFuture<ListKey> submitCidQuery(String operationPath);
+
+        /**
+         * Returns a lazy {@link Stream} of the cids of the given {@link ListKey} in pages of the given size, each page is requested via listkey_start and
+         * listkey_count when it is consumed. PubChem keeps a {@link ListKey} only for a limited time, a page of a {@link ListKey} which PubChem does not
+         * know anymore fails with an {@link IllegalStateException}.
+         * 
+         * @param listKey
+         * @param pageSize
+         * @return
+         */
+        public Stream<List<Long>> fetchCidPages(ListKey listKey, int pageSize);
+
+        /**
+         * Sets the initial interval in which the list keys of {@link #submitCidQuery(String)} are polled while PubChem is still computing the result. The
+         * interval doubles with each poll up to 10 seconds. If the result is not ready after the given maximum waiting time, the query fails with a
+         * {@link TimeoutException}. Default is 1 second and 10 minutes.
+         * 
+         * @param pollInterval
+         * @param maxWait
+         * @param timeUnit
+         * @return
+         */
+        public PubChemRestAccessor withListKeyPolling(long pollInterval, long maxWait, TimeUnit timeUnit);
+
+        /**
+         * Keeps the cid to parent cid edges resolved by {@link #fetchCompoundParentCidByCid(String)} and {@link #fetchCompoundParentCids(Collection)} in a
+         * {@link ParentGraph} backed by the given file, so they are not requested again, also after a restart. Without a file the edges are only kept in
+         * memory. The file is opened once per jvm, further calls with the same file share the opened {@link ParentGraph}.
+         * 
+         * @param file
+         * @return
+         */
+        public PubChemRestAccessor withParentGraph(Path file);
+
+        /**
+         * Similar to {@link #withParentGraph(Path)}, e.g. to share a {@link ParentGraph} between multiple {@link PubChemRestAccessor}s
+         * 
+         * @param parentGraph
+         * @return
+         */
+        public PubChemRestAccessor withParentGraph(ParentGraph parentGraph);
+
+        Optional<String> fetchCompoundCidByName(String compoundName);
+
+        /**
+         * Sets the {@link Executor} which runs the requests of the {@link AsyncPubChemRestAccessor} returned by {@link #async()}. If not set a bounded
+         * executor is created on first use, see {@link PubChemRestUtils#newBoundedExecutor(int)}. Batch methods which are called from a task of this
+         * {@link Executor} run their nested tasks in the calling thread, so they do not wait for threads or permits held by their callers.
+         * 
+         * @param executor
+         * @return
+         */
+        public PubChemRestAccessor withExecutor(Executor executor);
+
+        /**
+         * Returns an {@link AsyncPubChemRestAccessor} which runs the fetch methods of this {@link PubChemRestAccessor} on the configured {@link Executor}.
+         * Cache and status code handling are the same as for the synchronous methods.
+         * 
+         * @see #withExecutor(Executor)
+         * @return
+         */
+        public AsyncPubChemRestAccessor async();
+
+        /**
+         * Resolves the cids of all given compound names. The names are deduplicated and dispatched in batches of the configured size (see
+         * {@link #withNameBatchSize(int)}) on the {@link Executor} of {@link #withExecutor(Executor)}.
+         * 
+         * @param compoundNames
+         * @return {@link Map} of compound name to cid in the order of the given names
+         */
+        public Map<String, Optional<String>> fetchCompoundCidsByNames(Collection<String> compoundNames);
+
+        /**
+         * Similar to {@link #fetchCompoundCidsByNames(Collection)} but resolves the {@link Synonyms} for each compound name
+         * 
+         * @param compoundNames
+         * @return
+         */
+        public Map<String, Optional<Synonyms>> fetchSynonymsByNames(Collection<String> compoundNames);
+
+        /**
+         * Streaming variant of {@link #fetchCompoundCidsByNames(Collection)} for inputs which do not fit into memory, e.g. names read from a large file.
+         * The names are resolved on the {@link Executor} of {@link #withExecutor(Executor)} while the subscriber requests results. At most
+         * {@link #withNameBatchSize(int)} names are requested from the given {@link Flow.Publisher} which are not yet delivered to the subscriber.<br>
+         * <br>
+         * The results are emitted in the order of the names, duplicate names are resolved and emitted again. The returned {@link Flow.Publisher} supports
+         * a single subscriber.
+         * 
+         * @param compoundNames
+         * @return {@link Flow.Publisher} of compound name and cid pairs
+         */
+        public Flow.Publisher<Map.Entry<String, Optional<String>>> publishCompoundCidsByNames(Flow.Publisher<String> compoundNames);
+
+        /**
+         * Similar to {@link #publishCompoundCidsByNames(Flow.Publisher)} but resolves the {@link Synonyms} for each compound name
+         * 
+         * @param compoundNames
+         * @return
+         */
+        public Flow.Publisher<Map.Entry<String, Optional<Synonyms>>> publishSynonymsByNames(Flow.Publisher<String> compoundNames);
+
+        /**
+         * Similar to {@link #publishCompoundCidsByNames(Flow.Publisher)} but resolves the title for each cid
+         * 
+         * @param cids
+         * @return
+         */
+        public Flow.Publisher<Map.Entry<String, Optional<String>>> publishTitles(Flow.Publisher<String> cids);
+
+        /**
+         * Sets the number of compound names which are resolved concurrently by the batch methods like {@link #fetchCompoundCidsByNames(Collection)}. Default
+         * is 50.
+         * 
+         * @param nameBatchSize
+         * @return
+         */
+        public PubChemRestAccessor withNameBatchSize(int nameBatchSize);
+
+        /**
+         * Sets the base url of the PubChem REST api, e.g. for a mirror. Default is "https://pubchem.ncbi.nlm.nih.gov/rest/pug"
+         * 
+         * @param baseUrl
+         * @return
+         */
+        public PubChemRestAccessor withBaseUrl(String baseUrl);
+
+        /**
+         * Sets the {@link PubChemTransport} which executes the http requests. By default a single {@link HttpClientTransport} is created on first use and
+         * kept for the lifetime of this {@link PubChemRestAccessor}.
+         * 
+         * @param transport
+         * @return
+         */
+        public PubChemRestAccessor withTransport(PubChemTransport transport);
+
+        /**
+         * Reports the requests, retries, cache lookups and deserializations to the given {@link PubChemMetrics}, e.g. a {@link MetricsRegistry}. Without
+         * {@link PubChemMetrics} no timings are taken.
+         * 
+         * @param metrics
+         * @return
+         */
+        public PubChemRestAccessor withMetrics(PubChemMetrics metrics);
+
+        /**
+         * Limits the requests to PubChem to the given number of permits. The default follows the PubChem usage policy of 5 requests per second and 400 per
+         * minute, see {@link RateLimiter#newPubChemPolicyInstance()}. Responses served from the {@link Cache} do not need a permit.
+         * 
+         * @param permitsPerSecond
+         * @param permitsPerMinute
+         * @return
+         */
+        public PubChemRestAccessor withRateLimit(int permitsPerSecond, int permitsPerMinute);
+
+        /**
+         * Similar to {@link #withRateLimit(int, int)} but allows to share a single {@link RateLimiter} between multiple {@link PubChemRestAccessor}s
+         * 
+         * @param rateLimiter
+         * @return
+         */
+        public PubChemRestAccessor withRateLimiter(RateLimiter rateLimiter);
+
+        /**
+         * Sets the {@link RetryPolicy} for failed requests, e.g. to set a deadline per lookup via {@link RetryPolicy#withDeadline(long, TimeUnit)}.
+         * Default is {@link RetryPolicy#newInstance()}.
+         * 
+         * @param retryPolicy
+         * @return
+         */
+        public PubChemRestAccessor withRetryPolicy(RetryPolicy retryPolicy);
+
+        /**
+         * Returns the queue depth, wait time and throttling counters of the {@link RateLimiter}
+         * 
+         * @return
+         */
+        public RateLimiter.Statistics getRateLimiterStatistics();
+    }
+
+    /**
+     * Exception for unexpected status codes of the PubChem REST api. It replaces the RESTAccessExeption of the omnaest rest client, which was thrown by
+     * earlier versions.
+     * 
+     * @author omnaest
+     */
+    public static class PubChemAccessException extends RuntimeException
+    {
+        private static final long serialVersionUID = -2871958465361637217L;
+
+        private final int statusCode;
+
+        public PubChemAccessException(String url, int statusCode)
+        {
+            super("Unexpected status code " + statusCode + " for " + url);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode()
+        {
+            return this.statusCode;
+        }
+
+    }
+
+    /**
+     * Exception for a synchronous request which PubChem answers with a waiting state and a list key to poll, because the operation is long running. Such
+     * operations have to be submitted by {@link PubChemRestAccessor#submitCidQuery(String)}. The waiting state is neither cached nor answered as empty
+     * result, so it can not be mistaken for an unknown compound.
+     * 
+     * @author omnaest
+     */
+    public static class PubChemWaitingException extends RuntimeException
+    {
+        private static final long serialVersionUID = 4829915362077013958L;
+
+        private final String listKey;
+
+        public PubChemWaitingException(String url, String listKey)
+        {
+            super("PubChem answered with a waiting state and list key " + listKey + " for " + url + ", use submitCidQuery for long running queries");
+            this.listKey = listKey;
+        }
+
+        /**
+         * Returns the list key of the waiting state, which can be null if PubChem did not provide one
+         * 
+         * @return
+         */
+        public String getListKey()
+        {
+            return this.listKey;
+        }
+
+    }
+
+    /**
+     * Non blocking variant of the {@link PubChemRestAccessor}
+     * 
+     * @see PubChemRestAccessor#async()
+     * @author omnaest
+     */
+    public static interface AsyncPubChemRestAccessor
+    {
+        public CompletableFuture<Optional<Synonyms>> fetchSynonyms(String compoundName);
+
+        public CompletableFuture<Optional<Compound>> fetchCompoundByName(String compoundName);
+
+        public CompletableFuture<Optional<CidAndName>> fetchCidAndPrimaryNameByAnyName(String compoundName);
+
+        public CompletableFuture<Optional<CidAndName>> fetchCidAndPrimaryNameByAnyName(String compoundName, NameType... nameTypes);
+
+        public CompletableFuture<Optional<CidAndName>> fetchOldestCidAndPrimaryNameByAnyName(String compoundName);
+
+        public CompletableFuture<Optional<CidAndName>> fetchOldestCidAndPrimaryNameByAnyName(String compoundName, NameType... nameTypes);
+
+        public CompletableFuture<Optional<String>> fetchTitle(String cid);
+
+        public CompletableFuture<Map<String, String>> fetchTitles(String... cids);
+
+        public CompletableFuture<Map<String, String>> fetchTitles(Collection<String> cids);
+
+        public CompletableFuture<List<Description>> fetchDescriptions(Collection<String> cids);
+
+        public CompletableFuture<List<Description>> fetchDescriptions(String... cids);
+
+        public CompletableFuture<Optional<String>> fetchCompoundParentCidByCid(String cid);
+
+        public CompletableFuture<Optional<String>> fetchCompoundCidByName(String compoundName);
+
+        public CompletableFuture<Map<String, Optional<String>>> fetchCompoundCidsByNames(Collection<String> compoundNames);
+
+        public CompletableFuture<Map<String, Optional<String>>> fetchCompoundParentCids(Collection<String> cids);
 
-        public Optional<String> fetchTitle(String cid);
+        public CompletableFuture<Map<String, Optional<Synonyms>>> fetchSynonymsByNames(Collection<String> compoundNames);
 
-        public Map<String, String> fetchTitles(String... cids);
+        /**
+         * Returns the underlying synchronous {@link PubChemRestAccessor}
+         * 
+         * @return
+         */
+        public PubChemRestAccessor sync();
+    }
 
-        public Map<String, String> fetchTitles(Collection<String> cids);
+    /**
+     * Returns an {@link AsyncPubChemRestAccessor} which runs every single request on the given {@link Executor}. The batch methods split their input
+     * into batches, run each batch as a separate task and compose the results with {@link CompletableFuture#allOf(CompletableFuture...)}, so no task
+     * waits for other tasks and no thread outside of the {@link Executor} is used.
+     * 
+     * @param accessor
+     * @param executor
+     * @param descriptionBatchSize
+     * @param parentCidBatchSize
+     * @return
+     */
+    private static AsyncPubChemRestAccessor newAsyncAccessor(PubChemRestAccessor accessor, Executor executor, IntSupplier descriptionBatchSize,
+                                                             IntSupplier parentCidBatchSize)
+    {
+        return new AsyncPubChemRestAccessor()
+        {
+            @Override
+            public CompletableFuture<Optional<Synonyms>> fetchSynonyms(String compoundName)
+            {
+                return CompletableFuture.supplyAsync(() -> accessor.fetchSynonyms(compoundName), executor);
+            }
 
-        public Stream<Description> fetchDescriptions(Collection<String> cids);
+            @Override
+            public CompletableFuture<Optional<Compound>> fetchCompoundByName(String compoundName)
+            {
+                return CompletableFuture.supplyAsync(() -> accessor.fetchCompoundByName(compoundName), executor);
+            }
 
-        public Stream<Description> fetchDescriptions(String... cid);
+            @Override
+            public CompletableFuture<Optional<CidAndName>> fetchCidAndPrimaryNameByAnyName(String compoundName)
+            {
+                return CompletableFuture.supplyAsync(() -> accessor.fetchCidAndPrimaryNameByAnyName(compoundName), executor);
+            }
 
-        Optional<CidAndName> fetchCidAndPrimaryNameByAnyName(String compoundName, NameType... nameTypes);
+            @Override
+            public CompletableFuture<Optional<CidAndName>> fetchCidAndPrimaryNameByAnyName(String compoundName, NameType... nameTypes)
+            {
+                return CompletableFuture.supplyAsync(() -> accessor.fetchCidAndPrimaryNameByAnyName(compoundName, nameTypes), executor);
+            }
 
-        Optional<CidAndName> fetchOldestCidAndPrimaryNameByAnyName(String compoundName, NameType... nameTypes);
+            @Override
+            public CompletableFuture<Optional<CidAndName>> fetchOldestCidAndPrimaryNameByAnyName(String compoundName)
+            {
+                return CompletableFuture.supplyAsync(() -> accessor.fetchOldestCidAndPrimaryNameByAnyName(compoundName), executor);
+            }
 
-        Optional<String> fetchCompoundParentCidByCid(String cid);
+            @Override
+            public CompletableFuture<Optional<CidAndName>> fetchOldestCidAndPrimaryNameByAnyName(String compoundName, NameType... nameTypes)
+            {
+                return CompletableFuture.supplyAsync(() -> accessor.fetchOldestCidAndPrimaryNameByAnyName(compoundName, nameTypes), executor);
+            }
 
-        Optional<String> fetchCompoundCidByName(String compoundName);
+            @Override
+            public CompletableFuture<Optional<String>> fetchTitle(String cid)
+            {
+                return CompletableFuture.supplyAsync(() -> accessor.fetchTitle(cid), executor);
+            }
+
+            @Override
+            public CompletableFuture<Map<String, String>> fetchTitles(String... cids)
+            {
+                return this.fetchTitles(Arrays.asList(cids));
+            }
+
+            /*
+             * a single batch is processed by the accessor in the calling task, the executor runs the nested tasks of the accessor inline, see
+             * ReentrantExecutor
+             */
+            @Override
+            public CompletableFuture<Map<String, String>> fetchTitles(Collection<String> cids)
+            {
+                return this.supplyBatches(cids, descriptionBatchSize.getAsInt(), accessor::fetchTitles)
+                           .thenApply(titlesByBatch ->
+                           {
+                               Map<String, String> titles = new HashMap<>();
+                               titlesByBatch.values()
+                                            .forEach(titles::putAll);
+                               return titles;
+                           });
+            }
+
+            @Override
+            public CompletableFuture<List<Description>> fetchDescriptions(Collection<String> cids)
+            {
+                return this.supplyBatches(cids, descriptionBatchSize.getAsInt(), cidBatch -> accessor.fetchDescriptions(cidBatch)
+                                                                                          .collect(Collectors.toList()))
+                           .thenApply(descriptionsByBatch -> descriptionsByBatch.values()
+                                                                                .stream()
+                                                                                .flatMap(List::stream)
+                                                                                .collect(Collectors.toList()));
+            }
+
+            @Override
+            public CompletableFuture<List<Description>> fetchDescriptions(String... cids)
+            {
+                return this.fetchDescriptions(Arrays.asList(cids));
+            }
+
+            @Override
+            public CompletableFuture<Optional<String>> fetchCompoundParentCidByCid(String cid)
+            {
+                return CompletableFuture.supplyAsync(() -> accessor.fetchCompoundParentCidByCid(cid), executor);
+            }
+
+            @Override
+            public CompletableFuture<Optional<String>> fetchCompoundCidByName(String compoundName)
+            {
+                return CompletableFuture.supplyAsync(() -> accessor.fetchCompoundCidByName(compoundName), executor);
+            }
+
+            @Override
+            public CompletableFuture<Map<String, Optional<String>>> fetchCompoundCidsByNames(Collection<String> compoundNames)
+            {
+                return this.supplyBatches(compoundNames, 1, nameBatch -> accessor.fetchCompoundCidByName(nameBatch.get(0)))
+                           .thenApply(cidsByBatch -> this.toMapByName(cidsByBatch));
+            }
+
+            @Override
+            public CompletableFuture<Map<String, Optional<Synonyms>>> fetchSynonymsByNames(Collection<String> compoundNames)
+            {
+                return this.supplyBatches(compoundNames, 1, nameBatch -> accessor.fetchSynonyms(nameBatch.get(0)))
+                           .thenApply(synonymsByBatch -> this.toMapByName(synonymsByBatch));
+            }
+
+            @Override
+            public CompletableFuture<Map<String, Optional<String>>> fetchCompoundParentCids(Collection<String> cids)
+            {
+                return this.supplyBatches(cids, parentCidBatchSize.getAsInt(), accessor::fetchCompoundParentCids)
+                           .thenApply(parentCidsByBatch ->
+                           {
+                               Map<String, Optional<String>> parentCids = new LinkedHashMap<>();
+                               parentCidsByBatch.values()
+                                                .forEach(parentCids::putAll);
+                               return parentCids;
+                           });
+            }
+
+            /**
+             * Runs the given function for each batch of the distinct keys as a separate task on the {@link Executor} and completes with the results of
+             * all batches in the order of the keys
+             * 
+             * @param keys
+             * @param batchSize
+             * @param batchFunction
+             * @return
+             */
+            private <R> CompletableFuture<Map<List<String>, R>> supplyBatches(Collection<String> keys, int batchSize, Function<List<String>, R> batchFunction)
+            {
+                Map<List<String>, CompletableFuture<R>> futures = new LinkedHashMap<>();
+                StreamUtils.framedNonNullAsList(batchSize, Optional.ofNullable(keys)
+                                                                   .orElse(Collections.emptyList())
+                                                                   .stream()
+                                                                   .filter(key -> key != null)
+                                                                   .distinct())
+                           .forEach(batch -> futures.put(batch, CompletableFuture.supplyAsync(() -> batchFunction.apply(batch), executor)));
+                return CompletableFuture.allOf(futures.values()
+                                                      .toArray(new CompletableFuture[futures.size()]))
+                                        .thenApply(done ->
+                                        {
+                                            Map<List<String>, R> results = new LinkedHashMap<>();
+                                            futures.forEach((batch, future) -> results.put(batch, future.join()));
+                                            return results;
+                                        });
+            }
+
+            private <R> Map<String, R> toMapByName(Map<List<String>, R> resultsByNameBatch)
+            {
+                Map<String, R> result = new LinkedHashMap<>();
+                resultsByNameBatch.forEach((nameBatch, value) -> result.put(nameBatch.get(0), value));
+                return result;
+            }
+
+            @Override
+            public PubChemRestAccessor sync()
+            {
+                return accessor;
+            }
+        };
+    }
+
+    /**
+     * Returns the cid and primary name of the first entry, with the following entries as chain of parents. The chain is built iteratively from the last
+     * entry backwards.
+     * 
+     * @param entries
+     * @param nameTypes
+     * @return
+     */
+    static Optional<CidAndName> determineCidAndPrimaryName(List<CompoundEntry> entries, NameType... nameTypes)
+    {
+        int[] priorities = determineNameTypePriorities(nameTypes);
+        Optional<CidAndName> result = Optional.empty();
+        ListIterator<CompoundEntry> iterator = entries.listIterator(entries.size());
+        while (iterator.hasPrevious())
+        {
+            result = extractCidAndPrimaryName(iterator.previous(), result, priorities);
+        }
+        return result;
+    }
+
+    private static Optional<CidAndName> extractCidAndPrimaryName(CompoundEntry entry, Optional<CidAndName> parent, int[] priorities)
+    {
+        if (entry.getId() == null || entry.getId()
+                                          .getId() == null)
+        {
+            return Optional.empty();
+        }
+        String cid = String.valueOf(entry.getId()
+                                         .getId()
+                                         .getCid());
+        return Optional.of(new CidAndName(cid, determinePrimaryName(entry, priorities), parent));
+    }
+
+    /**
+     * Selects the IUPAC name with the highest priority in a single pass. On equal priority the first property wins.
+     * 
+     * @param entry
+     * @param priorities
+     * @return
+     */
+    private static String determinePrimaryName(CompoundEntry entry, int[] priorities)
+    {
+        List<CompoundProperty> properties = entry.getProps();
+        if (properties == null)
+        {
+            return null;
+        }
+
+        CompoundProperty bestProperty = null;
+        int bestPriority = Integer.MAX_VALUE;
+        for (CompoundProperty property : properties)
+        {
+            Urn urn = property != null ? property.getUrn() : null;
+            if (urn != null && StringUtils.equalsIgnoreCase("IUPAC Name", urn.getLabel()))
+            {
+                int priority = determineNameTypePriority(urn.getName(), priorities);
+                if (priority < bestPriority)
+                {
+                    bestProperty = property;
+                    bestPriority = priority;
+                }
+            }
+        }
+        return bestProperty != null && bestProperty.getValue() != null ? bestProperty.getValue()
+                                                                                     .getSval()
+                : null;
+    }
+
+    /**
+     * Returns the priority of each {@link NameType} indexed by its ordinal, which is the index of its first occurrence within the given {@link NameType}s.
+     * {@link NameType}s which are not given get {@link Integer#MAX_VALUE}.
+     * 
+     * @param nameTypes
+     * @return
+     */
+    private static int[] determineNameTypePriorities(NameType... nameTypes)
+    {
+        int[] priorities = new int[NAME_TYPES.length];
+        Arrays.fill(priorities, Integer.MAX_VALUE);
+        for (int ii = nameTypes.length - 1; ii >= 0; ii--)
+        {
+            priorities[nameTypes[ii].ordinal()] = ii;
+        }
+        return priorities;
+    }
+
+    private static int determineNameTypePriority(String identifier, int[] priorities)
+    {
+        for (NameType nameType : NAME_TYPES)
+        {
+            if (nameType.matches(identifier))
+            {
+                return priorities[nameType.ordinal()];
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    @FunctionalInterface
+    private static interface JsonParserFunction<T>
+    {
+        public T apply(JsonParser parser) throws IOException;
+    }
+
+    /**
+     * Returns the PubChem REST operation of the given url without its identifiers, e.g. "compound/name/synonyms" for
+     * "{baseUrl}/compound/name/lactate/synonyms/JSON". PubChem REST urls have the form "{domain}/{namespace}/{identifiers}/{operation}/{output}".
+     * 
+     * @param baseUrl
+     * @param url
+     * @return
+     */
+    static String determineEndpoint(String baseUrl, String url)
+    {
+        String path = StringUtils.substringBefore(StringUtils.substringBefore(StringUtils.removeStart(url, baseUrl), "#"), "?");
+        String[] tokens = StringUtils.split(path, '/');
+        if (tokens.length < 2)
+        {
+            return StringUtils.join(tokens, '/');
+        }
+
+        String endpoint = tokens[0] + "/" + tokens[1];
+        boolean hasOperation = tokens.length > 4;
+        return hasOperation ? endpoint + "/" + tokens[3] : endpoint;
+    }
+
+    private static JsonNode readJson(byte[] body)
+    {
+        try
+        {
+            return OBJECT_MAPPER.readTree(body);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to parse PubChem response", e);
+        }
+    }
+
+    private static <T> T parseJson(byte[] body, JsonParserFunction<T> parserFunction)
+    {
+        try
+        {
+            return parseJson(OBJECT_MAPPER.getFactory()
+                                          .createParser(body),
+                             parserFunction);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to parse PubChem response", e);
+        }
+    }
+
+    private static <T> T parseJson(JsonParser parser, JsonParserFunction<T> parserFunction)
+    {
+        try (JsonParser closeableParser = parser)
+        {
+            return parserFunction.apply(closeableParser);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to parse PubChem response", e);
+        }
+    }
+
+    /**
+     * Parses a PC_Compounds response token by token and keeps only the cid and the IUPAC name properties of each entry. All other fields like atoms, bonds
+     * and coordinates are skipped without being materialized.
+     * 
+     * @param parser
+     * @return
+     * @throws IOException
+     */
+    static List<CompoundEntry> parseCompoundNameEntries(JsonParser parser) throws IOException
+    {
+        List<CompoundEntry> entries = new ArrayList<>();
+        if (parser.nextToken() != JsonToken.START_OBJECT)
+        {
+            return entries;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            String fieldName = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && "PC_Compounds".equals(fieldName))
+            {
+                while (parser.nextToken() == JsonToken.START_OBJECT)
+                {
+                    entries.add(parseCompoundNameEntry(parser));
+                }
+            }
+            else
+            {
+                parser.skipChildren();
+            }
+        }
+        return entries;
+    }
+
+    private static CompoundEntry parseCompoundNameEntry(JsonParser parser) throws IOException
+    {
+        CompoundEntry entry = new CompoundEntry();
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT && "id".equals(fieldName))
+            {
+                entry.id = new OuterId();
+                while (parser.nextToken() == JsonToken.FIELD_NAME)
+                {
+                    String idFieldName = parser.getCurrentName();
+                    if (parser.nextToken() == JsonToken.START_OBJECT && "id".equals(idFieldName))
+                    {
+                        entry.id.id = new InnerId();
+                        while (parser.nextToken() == JsonToken.FIELD_NAME)
+                        {
+                            String innerIdFieldName = parser.getCurrentName();
+                            if (parser.nextToken()
+                                      .isNumeric()
+                                    && "cid".equals(innerIdFieldName))
+                            {
+                                entry.id.id.cid = parser.getLongValue();
+                            }
+                            else
+                            {
+                                parser.skipChildren();
+                            }
+                        }
+                    }
+                    else
+                    {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            else if (token == JsonToken.START_ARRAY && "props".equals(fieldName))
+            {
+                entry.props = new ArrayList<>();
+                while (parser.nextToken() == JsonToken.START_OBJECT)
+                {
+                    CompoundProperty property = parseCompoundNameProperty(parser);
+                    if (property != null)
+                    {
+                        entry.props.add(property);
+                    }
+                }
+            }
+            else
+            {
+                parser.skipChildren();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the property if it is an IUPAC name, otherwise null
+     * 
+     * @param parser
+     * @return
+     * @throws IOException
+     */
+    private static CompoundProperty parseCompoundNameProperty(JsonParser parser) throws IOException
+    {
+        CompoundProperty property = new CompoundProperty();
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT && "urn".equals(fieldName))
+            {
+                property.urn = new Urn();
+                while (parser.nextToken() == JsonToken.FIELD_NAME)
+                {
+                    String urnFieldName = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("label".equals(urnFieldName))
+                    {
+                        property.urn.label = parser.getValueAsString();
+                    }
+                    else if ("name".equals(urnFieldName))
+                    {
+                        property.urn.name = parser.getValueAsString();
+                    }
+                    else
+                    {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            else if (token == JsonToken.START_OBJECT && "value".equals(fieldName))
+            {
+                property.value = new Value();
+                while (parser.nextToken() == JsonToken.FIELD_NAME)
+                {
+                    String valueFieldName = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("sval".equals(valueFieldName))
+                    {
+                        property.value.sval = parser.getValueAsString();
+                    }
+                    else
+                    {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            else
+            {
+                parser.skipChildren();
+            }
+        }
+        boolean isIupacName = property.urn != null && StringUtils.equalsIgnoreCase("IUPAC Name", property.urn.label);
+        return isIupacName ? property : null;
+    }
+
+    private static Optional<String> toParentCid(long parentCid)
+    {
+        return parentCid > 0 ? Optional.of(String.valueOf(parentCid)) : Optional.empty();
+    }
+
+    private static Optional<Long> parseCid(String cid)
+    {
+        return Optional.ofNullable(cid)
+                       .filter(StringUtils::isNumeric)
+                       .map(Long::valueOf);
+    }
+
+    private static void sleep(long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread()
+                  .interrupt();
+            throw new IllegalStateException("Interrupted while waiting for retry", e);
+        }
+    }
+
+    private static <R> R join(CompletableFuture<R> future)
+    {
+        try
+        {
+            return future.join();
+        }
+        catch (CompletionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns an {@link Executor} which runs at most the given number of tasks concurrently. On JDK 21+ every task gets its own virtual thread, on older
+     * runtimes a fixed pool of daemon threads is used.
+     * 
+     * @param maxConcurrency
+     * @return
+     */
+    public static Executor newBoundedExecutor(int maxConcurrency)
+    {
+        if (maxConcurrency <= 0)
+        {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+
+        Optional<ExecutorService> virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+        if (virtualThreadExecutor.isPresent())
+        {
+            Semaphore permits = new Semaphore(maxConcurrency);
+            ExecutorService delegate = virtualThreadExecutor.get();
+            return command -> delegate.execute(() ->
+            {
+                permits.acquireUninterruptibly();
+                try
+                {
+                    command.run();
+                }
+                finally
+                {
+                    permits.release();
+                }
+            });
+        }
+        else
+        {
+            return Executors.newFixedThreadPool(maxConcurrency, runnable ->
+            {
+                Thread thread = new Thread(runnable, "pubchem-async");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static Optional<ExecutorService> newVirtualThreadPerTaskExecutor()
+    {
+        try
+        {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                                                                .invoke(null));
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Order of the results of the batched fetch methods
+     * 
+     * @author omnaest
+     */
+    public static enum ResultOrder
+    {
+        /**
+         * Results are in the order of the given input
+         */
+        INPUT,
+
+        /**
+         * Results are returned as soon as their batch completes
+         */
+        COMPLETION
     }
 
     public static enum NameType
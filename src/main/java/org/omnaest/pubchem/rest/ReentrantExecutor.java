@@ -0,0 +1,71 @@
+package org.omnaest.pubchem.rest;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link Executor} which runs a task directly in the calling thread, if this thread already runs a task of the same underlying {@link Executor}.<br>
+ * <br>
+ * The batch methods of an accessor split their work into tasks on the {@link Executor} and join them. If such a method is called from a task of the
+ * same bounded {@link Executor}, e.g. by the {@link PubChemRestUtils.AsyncPubChemRestAccessor}, the nested tasks would wait for threads or permits which
+ * are held by the joining tasks themselves. Running them inline avoids this deadlock independent of the batch sizes.
+ *
+ * @author omnaest
+ */
+class ReentrantExecutor implements Executor
+{
+    private static final ThreadLocal<Set<Executor>> RUNNING_EXECUTORS = ThreadLocal.withInitial(() -> Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    private final Executor delegate;
+
+    protected ReentrantExecutor(Executor delegate)
+    {
+        super();
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns a {@link ReentrantExecutor} for the given {@link Executor}, or the given {@link Executor} if it is null or already a
+     * {@link ReentrantExecutor}
+     *
+     * @param executor
+     * @return
+     */
+    public static Executor wrap(Executor executor)
+    {
+        return executor == null || executor instanceof ReentrantExecutor ? executor : new ReentrantExecutor(executor);
+    }
+
+    @Override
+    public void execute(Runnable command)
+    {
+        if (RUNNING_EXECUTORS.get()
+                             .contains(this.delegate))
+        {
+            command.run();
+        }
+        else
+        {
+            this.delegate.execute(() -> this.runMarked(command));
+        }
+    }
+
+    private void runMarked(Runnable command)
+    {
+        Set<Executor> runningExecutors = RUNNING_EXECUTORS.get();
+        boolean marked = runningExecutors.add(this.delegate);
+        try
+        {
+            command.run();
+        }
+        finally
+        {
+            if (marked)
+            {
+                runningExecutors.remove(this.delegate);
+            }
+        }
+    }
+}
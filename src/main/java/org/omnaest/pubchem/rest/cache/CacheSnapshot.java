@@ -0,0 +1,158 @@
+package org.omnaest.pubchem.rest.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.omnaest.utils.cache.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Exports all entries of a {@link Cache} into a single gzip compressed snapshot file and imports them into another {@link Cache}, e.g. to start a new
+ * node with the cached PubChem responses of another one.<br>
+ * <br>
+ * The snapshot is a sequence of records of key, type and json value, each preceded by a marker byte, and ends with a zero marker byte. Since a snapshot
+ * is copied between nodes, the type of a record is not trusted on import: only {@link String}, {@link Long} and the types of the
+ * org.omnaest.pubchem.rest.domain package are deserialized as such, all other values are imported as {@link JsonNode}.
+ *
+ * @author omnaest
+ */
+public class CacheSnapshot
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CacheSnapshot.class);
+
+    private static final int MAGIC   = 0x50435353;
+    private static final int VERSION = 1;
+
+    private static final String DOMAIN_PACKAGE_PREFIX = "org.omnaest.pubchem.rest.domain.";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Writes all entries of the given {@link Cache} into the given file, except expired entries of a {@link NegativeCache}. The file is written to a
+     * temporary file first and replaced atomically.
+     *
+     * @param cache
+     * @param file
+     * @return number of exported entries
+     */
+    public static int exportTo(Cache cache, Path file)
+    {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        int count = 0;
+        long now = System.currentTimeMillis();
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temporaryFile),
+                                                                                                                1 << 16))))
+        {
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(VERSION);
+            for (String key : cache.keySet())
+            {
+                Class<Object> type = cache.getType(key);
+                Object value = type != null ? cache.get(key, type) : null;
+                if (value != null && !NegativeCache.isExpiredEntry(key, value, now))
+                {
+                    byte[] json = OBJECT_MAPPER.writeValueAsBytes(value);
+                    outputStream.writeBoolean(true);
+                    outputStream.writeUTF(key);
+                    outputStream.writeUTF(type.getName());
+                    outputStream.writeInt(json.length);
+                    outputStream.write(json);
+                    count++;
+                }
+            }
+            outputStream.writeBoolean(false);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to export cache snapshot " + file, e);
+        }
+
+        try
+        {
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to export cache snapshot " + file, e);
+        }
+        LOG.info("Exported " + count + " cache entries to " + file);
+        return count;
+    }
+
+    /**
+     * Puts all entries of the given snapshot file into the given {@link Cache}. Entries of types which are not allowed, see the class description, or
+     * not on the classpath are imported as {@link JsonNode}.
+     *
+     * @param file
+     * @param cache
+     * @return number of imported entries
+     */
+    public static int importFrom(Path file, Cache cache)
+    {
+        int count = 0;
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), 1 << 16))))
+        {
+            if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION)
+            {
+                throw new IOException("Not a cache snapshot of a supported version: " + file);
+            }
+            while (inputStream.readBoolean())
+            {
+                String key = inputStream.readUTF();
+                String typeName = inputStream.readUTF();
+                byte[] json = new byte[inputStream.readInt()];
+                inputStream.readFully(json);
+                cache.put(key, OBJECT_MAPPER.readValue(json, resolveType(typeName)));
+                count++;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to import cache snapshot " + file, e);
+        }
+        LOG.info("Imported " + count + " cache entries from " + file);
+        return count;
+    }
+
+    private static Class<?> resolveType(String typeName)
+    {
+        if (String.class.getName()
+                        .equals(typeName))
+        {
+            return String.class;
+        }
+        else if (Long.class.getName()
+                           .equals(typeName))
+        {
+            return Long.class;
+        }
+        else if (typeName.startsWith(DOMAIN_PACKAGE_PREFIX))
+        {
+            try
+            {
+                return Class.forName(typeName, false, CacheSnapshot.class.getClassLoader());
+            }
+            catch (ClassNotFoundException e)
+            {
+                return JsonNode.class;
+            }
+        }
+        else
+        {
+            return JsonNode.class;
+        }
+    }
+}
@@ -0,0 +1,697 @@
+package org.omnaest.pubchem.rest.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.omnaest.utils.cache.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * {@link Cache} which stores all entries in a single append only log file instead of one file per key. Values are serialized as json and deflate
+ * compressed, the keys and the file positions of their latest values are held in an in memory index which is rebuilt from the log on
+ * {@link #open(Path)}.<br>
+ * <br>
+ * Overwritten and removed entries leave garbage in the log, which is removed by {@link #compact()}. Compaction runs automatically if the garbage
+ * exceeds the live data and {@value #AUTO_COMPACTION_MIN_GARBAGE_BYTES} bytes.<br>
+ * <br>
+ * Concurrent readers do not block each other, writers are serialized. A truncated or corrupt record at the end of the log, e.g. after a crash, is
+ * discarded on {@link #open(Path)}. A corrupt record within the log is skipped and removed by the next compaction, the records after it are kept.<br>
+ * <br>
+ * The log file is locked exclusively by a sibling ".lock" file while it is open, so a second {@link LogFileCache} on the same file, in this or another
+ * process, fails to open instead of appending to the same log.<br>
+ * <br>
+ * Record layout: int length, byte operation, short key length, key, short type length, type, int value length, value, int crc32
+ *
+ * @author omnaest
+ */
+public class LogFileCache implements Cache, Closeable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(LogFileCache.class);
+
+    private static final int  MAGIC                             = 0x50434C47;
+    private static final int  VERSION                           = 1;
+    private static final int  HEADER_SIZE                       = 8;
+    private static final byte OPERATION_PUT                     = 1;
+    private static final byte OPERATION_REMOVE                  = 2;
+    private static final long AUTO_COMPACTION_MIN_GARBAGE_BYTES = 16 * 1024 * 1024;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Path                    file;
+    private final Map<String, IndexEntry> index = new ConcurrentHashMap<>();
+    private final ReadWriteLock           lock  = new ReentrantReadWriteLock();
+
+    private FileChannel lockChannel;
+    private FileLock    fileLock;
+    private FileChannel channel;
+    private long        writePosition = 0;
+    private long        liveBytes     = 0;
+    private long        garbageBytes  = 0;
+
+    protected LogFileCache(Path file)
+    {
+        super();
+        this.file = file;
+    }
+
+    /**
+     * Opens the log file or creates it if it does not exist
+     *
+     * @param file
+     * @return
+     * @throws IllegalStateException
+     *             if the log file is already opened by another {@link LogFileCache}
+     */
+    public static LogFileCache open(Path file)
+    {
+        LogFileCache cache = new LogFileCache(file);
+        try
+        {
+            cache.lock();
+            cache.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            cache.load();
+        }
+        catch (IOException e)
+        {
+            cache.closeQuietly();
+            throw new UncheckedIOException("Failed to open cache file " + file, e);
+        }
+        return cache;
+    }
+
+    private void lock() throws IOException
+    {
+        Path lockFile = this.file.resolveSibling(this.file.getFileName() + ".lock");
+        this.lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try
+        {
+            this.fileLock = this.lockChannel.tryLock();
+        }
+        catch (OverlappingFileLockException e)
+        {
+            this.fileLock = null;
+        }
+        if (this.fileLock == null)
+        {
+            this.closeQuietly();
+            throw new IllegalStateException("Cache file " + this.file + " is already opened by another LogFileCache");
+        }
+    }
+
+    private void load() throws IOException
+    {
+        if (this.channel.size() == 0)
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                                          .putInt(MAGIC)
+                                          .putInt(VERSION);
+            header.flip();
+            this.writeFully(header, 0);
+            this.writePosition = HEADER_SIZE;
+            return;
+        }
+
+        ByteBuffer header = this.readFully(0, HEADER_SIZE);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION)
+        {
+            throw new IOException("Not a cache file of a supported version: " + this.file);
+        }
+
+        long size = this.channel.size();
+        long position = HEADER_SIZE;
+        while (position + 4 <= size)
+        {
+            int recordLength = this.readFully(position, 4)
+                                   .getInt();
+            if (position + 4 + recordLength > size)
+            {
+                break;
+            }
+            if (recordLength <= 4)
+            {
+                if (this.isZeroFilled(position, size))
+                {
+                    break;
+                }
+                throw new IOException("Corrupt record length " + recordLength + " at position " + position + " of cache file " + this.file);
+            }
+
+            long totalLength = 4L + recordLength;
+            ByteBuffer record = this.readFully(position + 4, recordLength);
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), 0, recordLength - 4);
+            if ((int) crc.getValue() != record.getInt(recordLength - 4))
+            {
+                if (position + totalLength == size)
+                {
+                    break;
+                }
+                LOG.warn("Skipping corrupt record at position " + position + " of cache file " + this.file);
+                this.garbageBytes += totalLength;
+                position += totalLength;
+                continue;
+            }
+
+            byte operation = record.get();
+            String key = readString(record);
+            String type = readString(record);
+            int valueLength = record.getInt();
+            long valueOffset = position + 4 + record.position();
+            if (operation == OPERATION_PUT)
+            {
+                this.index(key, new IndexEntry(type, valueOffset, valueLength, totalLength));
+            }
+            else
+            {
+                this.unindex(key);
+                this.garbageBytes += totalLength;
+            }
+            position += totalLength;
+        }
+
+        if (position < size)
+        {
+            LOG.warn("Discarding " + (size - position) + " bytes of an incomplete record at the end of cache file " + this.file);
+            this.channel.truncate(position);
+        }
+        this.writePosition = position;
+    }
+
+    private boolean isZeroFilled(long position, long size) throws IOException
+    {
+        for (long offset = position; offset < size; offset += 64 * 1024)
+        {
+            ByteBuffer buffer = this.readFully(offset, (int) Math.min(64 * 1024, size - offset));
+            while (buffer.hasRemaining())
+            {
+                if (buffer.get() != 0)
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public <V> V get(String key, Class<V> type)
+    {
+        byte[] value = this.readValue(key);
+        return value != null ? deserialize(value, type) : null;
+    }
+
+    @Override
+    public <V> V computeIfAbsent(String key, Supplier<V> supplier, Class<V> type)
+    {
+        V value = this.get(key, type);
+        if (value == null)
+        {
+            value = supplier.get();
+            if (value != null)
+            {
+                this.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public void put(String key, Object value)
+    {
+        if (value == null)
+        {
+            this.remove(key);
+            return;
+        }
+
+        byte[] compressedValue = compress(serialize(value));
+        ByteBuffer record = createRecord(OPERATION_PUT, key, value.getClass()
+                                                                  .getName(),
+                                         compressedValue);
+        this.lock.writeLock()
+                 .lock();
+        try
+        {
+            long position = this.append(record);
+            long valueOffset = position + record.limit() - 4 - compressedValue.length;
+            this.index(key, new IndexEntry(value.getClass()
+                                                .getName(),
+                                           valueOffset, compressedValue.length, record.limit()));
+            this.compactIfNecessary();
+        }
+        finally
+        {
+            this.lock.writeLock()
+                     .unlock();
+        }
+    }
+
+    @Override
+    public Set<String> keySet()
+    {
+        return Collections.unmodifiableSet(new HashSet<>(this.index.keySet()));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <V> Class<V> getType(String key)
+    {
+        IndexEntry entry = this.index.get(key);
+        if (entry == null)
+        {
+            return null;
+        }
+        try
+        {
+            return (Class<V>) Class.forName(entry.getType());
+        }
+        catch (ClassNotFoundException e)
+        {
+            return null;
+        }
+    }
+
+    @Override
+    public void remove(String key)
+    {
+        this.lock.writeLock()
+                 .lock();
+        try
+        {
+            if (this.index.containsKey(key))
+            {
+                ByteBuffer record = createRecord(OPERATION_REMOVE, key, "", new byte[0]);
+                this.append(record);
+                this.unindex(key);
+                this.garbageBytes += record.limit();
+                this.compactIfNecessary();
+            }
+        }
+        finally
+        {
+            this.lock.writeLock()
+                     .unlock();
+        }
+    }
+
+    public int size()
+    {
+        return this.index.size();
+    }
+
+    /**
+     * Returns the current size of the log file in bytes
+     *
+     * @return
+     */
+    public long getFileSize()
+    {
+        this.lock.readLock()
+                 .lock();
+        try
+        {
+            return this.writePosition;
+        }
+        finally
+        {
+            this.lock.readLock()
+                     .unlock();
+        }
+    }
+
+    /**
+     * Rewrites the log file with only the latest value of each key. Expired entries of a {@link NegativeCache} are removed. Readers and writers are
+     * blocked during the compaction.
+     */
+    public void compact()
+    {
+        this.lock.writeLock()
+                 .lock();
+        try
+        {
+            Path compactedFile = this.file.resolveSibling(this.file.getFileName() + ".compact");
+            Map<String, IndexEntry> compactedIndex = new ConcurrentHashMap<>();
+            long now = System.currentTimeMillis();
+            long position = HEADER_SIZE;
+            try (FileChannel compactedChannel = FileChannel.open(compactedFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                                                 StandardOpenOption.WRITE))
+            {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                                              .putInt(MAGIC)
+                                              .putInt(VERSION);
+                header.flip();
+                writeFully(compactedChannel, header, 0);
+                for (Map.Entry<String, IndexEntry> keyAndEntry : this.index.entrySet())
+                {
+                    IndexEntry entry = keyAndEntry.getValue();
+                    byte[] value = this.readFully(entry.getValueOffset(), entry.getValueLength())
+                                       .array();
+                    if (isExpiredNegativeEntry(keyAndEntry.getKey(), value, now))
+                    {
+                        continue;
+                    }
+                    ByteBuffer record = createRecord(OPERATION_PUT, keyAndEntry.getKey(), entry.getType(), value);
+                    writeFully(compactedChannel, record, position);
+                    compactedIndex.put(keyAndEntry.getKey(), new IndexEntry(entry.getType(), position + record.limit() - 4 - value.length, value.length,
+                                                                            record.limit()));
+                    position += record.limit();
+                }
+                compactedChannel.force(true);
+            }
+
+            boolean moved = false;
+            this.channel.close();
+            try
+            {
+                Files.move(compactedFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                moved = true;
+            }
+            finally
+            {
+                this.channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                if (!moved)
+                {
+                    Files.deleteIfExists(compactedFile);
+                }
+            }
+
+            LOG.debug("Compacted cache file " + this.file + " from " + this.writePosition + " to " + position + " bytes");
+            this.index.clear();
+            this.index.putAll(compactedIndex);
+            this.writePosition = position;
+            this.liveBytes = position - HEADER_SIZE;
+            this.garbageBytes = 0;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to compact cache file " + this.file, e);
+        }
+        finally
+        {
+            this.lock.writeLock()
+                     .unlock();
+        }
+    }
+
+    /**
+     * Forces all written entries to the storage device
+     */
+    public void flush()
+    {
+        try
+        {
+            this.channel.force(false);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to flush cache file " + this.file, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.lock.writeLock()
+                 .lock();
+        try
+        {
+            this.channel.close();
+        }
+        finally
+        {
+            this.closeQuietly();
+            this.lock.writeLock()
+                     .unlock();
+        }
+    }
+
+    private static boolean isExpiredNegativeEntry(String key, byte[] compressedValue, long now)
+    {
+        if (!key.startsWith(NegativeCache.KEY_PREFIX))
+        {
+            return false;
+        }
+        Long expiresAt;
+        try
+        {
+            expiresAt = deserialize(compressedValue, Long.class);
+        }
+        catch (RuntimeException e)
+        {
+            expiresAt = null;
+        }
+        return NegativeCache.isExpiredEntry(key, expiresAt, now);
+    }
+
+    private void compactIfNecessary()
+    {
+        if (this.garbageBytes > AUTO_COMPACTION_MIN_GARBAGE_BYTES && this.garbageBytes > this.liveBytes)
+        {
+            this.compact();
+        }
+    }
+
+    private void index(String key, IndexEntry entry)
+    {
+        this.unindex(key);
+        this.index.put(key, entry);
+        this.liveBytes += entry.getRecordLength();
+    }
+
+    private void unindex(String key)
+    {
+        IndexEntry previousEntry = this.index.remove(key);
+        if (previousEntry != null)
+        {
+            this.liveBytes -= previousEntry.getRecordLength();
+            this.garbageBytes += previousEntry.getRecordLength();
+        }
+    }
+
+    private byte[] readValue(String key)
+    {
+        this.lock.readLock()
+                 .lock();
+        try
+        {
+            IndexEntry entry = this.index.get(key);
+            return entry != null ? this.readFully(entry.getValueOffset(), entry.getValueLength())
+                                       .array()
+                    : null;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to read " + key + " from cache file " + this.file, e);
+        }
+        finally
+        {
+            this.lock.readLock()
+                     .unlock();
+        }
+    }
+
+    private long append(ByteBuffer record)
+    {
+        try
+        {
+            long position = this.writePosition;
+            this.writeFully(record, position);
+            this.writePosition += record.limit();
+            return position;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to write to cache file " + this.file, e);
+        }
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining())
+        {
+            if (this.channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new IOException("Unexpected end of cache file " + this.file);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException
+    {
+        writeFully(this.channel, buffer, position);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        long offset = position;
+        while (buffer.hasRemaining())
+        {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    private static ByteBuffer createRecord(byte operation, String key, String type, byte[] value)
+    {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > 0xFFFF || typeBytes.length > 0xFFFF)
+        {
+            throw new IllegalArgumentException("Key and type must not exceed 65535 bytes: " + key);
+        }
+        int recordLength = 1 + 2 + keyBytes.length + 2 + typeBytes.length + 4 + value.length + 4;
+        ByteBuffer record = ByteBuffer.allocate(4 + recordLength);
+        record.putInt(recordLength)
+              .put(operation)
+              .putShort((short) keyBytes.length)
+              .put(keyBytes)
+              .putShort((short) typeBytes.length)
+              .put(typeBytes)
+              .putInt(value.length)
+              .put(value);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, recordLength - 4);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] serialize(Object value)
+    {
+        try
+        {
+            return OBJECT_MAPPER.writeValueAsBytes(value);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to serialize cache value of type " + value.getClass(), e);
+        }
+    }
+
+    private static <V> V deserialize(byte[] compressedValue, Class<V> type)
+    {
+        try (InflaterInputStream inputStream = new InflaterInputStream(new ByteArrayInputStream(compressedValue)))
+        {
+            return OBJECT_MAPPER.readValue(inputStream, type);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to deserialize cache value of type " + type, e);
+        }
+    }
+
+    private static byte[] compress(byte[] value)
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(value.length / 4 + 16);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(outputStream, deflater))
+        {
+            deflaterOutputStream.write(value);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to compress cache value", e);
+        }
+        finally
+        {
+            deflater.end();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private void closeQuietly()
+    {
+        try
+        {
+            if (this.channel != null)
+            {
+                this.channel.close();
+            }
+            if (this.fileLock != null)
+            {
+                this.fileLock.release();
+            }
+            if (this.lockChannel != null)
+            {
+                this.lockChannel.close();
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.debug("Failed to close cache file " + this.file, e);
+        }
+    }
+
+    private static class IndexEntry
+    {
+        private final String type;
+        private final long   valueOffset;
+        private final int    valueLength;
+        private final long   recordLength;
+
+        public IndexEntry(String type, long valueOffset, int valueLength, long recordLength)
+        {
+            super();
+            this.type = type;
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+            this.recordLength = recordLength;
+        }
+
+        public String getType()
+        {
+            return this.type;
+        }
+
+        public long getValueOffset()
+        {
+            return this.valueOffset;
+        }
+
+        public int getValueLength()
+        {
+            return this.valueLength;
+        }
+
+        public long getRecordLength()
+        {
+            return this.recordLength;
+        }
+    }
+}
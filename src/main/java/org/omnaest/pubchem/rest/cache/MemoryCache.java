@@ -0,0 +1,204 @@
+package org.omnaest.pubchem.rest.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size and time to live bounded in memory cache which keeps the least recently used entries. It is used as first tier in front of the persistent
+ * {@link org.omnaest.utils.cache.Cache} and holds already deserialized objects.
+ *
+ * @author omnaest
+ * @param <V>
+ */
+public class MemoryCache<V>
+{
+    private final int  maxSize;
+    private final long timeToLiveNanos;
+
+    private final LinkedHashMap<String, CacheEntry<V>> entries;
+
+    private final AtomicLong hits      = new AtomicLong();
+    private final AtomicLong misses    = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    protected MemoryCache(int maxSize, long timeToLive, TimeUnit timeUnit)
+    {
+        super();
+        if (maxSize <= 0)
+        {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = timeUnit.toNanos(timeToLive);
+        this.entries = new LinkedHashMap<String, CacheEntry<V>>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 6532717405574738651L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<V>> eldest)
+            {
+                boolean remove = this.size() > MemoryCache.this.maxSize;
+                if (remove)
+                {
+                    MemoryCache.this.evictions.incrementAndGet();
+                }
+                return remove;
+            }
+        };
+    }
+
+    public static <V> MemoryCache<V> newInstance(int maxSize, long timeToLive, TimeUnit timeUnit)
+    {
+        return new MemoryCache<>(maxSize, timeToLive, timeUnit);
+    }
+
+    /**
+     * Returns the cached value or null if there is none or it is expired
+     *
+     * @param key
+     * @return
+     */
+    public V get(String key)
+    {
+        V value = null;
+        synchronized (this.entries)
+        {
+            CacheEntry<V> entry = this.entries.get(key);
+            if (entry != null)
+            {
+                if (entry.isExpired(System.nanoTime()))
+                {
+                    this.entries.remove(key);
+                    this.evictions.incrementAndGet();
+                }
+                else
+                {
+                    value = entry.getValue();
+                }
+            }
+        }
+
+        if (value != null)
+        {
+            this.hits.incrementAndGet();
+        }
+        else
+        {
+            this.misses.incrementAndGet();
+        }
+        return value;
+    }
+
+    public void put(String key, V value)
+    {
+        if (value != null)
+        {
+            CacheEntry<V> entry = new CacheEntry<>(value, System.nanoTime() + this.timeToLiveNanos);
+            synchronized (this.entries)
+            {
+                this.entries.put(key, entry);
+            }
+        }
+    }
+
+    public void clear()
+    {
+        synchronized (this.entries)
+        {
+            this.entries.clear();
+        }
+    }
+
+    public int size()
+    {
+        synchronized (this.entries)
+        {
+            return this.entries.size();
+        }
+    }
+
+    public Statistics getStatistics()
+    {
+        return new Statistics(this.hits.get(), this.misses.get(), this.evictions.get(), this.size());
+    }
+
+    private static class CacheEntry<V>
+    {
+        private final V    value;
+        private final long expiresAtNanos;
+
+        public CacheEntry(V value, long expiresAtNanos)
+        {
+            super();
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        public V getValue()
+        {
+            return this.value;
+        }
+
+        public boolean isExpired(long now)
+        {
+            return now - this.expiresAtNanos > 0;
+        }
+    }
+
+    public static class Statistics
+    {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int  size;
+
+        protected Statistics(long hits, long misses, long evictions, int size)
+        {
+            super();
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public long getHits()
+        {
+            return this.hits;
+        }
+
+        public long getMisses()
+        {
+            return this.misses;
+        }
+
+        /**
+         * Returns the number of entries removed because of the size limit or an expired time to live
+         *
+         * @return
+         */
+        public long getEvictions()
+        {
+            return this.evictions;
+        }
+
+        public int getSize()
+        {
+            return this.size;
+        }
+
+        public double getHitRatio()
+        {
+            long total = this.hits + this.misses;
+            return total > 0 ? this.hits / (double) total : 0.0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Statistics [hits=" + this.hits + ", misses=" + this.misses + ", evictions=" + this.evictions + ", size=" + this.size + "]";
+        }
+
+    }
+}
@@ -0,0 +1,188 @@
+package org.omnaest.pubchem.rest.cache;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.omnaest.utils.cache.Cache;
+
+/**
+ * Remembers urls for which PubChem answered with "not found" or "bad request", so repeated lookups of unknown names are answered without a request.
+ * Negative results expire after their own time to live, independent of the cached positive results.<br>
+ * <br>
+ * The entries are held in a {@link MemoryCache} and, if available, in the persistent {@link Cache} under the key prefix {@value #KEY_PREFIX} with their
+ * expiry time, so they survive a restart. An expired entry is removed from the persistent {@link Cache} when it is read, and is left out by
+ * {@link LogFileCache#compact()} and {@link CacheSnapshot#exportTo(Cache, Path)}.
+ *
+ * @author omnaest
+ */
+public class NegativeCache
+{
+    public static final String KEY_PREFIX = "negative:";
+
+    private final long              timeToLiveMillis;
+    private final MemoryCache<Long> memoryCache;
+    private final Supplier<Cache>   persistentCache;
+
+    private final AtomicLong hits   = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+
+    protected NegativeCache(int maxSize, long timeToLive, TimeUnit timeUnit, Supplier<Cache> persistentCache)
+    {
+        super();
+        this.timeToLiveMillis = timeUnit.toMillis(timeToLive);
+        this.memoryCache = MemoryCache.newInstance(maxSize, timeToLive, timeUnit);
+        this.persistentCache = persistentCache;
+    }
+
+    public static NegativeCache newInstance(int maxSize, long timeToLive, TimeUnit timeUnit)
+    {
+        return newInstance(maxSize, timeToLive, timeUnit, () -> null);
+    }
+
+    /**
+     * Similar to {@link #newInstance(int, long, TimeUnit)} but additionally stores the negative results in the {@link Cache} returned by the given
+     * {@link Supplier}, which can return null if there is none
+     *
+     * @param maxSize
+     * @param timeToLive
+     * @param timeUnit
+     * @param persistentCache
+     * @return
+     */
+    public static NegativeCache newInstance(int maxSize, long timeToLive, TimeUnit timeUnit, Supplier<Cache> persistentCache)
+    {
+        return new NegativeCache(maxSize, timeToLive, timeUnit, persistentCache);
+    }
+
+    /**
+     * Returns true if a not expired negative result is known for the given url
+     *
+     * @param url
+     * @return
+     */
+    public boolean contains(String url)
+    {
+        long now = System.currentTimeMillis();
+        Long expiresAt = this.memoryCache.get(url);
+        if (expiresAt == null)
+        {
+            Cache cache = this.persistentCache.get();
+            if (cache != null)
+            {
+                expiresAt = cache.get(KEY_PREFIX + url, Long.class);
+                if (expiresAt != null && expiresAt > now)
+                {
+                    this.memoryCache.put(url, expiresAt);
+                }
+                else if (expiresAt != null)
+                {
+                    cache.remove(KEY_PREFIX + url);
+                }
+            }
+        }
+
+        boolean result = expiresAt != null && expiresAt > now;
+        if (result)
+        {
+            this.hits.incrementAndGet();
+        }
+        else
+        {
+            this.misses.incrementAndGet();
+        }
+        return result;
+    }
+
+    public void put(String url)
+    {
+        Long expiresAt = System.currentTimeMillis() + this.timeToLiveMillis;
+        this.memoryCache.put(url, expiresAt);
+        Cache cache = this.persistentCache.get();
+        if (cache != null)
+        {
+            cache.put(KEY_PREFIX + url, expiresAt);
+        }
+        this.stores.incrementAndGet();
+    }
+
+    /**
+     * Returns true if the given entry of a persistent {@link Cache} is a negative result under {@value #KEY_PREFIX} which has expired at the given
+     * time
+     *
+     * @param key
+     * @param value
+     * @param now
+     * @return
+     */
+    static boolean isExpiredEntry(String key, Object value, long now)
+    {
+        return key.startsWith(KEY_PREFIX) && (!(value instanceof Number) || ((Number) value).longValue() <= now);
+    }
+
+    public Statistics getStatistics()
+    {
+        return new Statistics(this.hits.get(), this.misses.get(), this.stores.get(), this.memoryCache.size());
+    }
+
+    public static class Statistics
+    {
+        private final long hits;
+        private final long misses;
+        private final long stores;
+        private final int  size;
+
+        protected Statistics(long hits, long misses, long stores, int size)
+        {
+            super();
+            this.hits = hits;
+            this.misses = misses;
+            this.stores = stores;
+            this.size = size;
+        }
+
+        /**
+         * Returns the number of lookups which were answered as negative without a request
+         *
+         * @return
+         */
+        public long getHits()
+        {
+            return this.hits;
+        }
+
+        public long getMisses()
+        {
+            return this.misses;
+        }
+
+        /**
+         * Returns the number of negative results which have been stored
+         *
+         * @return
+         */
+        public long getStores()
+        {
+            return this.stores;
+        }
+
+        /**
+         * Returns the number of negative results held in memory
+         *
+         * @return
+         */
+        public int getSize()
+        {
+            return this.size;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Statistics [hits=" + this.hits + ", misses=" + this.misses + ", stores=" + this.stores + ", size=" + this.size + "]";
+        }
+
+    }
+}
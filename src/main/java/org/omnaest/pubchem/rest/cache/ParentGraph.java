@@ -0,0 +1,232 @@
+package org.omnaest.pubchem.rest.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Compact graph of the cid to parent cid edges resolved from PubChem. The edges are kept in an open addressing hash map of primitive longs, which needs
+ * about 32 bytes per edge.<br>
+ * <br>
+ * If opened with a file via {@link #open(Path)}, new edges are appended to that file on {@link #flush()} and are loaded again on the next
+ * {@link #open(Path)}. The file is a plain sequence of cid and parent cid pairs as big endian longs, later pairs override earlier ones.
+ *
+ * @author omnaest
+ */
+public class ParentGraph
+{
+    /**
+     * Returned by {@link #getParentCid(long)} if no edge is known for a cid
+     */
+    public static final long UNKNOWN = 0;
+
+    /**
+     * Marks a cid for which PubChem knows no parent
+     */
+    public static final long NO_PARENT = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Path file;
+
+    private long[] keys;
+    private long[] values;
+    private int    size = 0;
+
+    private long[] pendingEdges     = new long[64];
+    private int    pendingEdgeCount = 0;
+
+    protected ParentGraph(Path file)
+    {
+        super();
+        this.file = file;
+        this.keys = new long[INITIAL_CAPACITY];
+        this.values = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns a new {@link ParentGraph} which is held only in memory
+     *
+     * @return
+     */
+    public static ParentGraph newInstance()
+    {
+        return new ParentGraph(null);
+    }
+
+    /**
+     * Returns a {@link ParentGraph} with the edges of the given file, which is created on the first {@link #flush()} if it does not exist
+     *
+     * @param file
+     * @return
+     */
+    public static ParentGraph open(Path file)
+    {
+        ParentGraph parentGraph = new ParentGraph(file);
+        if (Files.exists(file))
+        {
+            try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16)))
+            {
+                while (true)
+                {
+                    long cid;
+                    try
+                    {
+                        cid = inputStream.readLong();
+                    }
+                    catch (EOFException e)
+                    {
+                        break;
+                    }
+                    parentGraph.putInMemory(cid, inputStream.readLong());
+                }
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to read parent graph " + file, e);
+            }
+        }
+        return parentGraph;
+    }
+
+    /**
+     * Returns the parent cid of the given cid, {@link #NO_PARENT} if PubChem knows none or {@link #UNKNOWN} if the edge has not been resolved yet
+     *
+     * @param cid
+     * @return
+     */
+    public synchronized long getParentCid(long cid)
+    {
+        int index = this.indexOf(cid);
+        return this.keys[index] == cid ? this.values[index] : UNKNOWN;
+    }
+
+    /**
+     * Adds the edge from the given cid to its parent cid. Since a parent compound is its own parent, the edge from the parent cid to itself is added as
+     * well.
+     *
+     * @param cid
+     * @param parentCid
+     *            or {@link #NO_PARENT}
+     */
+    public synchronized void put(long cid, long parentCid)
+    {
+        this.putAndRecord(cid, parentCid);
+        if (parentCid > 0 && parentCid != cid)
+        {
+            this.putAndRecord(parentCid, parentCid);
+        }
+    }
+
+    private void putAndRecord(long cid, long parentCid)
+    {
+        if (this.putInMemory(cid, parentCid) && this.file != null)
+        {
+            if (this.pendingEdgeCount * 2 + 2 > this.pendingEdges.length)
+            {
+                this.pendingEdges = Arrays.copyOf(this.pendingEdges, this.pendingEdges.length * 2);
+            }
+            this.pendingEdges[this.pendingEdgeCount * 2] = cid;
+            this.pendingEdges[this.pendingEdgeCount * 2 + 1] = parentCid;
+            this.pendingEdgeCount++;
+        }
+    }
+
+    /**
+     * @param cid
+     * @param parentCid
+     * @return true if the edge was not known before
+     */
+    private boolean putInMemory(long cid, long parentCid)
+    {
+        if (cid <= 0)
+        {
+            throw new IllegalArgumentException("Invalid cid: " + cid);
+        }
+
+        int index = this.indexOf(cid);
+        if (this.keys[index] == cid)
+        {
+            boolean changed = this.values[index] != parentCid;
+            this.values[index] = parentCid;
+            return changed;
+        }
+
+        this.keys[index] = cid;
+        this.values[index] = parentCid;
+        this.size++;
+        if (this.size * 2 > this.keys.length)
+        {
+            this.resize();
+        }
+        return true;
+    }
+
+    private int indexOf(long cid)
+    {
+        int mask = this.keys.length - 1;
+        int index = (int) ((cid * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (this.keys[index] != UNKNOWN && this.keys[index] != cid)
+        {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void resize()
+    {
+        long[] oldKeys = this.keys;
+        long[] oldValues = this.values;
+        this.keys = new long[oldKeys.length * 2];
+        this.values = new long[oldValues.length * 2];
+        for (int ii = 0; ii < oldKeys.length; ii++)
+        {
+            if (oldKeys[ii] != UNKNOWN)
+            {
+                int index = this.indexOf(oldKeys[ii]);
+                this.keys[index] = oldKeys[ii];
+                this.values[index] = oldValues[ii];
+            }
+        }
+    }
+
+    public synchronized int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Appends the edges added since the last {@link #flush()} to the file given to {@link #open(Path)}. Does nothing for an in memory
+     * {@link ParentGraph}.
+     */
+    public synchronized void flush()
+    {
+        if (this.file == null || this.pendingEdgeCount == 0)
+        {
+            return;
+        }
+
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.file, StandardOpenOption.CREATE,
+                                                                                                                   StandardOpenOption.APPEND),
+                                                                                           1 << 16)))
+        {
+            for (int ii = 0; ii < this.pendingEdgeCount * 2; ii++)
+            {
+                outputStream.writeLong(this.pendingEdges[ii]);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to write parent graph " + this.file, e);
+        }
+        this.pendingEdgeCount = 0;
+    }
+}
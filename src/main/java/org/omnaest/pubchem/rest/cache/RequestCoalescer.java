@@ -0,0 +1,80 @@
+package org.omnaest.pubchem.rest.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent executions for the same key. While an execution for a key is in flight, all further callers for that key wait for and share its
+ * result instead of running their own.
+ *
+ * @author omnaest
+ */
+public class RequestCoalescer
+{
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    public static RequestCoalescer newInstance()
+    {
+        return new RequestCoalescer();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> supplier)
+    {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existingFuture = this.inFlight.putIfAbsent(key, future);
+        if (existingFuture != null)
+        {
+            return (T) join(existingFuture);
+        }
+
+        try
+        {
+            T result = supplier.get();
+            future.complete(result);
+            return result;
+        }
+        catch (RuntimeException | Error e)
+        {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally
+        {
+            this.inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Returns the number of currently running executions
+     *
+     * @return
+     */
+    public int getInFlightCount()
+    {
+        return this.inFlight.size();
+    }
+
+    private static Object join(CompletableFuture<Object> future)
+    {
+        try
+        {
+            return future.join();
+        }
+        catch (CompletionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            else if (e.getCause() instanceof Error)
+            {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package org.omnaest.pubchem.rest.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import org.omnaest.pubchem.rest.domain.Synonyms;
+import org.omnaest.pubchem.rest.offline.OfflineIndex;
+
+/**
+ * Reverse index from the normalized synonyms of already fetched {@link Synonyms} to their cids, so names which are a synonym of a known compound can be
+ * resolved without a request. Names are normalized with {@link OfflineIndex#normalizeName(String)}.<br>
+ * <br>
+ * A synonym like "lactate" can belong to multiple compounds, in which case {@link #findCid(String)} returns no cid, since the index can not know which
+ * of them PubChem would return for the name.<br>
+ * <br>
+ * The number of names is bounded. If the maximum is reached, further names are not added anymore, while further cids of already known names still
+ * are. Evicting names instead would let an ambiguous name like "lactate" look unique after it is added again with a single cid.<br>
+ * <br>
+ * If opened with a file via {@link #open(Path)}, new entries are appended to that file on {@link #flush()} or {@link #close()} and are loaded again
+ * on the next {@link #open(Path)}. They are also flushed automatically by {@link #put(String, long)} as soon as {@value #FLUSH_THRESHOLD} entries are
+ * pending or the last flush is {@value #FLUSH_INTERVAL_MILLIS} milliseconds ago, so at most those are lost if the jvm is killed. The file is a plain sequence of normalized name and cid pairs, written by {@link DataOutputStream#writeUTF(String)}
+ * and {@link DataOutputStream#writeLong(long)}.
+ *
+ * @author omnaest
+ */
+public class SynonymIndex implements Closeable
+{
+    private static final int MAX_NAME_LENGTH = 0x3FFF;
+
+    /**
+     * Default maximum number of names, which takes roughly 100MB of heap
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000000;
+
+    /**
+     * Number of pending entries which are flushed automatically
+     */
+    public static final int FLUSH_THRESHOLD = 1000;
+
+    /**
+     * Age of the last flush in milliseconds after which pending entries are flushed automatically
+     */
+    public static final long FLUSH_INTERVAL_MILLIS = 10000;
+
+    private final Path file;
+    private final int  maxSize;
+    private final int  flushThreshold;
+    private final long flushIntervalMillis;
+
+    private final Map<String, long[]> nameToCids   = new HashMap<>();
+    private final List<String>        pendingNames = new ArrayList<>();
+    private final List<Long>          pendingCids  = new ArrayList<>();
+
+    private long lastFlushTime = System.currentTimeMillis();
+
+    protected SynonymIndex(Path file, int maxSize, int flushThreshold, long flushIntervalMillis)
+    {
+        super();
+        if (maxSize <= 0)
+        {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.file = file;
+        this.maxSize = maxSize;
+        this.flushThreshold = flushThreshold;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /**
+     * Returns a new {@link SynonymIndex} which is held only in memory and holds at most {@value #DEFAULT_MAX_SIZE} names
+     *
+     * @return
+     */
+    public static SynonymIndex newInstance()
+    {
+        return newInstance(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Similar to {@link #newInstance()} with the given maximum number of names
+     *
+     * @param maxSize
+     * @return
+     */
+    public static SynonymIndex newInstance(int maxSize)
+    {
+        return new SynonymIndex(null, maxSize, FLUSH_THRESHOLD, FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Returns a {@link SynonymIndex} with the entries of the given file, which is created on the first {@link #flush()} if it does not exist. At most
+     * {@value #DEFAULT_MAX_SIZE} names are held.
+     *
+     * @param file
+     * @return
+     */
+    public static SynonymIndex open(Path file)
+    {
+        return open(file, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Similar to {@link #open(Path)} with the given maximum number of names
+     *
+     * @param file
+     * @param maxSize
+     * @return
+     */
+    public static SynonymIndex open(Path file, int maxSize)
+    {
+        return open(file, maxSize, FLUSH_THRESHOLD, FLUSH_INTERVAL_MILLIS);
+    }
+
+    static SynonymIndex open(Path file, int maxSize, int flushThreshold, long flushIntervalMillis)
+    {
+        SynonymIndex synonymIndex = new SynonymIndex(file, maxSize, flushThreshold, flushIntervalMillis);
+        if (Files.exists(file))
+        {
+            try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16)))
+            {
+                while (true)
+                {
+                    String normalizedName;
+                    try
+                    {
+                        normalizedName = inputStream.readUTF();
+                    }
+                    catch (EOFException e)
+                    {
+                        break;
+                    }
+                    synonymIndex.putInMemory(normalizedName, inputStream.readLong());
+                }
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to read synonym index " + file, e);
+            }
+        }
+        return synonymIndex;
+    }
+
+    /**
+     * Adds all synonyms of the given {@link Synonyms} for its cid
+     *
+     * @param synonyms
+     */
+    public void put(Synonyms synonyms)
+    {
+        List<String> names = synonyms.getSynonyms();
+        if (names != null)
+        {
+            names.forEach(name -> this.put(name, synonyms.getCid()));
+        }
+    }
+
+    /**
+     * Adds the given name for the given cid. Flushes the pending entries if the thresholds of the class description are reached.
+     *
+     * @param name
+     * @param cid
+     */
+    public synchronized void put(String name, long cid)
+    {
+        String normalizedName = OfflineIndex.normalizeName(name);
+        if (!normalizedName.isEmpty() && normalizedName.length() <= MAX_NAME_LENGTH && this.putInMemory(normalizedName, cid) && this.file != null)
+        {
+            this.pendingNames.add(normalizedName);
+            this.pendingCids.add(cid);
+            if (this.pendingNames.size() >= this.flushThreshold || System.currentTimeMillis() - this.lastFlushTime >= this.flushIntervalMillis)
+            {
+                this.flush();
+            }
+        }
+    }
+
+    /**
+     * @param normalizedName
+     * @param cid
+     * @return true if the cid was added for the name
+     */
+    private boolean putInMemory(String normalizedName, long cid)
+    {
+        if (cid <= 0)
+        {
+            throw new IllegalArgumentException("Invalid cid: " + cid);
+        }
+
+        long[] cids = this.nameToCids.get(normalizedName);
+        if (cids == null)
+        {
+            if (this.nameToCids.size() >= this.maxSize)
+            {
+                return false;
+            }
+            this.nameToCids.put(normalizedName, new long[] { cid });
+            return true;
+        }
+
+        int index = Arrays.binarySearch(cids, cid);
+        if (index >= 0)
+        {
+            return false;
+        }
+
+        int insertionIndex = -index - 1;
+        long[] extendedCids = new long[cids.length + 1];
+        System.arraycopy(cids, 0, extendedCids, 0, insertionIndex);
+        extendedCids[insertionIndex] = cid;
+        System.arraycopy(cids, insertionIndex, extendedCids, insertionIndex + 1, cids.length - insertionIndex);
+        this.nameToCids.put(normalizedName, extendedCids);
+        return true;
+    }
+
+    /**
+     * Returns the cid of the given name, if exactly one cid is known for it
+     *
+     * @param name
+     * @return
+     */
+    public synchronized OptionalLong findCid(String name)
+    {
+        long[] cids = this.nameToCids.get(OfflineIndex.normalizeName(name));
+        return cids != null && cids.length == 1 ? OptionalLong.of(cids[0]) : OptionalLong.empty();
+    }
+
+    /**
+     * Returns all cids which are known for the given name in ascending order
+     *
+     * @param name
+     * @return
+     */
+    public synchronized long[] findCids(String name)
+    {
+        long[] cids = this.nameToCids.get(OfflineIndex.normalizeName(name));
+        return cids != null ? cids.clone() : new long[0];
+    }
+
+    /**
+     * Returns the number of distinct normalized names
+     *
+     * @return
+     */
+    public synchronized int size()
+    {
+        return this.nameToCids.size();
+    }
+
+    /**
+     * Appends the entries added since the last {@link #flush()} to the file given to {@link #open(Path)}. Does nothing for an in memory
+     * {@link SynonymIndex}.
+     */
+    public synchronized void flush()
+    {
+        this.lastFlushTime = System.currentTimeMillis();
+        if (this.file == null || this.pendingNames.isEmpty())
+        {
+            return;
+        }
+
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.file, StandardOpenOption.CREATE,
+                                                                                                                   StandardOpenOption.APPEND),
+                                                                                           1 << 16)))
+        {
+            for (int ii = 0; ii < this.pendingNames.size(); ii++)
+            {
+                outputStream.writeUTF(this.pendingNames.get(ii));
+                outputStream.writeLong(this.pendingCids.get(ii));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to write synonym index " + this.file, e);
+        }
+        this.pendingNames.clear();
+        this.pendingCids.clear();
+    }
+
+    /**
+     * Flushes the pending entries, see {@link #flush()}
+     */
+    @Override
+    public void close()
+    {
+        this.flush();
+    }
+}
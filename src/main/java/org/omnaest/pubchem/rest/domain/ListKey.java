@@ -0,0 +1,36 @@
+package org.omnaest.pubchem.rest.domain;
+
+/**
+ * Key of a result list which PubChem keeps on the server side for a limited time, together with the number of identifiers in the list
+ *
+ * @author omnaest
+ */
+public class ListKey
+{
+    private final String key;
+    private final long   size;
+
+    public ListKey(String key, long size)
+    {
+        super();
+        this.key = key;
+        this.size = size;
+    }
+
+    public String getKey()
+    {
+        return this.key;
+    }
+
+    public long getSize()
+    {
+        return this.size;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ListKey [key=" + this.key + ", size=" + this.size + "]";
+    }
+
+}
@@ -0,0 +1,311 @@
+package org.omnaest.pubchem.rest.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Memory efficient store for the synonym strings of many {@link Synonyms}. Every distinct synonym is stored once as UTF-8 bytes in a shared byte array,
+ * the compacted {@link Synonyms} only hold an int id per synonym and decode the strings lazily on access.<br>
+ * <br>
+ * Synonyms which are shared by multiple compounds, like "lactate" or "water", are deduplicated across all {@link Synonyms} of the same
+ * {@link SynonymStore}. Strings are never removed from a {@link SynonymStore}, and it holds at most about 2GB of distinct UTF-8 encoded synonyms, beyond
+ * that {@link #intern(List)} fails with an {@link IllegalStateException}.
+ *
+ * @author omnaest
+ */
+public class SynonymStore
+{
+    private static final int NO_STRING   = -1;
+    private static final int MAX_BYTES   = Integer.MAX_VALUE - 8;
+    private static final int MAX_STRINGS = 1 << 29;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int           maxBytes;
+    private final int           maxStrings;
+
+    private byte[] bytes       = new byte[1 << 16];
+    private int[]  offsets     = new int[1024 + 1];
+    private int[]  table       = new int[2048];
+    private int    stringCount = 0;
+    private long   internCount = 0;
+
+    protected SynonymStore(int maxBytes, int maxStrings)
+    {
+        super();
+        this.maxBytes = maxBytes;
+        this.maxStrings = maxStrings;
+    }
+
+    public static SynonymStore newInstance()
+    {
+        return new SynonymStore(MAX_BYTES, MAX_STRINGS);
+    }
+
+    /**
+     * Returns {@link Synonyms} with the same cid and synonyms, which are backed by this {@link SynonymStore}
+     *
+     * @param synonyms
+     * @return
+     */
+    public Synonyms compact(Synonyms synonyms)
+    {
+        return new Synonyms(synonyms.getCid(), this.intern(synonyms.getSynonyms()));
+    }
+
+    /**
+     * Returns an unmodifiable {@link List} with the given strings, which are stored in this {@link SynonymStore} and decoded on each access
+     *
+     * @param strings
+     * @return
+     * @throws IllegalStateException
+     *             if this {@link SynonymStore} has no capacity left for the new strings
+     */
+    public List<String> intern(List<String> strings)
+    {
+        if (strings == null)
+        {
+            return null;
+        }
+
+        int[] ids = new int[strings.size()];
+        byte[][] encodedStrings = new byte[ids.length][];
+        for (int ii = 0; ii < ids.length; ii++)
+        {
+            String string = strings.get(ii);
+            encodedStrings[ii] = string != null ? string.getBytes(StandardCharsets.UTF_8) : null;
+        }
+
+        this.lock.writeLock()
+                 .lock();
+        try
+        {
+            for (int ii = 0; ii < ids.length; ii++)
+            {
+                ids[ii] = encodedStrings[ii] != null ? this.internString(encodedStrings[ii]) : NO_STRING;
+            }
+            this.internCount += ids.length;
+        }
+        finally
+        {
+            this.lock.writeLock()
+                     .unlock();
+        }
+        return new SynonymList(this, ids);
+    }
+
+    private int internString(byte[] string)
+    {
+        int mask = this.table.length - 1;
+        int slot = hash(string, 0, string.length) & mask;
+        while (this.table[slot] != 0)
+        {
+            int id = this.table[slot] - 1;
+            if (this.equalsString(id, string))
+            {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = this.append(string);
+        this.table[slot] = id + 1;
+        if (this.stringCount * 2L > this.table.length)
+        {
+            this.rehash();
+        }
+        return id;
+    }
+
+    private int append(byte[] string)
+    {
+        int start = this.offsets[this.stringCount];
+        long end = (long) start + string.length;
+        if (end > this.maxBytes || this.stringCount >= this.maxStrings)
+        {
+            throw new IllegalStateException("SynonymStore is full with " + this.stringCount + " strings of " + start + " bytes, the limit is " + this.maxStrings
+                    + " strings of " + this.maxBytes + " bytes");
+        }
+        if (end > this.bytes.length)
+        {
+            this.bytes = Arrays.copyOf(this.bytes, (int) Math.min(this.maxBytes, Math.max(this.bytes.length * 2L, end)));
+        }
+        if (this.stringCount + 2 > this.offsets.length)
+        {
+            this.offsets = Arrays.copyOf(this.offsets, (int) Math.min(this.maxStrings + 1L, this.offsets.length * 2L));
+        }
+        System.arraycopy(string, 0, this.bytes, start, string.length);
+        this.offsets[this.stringCount + 1] = start + string.length;
+        return this.stringCount++;
+    }
+
+    private boolean equalsString(int id, byte[] string)
+    {
+        int start = this.offsets[id];
+        int length = this.offsets[id + 1] - start;
+        if (length != string.length)
+        {
+            return false;
+        }
+        for (int ii = 0; ii < length; ii++)
+        {
+            if (this.bytes[start + ii] != string[ii])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash()
+    {
+        int[] table = new int[this.table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < this.stringCount; id++)
+        {
+            int slot = hash(this.bytes, this.offsets[id], this.offsets[id + 1]) & mask;
+            while (table[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+        this.table = table;
+    }
+
+    private static int hash(byte[] bytes, int from, int to)
+    {
+        int hash = 0x811C9DC5;
+        for (int ii = from; ii < to; ii++)
+        {
+            hash = (hash ^ bytes[ii]) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private String decode(int id)
+    {
+        if (id == NO_STRING)
+        {
+            return null;
+        }
+
+        this.lock.readLock()
+                 .lock();
+        try
+        {
+            int start = this.offsets[id];
+            return new String(this.bytes, start, this.offsets[id + 1] - start, StandardCharsets.UTF_8);
+        }
+        finally
+        {
+            this.lock.readLock()
+                     .unlock();
+        }
+    }
+
+    public Statistics getStatistics()
+    {
+        this.lock.readLock()
+                 .lock();
+        try
+        {
+            return new Statistics(this.stringCount, this.internCount, this.offsets[this.stringCount],
+                                  (long) this.bytes.length + 4L * this.offsets.length + 4L * this.table.length);
+        }
+        finally
+        {
+            this.lock.readLock()
+                     .unlock();
+        }
+    }
+
+    private static class SynonymList extends AbstractList<String> implements RandomAccess
+    {
+        private final SynonymStore store;
+        private final int[]        ids;
+
+        public SynonymList(SynonymStore store, int[] ids)
+        {
+            super();
+            this.store = store;
+            this.ids = ids;
+        }
+
+        @Override
+        public String get(int index)
+        {
+            return this.store.decode(this.ids[index]);
+        }
+
+        @Override
+        public int size()
+        {
+            return this.ids.length;
+        }
+    }
+
+    public static class Statistics
+    {
+        private final int  distinctStrings;
+        private final long internedStrings;
+        private final long encodedBytes;
+        private final long allocatedBytes;
+
+        protected Statistics(int distinctStrings, long internedStrings, long encodedBytes, long allocatedBytes)
+        {
+            super();
+            this.distinctStrings = distinctStrings;
+            this.internedStrings = internedStrings;
+            this.encodedBytes = encodedBytes;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public int getDistinctStrings()
+        {
+            return this.distinctStrings;
+        }
+
+        /**
+         * Returns the number of strings passed to {@link SynonymStore#intern(List)}, including duplicates
+         *
+         * @return
+         */
+        public long getInternedStrings()
+        {
+            return this.internedStrings;
+        }
+
+        /**
+         * Returns the size of all distinct strings as UTF-8
+         *
+         * @return
+         */
+        public long getEncodedBytes()
+        {
+            return this.encodedBytes;
+        }
+
+        /**
+         * Returns the size of the arrays allocated by the {@link SynonymStore}, without the id arrays of the compacted {@link Synonyms}
+         *
+         * @return
+         */
+        public long getAllocatedBytes()
+        {
+            return this.allocatedBytes;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Statistics [distinctStrings=" + this.distinctStrings + ", internedStrings=" + this.internedStrings + ", encodedBytes="
+                    + this.encodedBytes + ", allocatedBytes=" + this.allocatedBytes + "]";
+        }
+
+    }
+}
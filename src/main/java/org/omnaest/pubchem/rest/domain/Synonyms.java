@@ -12,6 +12,18 @@ public class Synonyms
     @JsonProperty("Synonym")
     private List<String> synonyms;
 
+    protected Synonyms()
+    {
+        super();
+    }
+
+    public Synonyms(long cid, List<String> synonyms)
+    {
+        super();
+        this.cid = cid;
+        this.synonyms = synonyms;
+    }
+
     public long getCid()
     {
         return this.cid;
@@ -0,0 +1,212 @@
+package org.omnaest.pubchem.rest.metrics;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link PubChemMetrics} which aggregates timers and counters per endpoint in memory. The counters are updated without locks and can be read at any
+ * time via {@link #getEndpoints()}.
+ *
+ * @author omnaest
+ */
+public class MetricsRegistry implements PubChemMetrics
+{
+    private final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    protected MetricsRegistry()
+    {
+        super();
+    }
+
+    public static MetricsRegistry newInstance()
+    {
+        return new MetricsRegistry();
+    }
+
+    @Override
+    public void onResponse(String endpoint, int statusCode, long durationNanos, long receivedBytes)
+    {
+        EndpointMetrics endpointMetrics = this.getOrCreate(endpoint);
+        endpointMetrics.responses.increment();
+        if (statusCode >= 400)
+        {
+            endpointMetrics.errorResponses.increment();
+        }
+        endpointMetrics.receivedBytes.add(receivedBytes);
+        endpointMetrics.requestNanos.add(durationNanos);
+        endpointMetrics.maxRequestNanos.accumulateAndGet(durationNanos, Math::max);
+    }
+
+    @Override
+    public void onFailure(String endpoint, IOException exception, long durationNanos)
+    {
+        EndpointMetrics endpointMetrics = this.getOrCreate(endpoint);
+        endpointMetrics.failures.increment();
+        endpointMetrics.requestNanos.add(durationNanos);
+    }
+
+    @Override
+    public void onRetry(String endpoint, int retry)
+    {
+        this.getOrCreate(endpoint).retries.increment();
+    }
+
+    @Override
+    public void onCacheLookup(String endpoint, CacheTier cacheTier, boolean hit)
+    {
+        LongAdder[] counters = this.getOrCreate(endpoint).cacheLookups.get(cacheTier);
+        counters[hit ? 0 : 1].increment();
+    }
+
+    @Override
+    public void onDeserialization(String endpoint, long durationNanos)
+    {
+        EndpointMetrics endpointMetrics = this.getOrCreate(endpoint);
+        endpointMetrics.deserializations.increment();
+        endpointMetrics.deserializationNanos.add(durationNanos);
+    }
+
+    private EndpointMetrics getOrCreate(String endpoint)
+    {
+        EndpointMetrics endpointMetrics = this.endpoints.get(endpoint);
+        return endpointMetrics != null ? endpointMetrics : this.endpoints.computeIfAbsent(endpoint, key -> new EndpointMetrics());
+    }
+
+    /**
+     * Returns the live {@link EndpointMetrics} by endpoint, e.g. "compound/name/synonyms"
+     *
+     * @return
+     */
+    public Map<String, EndpointMetrics> getEndpoints()
+    {
+        return Collections.unmodifiableMap(this.endpoints);
+    }
+
+    public EndpointMetrics getEndpoint(String endpoint)
+    {
+        return this.getOrCreate(endpoint);
+    }
+
+    public static class EndpointMetrics
+    {
+        private final LongAdder  responses            = new LongAdder();
+        private final LongAdder  errorResponses       = new LongAdder();
+        private final LongAdder  failures             = new LongAdder();
+        private final LongAdder  retries              = new LongAdder();
+        private final LongAdder  receivedBytes        = new LongAdder();
+        private final LongAdder  requestNanos         = new LongAdder();
+        private final AtomicLong maxRequestNanos      = new AtomicLong();
+        private final LongAdder  deserializations     = new LongAdder();
+        private final LongAdder  deserializationNanos = new LongAdder();
+
+        private final Map<CacheTier, LongAdder[]> cacheLookups = new EnumMap<>(CacheTier.class);
+
+        protected EndpointMetrics()
+        {
+            super();
+            for (CacheTier cacheTier : CacheTier.values())
+            {
+                this.cacheLookups.put(cacheTier, new LongAdder[] { new LongAdder(), new LongAdder() });
+            }
+        }
+
+        /**
+         * Returns the number of received responses, including the ones with an error status code
+         *
+         * @return
+         */
+        public long getResponses()
+        {
+            return this.responses.sum();
+        }
+
+        /**
+         * Returns the number of responses with a status code of 400 or above
+         *
+         * @return
+         */
+        public long getErrorResponses()
+        {
+            return this.errorResponses.sum();
+        }
+
+        /**
+         * Returns the number of requests which failed without a response
+         *
+         * @return
+         */
+        public long getFailures()
+        {
+            return this.failures.sum();
+        }
+
+        public long getRetries()
+        {
+            return this.retries.sum();
+        }
+
+        public long getReceivedBytes()
+        {
+            return this.receivedBytes.sum();
+        }
+
+        public long getTotalRequestTimeMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis(this.requestNanos.sum());
+        }
+
+        public double getAverageRequestTimeMillis()
+        {
+            long requests = this.getResponses() + this.getFailures();
+            return requests > 0 ? this.requestNanos.sum() / (double) requests / TimeUnit.MILLISECONDS.toNanos(1) : 0.0;
+        }
+
+        public long getMaxRequestTimeMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis(this.maxRequestNanos.get());
+        }
+
+        public long getDeserializations()
+        {
+            return this.deserializations.sum();
+        }
+
+        public long getTotalDeserializationTimeMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis(this.deserializationNanos.sum());
+        }
+
+        public long getCacheHits(CacheTier cacheTier)
+        {
+            return this.cacheLookups.get(cacheTier)[0].sum();
+        }
+
+        public long getCacheMisses(CacheTier cacheTier)
+        {
+            return this.cacheLookups.get(cacheTier)[1].sum();
+        }
+
+        public double getCacheHitRatio(CacheTier cacheTier)
+        {
+            long hits = this.getCacheHits(cacheTier);
+            long total = hits + this.getCacheMisses(cacheTier);
+            return total > 0 ? hits / (double) total : 0.0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "EndpointMetrics [responses=" + this.getResponses() + ", errorResponses=" + this.getErrorResponses() + ", failures=" + this.getFailures()
+                    + ", retries=" + this.getRetries() + ", receivedBytes=" + this.getReceivedBytes() + ", averageRequestTimeMillis="
+                    + this.getAverageRequestTimeMillis() + ", maxRequestTimeMillis=" + this.getMaxRequestTimeMillis() + ", deserializations="
+                    + this.getDeserializations() + ", totalDeserializationTimeMillis=" + this.getTotalDeserializationTimeMillis() + "]";
+        }
+
+    }
+}
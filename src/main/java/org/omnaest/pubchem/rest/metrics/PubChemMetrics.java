@@ -0,0 +1,80 @@
+package org.omnaest.pubchem.rest.metrics;
+
+import java.io.IOException;
+
+import org.omnaest.pubchem.rest.PubChemRestUtils.PubChemRestAccessor;
+
+/**
+ * Listener for the requests, retries, cache lookups and deserializations of a {@link PubChemRestAccessor}, see
+ * {@link PubChemRestAccessor#withMetrics(PubChemMetrics)}. The endpoint is the PubChem REST operation without identifiers like "compound/name/synonyms".
+ * <br>
+ * <br>
+ * The methods are called on the requesting threads and have to be thread safe and fast. {@link MetricsRegistry} is an aggregating implementation, other
+ * implementations can forward to a metrics library.
+ *
+ * @author omnaest
+ */
+public interface PubChemMetrics
+{
+    public static enum CacheTier
+    {
+        MEMORY, PERSISTENT, NEGATIVE
+    }
+
+    /**
+     * Called for every response received from PubChem, including responses which are retried
+     *
+     * @param endpoint
+     * @param statusCode
+     * @param durationNanos
+     *            time from sending the request until the body is read, without the wait for the rate limiter
+     * @param receivedBytes
+     *            uncompressed size of the body
+     */
+    public default void onResponse(String endpoint, int statusCode, long durationNanos, long receivedBytes)
+    {
+    }
+
+    /**
+     * Called if a request failed without a response
+     *
+     * @param endpoint
+     * @param exception
+     * @param durationNanos
+     */
+    public default void onFailure(String endpoint, IOException exception, long durationNanos)
+    {
+    }
+
+    /**
+     * Called before a request is retried
+     *
+     * @param endpoint
+     * @param retry
+     *            starting with 1
+     */
+    public default void onRetry(String endpoint, int retry)
+    {
+    }
+
+    /**
+     * Called for every lookup of a configured cache tier
+     *
+     * @param endpoint
+     * @param cacheTier
+     * @param hit
+     */
+    public default void onCacheLookup(String endpoint, CacheTier cacheTier, boolean hit)
+    {
+    }
+
+    /**
+     * Called after a response body has been parsed
+     *
+     * @param endpoint
+     * @param durationNanos
+     */
+    public default void onDeserialization(String endpoint, long durationNanos)
+    {
+    }
+}
@@ -0,0 +1,398 @@
+package org.omnaest.pubchem.rest.offline;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Read only index file which maps a primitive long cid to its title and parent cid. The file is memory mapped, so lookups neither load the file into the
+ * heap nor allocate anything beyond the resulting title {@link String}.<br>
+ * <br>
+ * File layout:
+ *
+ * <pre>
+ * header:  int magic, int version, long number of records, long offset of the string area
+ * records: sorted by cid, each long cid, long parent cid, long title offset, int title length
+ * strings: utf-8 encoded titles
+ * </pre>
+ *
+ * @see #writer(Path)
+ * @see #open(Path)
+ * @author omnaest
+ */
+public class CidIndex
+{
+    /**
+     * Returned by {@link #getParentCid(long)} if no parent cid is known
+     */
+    public static final long NO_CID = -1;
+
+    private static final int MAGIC   = 0x50434944;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+    private static final int RECORD_SIZE = 8 + 8 + 8 + 4;
+
+    private static final int PARENT_CID_POSITION   = 8;
+    private static final int TITLE_POSITION        = 16;
+    private static final int TITLE_LENGTH_POSITION = 24;
+
+    private final long           numberOfRecords;
+    private final MappedSegments segments;
+
+    protected CidIndex(MappedSegments segments)
+    {
+        super();
+        this.numberOfRecords = segments.size();
+        this.segments = segments;
+    }
+
+    public static CidIndex open(Path file)
+    {
+        return new CidIndex(MappedSegments.open(file, "cid index", MAGIC, VERSION, HEADER_SIZE, RECORD_SIZE));
+    }
+
+    public static Writer writer(Path file)
+    {
+        return new Writer(file);
+    }
+
+    /**
+     * Writes a {@link CidIndex} file from the PubChem files CID-Title.gz and CID-Parent.gz. Both files have to be sorted by cid, like the ones provided by
+     * PubChem are.
+     *
+     * @param file
+     * @param titlesGzipFile
+     *            can be null
+     * @param parentsGzipFile
+     *            can be null
+     * @return
+     */
+    public static CidIndex build(Path file, Path titlesGzipFile, Path parentsGzipFile)
+    {
+        return build(file, titlesGzipFile != null ? () -> Files.newInputStream(titlesGzipFile) : null,
+                     parentsGzipFile != null ? () -> Files.newInputStream(parentsGzipFile) : null);
+    }
+
+    static CidIndex build(Path file, InputStreamSource titlesSource, InputStreamSource parentsSource)
+    {
+        try (Writer writer = writer(file); CidLineReader titles = new CidLineReader(titlesSource);
+                CidLineReader parents = new CidLineReader(parentsSource))
+        {
+            while (titles.hasCurrent() || parents.hasCurrent())
+            {
+                long cid = Math.min(titles.hasCurrent() ? titles.getCid() : Long.MAX_VALUE, parents.hasCurrent() ? parents.getCid() : Long.MAX_VALUE);
+                String title = titles.hasCurrent() && titles.getCid() == cid ? titles.getValue() : null;
+                long parentCid = parents.hasCurrent() && parents.getCid() == cid && StringUtils.isNumeric(parents.getValue())
+                        ? Long.parseLong(parents.getValue())
+                        : NO_CID;
+                writer.add(cid, title, parentCid);
+
+                titles.skip(cid);
+                parents.skip(cid);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to build cid index " + file, e);
+        }
+        return open(file);
+    }
+
+    public long size()
+    {
+        return this.numberOfRecords;
+    }
+
+    public boolean contains(long cid)
+    {
+        return this.indexOf(cid) >= 0;
+    }
+
+    /**
+     * Returns the title of the given cid or null if there is none
+     *
+     * @param cid
+     * @return
+     */
+    public String getTitle(long cid)
+    {
+        long index = this.indexOf(cid);
+        if (index < 0)
+        {
+            return null;
+        }
+
+        long titleOffset = this.segments.getLong(index, TITLE_POSITION);
+        if (titleOffset < 0)
+        {
+            return null;
+        }
+        return this.segments.getString(titleOffset, this.segments.getInt(index, TITLE_LENGTH_POSITION));
+    }
+
+    /**
+     * Returns the parent cid of the given cid or {@link #NO_CID}
+     *
+     * @param cid
+     * @return
+     */
+    public long getParentCid(long cid)
+    {
+        long index = this.indexOf(cid);
+        if (index < 0)
+        {
+            return NO_CID;
+        }
+        return this.segments.getLong(index, PARENT_CID_POSITION);
+    }
+
+    public Optional<String> findTitle(long cid)
+    {
+        return Optional.ofNullable(this.getTitle(cid));
+    }
+
+    public OptionalLong findParentCid(long cid)
+    {
+        long parentCid = this.getParentCid(cid);
+        return parentCid != NO_CID ? OptionalLong.of(parentCid) : OptionalLong.empty();
+    }
+
+    private long indexOf(long cid)
+    {
+        long low = 0;
+        long high = this.numberOfRecords - 1;
+        while (low <= high)
+        {
+            long middle = (low + high) >>> 1;
+            long middleCid = this.cidAt(middle);
+            if (middleCid < cid)
+            {
+                low = middle + 1;
+            }
+            else if (middleCid > cid)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private long cidAt(long index)
+    {
+        return this.segments.getLong(index, 0);
+    }
+
+    static interface InputStreamSource
+    {
+        public InputStream open() throws IOException;
+    }
+
+    /**
+     * Reads a gzip compressed "cid \t value" file and keeps the current line
+     *
+     * @author omnaest
+     */
+    private static class CidLineReader implements AutoCloseable
+    {
+        private final BufferedReader reader;
+
+        private long   cid   = -1;
+        private String value = null;
+
+        public CidLineReader(InputStreamSource source) throws IOException
+        {
+            super();
+            this.reader = source != null ? new BufferedReader(new InputStreamReader(new GZIPInputStream(source.open(), 64 * 1024), StandardCharsets.UTF_8))
+                    : null;
+            this.next();
+        }
+
+        public boolean hasCurrent()
+        {
+            return this.value != null;
+        }
+
+        public long getCid()
+        {
+            return this.cid;
+        }
+
+        public String getValue()
+        {
+            return this.value;
+        }
+
+        /**
+         * Moves forward to the first line with a cid greater than the given one
+         *
+         * @param cid
+         * @throws IOException
+         */
+        public void skip(long cid) throws IOException
+        {
+            while (this.hasCurrent() && this.cid <= cid)
+            {
+                this.next();
+            }
+        }
+
+        private void next() throws IOException
+        {
+            this.value = null;
+            if (this.reader != null)
+            {
+                String line;
+                while (this.value == null && (line = this.reader.readLine()) != null)
+                {
+                    int separatorIndex = line.indexOf('\t');
+                    if (separatorIndex > 0 && StringUtils.isNumeric(line.substring(0, separatorIndex)))
+                    {
+                        this.cid = Long.parseLong(line.substring(0, separatorIndex));
+                        this.value = line.substring(separatorIndex + 1);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (this.reader != null)
+            {
+                this.reader.close();
+            }
+        }
+    }
+
+    /**
+     * Writer of a {@link CidIndex} file. The cids have to be added in ascending order.
+     *
+     * @author omnaest
+     */
+    public static class Writer implements AutoCloseable
+    {
+        private final Path file;
+        private final Path stringsFile;
+
+        private DataOutputStream records;
+        private OutputStream     strings;
+
+        private long numberOfRecords = 0;
+        private long stringsSize     = 0;
+        private long lastCid         = Long.MIN_VALUE;
+
+        protected Writer(Path file)
+        {
+            super();
+            this.file = file;
+            try
+            {
+                this.stringsFile = Files.createTempFile(file.toAbsolutePath()
+                                                            .getParent(),
+                                                        file.getFileName()
+                                                            .toString(),
+                                                        ".strings");
+                this.records = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+                this.records.write(new byte[HEADER_SIZE]);
+                this.strings = new BufferedOutputStream(Files.newOutputStream(this.stringsFile), 64 * 1024);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to create cid index " + file, e);
+            }
+        }
+
+        /**
+         * @param cid
+         * @param title
+         *            can be null
+         * @param parentCid
+         *            {@link CidIndex#NO_CID} if unknown
+         * @return
+         */
+        public Writer add(long cid, String title, long parentCid)
+        {
+            if (cid <= this.lastCid)
+            {
+                throw new IllegalArgumentException("Cids must be added in ascending order, but " + cid + " follows " + this.lastCid);
+            }
+            this.lastCid = cid;
+
+            try
+            {
+                long titleOffset = -1;
+                int titleLength = 0;
+                if (title != null)
+                {
+                    byte[] data = title.getBytes(StandardCharsets.UTF_8);
+                    titleOffset = this.stringsSize;
+                    titleLength = data.length;
+                    this.strings.write(data);
+                    this.stringsSize += data.length;
+                }
+
+                this.records.writeLong(cid);
+                this.records.writeLong(parentCid);
+                this.records.writeLong(titleOffset);
+                this.records.writeInt(titleLength);
+                this.numberOfRecords++;
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to write to cid index " + this.file, e);
+            }
+            return this;
+        }
+
+        @Override
+        public void close()
+        {
+            try
+            {
+                this.strings.close();
+                Files.copy(this.stringsFile, this.records);
+                this.records.close();
+                Files.delete(this.stringsFile);
+
+                try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE))
+                {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    header.putInt(MAGIC)
+                          .putInt(VERSION)
+                          .putLong(this.numberOfRecords)
+                          .putLong(HEADER_SIZE + this.numberOfRecords * RECORD_SIZE);
+                    header.flip();
+                    while (header.hasRemaining())
+                    {
+                        channel.write(header, header.position());
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to close cid index " + this.file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,530 @@
+package org.omnaest.pubchem.rest.offline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+
+/**
+ * Read only table file of long number and text pairs, sorted either by the number or by the utf-8 bytes of the text. The file is memory mapped and
+ * looked up by binary search, so a lookup touches only a few pages of the file.<br>
+ * <br>
+ * The {@link Writer} sorts the pairs externally: it sorts runs of bounded size in memory, writes them into temporary files and merges them, so building
+ * a table of the full PubChem synonym file needs neither the whole file in memory nor more than one open file per run.<br>
+ * <br>
+ * File layout:
+ *
+ * <pre>
+ * header:  int magic, int version, int order, long number of records, long offset of the string area
+ * records: sorted, each long number, long text offset, int text length
+ * strings: utf-8 encoded texts
+ * </pre>
+ *
+ * @see #writer(Path, Order)
+ * @see #open(Path)
+ * @author omnaest
+ */
+class LongStringTable
+{
+    /**
+     * Sort order of the records of a {@link LongStringTable}
+     *
+     * @author omnaest
+     */
+    public static enum Order
+    {
+        /**
+         * Sorted by number, records with the same number keep the order in which they were added
+         */
+        BY_NUMBER,
+
+        /**
+         * Sorted by the unsigned utf-8 bytes of the text and then by number, duplicate pairs are removed
+         */
+        BY_TEXT
+    }
+
+    private static final int MAGIC   = 0x50434C53;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8;
+    private static final int RECORD_SIZE = 8 + 8 + 4;
+
+    private static final int ORDER_POSITION       = 8;
+    private static final int TEXT_OFFSET_POSITION = 8;
+    private static final int TEXT_LENGTH_POSITION = 16;
+
+    private final Order          order;
+    private final long           numberOfRecords;
+    private final MappedSegments segments;
+
+    protected LongStringTable(Order order, MappedSegments segments)
+    {
+        super();
+        this.order = order;
+        this.numberOfRecords = segments.size();
+        this.segments = segments;
+    }
+
+    public static LongStringTable open(Path file)
+    {
+        MappedSegments segments = MappedSegments.open(file, "table", MAGIC, VERSION, HEADER_SIZE, RECORD_SIZE);
+        return new LongStringTable(Order.values()[segments.getHeaderInt(ORDER_POSITION)], segments);
+    }
+
+    public static Writer writer(Path file, Order order)
+    {
+        return new Writer(file, order, Writer.MAX_RUN_ENTRIES);
+    }
+
+    static Writer writer(Path file, Order order, int maxRunEntries)
+    {
+        return new Writer(file, order, maxRunEntries);
+    }
+
+    public long size()
+    {
+        return this.numberOfRecords;
+    }
+
+    /**
+     * Returns the lowest number which is paired with the given text. Requires {@link Order#BY_TEXT}.
+     *
+     * @param text
+     * @return
+     */
+    public OptionalLong findFirstNumber(String text)
+    {
+        this.assertOrder(Order.BY_TEXT);
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+
+        long low = 0;
+        long high = this.numberOfRecords;
+        while (low < high)
+        {
+            long middle = (low + high) >>> 1;
+            if (this.compareText(middle, data) < 0)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low < this.numberOfRecords && this.compareText(low, data) == 0 ? OptionalLong.of(this.numberAt(low)) : OptionalLong.empty();
+    }
+
+    /**
+     * Returns all texts which are paired with the given number in the order they were added. Requires {@link Order#BY_NUMBER}.
+     *
+     * @param number
+     * @return
+     */
+    public List<String> findTexts(long number)
+    {
+        this.assertOrder(Order.BY_NUMBER);
+
+        long low = 0;
+        long high = this.numberOfRecords;
+        while (low < high)
+        {
+            long middle = (low + high) >>> 1;
+            if (this.numberAt(middle) < number)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+
+        List<String> texts = new ArrayList<>();
+        for (long index = low; index < this.numberOfRecords && this.numberAt(index) == number; index++)
+        {
+            texts.add(this.textAt(index));
+        }
+        return texts;
+    }
+
+    private void assertOrder(Order order)
+    {
+        if (this.order != order)
+        {
+            throw new IllegalStateException("Lookup requires a table sorted " + order + " but it is sorted " + this.order);
+        }
+    }
+
+    private long numberAt(long index)
+    {
+        return this.segments.getLong(index, 0);
+    }
+
+    private String textAt(long index)
+    {
+        return this.segments.getString(this.segments.getLong(index, TEXT_OFFSET_POSITION), this.segments.getInt(index, TEXT_LENGTH_POSITION));
+    }
+
+    /**
+     * Compares the text of the record at the given index with the given utf-8 bytes without creating a {@link String}
+     *
+     * @param index
+     * @param data
+     * @return
+     */
+    private int compareText(long index, byte[] data)
+    {
+        return this.segments.compareString(this.segments.getLong(index, TEXT_OFFSET_POSITION), this.segments.getInt(index, TEXT_LENGTH_POSITION), data);
+    }
+
+    private static class Entry
+    {
+        private final long   number;
+        private final byte[] text;
+
+        public Entry(long number, byte[] text)
+        {
+            super();
+            this.number = number;
+            this.text = text;
+        }
+
+        public long getNumber()
+        {
+            return this.number;
+        }
+
+        public byte[] getText()
+        {
+            return this.text;
+        }
+    }
+
+    private static Comparator<Entry> comparatorOf(Order order)
+    {
+        Comparator<Entry> byNumber = Comparator.comparingLong(Entry::getNumber);
+        return order == Order.BY_NUMBER ? byNumber : ((Comparator<Entry>) (entry1, entry2) -> Arrays.compareUnsigned(entry1.getText(), entry2.getText()))
+                                                                                                                                                   .thenComparing(byNumber);
+    }
+
+    /**
+     * Sorted sequence of {@link Entry}s which is merged by the {@link Writer}
+     *
+     * @author omnaest
+     */
+    private static interface Run extends AutoCloseable
+    {
+        /**
+         * Returns the current {@link Entry} or null if the {@link Run} is exhausted
+         *
+         * @return
+         */
+        public Entry current();
+
+        public void next() throws IOException;
+
+        @Override
+        public void close() throws IOException;
+    }
+
+    private static class MemoryRun implements Run
+    {
+        private final List<Entry> entries;
+
+        private int index = 0;
+
+        public MemoryRun(List<Entry> entries)
+        {
+            super();
+            this.entries = entries;
+        }
+
+        @Override
+        public Entry current()
+        {
+            return this.index < this.entries.size() ? this.entries.get(this.index) : null;
+        }
+
+        @Override
+        public void next()
+        {
+            this.index++;
+        }
+
+        @Override
+        public void close()
+        {
+            // nothing to close
+        }
+    }
+
+    private static class FileRun implements Run
+    {
+        private final DataInputStream inputStream;
+
+        private Entry current;
+
+        public FileRun(Path file) throws IOException
+        {
+            super();
+            this.inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+            this.next();
+        }
+
+        @Override
+        public Entry current()
+        {
+            return this.current;
+        }
+
+        @Override
+        public void next() throws IOException
+        {
+            long number;
+            try
+            {
+                number = this.inputStream.readLong();
+            }
+            catch (EOFException e)
+            {
+                this.current = null;
+                return;
+            }
+            byte[] text = new byte[this.inputStream.readInt()];
+            this.inputStream.readFully(text);
+            this.current = new Entry(number, text);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            this.inputStream.close();
+        }
+    }
+
+    /**
+     * Writer of a {@link LongStringTable} file. The pairs can be added in any order, they are sorted when the {@link Writer} is closed.
+     *
+     * @author omnaest
+     */
+    public static class Writer implements AutoCloseable
+    {
+        private static final int  MAX_RUN_ENTRIES = 1 << 20;
+        private static final long MAX_RUN_BYTES   = 64L << 20;
+        private static final int  ENTRY_OVERHEAD  = 48;
+
+        private final Path              file;
+        private final Order             order;
+        private final int               maxRunEntries;
+        private final Comparator<Entry> comparator;
+        private final List<Path>        runFiles = new ArrayList<>();
+
+        private List<Entry> entries    = new ArrayList<>();
+        private long        entryBytes = 0;
+
+        protected Writer(Path file, Order order, int maxRunEntries)
+        {
+            super();
+            this.file = file;
+            this.order = order;
+            this.maxRunEntries = maxRunEntries;
+            this.comparator = comparatorOf(order);
+        }
+
+        public Writer add(long number, String text)
+        {
+            byte[] data = text.getBytes(StandardCharsets.UTF_8);
+            this.entries.add(new Entry(number, data));
+            this.entryBytes += data.length + ENTRY_OVERHEAD;
+            if (this.entries.size() >= this.maxRunEntries || this.entryBytes >= MAX_RUN_BYTES)
+            {
+                this.writeRun();
+            }
+            return this;
+        }
+
+        private void writeRun()
+        {
+            this.entries.sort(this.comparator);
+            try
+            {
+                Path runFile = Files.createTempFile(this.file.toAbsolutePath()
+                                                             .getParent(),
+                                                    this.file.getFileName()
+                                                             .toString(),
+                                                    ".run");
+                this.runFiles.add(runFile);
+                try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile), 64 * 1024)))
+                {
+                    for (Entry entry : this.entries)
+                    {
+                        outputStream.writeLong(entry.getNumber());
+                        outputStream.writeInt(entry.getText().length);
+                        outputStream.write(entry.getText());
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to write sort run of table " + this.file, e);
+            }
+            this.entries = new ArrayList<>();
+            this.entryBytes = 0;
+        }
+
+        /**
+         * Merges the sorted runs into the table file
+         */
+        @Override
+        public void close()
+        {
+            List<Run> runs = new ArrayList<>();
+            try
+            {
+                if (this.runFiles.isEmpty())
+                {
+                    this.entries.sort(this.comparator);
+                    runs.add(new MemoryRun(this.entries));
+                }
+                else
+                {
+                    if (!this.entries.isEmpty())
+                    {
+                        this.writeRun();
+                    }
+                    for (Path runFile : this.runFiles)
+                    {
+                        runs.add(new FileRun(runFile));
+                    }
+                }
+                this.merge(runs);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to write table " + this.file, e);
+            }
+            finally
+            {
+                for (Run run : runs)
+                {
+                    try
+                    {
+                        run.close();
+                    }
+                    catch (IOException e)
+                    {
+                        // ignored, the run file is deleted anyway
+                    }
+                }
+                for (Path runFile : this.runFiles)
+                {
+                    try
+                    {
+                        Files.deleteIfExists(runFile);
+                    }
+                    catch (IOException e)
+                    {
+                        // ignored
+                    }
+                }
+                this.entries = new ArrayList<>();
+            }
+        }
+
+        private void merge(List<Run> runs) throws IOException
+        {
+            Comparator<Integer> runComparator = Comparator.<Integer, Entry>comparing(index -> runs.get(index)
+                                                                                                   .current(),
+                                                                                      this.comparator)
+                                                          .thenComparing(Comparator.naturalOrder());
+            PriorityQueue<Integer> queue = new PriorityQueue<>(Math.max(1, runs.size()), runComparator);
+            for (int ii = 0; ii < runs.size(); ii++)
+            {
+                if (runs.get(ii)
+                        .current() != null)
+                {
+                    queue.add(ii);
+                }
+            }
+
+            Path stringsFile = Files.createTempFile(this.file.toAbsolutePath()
+                                                             .getParent(),
+                                                    this.file.getFileName()
+                                                             .toString(),
+                                                    ".strings");
+            long numberOfRecords = 0;
+            try
+            {
+                try (DataOutputStream records = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.file), 64 * 1024)))
+                {
+                    long stringsSize = 0;
+                    try (OutputStream strings = new BufferedOutputStream(Files.newOutputStream(stringsFile), 64 * 1024))
+                    {
+                        records.write(new byte[HEADER_SIZE]);
+                        Entry previous = null;
+                        while (!queue.isEmpty())
+                        {
+                            int index = queue.poll();
+                            Run run = runs.get(index);
+                            Entry entry = run.current();
+                            boolean duplicate = this.order == Order.BY_TEXT && previous != null && this.comparator.compare(previous, entry) == 0;
+                            if (!duplicate)
+                            {
+                                records.writeLong(entry.getNumber());
+                                records.writeLong(stringsSize);
+                                records.writeInt(entry.getText().length);
+                                strings.write(entry.getText());
+                                stringsSize += entry.getText().length;
+                                numberOfRecords++;
+                                previous = entry;
+                            }
+
+                            run.next();
+                            if (run.current() != null)
+                            {
+                                queue.add(index);
+                            }
+                        }
+                    }
+                    Files.copy(stringsFile, records);
+                }
+            }
+            finally
+            {
+                Files.deleteIfExists(stringsFile);
+            }
+
+            try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE))
+            {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC)
+                      .putInt(VERSION)
+                      .putInt(this.order.ordinal())
+                      .putLong(numberOfRecords)
+                      .putLong(HEADER_SIZE + numberOfRecords * RECORD_SIZE);
+                header.flip();
+                while (header.hasRemaining())
+                {
+                    channel.write(header, header.position());
+                }
+            }
+        }
+    }
+}
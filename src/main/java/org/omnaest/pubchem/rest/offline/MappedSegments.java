@@ -0,0 +1,205 @@
+package org.omnaest.pubchem.rest.offline;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory mapped read only file of fixed size records followed by a string area, shared by {@link CidIndex} and {@link LongStringTable}. A single
+ * {@link MappedByteBuffer} is limited to 2GB, so the records and the strings are mapped in segments and every access resolves its segment first.<br>
+ * <br>
+ * File layout:
+ *
+ * <pre>
+ * header:  int magic, int version, format specific fields, long number of records, long offset of the string area
+ * records: each of the record size
+ * strings: utf-8 encoded texts
+ * </pre>
+ *
+ * @author omnaest
+ */
+class MappedSegments
+{
+    private static final int STRING_SEGMENT_SIZE = 1 << 30;
+
+    private final ByteBuffer         header;
+    private final long               numberOfRecords;
+    private final int                recordSize;
+    private final int                recordsPerSegment;
+    private final MappedByteBuffer[] recordSegments;
+    private final MappedByteBuffer[] stringSegments;
+
+    protected MappedSegments(ByteBuffer header, long numberOfRecords, int recordSize, int recordsPerSegment, MappedByteBuffer[] recordSegments,
+                             MappedByteBuffer[] stringSegments)
+    {
+        super();
+        this.header = header;
+        this.numberOfRecords = numberOfRecords;
+        this.recordSize = recordSize;
+        this.recordsPerSegment = recordsPerSegment;
+        this.recordSegments = recordSegments;
+        this.stringSegments = stringSegments;
+    }
+
+    /**
+     * Maps the given file after checking the magic number and the version of its header
+     *
+     * @param file
+     * @param fileType
+     *            name of the file type used in error messages, e.g. "cid index"
+     * @param magic
+     * @param version
+     * @param headerSize
+     *            size of the header including the format specific fields
+     * @param recordSize
+     * @return
+     * @throws IllegalArgumentException
+     *             if the file has not the given magic number and version
+     */
+    public static MappedSegments open(Path file, String fileType, int magic, int version, int headerSize, int recordSize)
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(headerSize);
+            while (header.hasRemaining() && channel.read(header) >= 0)
+            {
+                // read the full header
+            }
+            header.flip();
+            if (header.remaining() < headerSize || header.getInt(0) != magic || header.getInt(4) != version)
+            {
+                throw new IllegalArgumentException("Not a " + fileType + " file: " + file);
+            }
+            long numberOfRecords = header.getLong(headerSize - 16);
+            long stringsOffset = header.getLong(headerSize - 8);
+
+            int recordsPerSegment = Integer.MAX_VALUE / recordSize;
+            int numberOfRecordSegments = (int) ((numberOfRecords + recordsPerSegment - 1) / recordsPerSegment);
+            MappedByteBuffer[] recordSegments = new MappedByteBuffer[numberOfRecordSegments];
+            for (int ii = 0; ii < numberOfRecordSegments; ii++)
+            {
+                long firstRecord = (long) ii * recordsPerSegment;
+                long records = Math.min(recordsPerSegment, numberOfRecords - firstRecord);
+                recordSegments[ii] = channel.map(MapMode.READ_ONLY, headerSize + firstRecord * recordSize, records * recordSize);
+            }
+
+            long stringsSize = channel.size() - stringsOffset;
+            int numberOfStringSegments = (int) ((stringsSize + STRING_SEGMENT_SIZE - 1) / STRING_SEGMENT_SIZE);
+            MappedByteBuffer[] stringSegments = new MappedByteBuffer[numberOfStringSegments];
+            for (int ii = 0; ii < numberOfStringSegments; ii++)
+            {
+                long offset = (long) ii * STRING_SEGMENT_SIZE;
+                stringSegments[ii] = channel.map(MapMode.READ_ONLY, stringsOffset + offset, Math.min(STRING_SEGMENT_SIZE, stringsSize - offset));
+            }
+
+            return new MappedSegments(header.asReadOnlyBuffer(), numberOfRecords, recordSize, recordsPerSegment, recordSegments, stringSegments);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to open " + fileType + " " + file, e);
+        }
+    }
+
+    /**
+     * Returns the int of the header at the given absolute position, e.g. of a format specific field
+     *
+     * @param position
+     * @return
+     */
+    public int getHeaderInt(int position)
+    {
+        return this.header.getInt(position);
+    }
+
+    public long size()
+    {
+        return this.numberOfRecords;
+    }
+
+    /**
+     * Returns the long at the given position within the record with the given index
+     *
+     * @param index
+     * @param position
+     * @return
+     */
+    public long getLong(long index, int position)
+    {
+        return this.recordSegmentOf(index)
+                   .getLong(this.positionOf(index) + position);
+    }
+
+    /**
+     * Returns the int at the given position within the record with the given index
+     *
+     * @param index
+     * @param position
+     * @return
+     */
+    public int getInt(long index, int position)
+    {
+        return this.recordSegmentOf(index)
+                   .getInt(this.positionOf(index) + position);
+    }
+
+    /**
+     * Returns the utf-8 text of the given length at the given offset of the string area
+     *
+     * @param offset
+     * @param length
+     * @return
+     */
+    public String getString(long offset, int length)
+    {
+        byte[] text = new byte[length];
+        for (int ii = 0; ii < length; ii++)
+        {
+            text[ii] = this.byteAt(offset + ii);
+        }
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares the text of the given length at the given offset of the string area with the given utf-8 bytes by their unsigned values without
+     * creating a {@link String}
+     *
+     * @param offset
+     * @param length
+     * @param data
+     * @return
+     */
+    public int compareString(long offset, int length, byte[] data)
+    {
+        int commonLength = Math.min(length, data.length);
+        for (int ii = 0; ii < commonLength; ii++)
+        {
+            int comparison = Integer.compare(Byte.toUnsignedInt(this.byteAt(offset + ii)), Byte.toUnsignedInt(data[ii]));
+            if (comparison != 0)
+            {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, data.length);
+    }
+
+    private MappedByteBuffer recordSegmentOf(long index)
+    {
+        return this.recordSegments[(int) (index / this.recordsPerSegment)];
+    }
+
+    private int positionOf(long index)
+    {
+        return (int) (index % this.recordsPerSegment) * this.recordSize;
+    }
+
+    private byte byteAt(long offset)
+    {
+        return this.stringSegments[(int) (offset / STRING_SEGMENT_SIZE)].get((int) (offset % STRING_SEGMENT_SIZE));
+    }
+}
@@ -0,0 +1,323 @@
+package org.omnaest.pubchem.rest.offline;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.omnaest.pubchem.rest.domain.Synonyms;
+import org.omnaest.pubchem.rest.offline.CidIndex.InputStreamSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local index over the PubChem bulk files CID-Synonym-filtered.gz, CID-Title.gz and CID-Parent.gz, which answers synonym, title, parent cid and name to cid
+ * lookups without network access.<br>
+ * <br>
+ * The synonyms are streamed line by line into two memory mapped {@link LongStringTable}s, one sorted by normalized name and one sorted by cid, so neither
+ * building nor querying the index loads a whole file into memory and a lookup is a binary search. Titles and parent cids are stored in a memory mapped
+ * {@link CidIndex}.
+ *
+ * @see #builder()
+ * @see #open(Path)
+ * @author omnaest
+ */
+public class OfflineIndex
+{
+    private static final Logger LOG = LoggerFactory.getLogger(OfflineIndex.class);
+
+    public static final String PUBCHEM_SYNONYMS_URL = "https://ftp.ncbi.nlm.nih.gov/pubchem/Compound/Extras/CID-Synonym-filtered.gz";
+    public static final String PUBCHEM_TITLES_URL   = "https://ftp.ncbi.nlm.nih.gov/pubchem/Compound/Extras/CID-Title.gz";
+    public static final String PUBCHEM_PARENTS_URL  = "https://ftp.ncbi.nlm.nih.gov/pubchem/Compound/Extras/CID-Parent.gz";
+
+    private static final String NAMES_FILE     = "names.tbl";
+    private static final String SYNONYMS_FILE  = "synonyms.tbl";
+    private static final String CID_INDEX_FILE = "cids.idx";
+    private static final String INDEX_FILE     = "index.properties";
+
+    private static final String[] LEGACY_BUCKET_FOLDERS = { "names", "synonyms" };
+
+    private final LongStringTable nameTable;
+    private final LongStringTable synonymTable;
+    private final CidIndex        cidIndex;
+
+    protected OfflineIndex(LongStringTable nameTable, LongStringTable synonymTable, CidIndex cidIndex)
+    {
+        super();
+        this.nameTable = nameTable;
+        this.synonymTable = synonymTable;
+        this.cidIndex = cidIndex;
+    }
+
+    /**
+     * Opens an {@link OfflineIndex} which has been created by {@link #builder()}
+     *
+     * @param directory
+     * @return
+     */
+    public static OfflineIndex open(Path directory)
+    {
+        if (!Files.isRegularFile(directory.resolve(INDEX_FILE)))
+        {
+            throw new IllegalArgumentException("No offline index found in " + directory);
+        }
+        if (!Files.isRegularFile(directory.resolve(NAMES_FILE)) || !Files.isRegularFile(directory.resolve(SYNONYMS_FILE)))
+        {
+            throw new IllegalArgumentException("The offline index in " + directory + " has an outdated format and has to be rebuilt");
+        }
+        Path cidIndexFile = directory.resolve(CID_INDEX_FILE);
+        return new OfflineIndex(LongStringTable.open(directory.resolve(NAMES_FILE)), LongStringTable.open(directory.resolve(SYNONYMS_FILE)),
+                                Files.isRegularFile(cidIndexFile) ? CidIndex.open(cidIndexFile) : null);
+    }
+
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Returns the lowest cid which has the given name as synonym. The name is matched case insensitive.
+     *
+     * @param name
+     * @return
+     */
+    public Optional<Long> findCidByName(String name)
+    {
+        String normalizedName = normalizeName(name);
+        if (normalizedName.isEmpty())
+        {
+            return Optional.empty();
+        }
+        OptionalLong cid = this.nameTable.findFirstNumber(normalizedName);
+        return cid.isPresent() ? Optional.of(cid.getAsLong()) : Optional.empty();
+    }
+
+    /**
+     * Returns the synonyms of the given cid in the order of the synonym files
+     *
+     * @param cid
+     * @return
+     */
+    public Optional<Synonyms> findSynonyms(long cid)
+    {
+        List<String> synonyms = this.synonymTable.findTexts(cid);
+        return synonyms.isEmpty() ? Optional.empty() : Optional.of(new Synonyms(cid, synonyms));
+    }
+
+    public Optional<String> findTitle(long cid)
+    {
+        return Optional.ofNullable(this.cidIndex)
+                       .flatMap(index -> index.findTitle(cid));
+    }
+
+    public OptionalLong findParentCid(long cid)
+    {
+        return this.cidIndex != null ? this.cidIndex.findParentCid(cid) : OptionalLong.empty();
+    }
+
+    /**
+     * Normalizes a compound name for lookups: trimmed, lower case and with single spaces
+     *
+     * @param name
+     * @return
+     */
+    public static String normalizeName(String name)
+    {
+        return StringUtils.normalizeSpace(StringUtils.defaultString(name))
+                          .toLowerCase(Locale.ROOT);
+    }
+
+    private static String[] splitLine(String line)
+    {
+        int separatorIndex = line.indexOf('\t');
+        return separatorIndex < 0 ? null : new String[] { line.substring(0, separatorIndex), line.substring(separatorIndex + 1) };
+    }
+
+    /**
+     * Builder of an {@link OfflineIndex}. The PubChem files can be given as local gzip files or as urls, e.g. {@link OfflineIndex#PUBCHEM_SYNONYMS_URL},
+     * which are streamed directly. The title and parent files have to be sorted by cid, like the ones provided by PubChem are.
+     *
+     * @author omnaest
+     */
+    public static class Builder
+    {
+        private List<InputStreamSource> synonymSources = new ArrayList<>();
+        private InputStreamSource       titlesSource   = null;
+        private InputStreamSource       parentsSource  = null;
+
+        /**
+         * Adds a gzip compressed file in the format of CID-Synonym-filtered.gz with one "cid \t synonym" per line
+         *
+         * @param gzipFile
+         * @return
+         */
+        public Builder withSynonymsFile(Path gzipFile)
+        {
+            this.synonymSources.add(() -> Files.newInputStream(gzipFile));
+            return this;
+        }
+
+        public Builder withSynonymsUrl(String url)
+        {
+            this.synonymSources.add(() -> new URL(url).openStream());
+            return this;
+        }
+
+        /**
+         * Adds a gzip compressed file in the format of CID-Title.gz with one "cid \t title" per line
+         *
+         * @param gzipFile
+         * @return
+         */
+        public Builder withTitlesFile(Path gzipFile)
+        {
+            this.titlesSource = () -> Files.newInputStream(gzipFile);
+            return this;
+        }
+
+        public Builder withTitlesUrl(String url)
+        {
+            this.titlesSource = () -> new URL(url).openStream();
+            return this;
+        }
+
+        /**
+         * Adds a gzip compressed file in the format of CID-Parent.gz with one "cid \t parent cid" per line
+         *
+         * @param gzipFile
+         * @return
+         */
+        public Builder withParentsFile(Path gzipFile)
+        {
+            this.parentsSource = () -> Files.newInputStream(gzipFile);
+            return this;
+        }
+
+        public Builder withParentsUrl(String url)
+        {
+            this.parentsSource = () -> new URL(url).openStream();
+            return this;
+        }
+
+        /**
+         * Streams all given files into a new {@link OfflineIndex} within the given directory. An existing index in this directory is replaced.
+         *
+         * @param directory
+         * @return
+         */
+        public OfflineIndex build(Path directory)
+        {
+            try
+            {
+                Files.createDirectories(directory);
+                Files.deleteIfExists(directory.resolve(INDEX_FILE));
+                Files.deleteIfExists(directory.resolve(CID_INDEX_FILE));
+                for (String folder : LEGACY_BUCKET_FOLDERS)
+                {
+                    deleteRecursively(directory.resolve(folder));
+                }
+
+                long numberOfSynonyms = 0;
+                try (LongStringTable.Writer nameWriter = LongStringTable.writer(directory.resolve(NAMES_FILE), LongStringTable.Order.BY_TEXT);
+                        LongStringTable.Writer synonymWriter = LongStringTable.writer(directory.resolve(SYNONYMS_FILE), LongStringTable.Order.BY_NUMBER))
+                {
+                    for (InputStreamSource source : this.synonymSources)
+                    {
+                        numberOfSynonyms += readLines(source, (cid, synonym) ->
+                        {
+                            synonymWriter.add(cid, synonym);
+                            String normalizedName = normalizeName(synonym);
+                            if (!normalizedName.isEmpty())
+                            {
+                                nameWriter.add(cid, normalizedName);
+                            }
+                        });
+                    }
+                }
+                LongStringTable nameTable = LongStringTable.open(directory.resolve(NAMES_FILE));
+                LongStringTable synonymTable = LongStringTable.open(directory.resolve(SYNONYMS_FILE));
+                CidIndex cidIndex = this.titlesSource != null || this.parentsSource != null
+                        ? CidIndex.build(directory.resolve(CID_INDEX_FILE), this.titlesSource, this.parentsSource)
+                        : null;
+                long numberOfCids = cidIndex != null ? cidIndex.size() : 0;
+
+                Properties properties = new Properties();
+                properties.setProperty("synonyms", String.valueOf(numberOfSynonyms));
+                properties.setProperty("cids", String.valueOf(numberOfCids));
+                try (OutputStream outputStream = Files.newOutputStream(directory.resolve(INDEX_FILE)))
+                {
+                    properties.store(outputStream, "PubChem offline index");
+                }
+                LOG.info("Created offline index with " + numberOfSynonyms + " synonyms and " + numberOfCids + " cids in " + directory);
+                return new OfflineIndex(nameTable, synonymTable, cidIndex);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to build offline index in " + directory, e);
+            }
+        }
+
+        private static long readLines(InputStreamSource source, LineConsumer consumer) throws IOException
+        {
+            long count = 0;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(source.open(), 64 * 1024), StandardCharsets.UTF_8)))
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    String[] tokens = splitLine(line);
+                    if (tokens != null && StringUtils.isNumeric(tokens[0]) && !tokens[1].isEmpty())
+                    {
+                        consumer.accept(Long.parseLong(tokens[0]), tokens[1]);
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Deletes the hash bucket folders of indexes which were built by an earlier version
+         *
+         * @param folder
+         * @throws IOException
+         */
+        private static void deleteRecursively(Path folder) throws IOException
+        {
+            if (Files.isDirectory(folder))
+            {
+                List<Path> files;
+                try (Stream<Path> paths = Files.walk(folder))
+                {
+                    files = paths.sorted(Comparator.reverseOrder())
+                                 .collect(Collectors.toList());
+                }
+                for (Path file : files)
+                {
+                    Files.delete(file);
+                }
+            }
+        }
+
+        private static interface LineConsumer
+        {
+            public void accept(long cid, String value) throws IOException;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package org.omnaest.pubchem.rest.property;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * Columnar table of compound properties with one row per cid. Numeric properties are kept in primitive double columns, with {@link Double#NaN} for
+ * missing values, all other properties in {@link String} columns.<br>
+ * <br>
+ * A {@link PropertyTable} is immutable, it is created by a {@link Builder}, which parses the csv output of the PubChem property table record by record
+ * directly into the columns.
+ *
+ * @see #builder(PropertyType...)
+ * @author omnaest
+ */
+public class PropertyTable
+{
+    private static final String CID_COLUMN = "CID";
+
+    private final List<PropertyType>          propertyTypes;
+    private final long[]                      cids;
+    private final Map<PropertyType, double[]> numberColumns;
+    private final Map<PropertyType, String[]> textColumns;
+    private final Map<Long, Integer>          cidToRow;
+
+    protected PropertyTable(List<PropertyType> propertyTypes, long[] cids, Map<PropertyType, double[]> numberColumns,
+                            Map<PropertyType, String[]> textColumns)
+    {
+        super();
+        this.propertyTypes = propertyTypes;
+        this.cids = cids;
+        this.numberColumns = numberColumns;
+        this.textColumns = textColumns;
+        this.cidToRow = new HashMap<>(cids.length * 2);
+        for (int row = cids.length - 1; row >= 0; row--)
+        {
+            this.cidToRow.put(cids[row], row);
+        }
+    }
+
+    /**
+     * Returns a {@link Builder} for a {@link PropertyTable} with the given {@link PropertyType}s as columns
+     *
+     * @param propertyTypes
+     * @return
+     */
+    public static Builder builder(PropertyType... propertyTypes)
+    {
+        return new Builder(Arrays.asList(propertyTypes));
+    }
+
+    public List<PropertyType> getPropertyTypes()
+    {
+        return this.propertyTypes;
+    }
+
+    /**
+     * Returns the number of rows
+     *
+     * @return
+     */
+    public int size()
+    {
+        return this.cids.length;
+    }
+
+    public long getCid(int row)
+    {
+        return this.cids[row];
+    }
+
+    /**
+     * Returns the row of the given cid, or empty if the table has no row for it
+     *
+     * @param cid
+     * @return
+     */
+    public Optional<Integer> getRow(long cid)
+    {
+        return Optional.ofNullable(this.cidToRow.get(cid));
+    }
+
+    /**
+     * Returns the value of a numeric {@link PropertyType} or {@link Double#NaN} if the value is missing
+     *
+     * @param row
+     * @param propertyType
+     * @return
+     */
+    public double getNumber(int row, PropertyType propertyType)
+    {
+        return this.getNumberColumn(propertyType)[row];
+    }
+
+    /**
+     * Similar to {@link #getNumber(int, PropertyType)} for the row of the given cid
+     *
+     * @param cid
+     * @param propertyType
+     * @return
+     */
+    public OptionalDouble getNumberByCid(long cid, PropertyType propertyType)
+    {
+        double[] column = this.getNumberColumn(propertyType);
+        return this.getRow(cid)
+                   .map(row -> column[row])
+                   .filter(value -> !Double.isNaN(value))
+                   .map(OptionalDouble::of)
+                   .orElse(OptionalDouble.empty());
+    }
+
+    /**
+     * Returns the value of a non numeric {@link PropertyType} or null if the value is missing
+     *
+     * @param row
+     * @param propertyType
+     * @return
+     */
+    public String getText(int row, PropertyType propertyType)
+    {
+        return this.getTextColumn(propertyType)[row];
+    }
+
+    /**
+     * Similar to {@link #getText(int, PropertyType)} for the row of the given cid
+     *
+     * @param cid
+     * @param propertyType
+     * @return
+     */
+    public Optional<String> getTextByCid(long cid, PropertyType propertyType)
+    {
+        String[] column = this.getTextColumn(propertyType);
+        return this.getRow(cid)
+                   .map(row -> column[row]);
+    }
+
+    /**
+     * Returns a copy of the column of a numeric {@link PropertyType}
+     *
+     * @param propertyType
+     * @return
+     */
+    public double[] getNumbers(PropertyType propertyType)
+    {
+        return this.getNumberColumn(propertyType).clone();
+    }
+
+    /**
+     * Returns the column of a non numeric {@link PropertyType}
+     *
+     * @param propertyType
+     * @return
+     */
+    public List<String> getTexts(PropertyType propertyType)
+    {
+        return Collections.unmodifiableList(Arrays.asList(this.getTextColumn(propertyType)));
+    }
+
+    private double[] getNumberColumn(PropertyType propertyType)
+    {
+        double[] column = this.numberColumns.get(propertyType);
+        if (column == null)
+        {
+            throw new IllegalArgumentException("No numeric column " + propertyType + " in " + this.propertyTypes);
+        }
+        return column;
+    }
+
+    private String[] getTextColumn(PropertyType propertyType)
+    {
+        String[] column = this.textColumns.get(propertyType);
+        if (column == null)
+        {
+            throw new IllegalArgumentException("No text column " + propertyType + " in " + this.propertyTypes);
+        }
+        return column;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PropertyTable [propertyTypes=" + this.propertyTypes + ", size=" + this.cids.length + "]";
+    }
+
+    /**
+     * Collects the rows of a {@link PropertyTable}. The columns grow like an {@link ArrayList}.
+     *
+     * @author omnaest
+     */
+    public static class Builder
+    {
+        private final List<PropertyType> propertyTypes;
+
+        private long[]     cids = new long[16];
+        private double[][] numberColumns;
+        private String[][] textColumns;
+        private int        size = 0;
+
+        protected Builder(List<PropertyType> propertyTypes)
+        {
+            super();
+            this.propertyTypes = Collections.unmodifiableList(new ArrayList<>(propertyTypes));
+            this.numberColumns = new double[propertyTypes.size()][];
+            this.textColumns = new String[propertyTypes.size()][];
+            for (int column = 0; column < propertyTypes.size(); column++)
+            {
+                if (propertyTypes.get(column)
+                                 .isNumeric())
+                {
+                    this.numberColumns[column] = new double[this.cids.length];
+                }
+                else
+                {
+                    this.textColumns[column] = new String[this.cids.length];
+                }
+            }
+        }
+
+        /**
+         * Adds a row with the given values in the order of the {@link PropertyType}s. Empty or unparsable numbers are stored as {@link Double#NaN} and
+         * empty texts as null.
+         *
+         * @param cid
+         * @param values
+         * @return
+         */
+        public Builder addRow(long cid, String... values)
+        {
+            if (this.size == this.cids.length)
+            {
+                this.grow();
+            }
+            this.cids[this.size] = cid;
+            for (int column = 0; column < this.propertyTypes.size(); column++)
+            {
+                String value = column < values.length ? values[column] : null;
+                boolean empty = value == null || value.isEmpty();
+                if (this.numberColumns[column] != null)
+                {
+                    this.numberColumns[column][this.size] = empty ? Double.NaN : parseNumber(value);
+                }
+                else
+                {
+                    this.textColumns[column][this.size] = empty ? null : value;
+                }
+            }
+            this.size++;
+            return this;
+        }
+
+        /**
+         * Adds the rows of the csv output of the PubChem property table, which is streamed record by record by a {@link CSVParser}. The columns are
+         * matched by the header line, which has to contain a "CID" column. Columns of {@link PropertyType}s which are not part of this {@link Builder}
+         * are ignored.
+         *
+         * @param reader
+         * @return
+         */
+        public Builder addCsv(Reader reader)
+        {
+            try (CSVParser parser = CSVFormat.DEFAULT.parse(reader))
+            {
+                Iterator<CSVRecord> records = parser.iterator();
+                if (!records.hasNext())
+                {
+                    return this;
+                }
+
+                List<String> header = new ArrayList<>();
+                records.next()
+                       .forEach(header::add);
+                int cidIndex = header.indexOf(CID_COLUMN);
+                if (cidIndex < 0)
+                {
+                    throw new IOException("Missing " + CID_COLUMN + " column in csv header " + header);
+                }
+                int[] columnIndexes = new int[this.propertyTypes.size()];
+                for (int column = 0; column < columnIndexes.length; column++)
+                {
+                    columnIndexes[column] = header.indexOf(this.propertyTypes.get(column)
+                                                                             .getIdentifier());
+                }
+
+                String[] values = new String[columnIndexes.length];
+                while (records.hasNext())
+                {
+                    CSVRecord record = records.next();
+                    for (int column = 0; column < columnIndexes.length; column++)
+                    {
+                        int index = columnIndexes[column];
+                        values[column] = index >= 0 && index < record.size() ? record.get(index) : null;
+                    }
+                    this.addRow(Long.parseLong(record.get(cidIndex)
+                                                     .trim()),
+                                values);
+                }
+                return this;
+            }
+            catch (IOException | RuntimeException e)
+            {
+                throw new UncheckedIOException(new IOException("Failed to parse PubChem property csv", e));
+            }
+        }
+
+        private void grow()
+        {
+            int capacity = this.cids.length * 2;
+            this.cids = Arrays.copyOf(this.cids, capacity);
+            for (int column = 0; column < this.propertyTypes.size(); column++)
+            {
+                if (this.numberColumns[column] != null)
+                {
+                    this.numberColumns[column] = Arrays.copyOf(this.numberColumns[column], capacity);
+                }
+                else
+                {
+                    this.textColumns[column] = Arrays.copyOf(this.textColumns[column], capacity);
+                }
+            }
+        }
+
+        private static double parseNumber(String value)
+        {
+            try
+            {
+                return Double.parseDouble(value.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                return Double.NaN;
+            }
+        }
+
+        public PropertyTable build()
+        {
+            Map<PropertyType, double[]> numberColumns = new EnumMap<>(PropertyType.class);
+            Map<PropertyType, String[]> textColumns = new EnumMap<>(PropertyType.class);
+            for (int column = 0; column < this.propertyTypes.size(); column++)
+            {
+                PropertyType propertyType = this.propertyTypes.get(column);
+                if (this.numberColumns[column] != null)
+                {
+                    numberColumns.put(propertyType, Arrays.copyOf(this.numberColumns[column], this.size));
+                }
+                else
+                {
+                    textColumns.put(propertyType, Arrays.copyOf(this.textColumns[column], this.size));
+                }
+            }
+            return new PropertyTable(this.propertyTypes, Arrays.copyOf(this.cids, this.size), numberColumns, textColumns);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.omnaest.pubchem.rest.property;
+
+import java.util.Optional;
+
+/**
+ * Compound properties which can be requested from the PubChem property table. The identifiers are the property names of the PubChem REST api and the
+ * column names of its csv output.
+ *
+ * @see PropertyTable
+ * @author omnaest
+ */
+public enum PropertyType
+{
+    MOLECULAR_FORMULA("MolecularFormula", false),
+    MOLECULAR_WEIGHT("MolecularWeight", true),
+    SMILES("SMILES", false),
+    CONNECTIVITY_SMILES("ConnectivitySMILES", false),
+    INCHI("InChI", false),
+    INCHI_KEY("InChIKey", false),
+    IUPAC_NAME("IUPACName", false),
+    TITLE("Title", false),
+    XLOGP("XLogP", true),
+    EXACT_MASS("ExactMass", true),
+    MONOISOTOPIC_MASS("MonoisotopicMass", true),
+    TPSA("TPSA", true),
+    COMPLEXITY("Complexity", true),
+    CHARGE("Charge", true),
+    HBOND_DONOR_COUNT("HBondDonorCount", true),
+    HBOND_ACCEPTOR_COUNT("HBondAcceptorCount", true),
+    ROTATABLE_BOND_COUNT("RotatableBondCount", true),
+    HEAVY_ATOM_COUNT("HeavyAtomCount", true);
+
+    private final String  identifier;
+    private final boolean numeric;
+
+    private PropertyType(String identifier, boolean numeric)
+    {
+        this.identifier = identifier;
+        this.numeric = numeric;
+    }
+
+    /**
+     * Returns the property name of the PubChem REST api, which is also the column name of its csv output
+     *
+     * @return
+     */
+    public String getIdentifier()
+    {
+        return this.identifier;
+    }
+
+    /**
+     * Returns true if the values of this property are numbers, which a {@link PropertyTable} keeps in a primitive double column
+     *
+     * @return
+     */
+    public boolean isNumeric()
+    {
+        return this.numeric;
+    }
+
+    public boolean matches(String identifier)
+    {
+        return Optional.ofNullable(identifier)
+                       .map(otherIdentifier -> otherIdentifier.equalsIgnoreCase(this.identifier))
+                       .orElse(false);
+    }
+}
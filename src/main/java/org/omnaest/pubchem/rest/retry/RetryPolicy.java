@@ -0,0 +1,351 @@
+package org.omnaest.pubchem.rest.retry;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides if and when a failed PubChem request is retried. The waiting time between retries grows exponentially and is fully jittered, so retries of
+ * parallel threads do not line up in waves.<br>
+ * <br>
+ * Each {@link Failure} type has its own maximum number of retries. A {@link Failure#THROTTLED} response is retried after its Retry-After header without
+ * additional backoff, since the rate limiter already slows down on throttling.<br>
+ * <br>
+ * All calls of one {@link RetryPolicy} share a retry budget: every request adds a fraction of a retry to the budget and every retry takes one, so during
+ * an outage at most that fraction of additional requests is sent. Additionally each call can have a deadline after which it is not retried anymore.<br>
+ * <br>
+ * A {@link RetryPolicy} is immutable except for its budget, the with methods return a modified copy with a new budget.
+ *
+ * @author omnaest
+ */
+public class RetryPolicy
+{
+    /**
+     * Types of failed requests which are handled separately
+     *
+     * @author omnaest
+     */
+    public static enum Failure
+    {
+        /**
+         * Status code 5xx except 503
+         */
+        SERVER_ERROR,
+
+        /**
+         * Status code 503, which PubChem uses for throttling
+         */
+        THROTTLED,
+
+        /**
+         * The request or the connection attempt timed out
+         */
+        TIMEOUT,
+
+        /**
+         * Any other failure of the transport
+         */
+        IO_ERROR
+    }
+
+    private static final long BUDGET_SCALE = 1000;
+
+    private final Map<Failure, Integer> maxRetries;
+    private final long                  initialBackoffMillis;
+    private final long                  maxBackoffMillis;
+    private final double                budgetRatio;
+    private final int                   maxBudget;
+    private final long                  deadlineMillis;
+
+    private final AtomicLong budget;
+
+    protected RetryPolicy(Map<Failure, Integer> maxRetries, long initialBackoffMillis, long maxBackoffMillis, double budgetRatio, int maxBudget,
+                          long deadlineMillis)
+    {
+        super();
+        this.maxRetries = maxRetries;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.budgetRatio = budgetRatio;
+        this.maxBudget = maxBudget;
+        this.deadlineMillis = deadlineMillis;
+        this.budget = new AtomicLong(maxBudget * BUDGET_SCALE);
+    }
+
+    /**
+     * Returns a {@link RetryPolicy} which retries server errors and io errors 3 times, timeouts 2 times and throttled responses 5 times. The backoff
+     * starts at 500 milliseconds and is at most 30 seconds. The retry budget allows retries for 20% of the requests plus a reserve of 10 retries. There
+     * is no deadline.
+     *
+     * @return
+     */
+    public static RetryPolicy newInstance()
+    {
+        Map<Failure, Integer> maxRetries = new EnumMap<>(Failure.class);
+        maxRetries.put(Failure.SERVER_ERROR, 3);
+        maxRetries.put(Failure.THROTTLED, 5);
+        maxRetries.put(Failure.TIMEOUT, 2);
+        maxRetries.put(Failure.IO_ERROR, 3);
+        return new RetryPolicy(maxRetries, 500, TimeUnit.SECONDS.toMillis(30), 0.2, 10, 0);
+    }
+
+    /**
+     * Returns a {@link RetryPolicy} which never retries
+     *
+     * @return
+     */
+    public static RetryPolicy noRetries()
+    {
+        RetryPolicy retryPolicy = newInstance();
+        for (Failure failure : Failure.values())
+        {
+            retryPolicy = retryPolicy.withMaxRetries(failure, 0);
+        }
+        return retryPolicy;
+    }
+
+    /**
+     * Sets the maximum number of retries of a single call for the given {@link Failure} type
+     *
+     * @param failure
+     * @param maxRetries
+     * @return
+     */
+    public RetryPolicy withMaxRetries(Failure failure, int maxRetries)
+    {
+        if (maxRetries < 0)
+        {
+            throw new IllegalArgumentException("maxRetries must not be negative: " + maxRetries);
+        }
+        Map<Failure, Integer> modifiedMaxRetries = new EnumMap<>(this.maxRetries);
+        modifiedMaxRetries.put(failure, maxRetries);
+        return new RetryPolicy(modifiedMaxRetries, this.initialBackoffMillis, this.maxBackoffMillis, this.budgetRatio, this.maxBudget,
+                               this.deadlineMillis);
+    }
+
+    /**
+     * Sets the backoff before the first retry, which doubles with every further retry up to the given maximum. The actual waiting time is a random
+     * value between zero and the backoff.
+     *
+     * @param initialBackoff
+     * @param maxBackoff
+     * @param timeUnit
+     * @return
+     */
+    public RetryPolicy withBackoff(long initialBackoff, long maxBackoff, TimeUnit timeUnit)
+    {
+        if (initialBackoff < 0 || maxBackoff < initialBackoff)
+        {
+            throw new IllegalArgumentException("Invalid backoff: " + initialBackoff + " to " + maxBackoff);
+        }
+        return new RetryPolicy(this.maxRetries, timeUnit.toMillis(initialBackoff), timeUnit.toMillis(maxBackoff), this.budgetRatio, this.maxBudget,
+                               this.deadlineMillis);
+    }
+
+    /**
+     * Sets the retry budget. Every request adds the given ratio of a retry to the budget, up to the given maximum number of retries, which is also the
+     * initial budget.
+     *
+     * @param ratio
+     *            e.g. 0.2 to allow retries for 20% of the requests
+     * @param maxBudget
+     * @return
+     */
+    public RetryPolicy withRetryBudget(double ratio, int maxBudget)
+    {
+        if (ratio < 0 || maxBudget < 0)
+        {
+            throw new IllegalArgumentException("Invalid retry budget: " + ratio + " up to " + maxBudget);
+        }
+        return new RetryPolicy(this.maxRetries, this.initialBackoffMillis, this.maxBackoffMillis, ratio, maxBudget, this.deadlineMillis);
+    }
+
+    /**
+     * Sets the maximum duration of a single call including all retries. A retry which would start after the deadline is not executed and a request is
+     * not given more time than is left until the deadline.
+     *
+     * @param deadline
+     * @param timeUnit
+     * @return
+     */
+    public RetryPolicy withDeadline(long deadline, TimeUnit timeUnit)
+    {
+        if (deadline <= 0)
+        {
+            throw new IllegalArgumentException("deadline must be positive: " + deadline);
+        }
+        return new RetryPolicy(this.maxRetries, this.initialBackoffMillis, this.maxBackoffMillis, this.budgetRatio, this.maxBudget,
+                               timeUnit.toMillis(deadline));
+    }
+
+    /**
+     * Starts a new call, e.g. the request of a single url with all its retries
+     *
+     * @return
+     */
+    public Call newCall()
+    {
+        return new Call(this.deadlineMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.deadlineMillis) : 0);
+    }
+
+    /**
+     * Returns the number of retries which are currently left in the shared retry budget
+     *
+     * @return
+     */
+    public int getAvailableBudget()
+    {
+        return (int) (this.budget.get() / BUDGET_SCALE);
+    }
+
+    private void depositBudget()
+    {
+        long deposit = Math.round(this.budgetRatio * BUDGET_SCALE);
+        long max = this.maxBudget * BUDGET_SCALE;
+        this.budget.getAndUpdate(current -> Math.min(max, current + deposit));
+    }
+
+    private boolean withdrawBudget()
+    {
+        return this.budget.getAndUpdate(current -> current >= BUDGET_SCALE ? current - BUDGET_SCALE : current) >= BUDGET_SCALE;
+    }
+
+    private long determineBackoffMillis(int retry)
+    {
+        long backoff = this.initialBackoffMillis << Math.min(retry, 30);
+        long cappedBackoff = backoff < 0 ? this.maxBackoffMillis : Math.min(this.maxBackoffMillis, backoff);
+        return cappedBackoff > 0 ? ThreadLocalRandom.current()
+                                                    .nextLong(cappedBackoff + 1)
+                : 0;
+    }
+
+    /**
+     * Parses the value of a Retry-After header, which is either a number of seconds or a http date
+     *
+     * @param retryAfter
+     * @return milliseconds to wait or empty if the value is missing or invalid
+     */
+    public static OptionalLong parseRetryAfterMillis(String retryAfter)
+    {
+        if (retryAfter == null || retryAfter.isBlank())
+        {
+            return OptionalLong.empty();
+        }
+        try
+        {
+            return OptionalLong.of(Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()))));
+        }
+        catch (NumberFormatException e)
+        {
+            try
+            {
+                ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return OptionalLong.of(Math.max(0, date.toInstant()
+                                                       .toEpochMilli()
+                        - System.currentTimeMillis()));
+            }
+            catch (DateTimeParseException e2)
+            {
+                return OptionalLong.empty();
+            }
+        }
+    }
+
+    /**
+     * State of a single call with its retries
+     *
+     * @author omnaest
+     */
+    public class Call
+    {
+        private final long                  deadlineNanos;
+        private final Map<Failure, Integer> retries = new EnumMap<>(Failure.class);
+
+        private int retryCount = 0;
+
+        protected Call(long deadlineNanos)
+        {
+            super();
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Has to be called before each request of this call, including the retries
+         */
+        public void onRequest()
+        {
+            RetryPolicy.this.depositBudget();
+        }
+
+        /**
+         * Returns the time which is left until the deadline, or empty if there is no deadline
+         *
+         * @return
+         */
+        public Optional<Duration> getRemainingTime()
+        {
+            return this.deadlineNanos != 0 ? Optional.of(Duration.ofNanos(Math.max(0, this.deadlineNanos - System.nanoTime()))) : Optional.empty();
+        }
+
+        /**
+         * Returns the number of retries of this call so far
+         *
+         * @return
+         */
+        public int getRetryCount()
+        {
+            return this.retryCount;
+        }
+
+        /**
+         * Returns the milliseconds to wait before the next retry, or empty if the request should not be retried, because the maximum number of retries
+         * for the given {@link Failure}, the retry budget or the deadline is exhausted.
+         *
+         * @param failure
+         * @param retryAfter
+         *            value of the Retry-After header or null
+         * @return
+         */
+        public OptionalLong nextRetryDelayMillis(Failure failure, String retryAfter)
+        {
+            int failureRetries = this.retries.getOrDefault(failure, 0);
+            if (failureRetries >= RetryPolicy.this.maxRetries.getOrDefault(failure, 0))
+            {
+                return OptionalLong.empty();
+            }
+
+            OptionalLong retryAfterMillis = parseRetryAfterMillis(retryAfter);
+            long delayMillis = failure == Failure.THROTTLED ? retryAfterMillis.orElse(0)
+                    : Math.max(retryAfterMillis.orElse(0), RetryPolicy.this.determineBackoffMillis(this.retryCount));
+            if (this.deadlineNanos != 0 && System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis) >= this.deadlineNanos)
+            {
+                return OptionalLong.empty();
+            }
+            if (!RetryPolicy.this.withdrawBudget())
+            {
+                return OptionalLong.empty();
+            }
+
+            this.retries.put(failure, failureRetries + 1);
+            this.retryCount++;
+            return OptionalLong.of(delayMillis);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RetryPolicy [maxRetries=" + this.maxRetries + ", initialBackoffMillis=" + this.initialBackoffMillis + ", maxBackoffMillis="
+                + this.maxBackoffMillis + ", budgetRatio=" + this.budgetRatio + ", maxBudget=" + this.maxBudget + ", deadlineMillis=" + this.deadlineMillis
+                + "]";
+    }
+
+}
@@ -0,0 +1,346 @@
+package org.omnaest.pubchem.rest.throttle;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread safe token bucket {@link RateLimiter} which paces the requests against the PubChem REST api. PubChem allows at most 5 requests per second and 400
+ * requests per minute, see {@link #newPubChemPolicyInstance()}.<br>
+ * <br>
+ * Additionally to the static limits the {@link RateLimiter} backs off adaptively if PubChem reports a throttling state via the
+ * {@value #THROTTLING_CONTROL_HEADER} header or answers with status code 503.
+ *
+ * @author omnaest
+ */
+public class RateLimiter
+{
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimiter.class);
+
+    public static final String THROTTLING_CONTROL_HEADER = "X-Throttling-Control";
+
+    private static final Pattern THROTTLING_STATUS_PATTERN = Pattern.compile("status:\\s*(Green|Yellow|Red|Black)", Pattern.CASE_INSENSITIVE);
+
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60000;
+
+    private static final long NOT_AVAILABLE = Long.MIN_VALUE;
+
+    private final TokenBucket secondBucket;
+    private final TokenBucket minuteBucket;
+
+    private final AtomicInteger queueDepth         = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth      = new AtomicInteger();
+    private final AtomicLong    acquiredPermits    = new AtomicLong();
+    private final AtomicLong    totalWaitNanos     = new AtomicLong();
+    private final AtomicLong    throttledResponses = new AtomicLong();
+
+    private long backoffUntilNanos = System.nanoTime();
+    private long backoffMillis     = 0;
+
+    protected RateLimiter(int permitsPerSecond, int permitsPerMinute)
+    {
+        super();
+        if (permitsPerSecond <= 0 || permitsPerMinute <= 0)
+        {
+            throw new IllegalArgumentException("Permits must be positive: " + permitsPerSecond + " per second, " + permitsPerMinute + " per minute");
+        }
+        this.secondBucket = new TokenBucket(permitsPerSecond, TimeUnit.SECONDS.toNanos(1));
+        this.minuteBucket = new TokenBucket(permitsPerMinute, TimeUnit.MINUTES.toNanos(1));
+    }
+
+    public static RateLimiter newInstance(int permitsPerSecond, int permitsPerMinute)
+    {
+        return new RateLimiter(permitsPerSecond, permitsPerMinute);
+    }
+
+    /**
+     * Returns a new {@link RateLimiter} with the limits of the PubChem usage policy of 5 requests per second and 400 requests per minute
+     *
+     * @return
+     */
+    public static RateLimiter newPubChemPolicyInstance()
+    {
+        return newInstance(5, 400);
+    }
+
+    /**
+     * Blocks until a permit is available for the next request. If the waiting thread is interrupted, e.g. because its async task was cancelled, the
+     * waiting is aborted with an {@link InterruptedException}. The reserved permit is not given back in that case, which only delays later requests by
+     * one slot.
+     *
+     * @throws InterruptedException
+     */
+    public void acquire() throws InterruptedException
+    {
+        this.tryAcquire(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Similar to {@link #acquire()} but waits at most the given timeout. If the permit would only be available after the timeout, no permit is
+     * reserved and false is returned immediately.
+     *
+     * @param timeout
+     * @param timeUnit
+     * @return true if a permit was acquired
+     * @throws InterruptedException
+     */
+    public boolean tryAcquire(long timeout, TimeUnit timeUnit) throws InterruptedException
+    {
+        int currentQueueDepth = this.queueDepth.incrementAndGet();
+        this.maxQueueDepth.accumulateAndGet(currentQueueDepth, Math::max);
+        try
+        {
+            long start = System.nanoTime();
+            long availableAt = this.reserve(start, timeUnit.toNanos(timeout));
+            if (availableAt == NOT_AVAILABLE)
+            {
+                return false;
+            }
+
+            long waitNanos;
+            while ((waitNanos = availableAt - System.nanoTime()) > 0)
+            {
+                LockSupport.parkNanos(waitNanos);
+                if (Thread.interrupted())
+                {
+                    throw new InterruptedException("Interrupted while waiting for a PubChem request permit");
+                }
+            }
+
+            this.acquiredPermits.incrementAndGet();
+            this.totalWaitNanos.addAndGet(System.nanoTime() - start);
+            return true;
+        }
+        finally
+        {
+            this.queueDepth.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reserves a token of both buckets and returns the nano time at which the request can be sent. During a backoff the tokens are reserved from the
+     * end of the backoff on, so the requests which queued up during the backoff are spaced by the bucket rates afterwards instead of being sent at once.
+     *
+     * @param now
+     * @param maxWaitNanos
+     *            {@link Long#MAX_VALUE} for no limit
+     * @return {@link #NOT_AVAILABLE} if the request would have to wait longer than the given maximum
+     */
+    private synchronized long reserve(long now, long maxWaitNanos)
+    {
+        long from = this.backoffUntilNanos - now > 0 ? this.backoffUntilNanos : now;
+        long availableAt = Math.max(this.secondBucket.peek(from), this.minuteBucket.peek(from));
+        if (maxWaitNanos != Long.MAX_VALUE && availableAt - now > maxWaitNanos)
+        {
+            return NOT_AVAILABLE;
+        }
+        this.secondBucket.take();
+        this.minuteBucket.take();
+        return availableAt;
+    }
+
+    /**
+     * Reports the status code and the {@value #THROTTLING_CONTROL_HEADER} header of a response, which lets the {@link RateLimiter} back off if PubChem
+     * signals an overload
+     *
+     * @param statusCode
+     * @param throttlingControlHeader
+     *            can be null
+     */
+    public void onResponse(int statusCode, String throttlingControlHeader)
+    {
+        ThrottlingStatus throttlingStatus = statusCode == 503 ? ThrottlingStatus.BLACK
+                : ThrottlingStatus.parse(throttlingControlHeader)
+                                  .orElse(ThrottlingStatus.GREEN);
+        if (throttlingStatus == ThrottlingStatus.GREEN)
+        {
+            this.resetBackoff();
+        }
+        else
+        {
+            this.throttledResponses.incrementAndGet();
+            this.backoff(throttlingStatus);
+        }
+    }
+
+    private synchronized void resetBackoff()
+    {
+        this.backoffMillis = 0;
+    }
+
+    private synchronized void backoff(ThrottlingStatus throttlingStatus)
+    {
+        if (throttlingStatus == ThrottlingStatus.YELLOW)
+        {
+            this.backoffMillis = MIN_BACKOFF_MILLIS / 2;
+        }
+        else
+        {
+            this.backoffMillis = Math.min(MAX_BACKOFF_MILLIS, Math.max(MIN_BACKOFF_MILLIS, this.backoffMillis * 2));
+        }
+        LOG.debug("PubChem throttling status " + throttlingStatus + ", backing off for " + this.backoffMillis + "ms");
+        this.backoffUntilNanos = Math.max(this.backoffUntilNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.backoffMillis));
+        this.secondBucket.drain(this.backoffUntilNanos);
+    }
+
+    public Statistics getStatistics()
+    {
+        return new Statistics(this.queueDepth.get(), this.maxQueueDepth.get(), this.acquiredPermits.get(),
+                              TimeUnit.NANOSECONDS.toMillis(this.totalWaitNanos.get()), this.throttledResponses.get());
+    }
+
+    private static enum ThrottlingStatus
+    {
+        GREEN, YELLOW, RED, BLACK;
+
+        /**
+         * Parses a header like "Request Count status: Green (0%), Request Time status: Yellow (60%), Service status: Green (20%)" and returns the worst
+         * status
+         *
+         * @param throttlingControlHeader
+         * @return
+         */
+        public static Optional<ThrottlingStatus> parse(String throttlingControlHeader)
+        {
+            ThrottlingStatus result = null;
+            if (throttlingControlHeader != null)
+            {
+                Matcher matcher = THROTTLING_STATUS_PATTERN.matcher(throttlingControlHeader);
+                while (matcher.find())
+                {
+                    ThrottlingStatus status = ThrottlingStatus.valueOf(matcher.group(1)
+                                                                              .toUpperCase());
+                    if (result == null || status.ordinal() > result.ordinal())
+                    {
+                        result = status;
+                    }
+                }
+            }
+            return Optional.ofNullable(result);
+        }
+    }
+
+    private static class TokenBucket
+    {
+        private final double capacity;
+        private final double permitsPerNano;
+
+        private double tokens;
+        private long   lastRefillNanos;
+
+        public TokenBucket(int permits, long periodNanos)
+        {
+            super();
+            this.capacity = permits;
+            this.permitsPerNano = permits / (double) periodNanos;
+            this.tokens = permits;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        /**
+         * Refills the bucket up to the given nano time and returns the nano time at which the next token is available. The token count can get negative
+         * by {@link #take()}, which queues the following reservations.
+         *
+         * @param now
+         * @return
+         */
+        public long peek(long now)
+        {
+            if (now - this.lastRefillNanos > 0)
+            {
+                this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefillNanos) * this.permitsPerNano);
+                this.lastRefillNanos = now;
+            }
+            return this.tokens >= 1 ? now : now + (long) Math.ceil((1 - this.tokens) / this.permitsPerNano);
+        }
+
+        public void take()
+        {
+            this.tokens -= 1;
+        }
+
+        /**
+         * Empties the bucket at the given nano time, so no burst of tokens is available after it
+         *
+         * @param nanos
+         */
+        public void drain(long nanos)
+        {
+            this.tokens = Math.min(0, this.tokens);
+            if (nanos - this.lastRefillNanos > 0)
+            {
+                this.lastRefillNanos = nanos;
+            }
+        }
+    }
+
+    public static class Statistics
+    {
+        private final int  queueDepth;
+        private final int  maxQueueDepth;
+        private final long acquiredPermits;
+        private final long totalWaitTimeMillis;
+        private final long throttledResponses;
+
+        protected Statistics(int queueDepth, int maxQueueDepth, long acquiredPermits, long totalWaitTimeMillis, long throttledResponses)
+        {
+            super();
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.acquiredPermits = acquiredPermits;
+            this.totalWaitTimeMillis = totalWaitTimeMillis;
+            this.throttledResponses = throttledResponses;
+        }
+
+        /**
+         * Returns the number of requests currently waiting for a permit
+         *
+         * @return
+         */
+        public int getQueueDepth()
+        {
+            return this.queueDepth;
+        }
+
+        public int getMaxQueueDepth()
+        {
+            return this.maxQueueDepth;
+        }
+
+        public long getAcquiredPermits()
+        {
+            return this.acquiredPermits;
+        }
+
+        /**
+         * Returns the accumulated time all requests have waited for their permit
+         *
+         * @return
+         */
+        public long getTotalWaitTimeMillis()
+        {
+            return this.totalWaitTimeMillis;
+        }
+
+        public long getThrottledResponses()
+        {
+            return this.throttledResponses;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Statistics [queueDepth=" + this.queueDepth + ", maxQueueDepth=" + this.maxQueueDepth + ", acquiredPermits=" + this.acquiredPermits
+                    + ", totalWaitTimeMillis=" + this.totalWaitTimeMillis + ", throttledResponses=" + this.throttledResponses + "]";
+        }
+
+    }
+}
@@ -0,0 +1,116 @@
+package org.omnaest.pubchem.rest.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link PubChemTransport} based on a single long lived {@link HttpClient}, which keeps its connections alive and reuses them for subsequent requests.
+ * Https connections to PubChem negotiate HTTP/2, which multiplexes concurrent requests over one connection. Responses are requested gzip compressed.
+ *
+ * @author omnaest
+ */
+public class HttpClientTransport implements PubChemTransport
+{
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(120);
+
+    private final HttpClient httpClient;
+
+    protected HttpClientTransport(HttpClient httpClient)
+    {
+        super();
+        this.httpClient = httpClient;
+    }
+
+    public static HttpClientTransport newInstance()
+    {
+        return newInstance(HttpClient.newBuilder()
+                                     .version(HttpClient.Version.HTTP_2)
+                                     .followRedirects(HttpClient.Redirect.NORMAL)
+                                     .connectTimeout(CONNECT_TIMEOUT)
+                                     .build());
+    }
+
+    /**
+     * Returns a new {@link HttpClientTransport} which uses the given {@link HttpClient}, e.g. with a proxy or custom ssl configuration
+     *
+     * @param httpClient
+     * @return
+     */
+    public static HttpClientTransport newInstance(HttpClient httpClient)
+    {
+        return new HttpClientTransport(httpClient);
+    }
+
+    @Override
+    public Response get(String url) throws IOException
+    {
+        return this.get(url, REQUEST_TIMEOUT);
+    }
+
+    @Override
+    public Response get(String url, Duration timeout) throws IOException
+    {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                                         .timeout(timeout.compareTo(REQUEST_TIMEOUT) < 0 ? timeout : REQUEST_TIMEOUT)
+                                         .header("Accept", "application/json")
+                                         .header("Accept-Encoding", "gzip")
+                                         .GET()
+                                         .build();
+        try
+        {
+            HttpResponse<InputStream> response = this.httpClient.send(request, BodyHandlers.ofInputStream());
+
+            Map<String, String> headers = new HashMap<>();
+            response.headers()
+                    .map()
+                    .forEach((name, values) -> headers.put(name, values.isEmpty() ? "" : values.get(0)));
+
+            boolean gzip = response.headers()
+                                   .firstValue("Content-Encoding")
+                                   .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                                   .orElse(false);
+            byte[] body = readFully(gzip ? new GZIPInputStream(response.body()) : response.body());
+            return new Response(response.statusCode(), body, headers);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread()
+                  .interrupt();
+            throw new InterruptedIOException("Interrupted while requesting " + url);
+        }
+    }
+
+    /**
+     * Reads the whole stream, which returns the connection to the pool of the {@link HttpClient}
+     *
+     * @param inputStream
+     * @return
+     * @throws IOException
+     */
+    private static byte[] readFully(InputStream inputStream) throws IOException
+    {
+        try (InputStream closeableInputStream = inputStream)
+        {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = closeableInputStream.read(buffer)) >= 0)
+            {
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+}
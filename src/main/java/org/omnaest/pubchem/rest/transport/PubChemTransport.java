@@ -0,0 +1,96 @@
+package org.omnaest.pubchem.rest.transport;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import org.omnaest.pubchem.rest.PubChemRestUtils.PubChemRestAccessor;
+
+/**
+ * Transport which executes the http GET requests of a {@link PubChemRestAccessor}. The default is the {@link HttpClientTransport}, custom implementations
+ * can be injected via {@link PubChemRestAccessor#withTransport(PubChemTransport)}, e.g. for tests.<br>
+ * <br>
+ * Implementations have to be thread safe and must not handle status codes, retries or throttling, which is done by the {@link PubChemRestAccessor}.
+ *
+ * @author omnaest
+ */
+@FunctionalInterface
+public interface PubChemTransport
+{
+    /**
+     * Requests the given url and returns the {@link Response} for any status code. The body is returned uncompressed.
+     *
+     * @param url
+     * @return
+     * @throws IOException
+     *             if the request could not be executed
+     */
+    public Response get(String url) throws IOException;
+
+    /**
+     * Similar to {@link #get(String)} but the request should not take longer than the given timeout. The default implementation ignores the timeout.
+     *
+     * @param url
+     * @param timeout
+     * @return
+     * @throws IOException
+     *             if the request could not be executed or timed out
+     */
+    public default Response get(String url, Duration timeout) throws IOException
+    {
+        return this.get(url);
+    }
+
+    public static class Response
+    {
+        private final int                 statusCode;
+        private final byte[]              body;
+        private final Map<String, String> headers;
+
+        /**
+         * @param statusCode
+         * @param body
+         * @param headers
+         *            the header names are matched case insensitive
+         */
+        public Response(int statusCode, byte[] body, Map<String, String> headers)
+        {
+            super();
+            this.statusCode = statusCode;
+            this.body = body;
+            this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            this.headers.putAll(Optional.ofNullable(headers)
+                                        .orElse(Collections.emptyMap()));
+        }
+
+        public int getStatusCode()
+        {
+            return this.statusCode;
+        }
+
+        public boolean isSuccessful()
+        {
+            return this.statusCode >= 200 && this.statusCode < 300;
+        }
+
+        public byte[] getBody()
+        {
+            return this.body;
+        }
+
+        public Optional<String> getHeader(String name)
+        {
+            return Optional.ofNullable(this.headers.get(name));
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Response [statusCode=" + this.statusCode + ", bodyLength=" + this.body.length + ", headers=" + this.headers + "]";
+        }
+
+    }
+}
@@ -0,0 +1,107 @@
+package org.omnaest.pubchem.rest.transport;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+
+/**
+ * {@link PubChemTransport} which passes all requests to a delegate {@link PubChemTransport} and records the successful responses into a directory, from
+ * where a {@link ReplayTransport} can answer them again via {@link ReplayTransport#withRecordings(Path)}.<br>
+ * <br>
+ * Each response is written into its own file, named by the SHA-256 hash of the url path and query, so recording the same url again overwrites the
+ * previous response.
+ *
+ * @author omnaest
+ */
+public class RecordingTransport implements PubChemTransport
+{
+    static final String FILE_SUFFIX = ".response";
+
+    private final PubChemTransport delegate;
+    private final Path             directory;
+
+    protected RecordingTransport(PubChemTransport delegate, Path directory)
+    {
+        super();
+        this.delegate = delegate;
+        this.directory = directory;
+    }
+
+    /**
+     * Returns a {@link RecordingTransport} which records the responses of the given delegate into the given directory, which is created if it does not
+     * exist
+     *
+     * @param delegate
+     * @param directory
+     * @return
+     */
+    public static RecordingTransport newInstance(PubChemTransport delegate, Path directory)
+    {
+        try
+        {
+            Files.createDirectories(directory);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to create recording directory " + directory, e);
+        }
+        return new RecordingTransport(delegate, directory);
+    }
+
+    @Override
+    public Response get(String url) throws IOException
+    {
+        return this.record(url, this.delegate.get(url));
+    }
+
+    @Override
+    public Response get(String url, Duration timeout) throws IOException
+    {
+        return this.record(url, this.delegate.get(url, timeout));
+    }
+
+    private Response record(String url, Response response) throws IOException
+    {
+        if (response.isSuccessful() || response.getStatusCode() == 404)
+        {
+            String key = ReplayTransport.toKey(url);
+            Path file = this.directory.resolve(hash(key) + FILE_SUFFIX);
+            Path temporaryFile = Files.createTempFile(this.directory, "recording", ".tmp");
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile))))
+            {
+                outputStream.writeUTF(key);
+                outputStream.writeInt(response.getStatusCode());
+                outputStream.writeInt(response.getBody().length);
+                outputStream.write(response.getBody());
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return response;
+    }
+
+    private static String hash(String key)
+    {
+        try
+        {
+            StringBuilder hash = new StringBuilder();
+            for (byte value : MessageDigest.getInstance("SHA-256")
+                                           .digest(key.getBytes(StandardCharsets.UTF_8)))
+            {
+                hash.append(String.format("%02x", value));
+            }
+            return hash.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package org.omnaest.pubchem.rest.transport;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.omnaest.pubchem.rest.PubChemRestUtils.PubChemRestAccessor;
+import org.omnaest.pubchem.rest.throttle.RateLimiter;
+
+/**
+ * {@link PubChemTransport} which answers requests locally from recorded responses and response rules, e.g. to measure the throughput and latency of a
+ * {@link PubChemRestAccessor} offline and reproducibly.<br>
+ * <br>
+ * A request is answered by
+ * <ol>
+ * <li>a response recorded by a {@link RecordingTransport} for the same url path and query, see {@link #withRecordings(Path)}</li>
+ * <li>the first rule whose pattern matches the end of the url path and query, see {@link #withResponse(String, int, String)}. In a pattern "*" matches
+ * any characters except "/", "?" and "&amp;", e.g. "compound/name/*&#47;synonyms/JSON" or "compound/cid/*&#47;cids/JSON?cids_type=parent".</li>
+ * <li>otherwise status code 404</li>
+ * </ol>
+ * Latency, throttling responses and io errors can be injected. The random decisions are made by a {@link Random} with a fixed seed, so a single threaded
+ * run is reproducible.<br>
+ * <br>
+ * The configuration methods are not thread safe and should be called before the {@link ReplayTransport} is used.
+ *
+ * @author omnaest
+ */
+public class ReplayTransport implements PubChemTransport
+{
+    private static final Pattern SCHEME_AND_AUTHORITY_PATTERN = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*://[^/?#]*");
+    private static final String  NOT_FOUND_BODY = "{\"Fault\":{\"Code\":\"PUGREST.NotFound\",\"Message\":\"No recorded response\"}}";
+
+    private final Map<String, Response> recordings = new ConcurrentHashMap<>();
+    private final List<Rule>            rules      = new CopyOnWriteArrayList<>();
+
+    private Random random           = new Random(0);
+    private long   minLatencyMillis = 0;
+    private long   maxLatencyMillis = 0;
+    private double throttlingRate   = 0.0;
+    private double errorRate        = 0.0;
+
+    private final AtomicLong requests          = new AtomicLong();
+    private final AtomicLong throttledRequests = new AtomicLong();
+    private final AtomicLong failedRequests    = new AtomicLong();
+    private final AtomicLong unknownRequests   = new AtomicLong();
+
+    protected ReplayTransport()
+    {
+        super();
+    }
+
+    public static ReplayTransport newInstance()
+    {
+        return new ReplayTransport();
+    }
+
+    /**
+     * Answers requests with the responses recorded by a {@link RecordingTransport} into the given directory
+     *
+     * @param directory
+     * @return
+     */
+    public ReplayTransport withRecordings(Path directory)
+    {
+        try (Stream<Path> files = Files.list(directory))
+        {
+            files.filter(file -> file.getFileName()
+                                     .toString()
+                                     .endsWith(RecordingTransport.FILE_SUFFIX))
+                 .forEach(this::readRecording);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to read recordings from " + directory, e);
+        }
+        return this;
+    }
+
+    private void readRecording(Path file)
+    {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            String key = inputStream.readUTF();
+            int statusCode = inputStream.readInt();
+            byte[] body = new byte[inputStream.readInt()];
+            inputStream.readFully(body);
+            this.recordings.put(key, new Response(statusCode, body, Collections.emptyMap()));
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to read recording " + file, e);
+        }
+    }
+
+    /**
+     * Answers requests whose url path and query ends with the given pattern with the given status code and body
+     *
+     * @param pattern
+     * @param statusCode
+     * @param body
+     * @return
+     */
+    public ReplayTransport withResponse(String pattern, int statusCode, String body)
+    {
+        byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        return this.withResponse(pattern, url -> new Response(statusCode, bodyBytes, Collections.emptyMap()));
+    }
+
+    /**
+     * Similar to {@link #withResponse(String, int, String)} but the {@link Response} is created by the given function from the requested url, e.g. to
+     * echo the requested cid
+     *
+     * @param pattern
+     * @param responseFunction
+     * @return
+     */
+    public ReplayTransport withResponse(String pattern, Function<String, Response> responseFunction)
+    {
+        this.rules.add(new Rule(compilePattern(pattern), responseFunction));
+        return this;
+    }
+
+    /**
+     * Delays every response by a random duration between the given minimum and maximum
+     *
+     * @param minLatency
+     * @param maxLatency
+     * @param timeUnit
+     * @return
+     */
+    public ReplayTransport withLatency(long minLatency, long maxLatency, TimeUnit timeUnit)
+    {
+        if (minLatency < 0 || maxLatency < minLatency)
+        {
+            throw new IllegalArgumentException("Invalid latency: " + minLatency + " to " + maxLatency);
+        }
+        this.minLatencyMillis = timeUnit.toMillis(minLatency);
+        this.maxLatencyMillis = timeUnit.toMillis(maxLatency);
+        return this;
+    }
+
+    /**
+     * Answers the given ratio of requests with status code 503 and a red {@value RateLimiter#THROTTLING_CONTROL_HEADER} header, like PubChem does if a
+     * client exceeds its limits
+     *
+     * @param throttlingRate
+     *            between 0.0 and 1.0
+     * @return
+     */
+    public ReplayTransport withThrottlingRate(double throttlingRate)
+    {
+        this.throttlingRate = validateRate(throttlingRate);
+        return this;
+    }
+
+    /**
+     * Fails the given ratio of requests with an {@link IOException}
+     *
+     * @param errorRate
+     *            between 0.0 and 1.0
+     * @return
+     */
+    public ReplayTransport withErrorRate(double errorRate)
+    {
+        this.errorRate = validateRate(errorRate);
+        return this;
+    }
+
+    /**
+     * Sets the seed of the {@link Random} which decides about latency, throttling and errors. Default is 0.
+     *
+     * @param seed
+     * @return
+     */
+    public ReplayTransport withSeed(long seed)
+    {
+        this.random = new Random(seed);
+        return this;
+    }
+
+    @Override
+    public Response get(String url) throws IOException
+    {
+        this.requests.incrementAndGet();
+
+        long latencyMillis;
+        boolean throttled;
+        boolean failed;
+        synchronized (this.random)
+        {
+            latencyMillis = this.minLatencyMillis + (this.maxLatencyMillis > this.minLatencyMillis
+                    ? (long) (this.random.nextDouble() * (this.maxLatencyMillis - this.minLatencyMillis + 1))
+                    : 0);
+            throttled = this.random.nextDouble() < this.throttlingRate;
+            failed = !throttled && this.random.nextDouble() < this.errorRate;
+        }
+        sleep(latencyMillis);
+
+        if (throttled)
+        {
+            this.throttledRequests.incrementAndGet();
+            return new Response(503, "{}".getBytes(StandardCharsets.UTF_8),
+                                Collections.singletonMap(RateLimiter.THROTTLING_CONTROL_HEADER,
+                                                         "Request Count status: Red (100%), Request Time status: Green (0%), Service status: Green (10%)"));
+        }
+        if (failed)
+        {
+            this.failedRequests.incrementAndGet();
+            throw new IOException("Injected failure for " + url);
+        }
+
+        String key = toKey(url);
+        Response recording = this.recordings.get(key);
+        if (recording != null)
+        {
+            return recording;
+        }
+        for (Rule rule : this.rules)
+        {
+            if (rule.getPattern()
+                    .matcher(key)
+                    .find())
+            {
+                return rule.getResponseFunction()
+                           .apply(url);
+            }
+        }
+        this.unknownRequests.incrementAndGet();
+        return new Response(404, NOT_FOUND_BODY.getBytes(StandardCharsets.UTF_8), Collections.emptyMap());
+    }
+
+    /**
+     * Returns the url path and query, which identifies a response independent of the host of the base url
+     *
+     * @param url
+     * @return
+     */
+    static String toKey(String url)
+    {
+        String key = SCHEME_AND_AUTHORITY_PATTERN.matcher(url)
+                                                 .replaceFirst("");
+        int fragmentIndex = key.indexOf('#');
+        return fragmentIndex >= 0 ? key.substring(0, fragmentIndex) : key;
+    }
+
+    private static Pattern compilePattern(String pattern)
+    {
+        StringBuilder regex = new StringBuilder("(^|/)");
+        String[] tokens = pattern.split("\\*", -1);
+        for (int ii = 0; ii < tokens.length; ii++)
+        {
+            if (ii > 0)
+            {
+                regex.append("[^/?&]*");
+            }
+            regex.append(Pattern.quote(tokens[ii]));
+        }
+        return Pattern.compile(regex.append("$")
+                                    .toString());
+    }
+
+    private static double validateRate(double rate)
+    {
+        if (rate < 0.0 || rate > 1.0)
+        {
+            throw new IllegalArgumentException("Rate must be between 0.0 and 1.0: " + rate);
+        }
+        return rate;
+    }
+
+    private static void sleep(long millis) throws IOException
+    {
+        if (millis > 0)
+        {
+            try
+            {
+                Thread.sleep(millis);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread()
+                      .interrupt();
+                throw new IOException("Interrupted while simulating latency", e);
+            }
+        }
+    }
+
+    public long getRequests()
+    {
+        return this.requests.get();
+    }
+
+    /**
+     * Returns the number of requests answered with an injected 503
+     *
+     * @return
+     */
+    public long getThrottledRequests()
+    {
+        return this.throttledRequests.get();
+    }
+
+    /**
+     * Returns the number of requests failed with an injected {@link IOException}
+     *
+     * @return
+     */
+    public long getFailedRequests()
+    {
+        return this.failedRequests.get();
+    }
+
+    /**
+     * Returns the number of requests which matched neither a recording nor a rule
+     *
+     * @return
+     */
+    public long getUnknownRequests()
+    {
+        return this.unknownRequests.get();
+    }
+
+    private static class Rule
+    {
+        private final Pattern                    pattern;
+        private final Function<String, Response> responseFunction;
+
+        public Rule(Pattern pattern, Function<String, Response> responseFunction)
+        {
+            super();
+            this.pattern = pattern;
+            this.responseFunction = responseFunction;
+        }
+
+        public Pattern getPattern()
+        {
+            return this.pattern;
+        }
+
+        public Function<String, Response> getResponseFunction()
+        {
+            return this.responseFunction;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package org.omnaest.pubchem.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.omnaest.pubchem.rest.PubChemRestUtils.PubChemRestAccessor;
+import org.omnaest.pubchem.rest.cache.NegativeCache;
+import org.omnaest.pubchem.rest.transport.PubChemTransport.Response;
+import org.omnaest.pubchem.rest.transport.ReplayTransport;
+import org.omnaest.utils.CacheUtils;
+import org.omnaest.utils.cache.Cache;
+
+/**
+ * @see PubChemRestAccessorBuilder
+ * @author omnaest
+ */
+public class PubChemRestAccessorBuilderTest
+{
+    private static final Pattern NAME_PATTERN = Pattern.compile("/compound/name/compound([0-9]+)/synonyms/JSON");
+
+    @Test
+    public void testBuiltAccessorIsImmutableAndSharesResources()
+    {
+        List<String> urls = new CopyOnWriteArrayList<>();
+        ReplayTransport transport = ReplayTransport.newInstance()
+                                                   .withResponse("compound/name/*/synonyms/JSON", url ->
+                                                   {
+                                                       urls.add(url);
+                                                       Matcher matcher = NAME_PATTERN.matcher(url);
+                                                       assertTrue(url, matcher.find());
+                                                       String body = "{\"InformationList\":{\"Information\":[{\"CID\":" + matcher.group(1)
+                                                               + ",\"Synonym\":[\"compound" + matcher.group(1) + "\"]}]}}";
+                                                       return new Response(200, body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap());
+                                                   });
+        PubChemRestAccessorBuilder builder = PubChemRestUtils.builder()
+                                                             .withTransport(transport)
+                                                             .withRateLimit(1000, 60000)
+                                                             .withMemoryCache(1000, 1, TimeUnit.HOURS);
+        PubChemRestAccessor accessor = builder.build();
+        PubChemRestAccessor mirrorAccessor = accessor.withBaseUrl("http://mirror.local/rest/pug");
+        assertNotSame(accessor, mirrorAccessor);
+
+        assertEquals(1, accessor.fetchSynonyms("compound1")
+                                .get()
+                                .getCid());
+        assertEquals(1, mirrorAccessor.fetchSynonyms("compound1")
+                                      .get()
+                                      .getCid());
+        assertEquals(1, builder.build()
+                               .fetchSynonyms("compound1")
+                               .get()
+                               .getCid());
+        assertEquals(2, urls.size());
+        assertTrue(urls.get(0), urls.get(0)
+                                    .startsWith("https://pubchem.ncbi.nlm.nih.gov/rest/pug/"));
+        assertTrue(urls.get(1), urls.get(1)
+                                    .startsWith("http://mirror.local/rest/pug/"));
+        assertEquals(1, accessor.getMemoryCacheStatistics()
+                                .get()
+                                .getHits());
+        assertEquals(1, mirrorAccessor.getMemoryCacheStatistics()
+                                      .get()
+                                      .getHits());
+    }
+
+    @Test
+    public void testFileBackedResourcesAreOpenedOncePerFile() throws Exception
+    {
+        List<String> urls = new CopyOnWriteArrayList<>();
+        ReplayTransport transport = ReplayTransport.newInstance()
+                                                   .withResponse("compound/name/*/synonyms/JSON", url ->
+                                                   {
+                                                       urls.add(url);
+                                                       String body = "{\"InformationList\":{\"Information\":[{\"CID\":1,\"Synonym\":[\"compound1\"]}]}}";
+                                                       return new Response(200, body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap());
+                                                   });
+        Path file = Files.createTempDirectory("pubchem-builder")
+                         .resolve("cache.log");
+        PubChemRestAccessorBuilder builder = PubChemRestUtils.builder()
+                                                             .withTransport(transport)
+                                                             .withRateLimit(1000, 60000)
+                                                             .withLocalCache(file);
+        PubChemRestAccessor accessor = builder.withLocalCache(file)
+                                              .build();
+        PubChemRestAccessor copiedAccessor = accessor.withLocalCache(file);
+
+        assertEquals(1, accessor.fetchSynonyms("compound1")
+                                .get()
+                                .getCid());
+        assertEquals(1, copiedAccessor.fetchSynonyms("compound1")
+                                      .get()
+                                      .getCid());
+        assertEquals(1, PubChemRestUtils.newInstance()
+                                        .withTransport(transport)
+                                        .withLocalCache(file)
+                                        .fetchSynonyms("compound1")
+                                        .get()
+                                        .getCid());
+        assertEquals(1, urls.size());
+        assertSame(FileResources.getParentGraph(file.resolveSibling("parents.bin")), FileResources.getParentGraph(file.resolveSibling("parents.bin")));
+    }
+
+    @Test
+    public void testSharedAccessorFromManyThreads()
+    {
+        ReplayTransport transport = ReplayTransport.newInstance()
+                                                   .withResponse("compound/name/*/synonyms/JSON", url ->
+                                                   {
+                                                       Matcher matcher = NAME_PATTERN.matcher(url);
+                                                       assertTrue(url, matcher.find());
+                                                       String body = "{\"InformationList\":{\"Information\":[{\"CID\":" + matcher.group(1)
+                                                               + ",\"Synonym\":[\"compound" + matcher.group(1) + "\"]}]}}";
+                                                       return new Response(200, body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap());
+                                                   })
+                                                   .withLatency(0, 2, TimeUnit.MILLISECONDS);
+        PubChemRestAccessor accessor = PubChemRestUtils.builder()
+                                                       .withTransport(transport)
+                                                       .withRateLimit(10000, 600000)
+                                                       .build();
+
+        Executor executor = PubChemRestUtils.newBoundedExecutor(16);
+        List<CompletableFuture<Long>> futures = IntStream.rangeClosed(1, 200)
+                                                         .mapToObj(ii -> CompletableFuture.supplyAsync(() -> accessor.fetchSynonyms("compound" + (ii % 50 + 1))
+                                                                                                                     .get()
+                                                                                                                     .getCid(),
+                                                                                                       executor))
+                                                         .collect(Collectors.toList());
+        for (int ii = 1; ii <= 200; ii++)
+        {
+            assertEquals(ii % 50 + 1, futures.get(ii - 1)
+                                             .join()
+                                             .longValue());
+        }
+        assertTrue(String.valueOf(transport.getRequests()), transport.getRequests() <= 200);
+    }
+
+    @Test
+    public void testNegativeCacheUsesTheCacheOfTheBuild()
+    {
+        ReplayTransport transport = ReplayTransport.newInstance();
+        Cache cache = CacheUtils.newConcurrentInMemoryCache();
+        PubChemRestAccessorBuilder builder = PubChemRestUtils.builder()
+                                                             .withTransport(transport)
+                                                             .withRateLimit(1000, 60000)
+                                                             .withNegativeCache(100, 1, TimeUnit.HOURS)
+                                                             .withCache(cache);
+        PubChemRestAccessor accessor = builder.build();
+        assertFalse(accessor.fetchCompoundCidByName("unknown")
+                            .isPresent());
+        assertFalse(builder.build()
+                           .fetchCompoundCidByName("unknown")
+                           .isPresent());
+        assertEquals(1, transport.getRequests());
+        assertNotNull(cache.get(NegativeCache.KEY_PREFIX + "https://pubchem.ncbi.nlm.nih.gov/rest/pug/compound/name/unknown/cids/JSON", Long.class));
+    }
+
+    @Test
+    public void testBuiltAccessorsShareTheRequestCoalescer() throws Exception
+    {
+        ReplayTransport transport = ReplayTransport.newInstance()
+                                                   .withResponse("compound/name/*/cids/JSON", 200, "{\"IdentifierList\":{\"CID\":[5793]}}")
+                                                   .withLatency(300, 300, TimeUnit.MILLISECONDS);
+        PubChemRestAccessorBuilder builder = PubChemRestUtils.builder()
+                                                             .withTransport(transport)
+                                                             .withRateLimit(1000, 60000);
+        CompletableFuture<Optional<String>> cid = builder.build()
+                                                         .async()
+                                                         .fetchCompoundCidByName("glucose");
+        CompletableFuture<Optional<String>> otherCid = builder.withNameBatchSize(10)
+                                                              .build()
+                                                              .async()
+                                                              .fetchCompoundCidByName("glucose");
+        assertEquals(Optional.of("5793"), cid.get(10, TimeUnit.SECONDS));
+        assertEquals(Optional.of("5793"), otherCid.get(10, TimeUnit.SECONDS));
+        assertEquals(1, transport.getRequests());
+    }
+}
@@ -2,16 +2,75 @@ package org.omnaest.pubchem.rest;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.Ignore;
 import org.junit.Test;
 import org.omnaest.pubchem.rest.PubChemRestUtils.CidAndName;
+import org.omnaest.pubchem.rest.PubChemRestUtils.Compound;
+import org.omnaest.pubchem.rest.PubChemRestUtils.Compound.CompoundEntry;
+import org.omnaest.pubchem.rest.PubChemRestUtils.Description;
+import org.omnaest.pubchem.rest.PubChemRestUtils.NameType;
+import org.omnaest.pubchem.rest.PubChemRestUtils.PubChemAccessException;
+import org.omnaest.pubchem.rest.PubChemRestUtils.PubChemRestAccessor;
+import org.omnaest.pubchem.rest.PubChemRestUtils.PubChemWaitingException;
+import org.omnaest.pubchem.rest.PubChemRestUtils.ResultOrder;
+import org.omnaest.pubchem.rest.cache.SynonymIndex;
+import org.omnaest.pubchem.rest.domain.ListKey;
 import org.omnaest.pubchem.rest.domain.Synonyms;
+import org.omnaest.pubchem.rest.metrics.MetricsRegistry;
+import org.omnaest.pubchem.rest.metrics.MetricsRegistry.EndpointMetrics;
+import org.omnaest.pubchem.rest.metrics.PubChemMetrics.CacheTier;
+import org.omnaest.pubchem.rest.property.PropertyTable;
+import org.omnaest.pubchem.rest.property.PropertyType;
+import org.omnaest.pubchem.rest.retry.RetryPolicy;
+import org.omnaest.pubchem.rest.retry.RetryPolicy.Failure;
+import org.omnaest.pubchem.rest.throttle.RateLimiter;
+import org.omnaest.pubchem.rest.transport.PubChemTransport;
+import org.omnaest.utils.CacheUtils;
+import org.omnaest.utils.cache.Cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 
 /**
  * @see PubChemRestUtils
@@ -119,4 +178,1119 @@ public class PubChemRestUtilsTest
                                               .fetchCompoundParentCidByCid("5249080")
                                               .get());
     }
+
+    @Test
+    public void testRateLimitAgainstStubServer() throws Exception
+    {
+        AtomicInteger requestCounter = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/rest/pug/compound/name/", exchange ->
+        {
+            int requestCount = requestCounter.incrementAndGet();
+            if (exchange.getRequestURI()
+                        .getPath()
+                        .contains("unknown"))
+            {
+                respond(exchange, 404, "{}", null);
+            }
+            else if (requestCount == 1)
+            {
+                respond(exchange, 503, "{}", null);
+            }
+            else
+            {
+                respond(exchange, 200, "{\"IdentifierList\":{\"CID\":[5249080]}}",
+                        "Request Count status: Green (0%), Request Time status: Green (0%), Service status: Green (10%)");
+            }
+        });
+        server.start();
+        try
+        {
+            PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                           .withBaseUrl("http://localhost:" + server.getAddress()
+                                                                                                    .getPort()
+                                                                   + "/rest/pug")
+                                                           .withRateLimit(5, 400);
+
+            assertEquals("5249080", accessor.fetchCompoundCidByName("suberate")
+                                            .get());
+            assertFalse(accessor.fetchCompoundCidByName("unknown")
+                                .isPresent());
+
+            RateLimiter.Statistics statistics = accessor.getRateLimiterStatistics();
+            assertEquals(3, requestCounter.get());
+            assertEquals(3, statistics.getAcquiredPermits());
+            assertEquals(1, statistics.getThrottledResponses());
+            assertTrue(statistics.getTotalWaitTimeMillis() >= 900);
+        }
+        finally
+        {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testConcurrentIdenticalRequestsAreCoalesced() throws Exception
+    {
+        AtomicInteger requestCounter = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/rest/pug/compound/name/", exchange ->
+        {
+            requestCounter.incrementAndGet();
+            try
+            {
+                Thread.sleep(500);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread()
+                      .interrupt();
+            }
+            respond(exchange, 200, "{\"IdentifierList\":{\"CID\":[5793]}}", null);
+        });
+        server.start();
+        try
+        {
+            PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                           .withBaseUrl("http://localhost:" + server.getAddress()
+                                                                                                    .getPort()
+                                                                   + "/rest/pug");
+
+            List<CompletableFuture<Optional<String>>> results = IntStream.range(0, 8)
+                                                                         .mapToObj(index -> accessor.async()
+                                                                                                    .fetchCompoundCidByName("glucose"))
+                                                                         .collect(Collectors.toList());
+            for (CompletableFuture<Optional<String>> result : results)
+            {
+                assertEquals("5793", result.get()
+                                           .get());
+            }
+            assertEquals(1, requestCounter.get());
+        }
+        finally
+        {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testAsyncBatchMethodsRunOnTheExecutor() throws Exception
+    {
+        Pattern cidsPattern = Pattern.compile("/compound/cid/([0-9,%C]+)/");
+        ThreadLocal<Boolean> onExecutor = ThreadLocal.withInitial(() -> false);
+        Executor delegate = PubChemRestUtils.newBoundedExecutor(1);
+        Executor executor = command -> delegate.execute(() ->
+        {
+            onExecutor.set(true);
+            try
+            {
+                command.run();
+            }
+            finally
+            {
+                onExecutor.set(false);
+            }
+        });
+        List<String> urls = Collections.synchronizedList(new ArrayList<>());
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withRateLimit(1000, 100000)
+                                                       .withExecutor(executor)
+                                                       .withDescriptionBatchSize(2)
+                                                       .withParentCidBatchSize(2)
+                                                       .withTransport(url ->
+                                                       {
+                                                           assertTrue(url, onExecutor.get());
+                                                           urls.add(url);
+                                                           String body;
+                                                           if (url.contains("/compound/name/"))
+                                                           {
+                                                               body = url.contains("/synonyms/")
+                                                                       ? "{\"InformationList\":{\"Information\":[{\"CID\":5793,\"Synonym\":[\"glucose\"]}]}}"
+                                                                       : "{\"IdentifierList\":{\"CID\":[5793]}}";
+                                                           }
+                                                           else
+                                                           {
+                                                               Matcher matcher = cidsPattern.matcher(url);
+                                                               assertTrue(url, matcher.find());
+                                                               boolean parents = url.contains("/cids/JSON");
+                                                               body = Arrays.stream(matcher.group(1)
+                                                                                           .replace("%2C", ",")
+                                                                                           .split(","))
+                                                                            .map(cid -> parents ? "{\"CID\":[" + cid + "]}" : "{\"CID\":" + cid + ",\"Title\":\"title" + cid + "\"}")
+                                                                            .collect(Collectors.joining(",", "{\"InformationList\":{\"Information\":[", "]}}"));
+                                                           }
+                                                           return new PubChemTransport.Response(200, body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap());
+                                                       });
+
+        List<String> cids = Arrays.asList("1", "2", "3", "4", "5");
+        Map<String, Optional<String>> cidsByNames = accessor.async()
+                                                            .fetchCompoundCidsByNames(Arrays.asList("glucose", "dextrose", "glucose"))
+                                                            .get(10, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("glucose", "dextrose"), new ArrayList<>(cidsByNames.keySet()));
+        assertEquals(Optional.of("5793"), cidsByNames.get("dextrose"));
+        assertEquals(5793, accessor.async()
+                                   .fetchSynonymsByNames(Arrays.asList("glucose"))
+                                   .get(10, TimeUnit.SECONDS)
+                                   .get("glucose")
+                                   .get()
+                                   .getCid());
+        assertEquals("title5", accessor.async()
+                                       .fetchTitles(cids)
+                                       .get(10, TimeUnit.SECONDS)
+                                       .get("5"));
+        assertEquals(cids, accessor.async()
+                                   .fetchDescriptions(cids)
+                                   .get(10, TimeUnit.SECONDS)
+                                   .stream()
+                                   .map(Description::getCid)
+                                   .collect(Collectors.toList()));
+        Map<String, Optional<String>> parentCids = accessor.async()
+                                                           .fetchCompoundParentCids(cids)
+                                                           .get(10, TimeUnit.SECONDS);
+        assertEquals(cids, new ArrayList<>(parentCids.keySet()));
+        assertEquals(Optional.of("4"), parentCids.get("4"));
+        assertEquals(2 + 1 + 3 + 3 + 3, urls.size());
+    }
+
+    @Test
+    public void testBatchMethodsCalledFromTheExecutorRunInline() throws Exception
+    {
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withRateLimit(1000, 100000)
+                                                       .withExecutor(PubChemRestUtils.newBoundedExecutor(1))
+                                                       .withNameBatchSize(3)
+                                                       .withTransport(url ->
+                                                       {
+                                                           try
+                                                           {
+                                                               Thread.sleep(100);
+                                                           }
+                                                           catch (InterruptedException e)
+                                                           {
+                                                               Thread.currentThread()
+                                                                     .interrupt();
+                                                           }
+                                                           String body = "{\"IdentifierList\":{\"CID\":[5793]}}";
+                                                           return new PubChemTransport.Response(200, body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap());
+                                                       });
+
+        Map<String, Optional<String>> cidsByNames = accessor.async()
+                                                            .fetchCompoundCidByName("glucose")
+                                                            .thenApply(cid -> accessor.fetchCompoundCidsByNames(Arrays.asList("dextrose", "grape sugar",
+                                                                                                                             "blood sugar")))
+                                                            .get(10, TimeUnit.SECONDS);
+        assertEquals(3, cidsByNames.size());
+        assertEquals(Optional.of("5793"), cidsByNames.get("blood sugar"));
+    }
+
+    @Test
+    public void testParseCompoundNameEntries() throws Exception
+    {
+        byte[] body = readResource("compound_lactate.json");
+
+        List<CompoundEntry> entries = PubChemRestUtils.parseCompoundNameEntries(new ObjectMapper().getFactory()
+                                                                                                  .createParser(body));
+        List<CompoundEntry> boundEntries = new ObjectMapper().readValue(body, Compound.class)
+                                                             .getEntries();
+
+        assertEquals(2, entries.size());
+        assertEquals(toCidAndIupacNames(boundEntries), toCidAndIupacNames(entries));
+        assertEquals(Arrays.asList("91435:Allowed=2-hydroxypropanoate", "91435:CAS-like Style=2-hydroxypropanoate", "91435:Markup=2-hydroxypropanoate",
+                                   "91435:Preferred=2-hydroxypropanoate", "91435:Systematic=2-hydroxypropanoate", "91435:Traditional=lactate"),
+                     toCidAndIupacNames(entries).subList(0, 6));
+    }
+
+    @Test
+    public void testDetermineCidAndPrimaryName() throws Exception
+    {
+        List<CompoundEntry> entries = new ObjectMapper().readValue(readResource("compound_lactate.json"), Compound.class)
+                                                        .getEntries();
+
+        CidAndName traditional = PubChemRestUtils.determineCidAndPrimaryName(entries, NameType.TRADITIONAL, NameType.PREFERRED)
+                                                 .get();
+        assertEquals("lactate", traditional.getName());
+        assertEquals("lactic acid", traditional.getParent()
+                                               .get()
+                                               .getName());
+        assertFalse(traditional.getParent()
+                               .get()
+                               .getParent()
+                               .isPresent());
+
+        CidAndName preferred = PubChemRestUtils.determineCidAndPrimaryName(entries, NameType.PREFERRED, NameType.TRADITIONAL)
+                                               .get();
+        assertEquals("2-hydroxypropanoate", preferred.getName());
+        assertEquals("2-hydroxypropanoic acid", preferred.getParent()
+                                                         .get()
+                                                         .getName());
+
+        assertNull(PubChemRestUtils.determineCidAndPrimaryName(entries)
+                                   .get()
+                                   .getName());
+        assertFalse(PubChemRestUtils.determineCidAndPrimaryName(Collections.emptyList(), NameType.TRADITIONAL)
+                                    .isPresent());
+    }
+
+    @Test
+    public void testStreamingParsingAllocatesLess() throws Exception
+    {
+        byte[] body = readResource("compound_lactate.json");
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        long streamingAllocation = measureAllocation(() -> PubChemRestUtils.parseCompoundNameEntries(objectMapper.getFactory()
+                                                                                                                 .createParser(body)));
+        long bindingAllocation = measureAllocation(() -> objectMapper.treeToValue(objectMapper.readTree(body), Compound.class));
+
+        assertTrue("streaming " + streamingAllocation + " vs binding " + bindingAllocation, streamingAllocation < bindingAllocation);
+    }
+
+    @Test
+    public void testFetchCidAndPrimaryNameByAnyNameAgainstStubServer() throws Exception
+    {
+        byte[] body = readResource("compound_lactate.json");
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/rest/pug/compound/name/", exchange -> respond(exchange, 200, new String(body, StandardCharsets.UTF_8), null));
+        server.start();
+        try
+        {
+            PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                           .withBaseUrl("http://localhost:" + server.getAddress()
+                                                                                                    .getPort()
+                                                                   + "/rest/pug");
+
+            CidAndName cidAndName = accessor.fetchCidAndPrimaryNameByAnyName("lactate")
+                                            .get();
+            assertEquals("91435", cidAndName.getCid());
+            assertEquals("lactate", cidAndName.getName());
+            assertEquals("612", cidAndName.getParent()
+                                          .get()
+                                          .getCid());
+            assertEquals("lactic acid", cidAndName.getParent()
+                                                  .get()
+                                                  .getName());
+
+            CidAndName oldestCidAndName = accessor.fetchOldestCidAndPrimaryNameByAnyName("lactate", NameType.PREFERRED)
+                                                  .get();
+            assertEquals("612", oldestCidAndName.getCid());
+            assertEquals("2-hydroxypropanoic acid", oldestCidAndName.getName());
+        }
+        finally
+        {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testFetchDescriptionsInParallelBatchesAgainstStubServer() throws Exception
+    {
+        AtomicInteger concurrentRequests = new AtomicInteger();
+        AtomicInteger maxConcurrentRequests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/rest/pug/compound/cid/", exchange ->
+        {
+            maxConcurrentRequests.accumulateAndGet(concurrentRequests.incrementAndGet(), Math::max);
+            try
+            {
+                Thread.sleep(50);
+                String[] cids = exchange.getRequestURI()
+                                        .getPath()
+                                        .split("/")[5].split(",");
+                if (Arrays.asList(cids)
+                          .contains("invalid"))
+                {
+                    respond(exchange, 400, "{}", null);
+                }
+                else
+                {
+                    respond(exchange, 200, "{\"InformationList\":{\"Information\":[" + Arrays.stream(cids)
+                                                                                           .map(cid -> "{\"CID\":" + cid + ",\"Title\":\"title" + cid
+                                                                                                   + "\"}")
+                                                                                           .collect(Collectors.joining(","))
+                            + "]}}", null);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread()
+                      .interrupt();
+            }
+            finally
+            {
+                concurrentRequests.decrementAndGet();
+            }
+        });
+        server.start();
+        try
+        {
+            PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                           .withBaseUrl("http://localhost:" + server.getAddress()
+                                                                                                    .getPort()
+                                                                   + "/rest/pug")
+                                                           .withRateLimit(1000, 60000)
+                                                           .withDescriptionBatchSize(3)
+                                                           .withDescriptionConcurrency(4);
+
+            List<String> cids = IntStream.rangeClosed(1, 20)
+                                         .mapToObj(String::valueOf)
+                                         .collect(Collectors.toList());
+            List<String> cidsWithInvalidCid = new ArrayList<>(cids);
+            cidsWithInvalidCid.add(4, "invalid");
+
+            List<String> titles = accessor.fetchDescriptions(cidsWithInvalidCid)
+                                          .map(Description::getTitle)
+                                          .collect(Collectors.toList());
+            assertEquals(cids.stream()
+                             .map(cid -> "title" + cid)
+                             .collect(Collectors.toList()),
+                         titles);
+            assertTrue(maxConcurrentRequests.get() > 1);
+            assertTrue(maxConcurrentRequests.get() <= 4);
+
+            Set<String> unorderedCids = accessor.fetchDescriptions(cids, ResultOrder.COMPLETION)
+                                                .map(Description::getCid)
+                                                .collect(Collectors.toSet());
+            assertEquals(new HashSet<>(cids), unorderedCids);
+        }
+        finally
+        {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testCustomTransport() throws Exception
+    {
+        List<String> urls = new ArrayList<>();
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withBaseUrl("http://pubchem.test/rest/pug")
+                                                       .withTransport(url ->
+                                                       {
+                                                           urls.add(url);
+                                                           String body = url.contains("/lactate/")
+                                                                   ? "{\"InformationList\":{\"Information\":[{\"CID\":91435,\"Synonym\":[\"lactate\",\"2-hydroxypropanoate\"]}]}}"
+                                                                   : "{}";
+                                                           return new PubChemTransport.Response(url.contains("/lactate/") ? 200 : 404,
+                                                                                                body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap());
+                                                       });
+
+        Synonyms synonyms = accessor.fetchSynonyms("lactate")
+                                    .get();
+        assertEquals(91435, synonyms.getCid());
+        assertEquals(Arrays.asList("lactate", "2-hydroxypropanoate"), synonyms.getSynonyms());
+        assertFalse(accessor.fetchSynonyms("unknown")
+                            .isPresent());
+        assertEquals(Arrays.asList("http://pubchem.test/rest/pug/compound/name/lactate/synonyms/JSON",
+                                   "http://pubchem.test/rest/pug/compound/name/unknown/synonyms/JSON"),
+                     urls);
+    }
+
+    @Test
+    public void testNegativeCacheAvoidsRepeatedRequests() throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withNegativeCache(100, 1, TimeUnit.HOURS)
+                                                       .withTransport(url ->
+                                                       {
+                                                           requests.incrementAndGet();
+                                                           return new PubChemTransport.Response(404, new byte[0], Collections.emptyMap());
+                                                       });
+
+        for (int ii = 0; ii < 3; ii++)
+        {
+            assertFalse(accessor.fetchCompoundCidByName("unknown metabolite label")
+                                .isPresent());
+        }
+        assertEquals(1, requests.get());
+        assertEquals(2, accessor.getNegativeCacheStatistics()
+                                .get()
+                                .getHits());
+    }
+
+    @Test
+    public void testSynonymIndexResolvesKnownSynonyms() throws Exception
+    {
+        byte[] body = "{\"InformationList\":{\"Information\":[{\"CID\":612,\"Synonym\":[\"lactic acid\",\"Milchsaeure\"]}]}}".getBytes(StandardCharsets.UTF_8);
+        AtomicInteger requests = new AtomicInteger();
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withSynonymIndex(SynonymIndex.newInstance())
+                                                       .withTransport(url ->
+                                                       {
+                                                           requests.incrementAndGet();
+                                                           return new PubChemTransport.Response(200, body, Collections.emptyMap());
+                                                       });
+
+        assertEquals(612, accessor.fetchSynonyms("2-hydroxypropanoic acid")
+                                  .get()
+                                  .getCid());
+        assertEquals("612", accessor.fetchCompoundCidByName("Lactic  Acid")
+                                    .get());
+        assertEquals("612", accessor.fetchCompoundCidByName("2-hydroxypropanoic acid")
+                                    .get());
+        assertEquals(1, requests.get());
+
+        // the index is disabled by default, so the name lookup of PubChem is used
+        PubChemRestAccessor defaultAccessor = PubChemRestUtils.newInstance()
+                                                              .withTransport(url ->
+                                                              {
+                                                                  requests.incrementAndGet();
+                                                                  return new PubChemTransport.Response(200, body, Collections.emptyMap());
+                                                              });
+        defaultAccessor.fetchSynonyms("2-hydroxypropanoic acid");
+        defaultAccessor.fetchCompoundCidByName("Lactic  Acid");
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void testPublishCompoundCidsByNamesWithBoundedDemand() throws Exception
+    {
+        int numberOfNames = 1000;
+        int nameBatchSize = 10;
+        Pattern namePattern = Pattern.compile("name-(\\d+)");
+        AtomicInteger concurrentRequests = new AtomicInteger();
+        AtomicInteger maxConcurrentRequests = new AtomicInteger();
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withRateLimit(100000, 1000000)
+                                                       .withNameBatchSize(nameBatchSize)
+                                                       .withExecutor(PubChemRestUtils.newBoundedExecutor(4))
+                                                       .withTransport(url ->
+                                                       {
+                                                           maxConcurrentRequests.accumulateAndGet(concurrentRequests.incrementAndGet(), Math::max);
+                                                           try
+                                                           {
+                                                               Matcher matcher = namePattern.matcher(url);
+                                                               assertTrue(url, matcher.find());
+                                                               String body = "{\"IdentifierList\":{\"CID\":[" + (Long.valueOf(matcher.group(1)) + 1) + "]}}";
+                                                               return new PubChemTransport.Response(200, body.getBytes(StandardCharsets.UTF_8),
+                                                                                                    Collections.emptyMap());
+                                                           }
+                                                           finally
+                                                           {
+                                                               concurrentRequests.decrementAndGet();
+                                                           }
+                                                       });
+
+        AtomicInteger requestedNames = new AtomicInteger();
+        Flow.Publisher<String> names = subscriber -> subscriber.onSubscribe(new Flow.Subscription()
+        {
+            private int index = 0;
+
+            @Override
+            public synchronized void request(long n)
+            {
+                for (long ii = 0; ii < n && this.index < numberOfNames; ii++)
+                {
+                    requestedNames.incrementAndGet();
+                    subscriber.onNext("name-" + this.index++);
+                }
+                if (this.index >= numberOfNames)
+                {
+                    subscriber.onComplete();
+                }
+            }
+
+            @Override
+            public void cancel()
+            {
+                this.index = numberOfNames;
+            }
+        });
+
+        List<Map.Entry<String, Optional<String>>> results = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        AtomicInteger maxNamesAhead = new AtomicInteger();
+        accessor.publishCompoundCidsByNames(names)
+                .subscribe(new Flow.Subscriber<Map.Entry<String, Optional<String>>>()
+                {
+                    private Flow.Subscription subscription;
+
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription)
+                    {
+                        this.subscription = subscription;
+                        subscription.request(1);
+                    }
+
+                    @Override
+                    public void onNext(Map.Entry<String, Optional<String>> result)
+                    {
+                        results.add(result);
+                        maxNamesAhead.accumulateAndGet(requestedNames.get() - results.size(), Math::max);
+                        this.subscription.request(1);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable)
+                    {
+                        completion.completeExceptionally(throwable);
+                    }
+
+                    @Override
+                    public void onComplete()
+                    {
+                        completion.complete(null);
+                    }
+                });
+        completion.get(30, TimeUnit.SECONDS);
+
+        assertEquals(numberOfNames, results.size());
+        for (int ii = 0; ii < numberOfNames; ii++)
+        {
+            assertEquals("name-" + ii, results.get(ii)
+                                              .getKey());
+            assertEquals(String.valueOf(ii + 1), results.get(ii)
+                                                        .getValue()
+                                                        .get());
+        }
+        assertTrue(String.valueOf(maxNamesAhead.get()), maxNamesAhead.get() <= nameBatchSize);
+        assertTrue(String.valueOf(maxConcurrentRequests.get()), maxConcurrentRequests.get() <= 4);
+    }
+
+    @Test
+    public void testRetryPolicyWithDeadline() throws Exception
+    {
+        byte[] body = "{\"IdentifierList\":{\"CID\":[91435]}}".getBytes(StandardCharsets.UTF_8);
+        AtomicInteger requests = new AtomicInteger();
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withRateLimit(1000, 100000)
+                                                       .withRetryPolicy(RetryPolicy.newInstance()
+                                                                                   .withBackoff(10, 50, TimeUnit.MILLISECONDS))
+                                                       .withTransport(url -> requests.incrementAndGet() <= 2
+                                                               ? new PubChemTransport.Response(500, new byte[0], Collections.emptyMap())
+                                                               : new PubChemTransport.Response(200, body, Collections.emptyMap()));
+        assertEquals("91435", accessor.fetchCompoundCidByName("lactate")
+                                      .get());
+        assertEquals(3, requests.get());
+
+        PubChemRestAccessor failingAccessor = PubChemRestUtils.newInstance()
+                                                              .withRateLimit(1000, 100000)
+                                                              .withRetryPolicy(RetryPolicy.newInstance()
+                                                                                          .withMaxRetries(Failure.THROTTLED, 1000)
+                                                                                          .withDeadline(300, TimeUnit.MILLISECONDS))
+                                                              .withTransport(url -> new PubChemTransport.Response(503, new byte[0],
+                                                                                                                  Collections.singletonMap("Retry-After",
+                                                                                                                                           "1")));
+        long start = System.currentTimeMillis();
+        try
+        {
+            failingAccessor.fetchCompoundCidByName("lactate");
+            fail();
+        }
+        catch (PubChemAccessException e)
+        {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - start < 1000);
+
+        RateLimiter backedOffRateLimiter = RateLimiter.newInstance(1000, 100000);
+        backedOffRateLimiter.onResponse(503, null);
+        PubChemRestAccessor backedOffAccessor = PubChemRestUtils.newInstance()
+                                                                .withRateLimiter(backedOffRateLimiter)
+                                                                .withRetryPolicy(RetryPolicy.newInstance()
+                                                                                            .withDeadline(200, TimeUnit.MILLISECONDS))
+                                                                .withTransport(url ->
+                                                                {
+                                                                    throw new IllegalStateException("No request expected during the backoff");
+                                                                });
+        start = System.currentTimeMillis();
+        try
+        {
+            backedOffAccessor.fetchCompoundCidByName("lactate");
+            fail();
+        }
+        catch (UncheckedIOException e)
+        {
+            assertTrue(e.getCause() instanceof HttpTimeoutException);
+        }
+        assertTrue(System.currentTimeMillis() - start < 500);
+
+        RateLimiter slowRateLimiter = RateLimiter.newInstance(5, 1000);
+        for (int ii = 0; ii < 5; ii++)
+        {
+            slowRateLimiter.acquire();
+        }
+        List<Duration> timeouts = Collections.synchronizedList(new ArrayList<>());
+        PubChemRestAccessor slowAccessor = PubChemRestUtils.newInstance()
+                                                           .withRateLimiter(slowRateLimiter)
+                                                           .withRetryPolicy(RetryPolicy.newInstance()
+                                                                                       .withDeadline(500, TimeUnit.MILLISECONDS))
+                                                           .withTransport(new PubChemTransport()
+                                                           {
+                                                               @Override
+                                                               public PubChemTransport.Response get(String url)
+                                                               {
+                                                                   return new PubChemTransport.Response(200, body, Collections.emptyMap());
+                                                               }
+
+                                                               @Override
+                                                               public PubChemTransport.Response get(String url, Duration timeout)
+                                                               {
+                                                                   timeouts.add(timeout);
+                                                                   return this.get(url);
+                                                               }
+                                                           });
+        assertEquals("91435", slowAccessor.fetchCompoundCidByName("lactate")
+                                          .get());
+        assertEquals(1, timeouts.size());
+        // the permit of the drained bucket is available after about 200ms, which is not given to the request anymore
+        assertTrue(timeouts.toString(), timeouts.get(0)
+                                                .toMillis() <= 350);
+    }
+
+    @Test
+    public void testFetchProperties() throws Exception
+    {
+        List<String> urls = Collections.synchronizedList(new ArrayList<>());
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withRateLimit(1000, 100000)
+                                                       .withBatchConcurrency(2)
+                                                       .withTransport(url ->
+                                                       {
+                                                           urls.add(url);
+                                                           String body = url.contains("999999999")
+                                                                   ? ""
+                                                                   : "\"CID\",\"MolecularWeight\",\"InChIKey\"\n612,\"90.08\",\"JVTAAEKCZFNVCJ-UHFFFAOYSA-N\"\n";
+                                                           return new PubChemTransport.Response(body.isEmpty() ? 400 : 200, body.getBytes(StandardCharsets.UTF_8),
+                                                                                                Collections.emptyMap());
+                                                       });
+
+        PropertyTable propertyTable = accessor.fetchProperties(Arrays.asList("612", "999999999", "612", "invalid"), PropertyType.MOLECULAR_WEIGHT,
+                                                               PropertyType.INCHI_KEY);
+        assertEquals(1, propertyTable.size());
+        assertEquals(90.08, propertyTable.getNumberByCid(612L, PropertyType.MOLECULAR_WEIGHT)
+                                         .getAsDouble(),
+                     0.0);
+        assertEquals("JVTAAEKCZFNVCJ-UHFFFAOYSA-N", propertyTable.getText(0, PropertyType.INCHI_KEY));
+        assertEquals(3, urls.size());
+        assertTrue(urls.get(0), urls.get(0)
+                                    .contains("/property/MolecularWeight"));
+    }
+
+    @Test
+    public void testFetchPropertiesWithPropertyBatchSize() throws Exception
+    {
+        List<String> urls = Collections.synchronizedList(new ArrayList<>());
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withRateLimit(1000, 100000)
+                                                       .withPropertyBatchSize(2)
+                                                       .withTransport(url ->
+                                                       {
+                                                           urls.add(url);
+                                                           String body = "\"CID\",\"Title\"\n612,\"lactic acid\"\n";
+                                                           return new PubChemTransport.Response(200, body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap());
+                                                       });
+
+        accessor.fetchProperties(Arrays.asList("612", "613", "614", "615", "616"), PropertyType.TITLE);
+        assertEquals(3, urls.size());
+        assertTrue(urls.toString(), urls.stream()
+                                        .anyMatch(url -> url.contains("/cid/612%2C613/property/Title")));
+    }
+
+    @Test
+    public void testSubmitCidQueryPollsListKey() throws Exception
+    {
+        Pattern pagePattern = Pattern.compile("listkey_start=(\\d+)&listkey_count=(\\d+)");
+        AtomicInteger polls = new AtomicInteger();
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withRateLimit(1000, 100000)
+                                                       .withListKeyPolling(10, 10000, TimeUnit.MILLISECONDS)
+                                                       .withTransport(url ->
+                                                       {
+                                                           String body;
+                                                           Matcher pageMatcher = pagePattern.matcher(url);
+                                                           if (pageMatcher.find())
+                                                           {
+                                                               int start = Integer.valueOf(pageMatcher.group(1));
+                                                               int end = Math.min(5, start + Integer.valueOf(pageMatcher.group(2)));
+                                                               body = "{\"IdentifierList\":{\"CID\":["
+                                                                       + IntStream.range(start, end)
+                                                                                  .mapToObj(index -> String.valueOf(1000 + index))
+                                                                                  .collect(Collectors.joining(","))
+                                                                       + "]}}";
+                                                           }
+                                                           else if (!url.contains("listkey/") || polls.incrementAndGet() < 3)
+                                                           {
+                                                               body = "{\"Waiting\":{\"ListKey\":\"4711\",\"Message\":\"Your request is running\"}}";
+                                                           }
+                                                           else
+                                                           {
+                                                               body = "{\"IdentifierList\":{\"Size\":5,\"ListKey\":\"4712\"}}";
+                                                           }
+                                                           return new PubChemTransport.Response(200, body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap());
+                                                       });
+
+        ListKey listKey = accessor.submitCidQuery("compound/fastsimilarity_2d/cid/612/cids")
+                                  .get(10, TimeUnit.SECONDS);
+        assertEquals("4712", listKey.getKey());
+        assertEquals(5, listKey.getSize());
+        assertEquals(3, polls.get());
+
+        List<List<Long>> pages = accessor.fetchCidPages(listKey, 2)
+                                         .collect(Collectors.toList());
+        assertEquals(Arrays.asList(Arrays.asList(1000L, 1001L), Arrays.asList(1002L, 1003L), Arrays.asList(1004L)), pages);
+
+        PubChemRestAccessor timingOutAccessor = PubChemRestUtils.newInstance()
+                                                                .withRateLimit(1000, 100000)
+                                                                .withListKeyPolling(10, 50, TimeUnit.MILLISECONDS)
+                                                                .withTransport(url -> new PubChemTransport.Response(200,
+                                                                                                                    "{\"Waiting\":{\"ListKey\":\"4711\"}}".getBytes(StandardCharsets.UTF_8),
+                                                                                                                    Collections.emptyMap()));
+        try
+        {
+            timingOutAccessor.submitCidQuery("compound/fastsimilarity_2d/cid/612/cids")
+                             .get(10, TimeUnit.SECONDS);
+            fail();
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        PubChemRestAccessor expiringAccessor = PubChemRestUtils.newInstance()
+                                                               .withRateLimit(1000, 100000)
+                                                               .withListKeyPolling(10, 10000, TimeUnit.MILLISECONDS)
+                                                               .withTransport(url -> url.contains("listkey/")
+                                                                       ? new PubChemTransport.Response(404, new byte[0], Collections.emptyMap())
+                                                                       : new PubChemTransport.Response(200,
+                                                                                                       "{\"Waiting\":{\"ListKey\":\"4711\"}}".getBytes(StandardCharsets.UTF_8),
+                                                                                                       Collections.emptyMap()));
+        try
+        {
+            expiringAccessor.submitCidQuery("compound/fastsimilarity_2d/cid/612/cids")
+                            .get(10, TimeUnit.SECONDS);
+            fail();
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("ListKey 4711 not found or expired", e.getCause()
+                                                               .getMessage());
+        }
+        try
+        {
+            expiringAccessor.fetchCidPages(new ListKey("4712", 5), 2)
+                            .count();
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            assertEquals("ListKey 4712 not found or expired", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testConcurrentListKeyPagesShareOneRequest() throws Exception
+    {
+        Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withRateLimit(1000, 100000)
+                                                       .withTransport(url ->
+                                                       {
+                                                           requests.computeIfAbsent(url.contains("listkey_start") ? "page" : "submit", key -> new AtomicInteger())
+                                                                   .incrementAndGet();
+                                                           try
+                                                           {
+                                                               Thread.sleep(300);
+                                                           }
+                                                           catch (InterruptedException e)
+                                                           {
+                                                               Thread.currentThread()
+                                                                     .interrupt();
+                                                           }
+                                                           String body = url.contains("listkey_start")
+                                                                   ? "{\"IdentifierList\":{\"CID\":[1000,1001]}}"
+                                                                   : "{\"IdentifierList\":{\"Size\":2,\"ListKey\":\"4712\"}}";
+                                                           return new PubChemTransport.Response(200, body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap());
+                                                       });
+
+        List<CompletableFuture<ListKey>> submits = Arrays.asList(accessor.submitCidQuery("compound/fastsimilarity_2d/cid/612/cids"),
+                                                                 accessor.submitCidQuery("compound/fastsimilarity_2d/cid/612/cids"));
+        for (CompletableFuture<ListKey> submit : submits)
+        {
+            assertEquals("4712", submit.get(10, TimeUnit.SECONDS)
+                                       .getKey());
+        }
+        assertEquals(2, requests.get("submit")
+                                .get());
+
+        ListKey listKey = new ListKey("4712", 2);
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<CompletableFuture<List<List<Long>>>> pages = IntStream.range(0, 4)
+                                                                       .mapToObj(index -> CompletableFuture.supplyAsync(() -> accessor.fetchCidPages(listKey, 2)
+                                                                                                                                      .collect(Collectors.toList()),
+                                                                                                                        executorService))
+                                                                       .collect(Collectors.toList());
+            for (CompletableFuture<List<List<Long>>> page : pages)
+            {
+                assertEquals(Arrays.asList(Arrays.asList(1000L, 1001L)), page.get(10, TimeUnit.SECONDS));
+            }
+        }
+        finally
+        {
+            executorService.shutdown();
+        }
+        assertEquals(1, requests.get("page")
+                                .get());
+    }
+
+    @Test
+    public void testWaitingStateOfASynchronousLookupIsNoMiss() throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        Cache cache = CacheUtils.newConcurrentInMemoryCache();
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withRateLimit(1000, 100000)
+                                                       .withCache(cache)
+                                                       .withMemoryCache(100, 1, TimeUnit.HOURS)
+                                                       .withTransport(url ->
+                                                       {
+                                                           requests.incrementAndGet();
+                                                           return new PubChemTransport.Response(200,
+                                                                                                "{\"Waiting\":{\"ListKey\":\"4711\"}}".getBytes(StandardCharsets.UTF_8),
+                                                                                                Collections.emptyMap());
+                                                       });
+        for (int ii = 0; ii < 2; ii++)
+        {
+            try
+            {
+                accessor.fetchCompoundCidByName("lactate");
+                fail();
+            }
+            catch (PubChemWaitingException e)
+            {
+                assertEquals("4711", e.getListKey());
+            }
+        }
+        assertEquals(2, requests.get());
+        assertTrue(cache.keySet()
+                        .isEmpty());
+    }
+
+    @Test
+    public void testMetrics() throws Exception
+    {
+        byte[] body = "{\"IdentifierList\":{\"CID\":[91435]}}".getBytes(StandardCharsets.UTF_8);
+        MetricsRegistry metrics = MetricsRegistry.newInstance();
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withBaseUrl("http://pubchem.test/rest/pug")
+                                                       .withMemoryCache(100, 1, TimeUnit.HOURS)
+                                                       .withMetrics(metrics)
+                                                       .withTransport(url -> new PubChemTransport.Response(200, body, Collections.emptyMap()));
+
+        assertEquals("91435", accessor.fetchCompoundCidByName("lactate")
+                                      .get());
+        assertEquals("91435", accessor.fetchCompoundCidByName("lactate")
+                                      .get());
+
+        EndpointMetrics endpointMetrics = metrics.getEndpoints()
+                                                 .get("compound/name/cids");
+        assertEquals(1, endpointMetrics.getResponses());
+        assertEquals(1, endpointMetrics.getCacheHits(CacheTier.MEMORY));
+        assertEquals(1, endpointMetrics.getCacheMisses(CacheTier.MEMORY));
+        assertEquals(1, endpointMetrics.getDeserializations());
+        assertEquals(body.length, endpointMetrics.getReceivedBytes());
+    }
+
+    @Test
+    public void testDetermineEndpoint() throws Exception
+    {
+        String baseUrl = "https://pubchem.ncbi.nlm.nih.gov/rest/pug";
+        assertEquals("compound/name/synonyms", PubChemRestUtils.determineEndpoint(baseUrl, baseUrl + "/compound/name/lactate/synonyms/JSON"));
+        assertEquals("compound/name", PubChemRestUtils.determineEndpoint(baseUrl, baseUrl + "/compound/name/lactate/JSON#names"));
+        assertEquals("compound/cid/description", PubChemRestUtils.determineEndpoint(baseUrl, baseUrl + "/compound/cid/1,2,3/description/JSON"));
+    }
+
+    @Test
+    public void testFetchCompoundParentCids() throws Exception
+    {
+        Path parentGraphFile = Files.createTempDirectory("pubchem-parent-graph")
+                                    .resolve("parents.bin");
+        List<String> urls = new ArrayList<>();
+        PubChemTransport transport = url ->
+        {
+            urls.add(url);
+            String body = "{\"InformationList\":{\"Information\":[{\"CID\":[612]},{\"CID\":[2244]},{}]}}";
+            return new PubChemTransport.Response(200, body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap());
+        };
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withTransport(transport)
+                                                       .withParentGraph(parentGraphFile);
+
+        Map<String, Optional<String>> parentCids = accessor.fetchCompoundParentCids(Arrays.asList("91435", "5161", "999999999", "no cid"));
+        assertEquals(Arrays.asList("91435", "5161", "999999999", "no cid"), new ArrayList<>(parentCids.keySet()));
+        assertEquals(Optional.of("612"), parentCids.get("91435"));
+        assertEquals(Optional.of("2244"), parentCids.get("5161"));
+        assertEquals(Optional.empty(), parentCids.get("999999999"));
+        assertEquals(Optional.empty(), parentCids.get("no cid"));
+        assertEquals(1, urls.size());
+
+        assertEquals(Optional.of("612"), accessor.fetchCompoundParentCidByCid("612"));
+        assertEquals(Optional.of("612"), accessor.fetchCompoundParentCidByCid("91435"));
+        assertEquals(1, urls.size());
+
+        Map<String, Optional<String>> restoredParentCids = PubChemRestUtils.newInstance()
+                                                                           .withTransport(transport)
+                                                                           .withParentGraph(parentGraphFile)
+                                                                           .fetchCompoundParentCids(Arrays.asList("5161", "2244"));
+        assertEquals(Optional.of("2244"), restoredParentCids.get("5161"));
+        assertEquals(Optional.of("2244"), restoredParentCids.get("2244"));
+        assertEquals(1, urls.size());
+    }
+
+    @Test
+    public void testFetchCompoundParentCidsInGroupedBatches() throws Exception
+    {
+        Pattern cidsPattern = Pattern.compile("/compound/cid/([0-9,%C]+)/cids/JSON\\?");
+        List<String> urls = Collections.synchronizedList(new ArrayList<>());
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withRateLimit(1000, 100000)
+                                                       .withParentCidBatchSize(2)
+                                                       .withTransport(url ->
+                                                       {
+                                                           urls.add(url);
+                                                           Matcher matcher = cidsPattern.matcher(url);
+                                                           assertTrue(url, matcher.find());
+                                                           List<String> cids = Arrays.asList(matcher.group(1)
+                                                                                                    .replace("%2C", ",")
+                                                                                                    .split(","));
+                                                           if (cids.contains("3"))
+                                                           {
+                                                               return new PubChemTransport.Response(403, new byte[0], Collections.emptyMap());
+                                                           }
+                                                           // the grouped response contains one entry per requested cid in the order of the request
+                                                           String body = cids.stream()
+                                                                             .map(cid -> cid.equals("2") ? "{}" : "{\"CID\":[" + cid + "0]}")
+                                                                             .collect(Collectors.joining(",", "{\"InformationList\":{\"Information\":[", "]}}"));
+                                                           return new PubChemTransport.Response(200, body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap());
+                                                       });
+
+        Map<String, Optional<String>> parentCids = accessor.fetchCompoundParentCids(Arrays.asList("1", "2", "3", "4", "5", "6"));
+        assertEquals(Arrays.asList("1", "2", "5", "6"), new ArrayList<>(parentCids.keySet()));
+        assertEquals(Optional.of("10"), parentCids.get("1"));
+        assertEquals(Optional.empty(), parentCids.get("2"));
+        assertEquals(Optional.of("50"), parentCids.get("5"));
+        assertEquals(Optional.of("60"), parentCids.get("6"));
+        assertEquals(3, urls.size());
+        for (String url : urls)
+        {
+            assertTrue(url, url.contains("cids_type=parent") && url.contains("list_return=grouped"));
+        }
+
+        // the failed batch has not been recorded as cids without parent
+        assertEquals(Collections.emptyMap(), accessor.fetchCompoundParentCids(Arrays.asList("3", "4")));
+        assertEquals(4, urls.size());
+    }
+
+    @Test
+    public void testWarmUpAndCacheSnapshot() throws Exception
+    {
+        Path directory = Files.createTempDirectory("pubchem-snapshot");
+        AtomicInteger requests = new AtomicInteger();
+        PubChemTransport transport = url ->
+        {
+            requests.incrementAndGet();
+            String body;
+            if (url.contains("/synonyms/"))
+            {
+                body = "{\"InformationList\":{\"Information\":[{\"CID\":91435,\"Synonym\":[\"lactate\"]}]}}";
+            }
+            else if (url.contains("/description/"))
+            {
+                body = "{\"InformationList\":{\"Information\":[{\"CID\":91435,\"Title\":\"Lactate\"}]}}";
+            }
+            else
+            {
+                body = "{\"IdentifierList\":{\"CID\":[91435]}}";
+            }
+            return new PubChemTransport.Response(200, body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap());
+        };
+
+        PubChemRestUtils.newInstance()
+                        .withTransport(transport)
+                        .withLocalCache(directory.resolve("source.log"))
+                        .warmUpByNames(Arrays.asList("lactate"))
+                        .exportCache(directory.resolve("snapshot.gz"));
+        assertEquals(4, requests.get());
+
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withTransport(transport)
+                                                       .withLocalCache(directory.resolve("target.log"));
+        assertEquals(4, accessor.importCache(directory.resolve("snapshot.gz")));
+        assertEquals("91435", accessor.fetchCompoundCidByName("lactate")
+                                      .get());
+        assertEquals(Arrays.asList("lactate"), accessor.fetchSynonyms("lactate")
+                                                       .get()
+                                                       .getSynonyms());
+        assertEquals("Lactate", accessor.fetchTitle("91435")
+                                        .get());
+        assertEquals(4, requests.get());
+    }
+
+    private static List<String> toCidAndIupacNames(List<CompoundEntry> entries)
+    {
+        return entries.stream()
+                      .flatMap(entry -> entry.getProps()
+                                             .stream()
+                                             .filter(property -> "IUPAC Name".equals(property.getUrn()
+                                                                                             .getLabel()))
+                                             .map(property -> entry.getId()
+                                                                   .getId()
+                                                                   .getCid()
+                                                     + ":" + property.getUrn()
+                                                                     .getName()
+                                                     + "=" + property.getValue()
+                                                                     .getSval()))
+                      .collect(Collectors.toList());
+    }
+
+    private static long measureAllocation(Callable<?> operation) throws Exception
+    {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int ii = 0; ii < 200; ii++)
+        {
+            operation.call();
+        }
+        long threadId = Thread.currentThread()
+                              .getId();
+        long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int ii = 0; ii < 200; ii++)
+        {
+            operation.call();
+        }
+        return threadMXBean.getThreadAllocatedBytes(threadId) - start;
+    }
+
+    private static byte[] readResource(String name) throws IOException
+    {
+        try (InputStream inputStream = PubChemRestUtilsTest.class.getResourceAsStream(name))
+        {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = inputStream.read(buffer)) >= 0)
+            {
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String body, String throttlingControl) throws IOException
+    {
+        byte[] data = body.getBytes(StandardCharsets.UTF_8);
+        if (throttlingControl != null)
+        {
+            exchange.getResponseHeaders()
+                    .add(RateLimiter.THROTTLING_CONTROL_HEADER, throttlingControl);
+        }
+        exchange.sendResponseHeaders(statusCode, data.length);
+        try (OutputStream outputStream = exchange.getResponseBody())
+        {
+            outputStream.write(data);
+        }
+    }
 }
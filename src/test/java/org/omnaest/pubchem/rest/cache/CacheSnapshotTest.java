@@ -0,0 +1,47 @@
+package org.omnaest.pubchem.rest.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @see CacheSnapshot
+ * @author omnaest
+ */
+public class CacheSnapshotTest
+{
+    @Test
+    public void testExportAndImport() throws Exception
+    {
+        Path directory = Files.createTempDirectory("pubchem-snapshot");
+        JsonNode response = new ObjectMapper().readTree("{\"IdentifierList\":{\"CID\":[91435]}}");
+        long expiresAt = System.currentTimeMillis() + 3600000;
+        try (LogFileCache cache = LogFileCache.open(directory.resolve("source.log")))
+        {
+            cache.put("http://pubchem/compound/name/lactate/cids/JSON", response);
+            cache.put("negative:http://pubchem/compound/name/unknown/cids/JSON", expiresAt);
+            cache.put("negative:http://pubchem/compound/name/expired/cids/JSON", 1234L);
+            cache.put("list", new ArrayList<>(Arrays.asList(1, 2)));
+            assertEquals(3, CacheSnapshot.exportTo(cache, directory.resolve("snapshot.gz")));
+        }
+
+        try (LogFileCache cache = LogFileCache.open(directory.resolve("target.log")))
+        {
+            assertEquals(3, CacheSnapshot.importFrom(directory.resolve("snapshot.gz"), cache));
+            assertEquals(response, cache.get("http://pubchem/compound/name/lactate/cids/JSON", JsonNode.class));
+            assertEquals(Long.valueOf(expiresAt), cache.get("negative:http://pubchem/compound/name/unknown/cids/JSON", Long.class));
+            assertNull(cache.get("negative:http://pubchem/compound/name/expired/cids/JSON", Long.class));
+            assertTrue(JsonNode.class.isAssignableFrom(cache.getType("list")));
+        }
+    }
+}
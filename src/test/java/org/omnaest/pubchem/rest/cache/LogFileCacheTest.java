@@ -0,0 +1,219 @@
+package org.omnaest.pubchem.rest.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @see LogFileCache
+ * @author omnaest
+ */
+public class LogFileCacheTest
+{
+    @Test
+    public void testPutGetAndReopen() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-cache")
+                         .resolve("cache.log");
+        JsonNode response = new ObjectMapper().readTree("{\"IdentifierList\":{\"CID\":[91435]}}");
+
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            cache.put("http://pubchem/compound/name/lactate/cids/JSON", response);
+            cache.put("negative:http://pubchem/compound/name/unknown/cids/JSON", 1234L);
+            cache.put("http://pubchem/compound/name/water/cids/JSON", response);
+            cache.remove("http://pubchem/compound/name/water/cids/JSON");
+
+            assertEquals(response, cache.get("http://pubchem/compound/name/lactate/cids/JSON", JsonNode.class));
+            assertNull(cache.get("http://pubchem/compound/name/water/cids/JSON", JsonNode.class));
+        }
+
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            assertEquals(new HashSet<>(Arrays.asList("http://pubchem/compound/name/lactate/cids/JSON",
+                                                               "negative:http://pubchem/compound/name/unknown/cids/JSON")),
+                         cache.keySet());
+            assertEquals(response, cache.get("http://pubchem/compound/name/lactate/cids/JSON", JsonNode.class));
+            assertEquals(Long.valueOf(1234L), cache.get("negative:http://pubchem/compound/name/unknown/cids/JSON", Long.class));
+            assertEquals(Long.class, cache.getType("negative:http://pubchem/compound/name/unknown/cids/JSON"));
+        }
+    }
+
+    @Test
+    public void testIncompleteRecordIsDiscarded() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-cache")
+                         .resolve("cache.log");
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            cache.put("a", "value a");
+            cache.put("b", "value b");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+        {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            assertEquals("value a", cache.get("a", String.class));
+            assertNull(cache.get("b", String.class));
+            cache.put("c", "value c");
+        }
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            assertEquals("value c", cache.get("c", String.class));
+        }
+    }
+
+    @Test
+    public void testCorruptRecordInTheMiddleIsSkipped() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-cache")
+                         .resolve("cache.log");
+        long endOfRecordB;
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            cache.put("a", "value a");
+            cache.put("b", "value b");
+            endOfRecordB = cache.getFileSize();
+            cache.put("c", "value c");
+        }
+        long fileSize = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, endOfRecordB - 5);
+            buffer.put(0, (byte) (buffer.get(0) ^ 0xFF));
+            buffer.rewind();
+            channel.write(buffer, endOfRecordB - 5);
+        }
+
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            assertEquals("value a", cache.get("a", String.class));
+            assertNull(cache.get("b", String.class));
+            assertEquals("value c", cache.get("c", String.class));
+            assertEquals(fileSize, cache.getFileSize());
+            cache.put("d", "value d");
+        }
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            assertEquals(new HashSet<>(Arrays.asList("a", "c", "d")), cache.keySet());
+        }
+    }
+
+    @Test
+    public void testZeroFilledTailIsDiscarded() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-cache")
+                         .resolve("cache.log");
+        long fileSize;
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            cache.put("a", "value a");
+            fileSize = cache.getFileSize();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+        {
+            channel.write(ByteBuffer.allocate(100), fileSize);
+        }
+
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            assertEquals("value a", cache.get("a", String.class));
+            assertEquals(fileSize, Files.size(file));
+        }
+    }
+
+    @Test
+    public void testFileIsOpenedOnlyOnce() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-cache")
+                         .resolve("cache.log");
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            try
+            {
+                LogFileCache.open(file);
+                fail();
+            }
+            catch (IllegalStateException e)
+            {
+                // expected
+            }
+            cache.put("a", "value a");
+        }
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            assertEquals("value a", cache.get("a", String.class));
+        }
+    }
+
+    @Test
+    public void testCompaction() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-cache")
+                         .resolve("cache.log");
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            for (int ii = 0; ii < 100; ii++)
+            {
+                cache.put("key" + (ii % 10), "value" + ii);
+            }
+            long fileSize = cache.getFileSize();
+            cache.compact();
+            assertTrue(cache.getFileSize() < fileSize / 5);
+            assertEquals("value95", cache.get("key5", String.class));
+            cache.put("key5", "value100");
+        }
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            assertEquals(10, cache.size());
+            assertEquals("value100", cache.get("key5", String.class));
+            assertEquals("value99", cache.get("key9", String.class));
+        }
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriters() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-cache")
+                         .resolve("cache.log");
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++)
+            {
+                int offset = thread * 1000;
+                futures.add(CompletableFuture.runAsync(() ->
+                {
+                    for (int ii = offset; ii < offset + 200; ii++)
+                    {
+                        cache.put("key" + ii, "value" + ii);
+                        assertEquals("value" + ii, cache.get("key" + ii, String.class));
+                    }
+                }));
+            }
+            futures.forEach(CompletableFuture::join);
+            assertEquals(1600, cache.size());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.omnaest.pubchem.rest.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @see MemoryCache
+ * @author omnaest
+ */
+public class MemoryCacheTest
+{
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception
+    {
+        MemoryCache<String> cache = MemoryCache.newInstance(2, 1, TimeUnit.HOURS);
+        cache.put("water", "962");
+        cache.put("atp", "5957");
+        assertEquals("962", cache.get("water"));
+
+        cache.put("lactate", "91435");
+        assertNull(cache.get("atp"));
+        assertEquals("962", cache.get("water"));
+        assertEquals("91435", cache.get("lactate"));
+
+        MemoryCache.Statistics statistics = cache.getStatistics();
+        assertEquals(3, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(1, statistics.getEvictions());
+        assertEquals(2, statistics.getSize());
+    }
+
+    @Test
+    public void testTimeToLive() throws Exception
+    {
+        MemoryCache<String> cache = MemoryCache.newInstance(10, 50, TimeUnit.MILLISECONDS);
+        cache.put("water", "962");
+        assertEquals("962", cache.get("water"));
+
+        Thread.sleep(100);
+        assertNull(cache.get("water"));
+        assertEquals(1, cache.getStatistics()
+                             .getEvictions());
+        assertEquals(0, cache.getStatistics()
+                             .getSize());
+    }
+}
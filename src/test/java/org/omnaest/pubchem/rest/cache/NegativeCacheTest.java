@@ -0,0 +1,85 @@
+package org.omnaest.pubchem.rest.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.omnaest.utils.CacheUtils;
+import org.omnaest.utils.cache.Cache;
+
+/**
+ * @see NegativeCache
+ * @author omnaest
+ */
+public class NegativeCacheTest
+{
+    @Test
+    public void testTimeToLive() throws Exception
+    {
+        NegativeCache negativeCache = NegativeCache.newInstance(10, 50, TimeUnit.MILLISECONDS);
+        assertFalse(negativeCache.contains("http://pubchem/compound/name/unknown/cids/JSON"));
+
+        negativeCache.put("http://pubchem/compound/name/unknown/cids/JSON");
+        assertTrue(negativeCache.contains("http://pubchem/compound/name/unknown/cids/JSON"));
+
+        Thread.sleep(100);
+        assertFalse(negativeCache.contains("http://pubchem/compound/name/unknown/cids/JSON"));
+
+        NegativeCache.Statistics statistics = negativeCache.getStatistics();
+        assertEquals(1, statistics.getHits());
+        assertEquals(2, statistics.getMisses());
+        assertEquals(1, statistics.getStores());
+    }
+
+    @Test
+    public void testPersistentCache() throws Exception
+    {
+        Cache cache = CacheUtils.newConcurrentInMemoryCache();
+        NegativeCache.newInstance(10, 1, TimeUnit.HOURS, () -> cache)
+                     .put("http://pubchem/compound/name/unknown/cids/JSON");
+
+        NegativeCache restartedNegativeCache = NegativeCache.newInstance(10, 1, TimeUnit.HOURS, () -> cache);
+        assertTrue(restartedNegativeCache.contains("http://pubchem/compound/name/unknown/cids/JSON"));
+        assertFalse(restartedNegativeCache.contains("http://pubchem/compound/name/lactate/cids/JSON"));
+    }
+
+    @Test
+    public void testExpiredEntriesAreRemovedFromThePersistentCache() throws Exception
+    {
+        Cache cache = CacheUtils.newConcurrentInMemoryCache();
+        NegativeCache.newInstance(10, 10, TimeUnit.MILLISECONDS, () -> cache)
+                     .put("http://pubchem/compound/name/unknown/cids/JSON");
+        assertEquals(1, cache.keySet()
+                             .size());
+
+        Thread.sleep(50);
+        assertFalse(NegativeCache.newInstance(10, 1, TimeUnit.HOURS, () -> cache)
+                                 .contains("http://pubchem/compound/name/unknown/cids/JSON"));
+        assertTrue(cache.keySet()
+                        .isEmpty());
+    }
+
+    @Test
+    public void testExpiredEntriesAreRemovedByCompaction() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-negative-cache")
+                         .resolve("cache.log");
+        try (LogFileCache cache = LogFileCache.open(file))
+        {
+            cache.put(NegativeCache.KEY_PREFIX + "http://pubchem/compound/name/expired/cids/JSON", 1234L);
+            cache.put(NegativeCache.KEY_PREFIX + "http://pubchem/compound/name/unknown/cids/JSON", System.currentTimeMillis() + 3600000);
+            cache.put("http://pubchem/compound/name/lactate/cids/JSON", "{}");
+            cache.compact();
+            assertEquals(new HashSet<>(Arrays.asList(NegativeCache.KEY_PREFIX + "http://pubchem/compound/name/unknown/cids/JSON",
+                                                     "http://pubchem/compound/name/lactate/cids/JSON")),
+                         cache.keySet());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.omnaest.pubchem.rest.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * @see ParentGraph
+ * @author omnaest
+ */
+public class ParentGraphTest
+{
+    @Test
+    public void testPutAndGet() throws Exception
+    {
+        ParentGraph parentGraph = ParentGraph.newInstance();
+        for (long cid = 1; cid <= 10000; cid++)
+        {
+            parentGraph.put(cid, cid % 7 == 0 ? ParentGraph.NO_PARENT : cid);
+        }
+        parentGraph.put(91435, 612);
+
+        assertEquals(10001, parentGraph.size());
+        assertEquals(612, parentGraph.getParentCid(91435));
+        assertEquals(612, parentGraph.getParentCid(612));
+        assertEquals(ParentGraph.NO_PARENT, parentGraph.getParentCid(14));
+        assertEquals(15, parentGraph.getParentCid(15));
+        assertEquals(ParentGraph.UNKNOWN, parentGraph.getParentCid(20000));
+    }
+
+    @Test
+    public void testFile() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-parent-graph")
+                         .resolve("parents.bin");
+
+        ParentGraph parentGraph = ParentGraph.open(file);
+        parentGraph.put(91435, 612);
+        parentGraph.flush();
+        parentGraph.put(5, ParentGraph.NO_PARENT);
+        parentGraph.put(91435, 612);
+        parentGraph.flush();
+        assertEquals(16 * 3, Files.size(file));
+
+        ParentGraph reopenedParentGraph = ParentGraph.open(file);
+        assertEquals(3, reopenedParentGraph.size());
+        assertEquals(612, reopenedParentGraph.getParentCid(91435));
+        assertEquals(612, reopenedParentGraph.getParentCid(612));
+        assertEquals(ParentGraph.NO_PARENT, reopenedParentGraph.getParentCid(5));
+    }
+}
@@ -0,0 +1,91 @@
+package org.omnaest.pubchem.rest.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.omnaest.pubchem.rest.domain.Synonyms;
+
+/**
+ * @see SynonymIndex
+ * @author omnaest
+ */
+public class SynonymIndexTest
+{
+    @Test
+    public void testPutAndFind() throws Exception
+    {
+        SynonymIndex synonymIndex = SynonymIndex.newInstance();
+        synonymIndex.put(new Synonyms(612, Arrays.asList("Lactic acid", "2-hydroxypropanoic acid", "lactate")));
+        synonymIndex.put(new Synonyms(91435, Arrays.asList("L-lactate", "lactate")));
+
+        assertEquals(612, synonymIndex.findCid("  LACTIC   acid ")
+                                      .getAsLong());
+        assertEquals(91435, synonymIndex.findCid("l-lactate")
+                                        .getAsLong());
+        assertFalse(synonymIndex.findCid("lactate")
+                                .isPresent());
+        assertArrayEquals(new long[] { 612, 91435 }, synonymIndex.findCids("Lactate"));
+        assertFalse(synonymIndex.findCid("water")
+                                .isPresent());
+        assertEquals(4, synonymIndex.size());
+    }
+
+    @Test
+    public void testFile() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-synonym-index")
+                         .resolve("synonyms.bin");
+
+        SynonymIndex synonymIndex = SynonymIndex.open(file);
+        synonymIndex.put(new Synonyms(612, Arrays.asList("Lactic acid", "lactate")));
+        synonymIndex.flush();
+        synonymIndex.put("lactate", 91435);
+        synonymIndex.put("lactate", 91435);
+        synonymIndex.flush();
+
+        SynonymIndex reopenedSynonymIndex = SynonymIndex.open(file);
+        assertEquals(2, reopenedSynonymIndex.size());
+        assertEquals(612, reopenedSynonymIndex.findCid("lactic acid")
+                                              .getAsLong());
+        assertArrayEquals(new long[] { 612, 91435 }, reopenedSynonymIndex.findCids("lactate"));
+        assertEquals(3 * (2 + 8) + "lactic acid".length() + 2 * "lactate".length(), Files.size(file));
+    }
+
+    @Test
+    public void testFlushesWhenThresholdIsReached() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-synonym-index")
+                         .resolve("synonyms.bin");
+
+        SynonymIndex synonymIndex = SynonymIndex.open(file, SynonymIndex.DEFAULT_MAX_SIZE, 3, Long.MAX_VALUE);
+        synonymIndex.put(new Synonyms(612, Arrays.asList("Lactic acid", "lactate")));
+        assertFalse(Files.exists(file));
+        synonymIndex.put("2-hydroxypropanoic acid", 612);
+        assertEquals(3, SynonymIndex.open(file)
+                                    .size());
+
+        SynonymIndex timedSynonymIndex = SynonymIndex.open(file, SynonymIndex.DEFAULT_MAX_SIZE, Integer.MAX_VALUE, 0);
+        timedSynonymIndex.put("water", 962);
+        assertEquals(4, SynonymIndex.open(file)
+                                    .size());
+    }
+
+    @Test
+    public void testMaxSize() throws Exception
+    {
+        SynonymIndex synonymIndex = SynonymIndex.newInstance(2);
+        synonymIndex.put(new Synonyms(612, Arrays.asList("Lactic acid", "lactate", "2-hydroxypropanoic acid")));
+        synonymIndex.put("lactate", 91435);
+
+        assertEquals(2, synonymIndex.size());
+        assertFalse(synonymIndex.findCid("2-hydroxypropanoic acid")
+                                .isPresent());
+        assertArrayEquals(new long[] { 612, 91435 }, synonymIndex.findCids("lactate"));
+    }
+}
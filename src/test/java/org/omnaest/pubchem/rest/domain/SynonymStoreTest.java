@@ -0,0 +1,94 @@
+package org.omnaest.pubchem.rest.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @see SynonymStore
+ * @author omnaest
+ */
+public class SynonymStoreTest
+{
+    @Test
+    public void testCompact() throws Exception
+    {
+        SynonymStore synonymStore = SynonymStore.newInstance();
+        Synonyms lactate = synonymStore.compact(new Synonyms(91435, Arrays.asList("lactate", "2-hydroxypropanoate", "Milchs\u00e4ure")));
+        Synonyms lacticAcid = synonymStore.compact(new Synonyms(612, Arrays.asList("lactic acid", "lactate", null)));
+
+        assertEquals(91435, lactate.getCid());
+        assertEquals(Arrays.asList("lactate", "2-hydroxypropanoate", "Milchs\u00e4ure"), lactate.getSynonyms());
+        assertEquals(Arrays.asList("lactic acid", "lactate", null), lacticAcid.getSynonyms());
+        assertEquals("Milchs\u00e4ure", lactate.getSynonyms()
+                                             .get(2));
+        assertNull(lacticAcid.getSynonyms()
+                             .get(2));
+
+        SynonymStore.Statistics statistics = synonymStore.getStatistics();
+        assertEquals(4, statistics.getDistinctStrings());
+        assertEquals(6, statistics.getInternedStrings());
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertEquals(lactate.getSynonyms(), objectMapper.readValue(objectMapper.writeValueAsBytes(lactate), Synonyms.class)
+                                                        .getSynonyms());
+    }
+
+    @Test
+    public void testManySynonyms() throws Exception
+    {
+        SynonymStore synonymStore = SynonymStore.newInstance();
+        List<Synonyms> compactSynonyms = new ArrayList<>();
+        long stringBytes = 0;
+        for (int cid = 1; cid <= 100000; cid++)
+        {
+            List<String> synonyms = Arrays.asList("compound " + cid, "CID" + cid, "shared synonym " + (cid % 100), "common name " + (cid % 1000));
+            for (String synonym : synonyms)
+            {
+                stringBytes += synonym.length();
+            }
+            compactSynonyms.add(synonymStore.compact(new Synonyms(cid, synonyms)));
+        }
+
+        SynonymStore.Statistics statistics = synonymStore.getStatistics();
+        assertEquals(2 * 100000 + 100 + 1000, statistics.getDistinctStrings());
+        assertEquals(4 * 100000, statistics.getInternedStrings());
+        assertTrue(statistics.toString(), statistics.getEncodedBytes() < stringBytes * 2 / 3);
+        assertEquals("shared synonym 45", compactSynonyms.get(44444)
+                                                         .getSynonyms()
+                                                         .get(2));
+        assertEquals("CID100000", compactSynonyms.get(99999)
+                                                 .getSynonyms()
+                                                 .get(1));
+    }
+
+    @Test
+    public void testFailsClearlyWhenFull() throws Exception
+    {
+        SynonymStore synonymStore = new SynonymStore(16, 1000);
+        List<String> synonyms = synonymStore.intern(Arrays.asList("lactate", "water"));
+        assertEquals(Arrays.asList("lactate", "water"), synonymStore.intern(Arrays.asList("lactate", "water")));
+        try
+        {
+            synonymStore.intern(Arrays.asList("2-hydroxypropanoate"));
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage()
+                                        .startsWith("SynonymStore is full"));
+        }
+        assertEquals(Arrays.asList("lactate", "water"), synonyms);
+        assertEquals(2, synonymStore.getStatistics()
+                                    .getDistinctStrings());
+    }
+}
@@ -0,0 +1,50 @@
+package org.omnaest.pubchem.rest.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.omnaest.pubchem.rest.metrics.MetricsRegistry.EndpointMetrics;
+import org.omnaest.pubchem.rest.metrics.PubChemMetrics.CacheTier;
+
+/**
+ * @see MetricsRegistry
+ * @author omnaest
+ */
+public class MetricsRegistryTest
+{
+    @Test
+    public void testAggregation() throws Exception
+    {
+        MetricsRegistry registry = MetricsRegistry.newInstance();
+        registry.onResponse("compound/name/synonyms", 200, TimeUnit.MILLISECONDS.toNanos(20), 1000);
+        registry.onResponse("compound/name/synonyms", 404, TimeUnit.MILLISECONDS.toNanos(10), 50);
+        registry.onFailure("compound/name/synonyms", new IOException(), TimeUnit.MILLISECONDS.toNanos(30));
+        registry.onRetry("compound/name/synonyms", 1);
+        registry.onCacheLookup("compound/name/synonyms", CacheTier.MEMORY, true);
+        registry.onCacheLookup("compound/name/synonyms", CacheTier.MEMORY, false);
+        registry.onCacheLookup("compound/name/synonyms", CacheTier.MEMORY, true);
+        registry.onDeserialization("compound/name/synonyms", TimeUnit.MILLISECONDS.toNanos(5));
+        registry.onResponse("compound/cid/description", 200, TimeUnit.MILLISECONDS.toNanos(40), 2000);
+
+        EndpointMetrics synonyms = registry.getEndpoints()
+                                           .get("compound/name/synonyms");
+        assertEquals(2, synonyms.getResponses());
+        assertEquals(1, synonyms.getErrorResponses());
+        assertEquals(1, synonyms.getFailures());
+        assertEquals(1, synonyms.getRetries());
+        assertEquals(1050, synonyms.getReceivedBytes());
+        assertEquals(20.0, synonyms.getAverageRequestTimeMillis(), 0.001);
+        assertEquals(20, synonyms.getMaxRequestTimeMillis());
+        assertEquals(2, synonyms.getCacheHits(CacheTier.MEMORY));
+        assertEquals(1, synonyms.getCacheMisses(CacheTier.MEMORY));
+        assertEquals(0, synonyms.getCacheHits(CacheTier.PERSISTENT));
+        assertEquals(1, synonyms.getDeserializations());
+        assertEquals(5, synonyms.getTotalDeserializationTimeMillis());
+        assertEquals(2000, registry.getEndpoints()
+                                   .get("compound/cid/description")
+                                   .getReceivedBytes());
+    }
+}
@@ -0,0 +1,82 @@
+package org.omnaest.pubchem.rest.offline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * @see CidIndex
+ * @author omnaest
+ */
+public class CidIndexTest
+{
+    @Test
+    public void testWriteAndRead() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-cid-index")
+                         .resolve("cids.idx");
+        try (CidIndex.Writer writer = CidIndex.writer(file))
+        {
+            writer.add(5, "Water", CidIndex.NO_CID)
+                  .add(612, "Lactic Acid", 612)
+                  .add(91435, null, 612);
+        }
+
+        CidIndex index = CidIndex.open(file);
+        assertEquals(3, index.size());
+        assertEquals("Water", index.getTitle(5));
+        assertEquals("Lactic Acid", index.getTitle(612));
+        assertNull(index.getTitle(91435));
+        assertNull(index.getTitle(5793));
+        assertEquals(612, index.getParentCid(91435));
+        assertEquals(CidIndex.NO_CID, index.getParentCid(5));
+        assertEquals(CidIndex.NO_CID, index.getParentCid(7));
+        assertEquals(612, index.findParentCid(91435)
+                               .getAsLong());
+        assertFalse(index.findParentCid(5)
+                         .isPresent());
+        assertTrue(index.contains(91435));
+        assertFalse(index.contains(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsortedCids() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-cid-index")
+                         .resolve("cids.idx");
+        try (CidIndex.Writer writer = CidIndex.writer(file))
+        {
+            writer.add(612, "Lactic Acid", 612)
+                  .add(5, "Water", CidIndex.NO_CID);
+        }
+    }
+
+    @Test
+    public void testManyRecords() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-cid-index")
+                         .resolve("cids.idx");
+        try (CidIndex.Writer writer = CidIndex.writer(file))
+        {
+            for (long cid = 1; cid <= 100000; cid += 2)
+            {
+                writer.add(cid, "Compound \u00e4" + cid, cid + 1);
+            }
+        }
+
+        CidIndex index = CidIndex.open(file);
+        assertEquals(50000, index.size());
+        for (long cid = 1; cid <= 100000; cid += 2)
+        {
+            assertEquals("Compound \u00e4" + cid, index.getTitle(cid));
+            assertEquals(cid + 1, index.getParentCid(cid));
+            assertNull(index.getTitle(cid + 1));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.omnaest.pubchem.rest.offline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+/**
+ * @see LongStringTable
+ * @author omnaest
+ */
+public class LongStringTableTest
+{
+    @Test
+    public void testSortedByText() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-table")
+                         .resolve("names.tbl");
+        try (LongStringTable.Writer writer = LongStringTable.writer(file, LongStringTable.Order.BY_TEXT, 2))
+        {
+            writer.add(91435, "lactate")
+                  .add(962, "water")
+                  .add(612, "lactate")
+                  .add(612, "lactic acid")
+                  .add(612, "lactate")
+                  .add(5, "\u00e4ther");
+        }
+
+        LongStringTable table = LongStringTable.open(file);
+        assertEquals(5, table.size());
+        assertEquals(612, table.findFirstNumber("lactate")
+                               .getAsLong());
+        assertEquals(962, table.findFirstNumber("water")
+                               .getAsLong());
+        assertEquals(5, table.findFirstNumber("\u00e4ther")
+                             .getAsLong());
+        assertFalse(table.findFirstNumber("lact")
+                         .isPresent());
+        assertFalse(table.findFirstNumber("zzz")
+                         .isPresent());
+        assertFalse(table.findFirstNumber("")
+                         .isPresent());
+        try (Stream<Path> files = Files.list(file.getParent()))
+        {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testSortedByNumberKeepsInsertionOrder() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-table")
+                         .resolve("synonyms.tbl");
+        try (LongStringTable.Writer writer = LongStringTable.writer(file, LongStringTable.Order.BY_NUMBER, 3))
+        {
+            writer.add(962, "water")
+                  .add(612, "Lactic Acid")
+                  .add(962, "Dihydrogen oxide")
+                  .add(1, "first")
+                  .add(962, "aqua")
+                  .add(612, "lactate")
+                  .add(962, "H2O");
+        }
+
+        LongStringTable table = LongStringTable.open(file);
+        assertEquals(7, table.size());
+        assertEquals(Arrays.asList("water", "Dihydrogen oxide", "aqua", "H2O"), table.findTexts(962));
+        assertEquals(Arrays.asList("Lactic Acid", "lactate"), table.findTexts(612));
+        assertEquals(Arrays.asList("first"), table.findTexts(1));
+        assertEquals(Collections.emptyList(), table.findTexts(2));
+        assertEquals(Collections.emptyList(), table.findTexts(5000));
+    }
+
+    @Test
+    public void testEmptyTable() throws Exception
+    {
+        Path file = Files.createTempDirectory("pubchem-table")
+                         .resolve("empty.tbl");
+        LongStringTable.writer(file, LongStringTable.Order.BY_NUMBER)
+                       .close();
+
+        LongStringTable table = LongStringTable.open(file);
+        assertEquals(0, table.size());
+        assertTrue(table.findTexts(1)
+                        .isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+package org.omnaest.pubchem.rest.offline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+import org.omnaest.pubchem.rest.PubChemRestUtils;
+import org.omnaest.pubchem.rest.PubChemRestUtils.PubChemRestAccessor;
+
+/**
+ * @see OfflineIndex
+ * @author omnaest
+ */
+public class OfflineIndexTest
+{
+    @Test
+    public void testBuildAndLookup() throws Exception
+    {
+        Path directory = Files.createTempDirectory("pubchem-offline-index");
+        Path synonymsFile = writeGzipFile(directory.resolve("CID-Synonym-filtered.gz"), "612\tlactic acid", "612\t2-Hydroxypropanoic acid", "612\tLactate",
+                                          "962\twater", "962\tDihydrogen oxide", "91435\tlactate", "91435\t(RS)-lactic acid");
+        Path titlesFile = writeGzipFile(directory.resolve("CID-Title.gz"), "612\tLactic Acid", "962\tWater", "91435\tLactate");
+        Path parentsFile = writeGzipFile(directory.resolve("CID-Parent.gz"), "91435\t612");
+
+        OfflineIndex index = OfflineIndex.builder()
+                                         .withSynonymsFile(synonymsFile)
+                                         .withTitlesFile(titlesFile)
+                                         .withParentsFile(parentsFile)
+                                         .build(directory.resolve("index"));
+
+        assertEquals(612L, index.findCidByName("  LACTATE ")
+                                .get()
+                                .longValue());
+        assertEquals(962L, index.findCidByName("dihydrogen oxide")
+                                .get()
+                                .longValue());
+        assertFalse(index.findCidByName("unknown")
+                         .isPresent());
+
+        assertEquals(Arrays.asList("water", "Dihydrogen oxide"), index.findSynonyms(962)
+                                                                      .get()
+                                                                      .getSynonyms());
+        assertFalse(index.findSynonyms(1)
+                         .isPresent());
+
+        assertEquals("Lactate", index.findTitle(91435)
+                                     .get());
+        assertFalse(index.findTitle(1)
+                         .isPresent());
+
+        assertEquals(612L, index.findParentCid(91435)
+                                .getAsLong());
+        assertFalse(index.findParentCid(962)
+                         .isPresent());
+
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withBaseUrl("http://localhost:1/unreachable")
+                                                       .withOfflineIndex(directory.resolve("index"));
+        assertEquals("962", accessor.fetchCompoundCidByName("Water")
+                                    .get());
+        assertEquals(612L, accessor.fetchSynonyms("lactic acid")
+                                   .get()
+                                   .getCid());
+        assertEquals("Water", accessor.fetchTitles("962", "612")
+                                      .get("962"));
+        assertEquals("612", accessor.fetchCompoundParentCidByCid("91435")
+                                    .get());
+    }
+
+    private static Path writeGzipFile(Path file, String... lines) throws IOException
+    {
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(file)))
+        {
+            for (String line : lines)
+            {
+                outputStream.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return file;
+    }
+}
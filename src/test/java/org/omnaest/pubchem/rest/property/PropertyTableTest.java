@@ -0,0 +1,62 @@
+package org.omnaest.pubchem.rest.property;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * @see PropertyTable
+ * @author omnaest
+ */
+public class PropertyTableTest
+{
+    @Test
+    public void testAddCsv() throws Exception
+    {
+        String csv = "\"CID\",\"MolecularFormula\",\"MolecularWeight\",\"IUPACName\",\"XLogP\"\r\n"
+                + "612,\"C3H6O3\",\"90.08\",\"2-hydroxypropanoic acid\",-0.7\r\n"
+                + "91435,\"C3H5O3-\",\"89.07\",\"2-hydroxypropanoate\",\r\n"
+                + "5793,\"C6H12O6\",\"180.16\",\"(3R,4S,5S,6R)-6-(hydroxymethyl)oxane-2,3,4,5-tetrol\",-2.6\r\n";
+        PropertyTable propertyTable = PropertyTable.builder(PropertyType.MOLECULAR_WEIGHT, PropertyType.XLOGP, PropertyType.IUPAC_NAME,
+                                                            PropertyType.INCHI_KEY)
+                                                   .addCsv(new StringReader(csv))
+                                                   .addRow(1, "18.015", "", "oxidane")
+                                                   .build();
+
+        assertEquals(4, propertyTable.size());
+        assertEquals(612, propertyTable.getCid(0));
+        assertEquals(1, propertyTable.getCid(3));
+        assertEquals(90.08, propertyTable.getNumber(0, PropertyType.MOLECULAR_WEIGHT), 0.0);
+        assertTrue(Double.isNaN(propertyTable.getNumber(1, PropertyType.XLOGP)));
+        assertFalse(propertyTable.getNumberByCid(91435L, PropertyType.XLOGP)
+                                 .isPresent());
+        assertEquals(-2.6, propertyTable.getNumberByCid(5793L, PropertyType.XLOGP)
+                                        .getAsDouble(),
+                     0.0);
+        assertEquals("(3R,4S,5S,6R)-6-(hydroxymethyl)oxane-2,3,4,5-tetrol", propertyTable.getTextByCid(5793L, PropertyType.IUPAC_NAME)
+                                                                                        .get());
+        assertNull(propertyTable.getText(0, PropertyType.INCHI_KEY));
+        assertEquals(Arrays.asList("2-hydroxypropanoic acid", "2-hydroxypropanoate", "(3R,4S,5S,6R)-6-(hydroxymethyl)oxane-2,3,4,5-tetrol",
+                                   "oxidane"),
+                     propertyTable.getTexts(PropertyType.IUPAC_NAME));
+        assertEquals(4, propertyTable.getNumbers(PropertyType.MOLECULAR_WEIGHT).length);
+        assertFalse(propertyTable.getRow(4L)
+                                 .isPresent());
+    }
+
+    @Test
+    public void testQuotedValues() throws Exception
+    {
+        String csv = "CID,Title\n1,\"say \"\"hi\"\"\nand bye\"\n2,plain\n";
+        PropertyTable propertyTable = PropertyTable.builder(PropertyType.TITLE)
+                                                   .addCsv(new StringReader(csv))
+                                                   .build();
+        assertEquals(Arrays.asList("say \"hi\"\nand bye", "plain"), propertyTable.getTexts(PropertyType.TITLE));
+    }
+}
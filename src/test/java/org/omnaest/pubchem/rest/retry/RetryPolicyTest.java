@@ -0,0 +1,107 @@
+package org.omnaest.pubchem.rest.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.omnaest.pubchem.rest.retry.RetryPolicy.Call;
+import org.omnaest.pubchem.rest.retry.RetryPolicy.Failure;
+
+/**
+ * @see RetryPolicy
+ * @author omnaest
+ */
+public class RetryPolicyTest
+{
+    @Test
+    public void testMaxRetriesAndBackoff() throws Exception
+    {
+        RetryPolicy retryPolicy = RetryPolicy.newInstance()
+                                             .withBackoff(100, 250, TimeUnit.MILLISECONDS);
+        Call call = retryPolicy.newCall();
+        for (int ii = 0; ii < 3; ii++)
+        {
+            call.onRequest();
+            OptionalLong delay = call.nextRetryDelayMillis(Failure.SERVER_ERROR, null);
+            assertTrue(delay.isPresent());
+            assertTrue(String.valueOf(delay.getAsLong()), delay.getAsLong() >= 0 && delay.getAsLong() <= 250);
+        }
+        assertFalse(call.nextRetryDelayMillis(Failure.SERVER_ERROR, null)
+                        .isPresent());
+        assertTrue(call.nextRetryDelayMillis(Failure.IO_ERROR, null)
+                       .isPresent());
+        assertEquals(4, call.getRetryCount());
+
+        assertFalse(RetryPolicy.noRetries()
+                               .newCall()
+                               .nextRetryDelayMillis(Failure.THROTTLED, "1")
+                               .isPresent());
+    }
+
+    @Test
+    public void testRetryAfter() throws Exception
+    {
+        Call call = RetryPolicy.newInstance()
+                               .newCall();
+        assertEquals(2000, call.nextRetryDelayMillis(Failure.THROTTLED, "2")
+                               .getAsLong());
+        assertEquals(0, call.nextRetryDelayMillis(Failure.THROTTLED, null)
+                            .getAsLong());
+
+        String date = ZonedDateTime.now()
+                                   .plusSeconds(60)
+                                   .format(DateTimeFormatter.RFC_1123_DATE_TIME);
+        long delay = RetryPolicy.parseRetryAfterMillis(date)
+                                .getAsLong();
+        assertTrue(String.valueOf(delay), delay > 55000 && delay <= 60000);
+        assertFalse(RetryPolicy.parseRetryAfterMillis("soon")
+                               .isPresent());
+    }
+
+    @Test
+    public void testRetryBudget() throws Exception
+    {
+        RetryPolicy retryPolicy = RetryPolicy.newInstance()
+                                             .withBackoff(0, 0, TimeUnit.MILLISECONDS)
+                                             .withRetryBudget(0.5, 2);
+        assertTrue(retryPolicy.newCall()
+                              .nextRetryDelayMillis(Failure.IO_ERROR, null)
+                              .isPresent());
+        assertTrue(retryPolicy.newCall()
+                              .nextRetryDelayMillis(Failure.IO_ERROR, null)
+                              .isPresent());
+        assertFalse(retryPolicy.newCall()
+                               .nextRetryDelayMillis(Failure.IO_ERROR, null)
+                               .isPresent());
+
+        Call call = retryPolicy.newCall();
+        call.onRequest();
+        call.onRequest();
+        assertEquals(1, retryPolicy.getAvailableBudget());
+        assertTrue(call.nextRetryDelayMillis(Failure.IO_ERROR, null)
+                       .isPresent());
+    }
+
+    @Test
+    public void testDeadline() throws Exception
+    {
+        Call call = RetryPolicy.newInstance()
+                               .withDeadline(1, TimeUnit.SECONDS)
+                               .newCall();
+        assertTrue(call.getRemainingTime()
+                       .get()
+                       .toMillis() <= 1000);
+        assertFalse(call.nextRetryDelayMillis(Failure.THROTTLED, "5")
+                        .isPresent());
+        assertFalse(RetryPolicy.newInstance()
+                               .newCall()
+                               .getRemainingTime()
+                               .isPresent());
+    }
+}
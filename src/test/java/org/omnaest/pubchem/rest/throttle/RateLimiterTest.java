@@ -0,0 +1,135 @@
+package org.omnaest.pubchem.rest.throttle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @see RateLimiter
+ * @author omnaest
+ */
+public class RateLimiterTest
+{
+    @Test
+    public void testAcquire() throws Exception
+    {
+        RateLimiter rateLimiter = RateLimiter.newInstance(20, 1000);
+
+        long start = System.nanoTime();
+        for (int ii = 0; ii < 30; ii++)
+        {
+            rateLimiter.acquire();
+        }
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // the first 20 permits are available immediately, the remaining 10 are paced at 20 per second
+        assertTrue("duration was " + duration, duration >= 400);
+        assertEquals(30, rateLimiter.getStatistics()
+                                    .getAcquiredPermits());
+        assertEquals(0, rateLimiter.getStatistics()
+                                   .getQueueDepth());
+    }
+
+    @Test
+    public void testMinuteLimit() throws Exception
+    {
+        RateLimiter rateLimiter = RateLimiter.newInstance(100, 600);
+
+        long start = System.nanoTime();
+        for (int ii = 0; ii < 605; ii++)
+        {
+            rateLimiter.acquire();
+        }
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 600 per minute refill one permit each 100ms
+        assertTrue("duration was " + duration, duration >= 400);
+    }
+
+    @Test
+    public void testBackoffOnThrottlingHeader() throws Exception
+    {
+        RateLimiter rateLimiter = RateLimiter.newInstance(100, 6000);
+
+        rateLimiter.onResponse(200, "Request Count status: Green (0%), Request Time status: Green (0%), Service status: Green (20%)");
+        assertEquals(0, rateLimiter.getStatistics()
+                                   .getThrottledResponses());
+
+        rateLimiter.onResponse(200, "Request Count status: Green (10%), Request Time status: Red (75%), Service status: Green (20%)");
+        assertEquals(1, rateLimiter.getStatistics()
+                                   .getThrottledResponses());
+
+        long start = System.nanoTime();
+        rateLimiter.acquire();
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("duration was " + duration, duration >= 900);
+        assertTrue(rateLimiter.getStatistics()
+                              .getTotalWaitTimeMillis() >= 900);
+    }
+
+    @Test
+    public void testBackoffOnServiceUnavailable() throws Exception
+    {
+        RateLimiter rateLimiter = RateLimiter.newInstance(100, 6000);
+        rateLimiter.onResponse(503, null);
+
+        long start = System.nanoTime();
+        rateLimiter.acquire();
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("duration was " + duration, duration >= 900);
+    }
+
+    @Test
+    public void testRequestsAreSpacedAfterBackoff() throws Exception
+    {
+        RateLimiter rateLimiter = RateLimiter.newInstance(10, 6000);
+        rateLimiter.onResponse(503, null);
+
+        long[] acquiredAt = new long[5];
+        for (int ii = 0; ii < acquiredAt.length; ii++)
+        {
+            rateLimiter.acquire();
+            acquiredAt[ii] = System.nanoTime();
+        }
+
+        // the bucket is drained by the backoff, so the permits after it are paced at 10 per second instead of being available at once
+        for (int ii = 1; ii < acquiredAt.length; ii++)
+        {
+            long gap = TimeUnit.NANOSECONDS.toMillis(acquiredAt[ii] - acquiredAt[ii - 1]);
+            assertTrue("gap was " + gap, gap >= 90);
+        }
+    }
+
+    @Test
+    public void testTryAcquireAndInterrupt() throws Exception
+    {
+        RateLimiter rateLimiter = RateLimiter.newInstance(100, 6000);
+        rateLimiter.onResponse(503, null);
+
+        long start = System.nanoTime();
+        assertFalse(rateLimiter.tryAcquire(100, TimeUnit.MILLISECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+        assertEquals(0, rateLimiter.getStatistics()
+                                   .getAcquiredPermits());
+
+        Thread.currentThread()
+              .interrupt();
+        try
+        {
+            rateLimiter.acquire();
+            fail();
+        }
+        catch (InterruptedException e)
+        {
+            // expected
+        }
+        assertFalse(Thread.currentThread()
+                          .isInterrupted());
+        assertTrue(rateLimiter.tryAcquire(2, TimeUnit.SECONDS));
+    }
+}
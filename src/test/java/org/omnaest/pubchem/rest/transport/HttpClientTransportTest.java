@@ -0,0 +1,83 @@
+package org.omnaest.pubchem.rest.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+import org.omnaest.pubchem.rest.transport.PubChemTransport.Response;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @see HttpClientTransport
+ * @author omnaest
+ */
+public class HttpClientTransportTest
+{
+    @Test
+    public void testGzipAndConnectionReuse() throws IOException
+    {
+        Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<>());
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/rest/pug/", exchange ->
+        {
+            clientPorts.add(exchange.getRemoteAddress()
+                                    .getPort());
+            byte[] body = "{\"value\":1}".getBytes(StandardCharsets.UTF_8);
+            if ("gzip".equals(exchange.getRequestHeaders()
+                                      .getFirst("Accept-Encoding")))
+            {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream))
+                {
+                    gzipOutputStream.write(body);
+                }
+                body = outputStream.toByteArray();
+                exchange.getResponseHeaders()
+                        .add("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders()
+                    .add("X-Throttling-Control", "Request Count status: Green (0%)");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody())
+            {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+        try
+        {
+            PubChemTransport transport = HttpClientTransport.newInstance();
+            String url = "http://localhost:" + server.getAddress()
+                                                     .getPort()
+                    + "/rest/pug/test";
+            for (int ii = 0; ii < 5; ii++)
+            {
+                Response response = transport.get(url);
+                assertEquals(200, response.getStatusCode());
+                assertEquals("{\"value\":1}", new String(response.getBody(), StandardCharsets.UTF_8));
+                assertEquals("Request Count status: Green (0%)", response.getHeader("x-throttling-control")
+                                                                         .get());
+                assertFalse(response.getHeader("Missing")
+                                    .isPresent());
+            }
+            // the first plain http request attempts an HTTP/2 upgrade on its own connection, all following requests share one connection
+            assertTrue(clientPorts.size() <= 2);
+        }
+        finally
+        {
+            server.stop(0);
+        }
+    }
+}
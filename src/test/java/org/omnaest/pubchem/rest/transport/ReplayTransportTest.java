@@ -0,0 +1,160 @@
+package org.omnaest.pubchem.rest.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import org.omnaest.pubchem.rest.PubChemRestUtils;
+import org.omnaest.pubchem.rest.PubChemRestUtils.PubChemRestAccessor;
+import org.omnaest.pubchem.rest.retry.RetryPolicy;
+import org.omnaest.pubchem.rest.transport.PubChemTransport.Response;
+
+/**
+ * @see ReplayTransport
+ * @author omnaest
+ */
+public class ReplayTransportTest
+{
+    private static final String BASE_URL = "https://pubchem.ncbi.nlm.nih.gov/rest/pug";
+
+    @Test
+    public void testRecordAndReplay() throws IOException
+    {
+        Path directory = Files.createTempDirectory("pubchem-recordings");
+        PubChemTransport transport = RecordingTransport.newInstance(url -> new Response(200, ("{\"url\":\"" + url + "\"}").getBytes(StandardCharsets.UTF_8),
+                                                                                        Collections.emptyMap()),
+                                                                    directory);
+        transport.get(BASE_URL + "/compound/name/lactate/synonyms/JSON");
+        transport.get(BASE_URL + "/compound/cid/612/cids/JSON?cids_type=parent");
+
+        ReplayTransport replayTransport = ReplayTransport.newInstance()
+                                                         .withRecordings(directory);
+        Response response = replayTransport.get("http://localhost:8080/rest/pug/compound/name/lactate/synonyms/JSON");
+        assertEquals(200, response.getStatusCode());
+        assertEquals("{\"url\":\"" + BASE_URL + "/compound/name/lactate/synonyms/JSON\"}", new String(response.getBody(), StandardCharsets.UTF_8));
+        assertEquals(200, replayTransport.get(BASE_URL + "/compound/cid/612/cids/JSON?cids_type=parent")
+                                         .getStatusCode());
+        assertEquals(404, replayTransport.get(BASE_URL + "/compound/cid/612/cids/JSON")
+                                         .getStatusCode());
+        assertEquals(1, replayTransport.getUnknownRequests());
+    }
+
+    @Test
+    public void testResponseRules() throws IOException
+    {
+        ReplayTransport transport = ReplayTransport.newInstance()
+                                                   .withResponse("compound/name/*/synonyms/JSON", 200, "{\"synonyms\":true}")
+                                                   .withResponse("compound/cid/*/cids/JSON?cids_type=parent", 200, "{\"parent\":true}")
+                                                   .withResponse("compound/cid/*/description/JSON",
+                                                                 url -> new Response(200, url.getBytes(StandardCharsets.UTF_8), Collections.emptyMap()));
+
+        assertEquals("{\"synonyms\":true}", new String(transport.get(BASE_URL + "/compound/name/lactic%20acid/synonyms/JSON")
+                                                                .getBody(),
+                                                       StandardCharsets.UTF_8));
+        assertEquals("{\"parent\":true}", new String(transport.get(BASE_URL + "/compound/cid/612/cids/JSON?cids_type=parent")
+                                                              .getBody(),
+                                                     StandardCharsets.UTF_8));
+        assertEquals(BASE_URL + "/compound/cid/612/description/JSON", new String(transport.get(BASE_URL + "/compound/cid/612/description/JSON")
+                                                                                          .getBody(),
+                                                                                 StandardCharsets.UTF_8));
+        assertEquals(404, transport.get(BASE_URL + "/compound/name/a/b/synonyms/JSON")
+                                   .getStatusCode());
+        assertEquals(404, transport.get(BASE_URL + "/compound/cid/612/cids/JSON?cids_type=parent&extra=1")
+                                   .getStatusCode());
+    }
+
+    @Test
+    public void testInjectedFailuresAreDeterministic()
+    {
+        assertEquals(this.runWithInjectedFailures(42), this.runWithInjectedFailures(42));
+
+        ReplayTransport transport = ReplayTransport.newInstance()
+                                                   .withResponse("*", 200, "{}")
+                                                   .withThrottlingRate(0.2)
+                                                   .withErrorRate(0.1)
+                                                   .withLatency(0, 1, TimeUnit.MILLISECONDS);
+        for (int ii = 0; ii < 1000; ii++)
+        {
+            try
+            {
+                transport.get(BASE_URL + "/compound/cid/" + ii + "/JSON");
+            }
+            catch (IOException e)
+            {
+                // expected
+            }
+        }
+        assertEquals(1000, transport.getRequests());
+        assertTrue(String.valueOf(transport.getThrottledRequests()), transport.getThrottledRequests() > 150 && transport.getThrottledRequests() < 250);
+        assertTrue(String.valueOf(transport.getFailedRequests()), transport.getFailedRequests() > 50 && transport.getFailedRequests() < 110);
+    }
+
+    private List<String> runWithInjectedFailures(long seed)
+    {
+        ReplayTransport transport = ReplayTransport.newInstance()
+                                                   .withResponse("*", 200, "{}")
+                                                   .withThrottlingRate(0.3)
+                                                   .withErrorRate(0.3)
+                                                   .withSeed(seed);
+        List<String> outcomes = new ArrayList<>();
+        for (int ii = 0; ii < 50; ii++)
+        {
+            try
+            {
+                outcomes.add(String.valueOf(transport.get(BASE_URL + "/compound/cid/" + ii + "/JSON")
+                                                     .getStatusCode()));
+            }
+            catch (IOException e)
+            {
+                outcomes.add("error");
+            }
+        }
+        return outcomes;
+    }
+
+    @Test
+    public void testAccessorRetriesInjectedErrors()
+    {
+        Pattern namePattern = Pattern.compile("/compound/name/compound([0-9]+)/synonyms/JSON");
+        ReplayTransport transport = ReplayTransport.newInstance()
+                                                   .withResponse("compound/name/*/synonyms/JSON", url ->
+                                                   {
+                                                       Matcher matcher = namePattern.matcher(url);
+                                                       assertTrue(url, matcher.find());
+                                                       String body = "{\"InformationList\":{\"Information\":[{\"CID\":" + matcher.group(1)
+                                                               + ",\"Synonym\":[\"compound" + matcher.group(1) + "\"]}]}}";
+                                                       return new Response(200, body.getBytes(StandardCharsets.UTF_8), Collections.emptyMap());
+                                                   })
+                                                   .withErrorRate(0.2)
+                                                   .withSeed(7);
+        PubChemRestAccessor accessor = PubChemRestUtils.newInstance()
+                                                       .withTransport(transport)
+                                                       .withRateLimit(1000, 60000)
+                                                       .withRetryPolicy(RetryPolicy.newInstance()
+                                                                                   .withMaxRetries(RetryPolicy.Failure.IO_ERROR, 10)
+                                                                                   .withBackoff(0, 0, TimeUnit.MILLISECONDS)
+                                                                                   .withRetryBudget(1.0, 100));
+
+        for (int ii = 1; ii <= 50; ii++)
+        {
+            assertEquals(ii, accessor.fetchSynonyms("compound" + ii)
+                                     .get()
+                                     .getCid());
+        }
+        assertTrue(transport.getFailedRequests() > 0);
+        assertEquals(50 + transport.getFailedRequests(), transport.getRequests());
+        assertFalse(transport.getUnknownRequests() > 0);
+    }
+}